@@ -3,6 +3,8 @@ import androidx.annotation.VisibleForTesting;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.PolylineOptions;
+import com.google.android.gms.maps.model.TileOverlay;
+import com.google.android.gms.maps.model.TileOverlayOptions;
 
 /**
  *Divides a rectangular area into identically sized, roughly square cells.
@@ -24,26 +26,48 @@ public class AreaDivider {
     /**
      * North Boundary.
      */
-    private double north;
+    private final double north;
     /**
      * South Boundary.
      */
-    private double south;
+    private final double south;
     /**
      * East Boundary.
      */
-    private double east;
+    private final double east;
     /**
      * West Boundary.
      */
-    private double west;
+    private final double west;
     /**
-     * Cell Size.
+     * Number of cells between the west and east boundaries.
      */
-    private double cellSize;
+    private final int xCells;
+    /**
+     * Number of cells between the south and north boundaries.
+     */
+    private final int yCells;
+    /**
+     * Width of each cell in degrees of longitude.
+     */
+    private final double xStep;
+    /**
+     * Height of each cell in degrees of latitude.
+     */
+    private final double yStep;
+    /**
+     * Longitudes of the grid's vertical lines from west to east; column x spans entries x and x + 1.
+     */
+    private final double[] columnEdges;
+    /**
+     * Latitudes of the grid's horizontal lines from south to north; row y spans entries y and y + 1.
+     */
+    private final double[] rowEdges;
 
     /**
      * Creates an Area Divider for an area.
+     * <p>
+     * All of the grid's geometry is worked out here, so the other methods only look values up.
      * @param setNorth North Latitude
      * @param setSouth South Latitude
      * @param setEast East Longitude
@@ -57,7 +81,20 @@ public class AreaDivider {
         this.south = setSouth;
         this.east = setEast;
         this.west = setWest;
-        this.cellSize = setCellSize;
+        // Referenced at the southwest corner, the projection measures the edges exactly as LatLngUtils.distance does
+        LocalProjection projection = new LocalProjection(south, west);
+        this.xCells = (int) Math.ceil(projection.distance(south, west, south, east) / setCellSize);
+        this.yCells = (int) Math.ceil(projection.distance(south, west, north, west) / setCellSize);
+        this.xStep = (east - west) / xCells;
+        this.yStep = (north - south) / yCells;
+        this.columnEdges = new double[xCells + 1];
+        for (int i = 0; i <= xCells; i++) {
+            columnEdges[i] = west + xStep * i;
+        }
+        this.rowEdges = new double[yCells + 1];
+        for (int i = 0; i <= yCells; i++) {
+            rowEdges[i] = south + yStep * i;
+        }
     }
 
     /**
@@ -67,9 +104,7 @@ public class AreaDivider {
      */
 
     public int getXCells() {
-        double distance = LatLngUtils.distance(south, west, south, east);
-        double xCell = distance / cellSize;
-        return (int) Math.ceil(xCell);
+        return xCells;
     }
 
     /**
@@ -79,9 +114,7 @@ public class AreaDivider {
      */
 
     public int getYCells() {
-        double distance = LatLngUtils.distance(south, west, north, west);
-        double yCell = distance / cellSize;
-        return (int) Math.ceil(yCell);
+        return yCells;
     }
 
     /**
@@ -98,14 +131,20 @@ public class AreaDivider {
      */
 
     public int getXCoordinate(final com.google.android.gms.maps.model.LatLng location) {
-        double xDist = (east - west) / getXCells();
-        double xLength = location.longitude - west;
-        double xCoordinate = xLength / xDist;
+        return getXCoordinate(location.longitude);
+    }
+
+    /**
+     * Gets the X coordinate of the cell containing the specified longitude.
+     * @param longitude the longitude
+     * @return the cell's X coordinate, -1 if west of the area, or at least getXCells() if east of it
+     */
+    public int getXCoordinate(final double longitude) {
+        double xCoordinate = (longitude - west) / xStep;
         if (xCoordinate < 0) {
             return -1;
         }
         return (int) xCoordinate;
-
     }
 
     /**
@@ -120,14 +159,73 @@ public class AreaDivider {
      */
 
     public int getYCoordinate(final com.google.android.gms.maps.model.LatLng location) {
-        double yDist = (north - south) / getYCells();
-        double yLength = location.latitude - south;
-        double yCoordinate = yLength / yDist;
+        return getYCoordinate(location.latitude);
+    }
+
+    /**
+     * Gets the Y coordinate of the cell containing the specified latitude.
+     * @param latitude the latitude
+     * @return the cell's Y coordinate, -1 if south of the area, or at least getYCells() if north of it
+     */
+    public int getYCoordinate(final double latitude) {
+        double yCoordinate = (latitude - south) / yStep;
         if (yCoordinate < 0) {
             return -1;
         }
         return (int) yCoordinate;
+    }
 
+    /**
+     * Finds the cell containing a location, without allocating.
+     * <p>
+     * The result packs both coordinates into one number: x * getYCells() + y.
+     * @param latitude the latitude
+     * @param longitude the longitude
+     * @return the cell's packed index, or -1 if the location is outside the area
+     */
+    public int getCellIndex(final double latitude, final double longitude) {
+        int x = getXCoordinate(longitude);
+        int y = getYCoordinate(latitude);
+        if (x < 0 || x >= xCells || y < 0 || y >= yCells) {
+            return -1;
+        }
+        return x * yCells + y;
+    }
+
+    /**
+     * Gets the longitude of a cell's west edge.
+     * @param x the cell's X coordinate (getXCells() gives the area's east edge)
+     * @return the west edge's longitude
+     */
+    public double getCellWest(final int x) {
+        return columnEdges[x];
+    }
+
+    /**
+     * Gets the longitude of a cell's east edge.
+     * @param x the cell's X coordinate
+     * @return the east edge's longitude
+     */
+    public double getCellEast(final int x) {
+        return columnEdges[x + 1];
+    }
+
+    /**
+     * Gets the latitude of a cell's south edge.
+     * @param y the cell's Y coordinate (getYCells() gives the area's north edge)
+     * @return the south edge's latitude
+     */
+    public double getCellSouth(final int y) {
+        return rowEdges[y];
+    }
+
+    /**
+     * Gets the latitude of a cell's north edge.
+     * @param y the cell's Y coordinate
+     * @return the north edge's latitude
+     */
+    public double getCellNorth(final int y) {
+        return rowEdges[y + 1];
     }
 
     /**
@@ -138,10 +236,8 @@ public class AreaDivider {
      */
 
     public LatLngBounds getCellBounds(final int x, final int y) {
-        double xDist = (east - west) / getXCells();
-        double yDist = (north - south) / getYCells();
-        LatLng southWest = new LatLng((south + yDist * y), (west + xDist * x));
-        LatLng northEast = new LatLng((south + yDist * (y + 1)), (west + xDist * (x + 1)));
+        LatLng southWest = new LatLng(south + yStep * y, west + xStep * x);
+        LatLng northEast = new LatLng(south + yStep * (y + 1), west + xStep * (x + 1));
         return new LatLngBounds(southWest, northEast);
     }
 
@@ -182,14 +278,24 @@ public class AreaDivider {
      */
 
     public void renderGrid(final com.google.android.gms.maps.GoogleMap map) {
-        double xDist = (east - west) / getXCells();
-        double yDist = (north - south) / getYCells();
-        for (int i = 0; i <= getXCells(); i++) {
-            addLine(north, (xDist * i + west), south, (xDist * i + west), map);
+        for (double longitude : columnEdges) {
+            addLine(north, longitude, south, longitude, map);
         }
-        for (int i = 0; i <= getYCells(); i++) {
-            addLine((yDist * i + south), west, (yDist * i + south), east, map);
+        for (double latitude : rowEdges) {
+            addLine(latitude, west, latitude, east, map);
         }
     }
 
+    /**
+     * Draws the grid to a map as a tile overlay instead of one Polyline per line.
+     * <p>
+     * This is for large areas: the tiles are drawn in the background, only where the map is showing, and
+     * lines too close together to make out at the current zoom are skipped. See GridTileProvider.
+     * @param map Google Map used for rendering
+     * @return the overlay, which can be removed from the map
+     */
+    public TileOverlay renderGridTiles(final com.google.android.gms.maps.GoogleMap map) {
+        return map.addTileOverlay(new TileOverlayOptions().tileProvider(new GridTileProvider(this)).zIndex(1));
+    }
+
 }
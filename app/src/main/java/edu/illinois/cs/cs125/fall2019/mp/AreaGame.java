@@ -1,16 +1,20 @@
 package edu.illinois.cs.cs125.fall2019.mp;
 
 import android.content.Context;
+import android.view.Choreographer;
 
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
-import com.google.android.gms.maps.model.PolygonOptions;
+import com.google.android.gms.maps.model.TileOverlay;
+import com.google.android.gms.maps.model.TileOverlayOptions;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.neovisionaries.ws.client.WebSocket;
 
+import java.util.Arrays;
+import java.util.Collections;
 
 
 /**
@@ -22,6 +26,12 @@ import com.neovisionaries.ws.client.WebSocket;
  */
 public final class AreaGame extends Game {
 
+    /** Games with at least this many cells draw their grid and captures into map tiles, not map objects. */
+    public static final int TILE_THRESHOLD = 2500;
+
+    /** Games with at least this many cells, but fewer than TILE_THRESHOLD, merge same-team cells into polygons. */
+    public static final int MERGE_THRESHOLD = 400;
+
     // You will probably want some instance variables to keep track of the game state
     // (similar to the area mode gameplay logic you previously wrote in GameActivity)
 
@@ -29,8 +39,8 @@ public final class AreaGame extends Game {
     /**  Stores an AreaDivider created in the constructor .*/
     private AreaDivider divider;
 
-    /** 2D array storing positions of captured cells. */
-    private int[][] classCells;
+    /** Owning team of each cell, indexed by the divider's packed cell index (0 if unclaimed). */
+    private int[] cellOwners;
 
     /** Last updated x index. */
     private int lastX = -1;
@@ -53,7 +63,20 @@ public final class AreaGame extends Game {
     /** Cell size parsed from Jsonobject. */
     private double cellSize;
 
-    /** 2D array storing positions of captured cells. */
+    /** Draws captured cells into tiles, or null if each captured cell is a Polygon. */
+    private CellTileProvider cellTiles;
+
+    /** The overlay showing cellTiles, or null if not using tiles. */
+    private TileOverlay cellOverlay;
+
+    /** Whether cellOverlay is already due to ask for its tiles again at the next frame. */
+    private boolean overlayRefreshPosted;
+
+    /** Groups captured cells into same-team regions, or null if not merging cells. */
+    private CellRegions cellRegions;
+
+    /** Shows cellRegions on the map, or null if not merging cells. */
+    private CellRegionLayer regionLayer;
 
     /**
      * Creates a game in area mode.
@@ -69,6 +92,7 @@ public final class AreaGame extends Game {
     public AreaGame(final String email, final GoogleMap map, final WebSocket webSocket,
                     final JsonObject fullState, final Context context) {
         super(email, map, webSocket, fullState, context);
+        onEvent(GameEvent.PlayerCellCapture.class, this::playerCellCaptured);
         areaNorth = fullState.get("areaNorth").getAsDouble();
         areaEast = fullState.get("areaEast").getAsDouble();
         areaSouth = fullState.get("areaSouth").getAsDouble();
@@ -76,26 +100,40 @@ public final class AreaGame extends Game {
         cellSize = fullState.get("cellSize").getAsDouble();
 
         divider = new AreaDivider(areaNorth, areaEast, areaSouth, areaWest, cellSize);
-        classCells = new int[divider.getXCells()][divider.getYCells()];
-        divider.renderGrid(map);
+        cellOwners = new int[divider.getXCells() * divider.getYCells()];
+        getScoreboard().add(TeamID.OBSERVER, cellOwners.length);
+        if (cellOwners.length >= TILE_THRESHOLD) {
+            // Too many lines and cells for a map object each: draw them into tiles in the background instead
+            divider.renderGridTiles(map);
+            cellTiles = new CellTileProvider(divider, getTeamColors());
+        } else {
+            divider.renderGrid(map);
+            if (cellOwners.length >= MERGE_THRESHOLD) {
+                cellRegions = new CellRegions(divider.getXCells(), divider.getYCells());
+                setCuller(new ViewportCuller(new LatLngBounds(new LatLng(areaSouth, areaWest),
+                        new LatLng(areaNorth, areaEast))));
+                regionLayer = new CellRegionLayer(divider, getTeamColors(), getCuller());
+            }
+        }
         JsonArray cells = fullState.getAsJsonArray("cells");
         for (JsonElement element: cells) {
             JsonObject obj = element.getAsJsonObject();
-            PolygonOptions options = new PolygonOptions();
             int currX = obj.get("x").getAsInt();
             int currY = obj.get("y").getAsInt();
             int teamNum = obj.get("team").getAsInt();
-            classCells[currX][currY] = teamNum;
-            LatLngBounds latlng = divider.getCellBounds(currX, currY);
-            LatLng southeast = new LatLng(latlng.southwest.latitude, latlng.northeast.longitude);
-            LatLng northwest = new LatLng(latlng.northeast.latitude, latlng.southwest.longitude);
-            int[] colors = getContext().getResources().getIntArray(R.array.team_colors);
-            int color = colors[teamNum];
-            PolygonOptions opt = new PolygonOptions();
-            opt.add(northwest, latlng.northeast, southeast, latlng.southwest);
-            opt.fillColor(color);
-            getMap().addPolygon(opt);
-
+            setOwner(currX * divider.getYCells() + currY, teamNum);
+            if (cellTiles != null) {
+                cellTiles.setOwner(currX, currY, teamNum);
+            } else if (cellRegions != null) {
+                cellRegions.load(currX, currY, teamNum);
+            } else {
+                addCellPolygon(currX, currY, getTeamColors()[teamNum]);
+            }
+        }
+        if (cellTiles != null) {
+            cellOverlay = map.addTileOverlay(new TileOverlayOptions().tileProvider(cellTiles).fadeIn(false));
+        } else if (cellRegions != null) {
+            showRegions(cellRegions.groupAll());
         }
         JsonArray players = fullState.get("players").getAsJsonArray();
         for (JsonElement element: players) {
@@ -126,27 +164,19 @@ public final class AreaGame extends Game {
      */
     @Override
     public void locationUpdated(final LatLng location) {
-        int currentX = divider.getXCoordinate(location);
-        int currentY = divider.getYCoordinate(location);
-        if (currentX < 0 || currentX >= divider.getXCells() || currentY < 0 || currentY >= divider.getYCells()) {
+        int cell = divider.getCellIndex(location.latitude, location.longitude);
+        if (cell < 0) {
             return;
         }
+        int currentX = cell / divider.getYCells();
+        int currentY = cell % divider.getYCells();
         if (lastX != -1 || lastY != -1) {
-            if (classCells[currentX][currentY] == 0) {
+            if (cellOwners[cell] == 0) {
                 if ((Math.abs(currentX - lastX) + Math.abs(currentY - lastY)) == 1) {
-                    classCells[currentX][currentY] = getMyTeam();
+                    setOwner(cell, getMyTeam());
                     lastX = currentX;
                     lastY = currentY;
-                    int[] colors = getContext().getResources().getIntArray(R.array.team_colors);
-                    LatLng northwest = new LatLng(divider.getCellBounds(lastX, lastY).northeast.latitude,
-                            divider.getCellBounds(lastX, lastY).southwest.longitude);
-                    LatLng southeast = new LatLng(divider.getCellBounds(lastX, lastY).southwest.latitude,
-                            divider.getCellBounds(lastX, lastY).northeast.longitude);
-
-
-                    getMap().addPolygon(new PolygonOptions().add(northwest,
-                            divider.getCellBounds(lastX, lastY).northeast, southeast,
-                            divider.getCellBounds(lastX, lastY).southwest).fillColor(colors[getMyTeam()]));
+                    showCapture(currentX, currentY, getMyTeam());
                     JsonObject obj = new JsonObject();
 
                     obj.addProperty("type", "cellCapture");
@@ -160,56 +190,149 @@ public final class AreaGame extends Game {
     }
 
     /**
-     * Processes an update from the server.
+     * Processes another player's capture of a cell.
      * <p>
-     * Since playerCellCapture events are specific to area mode games, this function handles those
+     * Since playerCellCapture events are specific to area mode games, this class handles those
      * by placing a polygon of the capturing player's team color on the newly captured cell and
      * recording the cell's new owning team.
-     * All other message types are delegated to the superclass.
-     * @param message JSON from the server
-     * @param type the update type
-     * @return whether the message type was recognized
+     * @param event the capture
+     */
+    private void playerCellCaptured(final GameEvent.PlayerCellCapture event) {
+        setOwner(event.getX() * divider.getYCells() + event.getY(), event.getTeam());
+        showCapture(event.getX(), event.getY(), event.getTeam());
+    }
+
+    /**
+     * Determines whether a "full" update describes this game.
+     * <p>
+     * It must be an area mode game with the same bounds and cell size, and every cell captured here must have
+     * the same owner in the update.
+     * @param fullState the "full" update from the server
+     * @return whether reconcileObjectives can apply the update
      */
     @Override
-    public boolean handleMessage(final JsonObject message, final String type) {
-        if (type.equals("playerCellCapture")) {
-            int team = message.get("team").getAsInt();
-            int x = message.get("x").getAsInt();
-            int y = message.get("y").getAsInt();
-            classCells[x][y] = team;
-            int[] colors = getContext().getResources().getIntArray(R.array.team_colors);
-            PolygonOptions opt = new PolygonOptions();
-            LatLngBounds latlng = divider.getCellBounds(x, y);
-
-            LatLng southeast = new LatLng(latlng.southwest.latitude, latlng.northeast.longitude);
-            LatLng northwest = new LatLng(latlng.northeast.latitude, latlng.southwest.longitude);
-
-            getMap().addPolygon(new PolygonOptions().add(northwest, divider.getCellBounds(x, y).northeast, southeast,
-                    divider.getCellBounds(x, y).southwest).fillColor(colors[message.get("team").getAsInt()]));
-
-            //opt.add(northwest, southeast);
-            //opt.fillColor(color);
-            //getMap().addPolygon(opt);
-            return true;
+    protected boolean canReconcile(final JsonObject fullState) {
+        if (!fullState.get("mode").getAsString().equals("area")
+                || fullState.get("areaNorth").getAsDouble() != areaNorth
+                || fullState.get("areaEast").getAsDouble() != areaEast
+                || fullState.get("areaSouth").getAsDouble() != areaSouth
+                || fullState.get("areaWest").getAsDouble() != areaWest
+                || fullState.get("cellSize").getAsDouble() != cellSize) {
+            return false;
         }
-        return false;
+        int[] newOwners = new int[cellOwners.length];
+        for (JsonElement element : fullState.getAsJsonArray("cells")) {
+            JsonObject obj = element.getAsJsonObject();
+            int x = obj.get("x").getAsInt();
+            int y = obj.get("y").getAsInt();
+            if (x < 0 || x >= divider.getXCells() || y < 0 || y >= divider.getYCells()) {
+                return false;
+            }
+            newOwners[x * divider.getYCells() + y] = obj.get("team").getAsInt();
+        }
+        for (int cell = 0; cell < cellOwners.length; cell++) {
+            if (cellOwners[cell] != 0 && cellOwners[cell] != newOwners[cell]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Gets a team's score in this area mode game.
-     * @param teamId the team ID
-     * @return the number of cells owned by the team
+     * Fills in the cells captured since this game's state was loaded, and updates the user's last capture.
+     * @param fullState the "full" update from the server
      */
     @Override
-    public int getTeamScore(final int teamId) {
-        int count = 0;
-        for (int i = 0; i < divider.getXCells(); i++) {
-            for (int j = 0; j < divider.getYCells(); j++) {
-                if (classCells[i][j] == teamId) {
-                    count++;
+    protected void reconcileObjectives(final JsonObject fullState) {
+        for (JsonElement element : fullState.getAsJsonArray("cells")) {
+            JsonObject obj = element.getAsJsonObject();
+            int x = obj.get("x").getAsInt();
+            int y = obj.get("y").getAsInt();
+            int cell = x * divider.getYCells() + y;
+            int team = obj.get("team").getAsInt();
+            if (cellOwners[cell] != team) {
+                setOwner(cell, team);
+                showCapture(x, y, team);
+            }
+        }
+        for (JsonElement element : fullState.getAsJsonArray("players")) {
+            JsonObject obj = element.getAsJsonObject();
+            if (obj.get("email").getAsString().equals(getEmail())) {
+                JsonArray paths = obj.getAsJsonArray("path");
+                if (paths.size() > 0) {
+                    JsonObject last = paths.get(paths.size() - 1).getAsJsonObject();
+                    lastX = last.get("x").getAsInt();
+                    lastY = last.get("y").getAsInt();
                 }
             }
         }
-        return count;
+    }
+
+    /**
+     * Records a cell's new owner, keeping the scoreboard up to date.
+     * @param cell the cell's packed index
+     * @param team the new owning team
+     */
+    private void setOwner(final int cell, final int team) {
+        getScoreboard().change(cellOwners[cell], team);
+        cellOwners[cell] = team;
+    }
+
+    /**
+     * Shows a cell's new owner on the map.
+     * @param x the cell's X coordinate
+     * @param y the cell's Y coordinate
+     * @param team the new owning team
+     */
+    private void showCapture(final int x, final int y, final int team) {
+        if (cellRegions != null) {
+            showRegions(cellRegions.setOwner(x, y, team));
+            return;
+        }
+        if (cellTiles == null) {
+            addCellPolygon(x, y, getTeamColors()[team]);
+            return;
+        }
+        CellTileProvider tiles = cellTiles;
+        TileOverlay overlay = cellOverlay;
+        render(() -> {
+            tiles.setOwner(x, y, team);
+            if (!overlayRefreshPosted) {
+                // Maps can only forget all its tiles, so do that once per frame however many cells changed
+                overlayRefreshPosted = true;
+                Choreographer.getInstance().postFrameCallback(unused -> {
+                    overlayRefreshPosted = false;
+                    overlay.clearTileCache();
+                });
+            }
+        });
+    }
+
+    /**
+     * Replaces the polygons of regions changed by a capture.
+     * @param changes the changed regions
+     */
+    private void showRegions(final CellRegions.Changes changes) {
+        CellRegionLayer layer = regionLayer;
+        MapScene scene = getScene();
+        render(() -> layer.apply(scene, changes));
+    }
+
+    /**
+     * Fills a cell on the map with a color, replacing the cell's previous fill if it had one.
+     * @param x the cell's X coordinate
+     * @param y the cell's Y coordinate
+     * @param color the fill color
+     */
+    private void addCellPolygon(final int x, final int y, final int color) {
+        double cellNorth = divider.getCellNorth(y);
+        double cellEast = divider.getCellEast(x);
+        double cellSouth = divider.getCellSouth(y);
+        double cellWest = divider.getCellWest(x);
+        MapScene.PolygonSpec fill = new MapScene.PolygonSpec(Arrays.asList(new LatLng(cellNorth, cellWest),
+                new LatLng(cellNorth, cellEast), new LatLng(cellSouth, cellEast), new LatLng(cellSouth, cellWest)),
+                Collections.emptyList(), color);
+        MapScene scene = getScene();
+        render(() -> scene.put("cell:" + x + "," + y, fill));
     }
 }
@@ -0,0 +1,142 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A GET request for JSON whose response is stored in a ResponseCache.
+ * <p>
+ * If a cached response with an ETag exists, the request asks the server to answer 304 Not Modified when it
+ * hasn't changed; nothing is delivered then, since the caller already has the cached copy - only the
+ * not-modified listener runs. Otherwise the body is parsed and stored on Volley's network thread and the
+ * parsed JSON is delivered on the main thread.
+ */
+final class CachedJsonRequest extends Request<JsonObject> {
+
+    /** HTTP status code for Not Modified. */
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    /** The cache to revalidate against and store into. */
+    private final ResponseCache cache;
+
+    /** The user's ID, for the cache key. */
+    private final String user;
+
+    /** The user's Firebase ID token. */
+    private final String token;
+
+    /** The cached response being revalidated, or null if there is none. */
+    private final ResponseCache.Entry cached;
+
+    /** Callback for new response data. */
+    private final Response.Listener<JsonObject> listener;
+
+    /** Callback to run if the cached response is still current, or null. */
+    private Runnable notModifiedListener;
+
+    /** Whether the server said the cached response is still current. Set on the network thread. */
+    private volatile boolean notModified;
+
+    /**
+     * Creates a request.
+     * @param url the URL to GET
+     * @param setCache the cache to store the response in
+     * @param setUser the user's ID
+     * @param setToken the user's Firebase ID token
+     * @param setCached the cached response to revalidate, or null
+     * @param setListener callback to run with the response if it differs from the cached one
+     * @param errorListener callback to run if an error occurs
+     */
+    CachedJsonRequest(final String url, final ResponseCache setCache, final String setUser, final String setToken,
+                      final ResponseCache.Entry setCached, final Response.Listener<JsonObject> setListener,
+                      final Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+        cache = setCache;
+        user = setUser;
+        token = setToken;
+        cached = setCached;
+        listener = setListener;
+        // Volley's own cache is keyed only by URL, which would mix up users' responses
+        setShouldCache(false);
+    }
+
+    /**
+     * Sets a callback to run on the main thread if the server says the cached response is still current.
+     * @param setNotModifiedListener the callback, or null
+     */
+    void setNotModifiedListener(final Runnable setNotModifiedListener) {
+        notModifiedListener = setNotModifiedListener;
+    }
+
+    /**
+     * Gets the request headers: the ID token, and the cached ETag if there is one.
+     * @return the headers
+     */
+    @Override
+    public Map<String, String> getHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Firebase-Token", token);
+        if (cached != null && cached.getEtag() != null) {
+            headers.put("If-None-Match", cached.getEtag());
+        }
+        return headers;
+    }
+
+    /**
+     * Parses and caches the response. Called on a Volley network thread.
+     * @param response the raw response
+     * @return the parsed JSON, null if the body is empty or unmodified, or an error if unparseable or cancelled
+     */
+    @Override
+    protected Response<JsonObject> parseNetworkResponse(final NetworkResponse response) {
+        if (isCanceled()) {
+            // Nobody will get the result, so don't spend time parsing it
+            return Response.error(new VolleyError("Request cancelled"));
+        }
+        if (response.notModified || response.statusCode == HTTP_NOT_MODIFIED) {
+            notModified = true;
+            cache.recordNotModified();
+            return Response.success(null, null);
+        }
+        try {
+            String body = new String(response.data, HttpHeaderParser.parseCharset(response.headers, "UTF-8"));
+            JsonObject parsed = null;
+            if (!body.isEmpty()) {
+                parsed = new JsonParser().parse(body).getAsJsonObject();
+            }
+            String etag = null;
+            if (response.headers != null) {
+                etag = response.headers.get("ETag");
+            }
+            cache.put(user, getUrl(), etag, body, parsed);
+            return Response.success(parsed, null);
+        } catch (UnsupportedEncodingException | JsonParseException | IllegalStateException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    /**
+     * Delivers new response data. Called on the main thread.
+     * @param response the parsed JSON
+     */
+    @Override
+    protected void deliverResponse(final JsonObject response) {
+        if (!notModified) {
+            listener.onResponse(response);
+        } else if (notModifiedListener != null) {
+            notModifiedListener.run();
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shows an area's captured cells as one polygon per region of side-by-side same-team cells.
+ * <p>
+ * A densely captured grid becomes a handful of polygons, with holes where another team's cells are surrounded,
+ * instead of a polygon for every cell. Regions can also be handed to a ViewportCuller so only the ones in view have
+ * a polygon. Must only be used on the UI thread.
+ */
+public final class CellRegionLayer {
+
+    /** The grid the regions' vertices are on. */
+    private final AreaDivider divider;
+
+    /** Fill color for each team, indexed by team ID. */
+    private final int[] teamColors;
+
+    /** Keeps polygons only for regions in view, or null to draw every region. */
+    private final ViewportCuller culler;
+
+    /** The item drawing each region's polygon, by region ID. */
+    private final Map<Integer, ViewportCuller.Item> items = new HashMap<>();
+
+    /** How many polygons have been added or removed, not counting culling. */
+    private long operations;
+
+    /**
+     * Creates an empty layer that draws every region.
+     * @param setDivider the grid the regions' vertices are on
+     * @param setTeamColors fill color for each team, indexed by team ID
+     */
+    public CellRegionLayer(final AreaDivider setDivider, final int[] setTeamColors) {
+        this(setDivider, setTeamColors, null);
+    }
+
+    /**
+     * Creates an empty layer.
+     * @param setDivider the grid the regions' vertices are on
+     * @param setTeamColors fill color for each team, indexed by team ID
+     * @param setCuller keeps polygons only for regions in view, or null to draw every region
+     */
+    public CellRegionLayer(final AreaDivider setDivider, final int[] setTeamColors, final ViewportCuller setCuller) {
+        divider = setDivider;
+        teamColors = setTeamColors;
+        culler = setCuller;
+    }
+
+    /**
+     * Updates the map for changed regions: removes the polygons of regions that no longer exist and adds
+     * polygons for new ones.
+     * @param scene the scene of the map to draw on
+     * @param changes the changes from CellRegions
+     */
+    public void apply(final MapScene scene, final CellRegions.Changes changes) {
+        for (int id : changes.getRemoved()) {
+            ViewportCuller.Item item = items.remove(id);
+            if (item == null) {
+                continue;
+            }
+            if (culler == null) {
+                item.detach();
+            } else {
+                culler.remove(item);
+            }
+            operations++;
+        }
+        for (CellRegions.Region region : changes.getAdded()) {
+            int[] outline = region.getOutline();
+            List<List<LatLng>> holes = new ArrayList<>();
+            for (int[] hole : region.getHoles()) {
+                holes.add(toLatLngs(hole));
+            }
+            MapScene.PolygonSpec fill = new MapScene.PolygonSpec(toLatLngs(outline), holes,
+                    teamColors[region.getTeam()]);
+            String id = "region:" + region.getId();
+            ViewportCuller.Item item = ViewportCuller.item(() -> {
+                scene.put(id, fill);
+                return id;
+            }, scene::remove);
+            items.put(region.getId(), item);
+            if (culler == null) {
+                item.attach();
+            } else {
+                culler.add(item, getBounds(outline));
+            }
+            operations++;
+        }
+    }
+
+    /**
+     * Gets the number of regions shown, including any culled while out of view.
+     * @return the region count
+     */
+    public int getRegionCount() {
+        return items.size();
+    }
+
+    /**
+     * Gets how many region polygons have been added or removed since the layer was created, not counting culling.
+     * @return the number of region changes drawn
+     */
+    public long getOperations() {
+        return operations;
+    }
+
+    /**
+     * Gets the area an outline covers.
+     * @param outline x, y vertex coordinate pairs
+     * @return the outline's bounding box
+     */
+    private LatLngBounds getBounds(final int[] outline) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < outline.length; i += 2) {
+            minX = Math.min(minX, outline[i]);
+            maxX = Math.max(maxX, outline[i]);
+            minY = Math.min(minY, outline[i + 1]);
+            maxY = Math.max(maxY, outline[i + 1]);
+        }
+        return new LatLngBounds(new LatLng(divider.getCellSouth(minY), divider.getCellWest(minX)),
+                new LatLng(divider.getCellSouth(maxY), divider.getCellWest(maxX)));
+    }
+
+    /**
+     * Converts a loop of grid vertices to map positions.
+     * @param loop x, y vertex coordinate pairs
+     * @return the vertices' positions
+     */
+    private List<LatLng> toLatLngs(final int[] loop) {
+        List<LatLng> points = new ArrayList<>(loop.length / 2);
+        for (int i = 0; i < loop.length; i += 2) {
+            points.add(new LatLng(divider.getCellSouth(loop[i + 1]), divider.getCellWest(loop[i])));
+        }
+        return points;
+    }
+
+}
@@ -0,0 +1,498 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups an area's captured cells into regions of side-by-side cells owned by the same team, and works out
+ * each region's outline, so a whole region can be drawn as one polygon.
+ * <p>
+ * Outlines are in grid vertex coordinates: vertex (x, y) is the southwest corner of cell (x, y), so the grid
+ * has (xCells + 1) by (yCells + 1) vertices. Each outline is a loop of corner vertices, counterclockwise for
+ * a region's outer boundary and clockwise for its holes. Straight runs along cell edges are merged, so a
+ * rectangular block of any size has four vertices.
+ * <p>
+ * Ownership changes are applied incrementally: only the regions touching the changed cell are rebuilt.
+ */
+public final class CellRegions {
+
+    /** Direction of a boundary edge going east (increasing x). */
+    private static final int EAST = 0;
+
+    /** Direction of a boundary edge going north (increasing y). */
+    private static final int NORTH = 1;
+
+    /** Direction of a boundary edge going west. */
+    private static final int WEST = 2;
+
+    /** Direction of a boundary edge going south. */
+    private static final int SOUTH = 3;
+
+    /** Number of directions. */
+    private static final int DIRECTIONS = 4;
+
+    /** Position of the west neighbor in the array returned by neighbors. */
+    private static final int WEST_NEIGHBOR = 0;
+
+    /** Position of the east neighbor in the array returned by neighbors. */
+    private static final int EAST_NEIGHBOR = 1;
+
+    /** Position of the south neighbor in the array returned by neighbors. */
+    private static final int SOUTH_NEIGHBOR = 2;
+
+    /** Position of the north neighbor in the array returned by neighbors. */
+    private static final int NORTH_NEIGHBOR = 3;
+
+    /** Change in vertex x for each direction. */
+    private static final int[] DX = {1, 0, -1, 0};
+
+    /** Change in vertex y for each direction. */
+    private static final int[] DY = {0, 1, 0, -1};
+
+    /**
+     * A group of side-by-side cells owned by the same team.
+     */
+    public static final class Region {
+
+        /** Identifies the region until it is replaced. */
+        private final int id;
+
+        /** The owning team. */
+        private final int team;
+
+        /** The packed indexes of the region's cells. */
+        private final List<Integer> cells;
+
+        /** The outer boundary, then any holes, each as x, y vertex coordinate pairs. */
+        private final List<int[]> loops;
+
+        /**
+         * Creates a region.
+         * @param setId the region's ID
+         * @param setTeam the owning team
+         * @param setCells the packed indexes of the region's cells
+         * @param setLoops the outer boundary followed by any holes
+         */
+        Region(final int setId, final int setTeam, final List<Integer> setCells, final List<int[]> setLoops) {
+            id = setId;
+            team = setTeam;
+            cells = setCells;
+            loops = Collections.unmodifiableList(setLoops);
+        }
+
+        /**
+         * Gets the region's ID, which changes whenever the region is rebuilt.
+         * @return the ID
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Gets the team that owns the region.
+         * @return the team ID
+         */
+        public int getTeam() {
+            return team;
+        }
+
+        /**
+         * Gets the number of cells in the region.
+         * @return the cell count
+         */
+        public int getSize() {
+            return cells.size();
+        }
+
+        /**
+         * Gets the region's outer boundary.
+         * @return x, y vertex coordinate pairs, counterclockwise (do not modify)
+         */
+        public int[] getOutline() {
+            return loops.get(0);
+        }
+
+        /**
+         * Gets the region's holes: areas inside the outline not in the region.
+         * @return each hole's x, y vertex coordinate pairs, clockwise (do not modify)
+         */
+        public List<int[]> getHoles() {
+            return loops.subList(1, loops.size());
+        }
+
+    }
+
+    /**
+     * The regions removed and added by an ownership change.
+     */
+    public static final class Changes {
+
+        /** IDs of the regions that no longer exist. */
+        private final List<Integer> removed = new ArrayList<>();
+
+        /** The new regions. */
+        private final List<Region> added = new ArrayList<>();
+
+        /**
+         * Gets the regions that no longer exist, whose polygons should be removed.
+         * @return the regions' IDs
+         */
+        public List<Integer> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * Gets the new regions, which need polygons.
+         * @return the regions
+         */
+        public List<Region> getAdded() {
+            return added;
+        }
+
+    }
+
+    /** Number of columns. */
+    private final int xCells;
+
+    /** Number of rows. */
+    private final int yCells;
+
+    /** Owning team of each cell by packed index (x * yCells + y), 0 if unclaimed. */
+    private final int[] owners;
+
+    /** ID of the region each cell belongs to by packed index, or -1 if unclaimed or not yet grouped. */
+    private final int[] regionOf;
+
+    /** The current regions by ID. */
+    private final Map<Integer, Region> regions = new HashMap<>();
+
+    /** The next region ID to hand out. */
+    private int nextId;
+
+    /**
+     * Creates a grid with every cell unclaimed.
+     * @param setXCells the number of columns
+     * @param setYCells the number of rows
+     */
+    public CellRegions(final int setXCells, final int setYCells) {
+        xCells = setXCells;
+        yCells = setYCells;
+        owners = new int[xCells * yCells];
+        regionOf = new int[owners.length];
+        Arrays.fill(regionOf, -1);
+    }
+
+    /**
+     * Records a cell's owner without updating the regions, e.g. while loading a game.
+     * <p>
+     * Call groupAll afterward.
+     * @param x the cell's X coordinate
+     * @param y the cell's Y coordinate
+     * @param team the owning team
+     */
+    public void load(final int x, final int y, final int team) {
+        owners[x * yCells + y] = team;
+    }
+
+    /**
+     * Groups every loaded cell into regions, replacing any existing regions.
+     * @return the changes: every old region removed, every region added
+     */
+    public Changes groupAll() {
+        Changes changes = new Changes();
+        changes.removed.addAll(regions.keySet());
+        regions.clear();
+        Arrays.fill(regionOf, -1);
+        for (int cell = 0; cell < owners.length; cell++) {
+            if (owners[cell] != TeamID.OBSERVER && regionOf[cell] < 0) {
+                changes.added.add(build(cell));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Changes a cell's owner, rebuilding only the regions affected.
+     * @param x the cell's X coordinate
+     * @param y the cell's Y coordinate
+     * @param team the new owning team
+     * @return the regions removed and added
+     */
+    public Changes setOwner(final int x, final int y, final int team) {
+        Changes changes = new Changes();
+        int cell = x * yCells + y;
+        int oldTeam = owners[cell];
+        if (oldTeam == team) {
+            return changes;
+        }
+        owners[cell] = team;
+
+        // The cell's old region may split, and the new team's neighboring regions merge through the cell
+        dissolve(regionOf[cell], changes);
+        int[] neighbors = neighbors(x, y);
+        for (int neighbor : neighbors) {
+            if (neighbor >= 0 && owners[neighbor] == team) {
+                dissolve(regionOf[neighbor], changes);
+            }
+        }
+        if (team != TeamID.OBSERVER) {
+            changes.added.add(build(cell));
+        }
+        for (int neighbor : neighbors) {
+            if (neighbor >= 0 && owners[neighbor] != TeamID.OBSERVER && regionOf[neighbor] < 0) {
+                changes.added.add(build(neighbor));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Gets the current regions.
+     * @return the regions (unmodifiable)
+     */
+    public Collection<Region> getRegions() {
+        return Collections.unmodifiableCollection(regions.values());
+    }
+
+    /**
+     * Removes a region, leaving its cells ungrouped.
+     * @param id the region's ID, or -1 for none
+     * @param changes where to record the removal
+     */
+    private void dissolve(final int id, final Changes changes) {
+        if (id < 0 || !regions.containsKey(id)) {
+            return;
+        }
+        for (int cell : regions.remove(id).cells) {
+            regionOf[cell] = -1;
+        }
+        changes.removed.add(id);
+    }
+
+    /**
+     * Gets the packed indexes of a cell's four neighbors.
+     * @param x the cell's X coordinate
+     * @param y the cell's Y coordinate
+     * @return the west, east, south, and north neighbors' indexes, -1 where off the grid
+     */
+    private int[] neighbors(final int x, final int y) {
+        int[] result = {-1, -1, -1, -1};
+        if (x > 0) {
+            result[WEST_NEIGHBOR] = (x - 1) * yCells + y;
+        }
+        if (x < xCells - 1) {
+            result[EAST_NEIGHBOR] = (x + 1) * yCells + y;
+        }
+        if (y > 0) {
+            result[SOUTH_NEIGHBOR] = x * yCells + y - 1;
+        }
+        if (y < yCells - 1) {
+            result[NORTH_NEIGHBOR] = x * yCells + y + 1;
+        }
+        return result;
+    }
+
+    /**
+     * Creates the region containing a cell by flood fill, and works out its outline.
+     * @param start the packed index of a cell in the region
+     * @return the new region
+     */
+    private Region build(final int start) {
+        int id = nextId++;
+        int team = owners[start];
+        List<Integer> cells = new ArrayList<>();
+        List<Integer> stack = new ArrayList<>();
+        regionOf[start] = id;
+        stack.add(start);
+        while (!stack.isEmpty()) {
+            int cell = stack.remove(stack.size() - 1);
+            cells.add(cell);
+            for (int neighbor : neighbors(cell / yCells, cell % yCells)) {
+                if (neighbor >= 0 && owners[neighbor] == team && regionOf[neighbor] != id) {
+                    regionOf[neighbor] = id;
+                    stack.add(neighbor);
+                }
+            }
+        }
+        Region region = new Region(id, team, cells, trace(cells, id));
+        regions.put(id, region);
+        return region;
+    }
+
+    /**
+     * Finds the boundary loops of a region.
+     * @param cells the region's cells
+     * @param id the region's ID
+     * @return the outer boundary followed by any holes
+     */
+    private List<int[]> trace(final List<Integer> cells, final int id) {
+        // Collect the boundary edges, running counterclockwise around each cell so the region is on the left
+        Map<Integer, Integer> outgoing = new HashMap<>();
+        for (int cell : cells) {
+            int x = cell / yCells;
+            int y = cell % yCells;
+            int[] neighbors = neighbors(x, y);
+            if (!inRegion(neighbors[SOUTH_NEIGHBOR], id)) {
+                addEdge(outgoing, x, y, EAST);
+            }
+            if (!inRegion(neighbors[EAST_NEIGHBOR], id)) {
+                addEdge(outgoing, x + 1, y, NORTH);
+            }
+            if (!inRegion(neighbors[NORTH_NEIGHBOR], id)) {
+                addEdge(outgoing, x + 1, y + 1, WEST);
+            }
+            if (!inRegion(neighbors[WEST_NEIGHBOR], id)) {
+                addEdge(outgoing, x, y + 1, SOUTH);
+            }
+        }
+
+        // Chain the edges into loops, keeping only the vertices where the direction changes
+        List<int[]> loops = new ArrayList<>();
+        while (!outgoing.isEmpty()) {
+            int startVertex = outgoing.keySet().iterator().next();
+            int direction = Integer.numberOfTrailingZeros(outgoing.get(startVertex));
+            int vertex = startVertex;
+            List<Integer> corners = new ArrayList<>();
+            int previous = -1;
+            do {
+                removeEdge(outgoing, vertex, direction);
+                if (direction != previous) {
+                    corners.add(vertex);
+                }
+                previous = direction;
+                vertex = step(vertex, direction);
+                direction = nextDirection(outgoing, vertex, direction);
+            } while (direction >= 0 && vertex != startVertex);
+            if (corners.size() > 1 && previous == directionOf(corners.get(0), corners.get(1))) {
+                // The start vertex was in the middle of a straight run
+                corners.remove(0);
+            }
+            int[] loop = new int[corners.size() * 2];
+            for (int i = 0; i < corners.size(); i++) {
+                loop[i * 2] = corners.get(i) / (yCells + 1);
+                loop[i * 2 + 1] = corners.get(i) % (yCells + 1);
+            }
+            if (signedArea(loop) > 0) {
+                loops.add(0, loop);
+            } else {
+                loops.add(loop);
+            }
+        }
+        return loops;
+    }
+
+    /**
+     * Determines whether a cell belongs to a region.
+     * @param cell the cell's packed index, or -1
+     * @param id the region's ID
+     * @return whether the cell is in the region
+     */
+    private boolean inRegion(final int cell, final int id) {
+        return cell >= 0 && regionOf[cell] == id;
+    }
+
+    /**
+     * Records a boundary edge.
+     * @param outgoing bit mask of edge directions leaving each vertex
+     * @param x the start vertex's X coordinate
+     * @param y the start vertex's Y coordinate
+     * @param direction the edge's direction
+     */
+    private void addEdge(final Map<Integer, Integer> outgoing, final int x, final int y, final int direction) {
+        int vertex = x * (yCells + 1) + y;
+        Integer mask = outgoing.get(vertex);
+        if (mask == null) {
+            mask = 0;
+        }
+        outgoing.put(vertex, mask | (1 << direction));
+    }
+
+    /**
+     * Removes a boundary edge once it has been added to a loop.
+     * @param outgoing bit mask of edge directions leaving each vertex
+     * @param vertex the start vertex
+     * @param direction the edge's direction
+     */
+    @SuppressWarnings("ConstantConditions")
+    private void removeEdge(final Map<Integer, Integer> outgoing, final int vertex, final int direction) {
+        int mask = outgoing.get(vertex) & ~(1 << direction);
+        if (mask == 0) {
+            outgoing.remove(vertex);
+        } else {
+            outgoing.put(vertex, mask);
+        }
+    }
+
+    /**
+     * Chooses the edge to follow from a vertex.
+     * <p>
+     * Where two of the region's cells only touch at a corner, two edges leave the vertex; turning left keeps
+     * the loops from crossing there.
+     * @param outgoing bit mask of edge directions leaving each vertex
+     * @param vertex the vertex
+     * @param arriving the direction of the edge that arrived at the vertex
+     * @return the direction to go, or -1 if no edges leave the vertex
+     */
+    private static int nextDirection(final Map<Integer, Integer> outgoing, final int vertex, final int arriving) {
+        Integer mask = outgoing.get(vertex);
+        if (mask == null) {
+            return -1;
+        }
+        int[] preference = {(arriving + 1) % DIRECTIONS, arriving, (arriving + DIRECTIONS - 1) % DIRECTIONS};
+        for (int direction : preference) {
+            if ((mask & (1 << direction)) != 0) {
+                return direction;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves one edge from a vertex.
+     * @param vertex the vertex
+     * @param direction the direction to move
+     * @return the vertex at the other end of the edge
+     */
+    private int step(final int vertex, final int direction) {
+        return vertex + DX[direction] * (yCells + 1) + DY[direction];
+    }
+
+    /**
+     * Gets the direction from one vertex to another in the same row or column.
+     * @param from the first vertex
+     * @param to the second vertex
+     * @return the direction
+     */
+    private int directionOf(final int from, final int to) {
+        int dx = to / (yCells + 1) - from / (yCells + 1);
+        int dy = to % (yCells + 1) - from % (yCells + 1);
+        if (dx > 0) {
+            return EAST;
+        } else if (dx < 0) {
+            return WEST;
+        } else if (dy > 0) {
+            return NORTH;
+        }
+        return SOUTH;
+    }
+
+    /**
+     * Computes twice the signed area of a loop.
+     * @param loop x, y vertex coordinate pairs
+     * @return positive if counterclockwise, negative if clockwise
+     */
+    private static long signedArea(final int[] loop) {
+        long area = 0;
+        for (int i = 0; i < loop.length; i += 2) {
+            int next = (i + 2) % loop.length;
+            area += (long) loop[i] * loop[next + 1] - (long) loop[next] * loop[i + 1];
+        }
+        return area;
+    }
+
+}
@@ -0,0 +1,323 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+
+/**
+ * Draws area mode cell ownership into map tiles, for games with too many cells to show each as a Polygon.
+ * <p>
+ * Google Maps calls getTile on its own background threads, so drawing never happens on the UI thread, and it
+ * only asks for the tiles in view, so the work per frame and the number of map objects don't grow with the
+ * number of captured cells. Drawn tiles are kept in a least-recently-used cache of bounded size. A capture
+ * only drops the cached tiles that contain the cell, usually one per zoom level; after TileOverlay.clearTileCache,
+ * Maps asks for the visible tiles again and every other one comes straight from the cache.
+ */
+public final class CellTileProvider implements TileProvider {
+
+    /** Width and height of a tile in pixels. */
+    public static final int TILE_SIZE = WebMercator.TILE_SIZE;
+
+    /** Default limit on the size of the tile cache, in bytes. */
+    public static final int DEFAULT_CACHE_BYTES = 4 * 1024 * 1024;
+
+    /** Bit position of the zoom level in a cache key. */
+    private static final int ZOOM_SHIFT = 52;
+
+    /** Highest zoom level Google Maps asks for tiles at. */
+    private static final int MAX_ZOOM = 22;
+
+    /** Bit position of the tile's X coordinate in a cache key. */
+    private static final int X_SHIFT = 26;
+
+    /** Mask for one tile coordinate in a cache key. */
+    private static final long COORDINATE_MASK = (1L << X_SHIFT) - 1;
+
+    /** Index of a tile's first cell column in the array from findWindow. */
+    private static final int FIRST_X = 0;
+
+    /** Index of a tile's last cell column in the array from findWindow. */
+    private static final int LAST_X = 1;
+
+    /** Index of a tile's first cell row in the array from findWindow. */
+    private static final int FIRST_Y = 2;
+
+    /** Index of a tile's last cell row in the array from findWindow. */
+    private static final int LAST_Y = 3;
+
+    /** Length of the array from findWindow. */
+    private static final int WINDOW_LENGTH = 4;
+
+    /** The grid the cells belong to. */
+    private final AreaDivider divider;
+
+    /** Fill color for each team, indexed by team ID. */
+    private final int[] teamColors;
+
+    /** Owning team of each cell as currently shown, by packed cell index. */
+    private final int[] owners;
+
+    /** Drawn tiles as PNG data by key, least recently used first. */
+    private final LinkedHashMap<Long, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Number of cached tiles at each zoom level. */
+    private final int[] cachedPerZoom = new int[MAX_ZOOM + 1];
+
+    /** Limit on the total size of the cached tiles, in bytes. */
+    private final int maxCacheBytes;
+
+    /** Total size of the cached tiles, in bytes. */
+    private int cacheBytes;
+
+    /** Incremented on every ownership change, so tiles drawn from older data aren't cached. */
+    private long generation;
+
+    /** How many tiles have been drawn. */
+    private long drawn;
+
+    /** How many tile requests were answered from the cache. */
+    private long cacheHits;
+
+    /**
+     * Creates a provider with the default cache size and every cell unclaimed.
+     * @param setDivider the grid the cells belong to
+     * @param setTeamColors fill color for each team, indexed by team ID
+     */
+    public CellTileProvider(final AreaDivider setDivider, final int[] setTeamColors) {
+        this(setDivider, setTeamColors, DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * Creates a provider with every cell unclaimed.
+     * @param setDivider the grid the cells belong to
+     * @param setTeamColors fill color for each team, indexed by team ID
+     * @param setMaxCacheBytes limit on the total size of the cached tiles, in bytes
+     */
+    public CellTileProvider(final AreaDivider setDivider, final int[] setTeamColors, final int setMaxCacheBytes) {
+        divider = setDivider;
+        teamColors = setTeamColors;
+        maxCacheBytes = setMaxCacheBytes;
+        owners = new int[divider.getXCells() * divider.getYCells()];
+    }
+
+    /**
+     * Changes the team a cell is shown for, dropping the cached tiles that contain it.
+     * <p>
+     * Only the tiles the cell is in are looked up, at each zoom level that has cached tiles, so the cost doesn't
+     * grow with the size of the cache. Call TileOverlay.clearTileCache afterward so the map asks for the tiles
+     * again; the others come from this provider's cache.
+     * @param x the cell's X coordinate
+     * @param y the cell's Y coordinate
+     * @param team the new owning team
+     * @return how many cached tiles were dropped
+     */
+    public synchronized int setOwner(final int x, final int y, final int team) {
+        owners[x * divider.getYCells() + y] = team;
+        generation++;
+        double left = WebMercator.toPixelX(divider.getCellWest(x), 0);
+        double right = WebMercator.toPixelX(divider.getCellEast(x), 0);
+        double top = WebMercator.toPixelY(divider.getCellNorth(y), 0);
+        double bottom = WebMercator.toPixelY(divider.getCellSouth(y), 0);
+        int dropped = 0;
+        for (int zoom = 0; zoom < cachedPerZoom.length; zoom++) {
+            if (cachedPerZoom[zoom] == 0) {
+                continue;
+            }
+            double scale = WebMercator.worldSize(zoom) / TILE_SIZE;
+            int firstX = (int) Math.floor(left * scale / TILE_SIZE);
+            int lastX = (int) Math.ceil(right * scale / TILE_SIZE) - 1;
+            int firstY = (int) Math.floor(top * scale / TILE_SIZE);
+            int lastY = (int) Math.ceil(bottom * scale / TILE_SIZE) - 1;
+            for (int tileX = firstX; tileX <= lastX; tileX++) {
+                for (int tileY = firstY; tileY <= lastY; tileY++) {
+                    if (uncache(toKey(tileX, tileY, zoom))) {
+                        dropped++;
+                    }
+                }
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Gets a tile. Called by Google Maps on a background thread.
+     * @param x the tile's X coordinate
+     * @param y the tile's Y coordinate
+     * @param zoom the zoom level
+     * @return the tile image, or NO_TILE if the tile doesn't overlap the play area
+     */
+    @Override
+    public Tile getTile(final int x, final int y, final int zoom) {
+        long key = toKey(x, y, zoom);
+        int[] window = findWindow(x, y, zoom);
+        int columns = 0;
+        int rows = 0;
+        if (window != null) {
+            columns = window[LAST_X] - window[FIRST_X] + 1;
+            rows = window[LAST_Y] - window[FIRST_Y] + 1;
+        }
+        int[] shown;
+        long drawnGeneration;
+        synchronized (this) {
+            byte[] cached = cache.get(key);
+            if (cached != null) {
+                cacheHits++;
+                return new Tile(TILE_SIZE, TILE_SIZE, cached);
+            }
+            if (window == null) {
+                return NO_TILE;
+            }
+            // Only copy the cells in the tile, so setOwner isn't held up by big games
+            shown = new int[columns * rows];
+            for (int column = 0; column < columns; column++) {
+                System.arraycopy(owners, (window[FIRST_X] + column) * divider.getYCells() + window[FIRST_Y],
+                        shown, column * rows, rows);
+            }
+            drawnGeneration = generation;
+        }
+        byte[] png = draw(x, y, zoom, window, shown);
+        synchronized (this) {
+            drawn++;
+            if (drawnGeneration == generation && png.length <= maxCacheBytes && zoom <= MAX_ZOOM) {
+                // Another thread may have drawn the same tile at the same time
+                uncache(key);
+                cacheBytes += png.length;
+                cachedPerZoom[zoom]++;
+                cache.put(key, png);
+                while (cacheBytes > maxCacheBytes) {
+                    uncache(cache.keySet().iterator().next());
+                }
+            }
+        }
+        return new Tile(TILE_SIZE, TILE_SIZE, png);
+    }
+
+    /**
+     * Gets how many tiles have been drawn.
+     * @return the number of tiles drawn
+     */
+    public synchronized long getDrawn() {
+        return drawn;
+    }
+
+    /**
+     * Gets how many tile requests were answered from the cache.
+     * @return the number of cache hits
+     */
+    public synchronized long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Gets the total size of the cached tiles.
+     * @return the cache size in bytes
+     */
+    public synchronized int getCacheBytes() {
+        return cacheBytes;
+    }
+
+    /**
+     * Makes the cache key for a tile.
+     * @param tileX the tile's X coordinate
+     * @param tileY the tile's Y coordinate
+     * @param zoom the zoom level
+     * @return the key
+     */
+    private static long toKey(final int tileX, final int tileY, final int zoom) {
+        return ((long) zoom << ZOOM_SHIFT) | ((long) tileX << X_SHIFT) | tileY;
+    }
+
+    /**
+     * Drops a tile from the cache if it's there. The caller must hold the lock.
+     * @param key the tile's key
+     * @return whether the tile was cached
+     */
+    private boolean uncache(final long key) {
+        byte[] removed = cache.remove(key);
+        if (removed == null) {
+            return false;
+        }
+        cacheBytes -= removed.length;
+        cachedPerZoom[(int) (key >>> ZOOM_SHIFT)]--;
+        return true;
+    }
+
+    /**
+     * Finds the columns and rows of cells that could be in a tile.
+     * @param tileX the tile's X coordinate
+     * @param tileY the tile's Y coordinate
+     * @param zoom the zoom level
+     * @return the first and last column and row, indexed by FIRST_X, LAST_X, FIRST_Y and LAST_Y, or null if the
+     *         tile doesn't overlap the play area
+     */
+    private int[] findWindow(final int tileX, final int tileY, final int zoom) {
+        double originX = (double) tileX * TILE_SIZE;
+        double originY = (double) tileY * TILE_SIZE;
+        int firstX = Math.max(divider.getXCoordinate(WebMercator.toLongitude(originX, zoom)), 0);
+        int lastX = Math.min(divider.getXCoordinate(WebMercator.toLongitude(originX + TILE_SIZE, zoom)),
+                divider.getXCells() - 1);
+        int firstY = Math.max(divider.getYCoordinate(WebMercator.toLatitude(originY + TILE_SIZE, zoom)), 0);
+        int lastY = Math.min(divider.getYCoordinate(WebMercator.toLatitude(originY, zoom)), divider.getYCells() - 1);
+        if (firstX > lastX || firstY > lastY || lastX < 0 || lastY < 0) {
+            return null;
+        }
+        int[] window = new int[WINDOW_LENGTH];
+        window[FIRST_X] = firstX;
+        window[LAST_X] = lastX;
+        window[FIRST_Y] = firstY;
+        window[LAST_Y] = lastY;
+        return window;
+    }
+
+    /**
+     * Draws the owned cells in a tile.
+     * @param tileX the tile's X coordinate
+     * @param tileY the tile's Y coordinate
+     * @param zoom the zoom level
+     * @param window the cells that could be in the tile, from findWindow
+     * @param shown owning team of each cell in the window, column by column
+     * @return the tile as PNG data
+     */
+    private byte[] draw(final int tileX, final int tileY, final int zoom, final int[] window, final int[] shown) {
+        double originX = (double) tileX * TILE_SIZE;
+        double originY = (double) tileY * TILE_SIZE;
+        int firstX = window[FIRST_X];
+        int lastX = window[LAST_X];
+        int firstY = window[FIRST_Y];
+        int lastY = window[LAST_Y];
+        int rows = lastY - firstY + 1;
+
+        Bitmap bitmap = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        paint.setStyle(Paint.Style.FILL);
+        float[] rowTops = new float[rows];
+        float[] rowBottoms = new float[rowTops.length];
+        for (int y = firstY; y <= lastY; y++) {
+            rowTops[y - firstY] = (float) (WebMercator.toPixelY(divider.getCellNorth(y), zoom) - originY);
+            rowBottoms[y - firstY] = (float) (WebMercator.toPixelY(divider.getCellSouth(y), zoom) - originY);
+        }
+        for (int x = firstX; x <= lastX; x++) {
+            float left = (float) (WebMercator.toPixelX(divider.getCellWest(x), zoom) - originX);
+            float right = (float) (WebMercator.toPixelX(divider.getCellEast(x), zoom) - originX);
+            for (int y = firstY; y <= lastY; y++) {
+                int team = shown[(x - firstX) * rows + y - firstY];
+                if (team != TeamID.OBSERVER) {
+                    paint.setColor(teamColors[team]);
+                    canvas.drawRect(left, rowTops[y - firstY], right, rowBottoms[y - firstY], paint);
+                }
+            }
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 0, png);
+        bitmap.recycle();
+        return png.toByteArray();
+    }
+
+}
@@ -1,18 +1,24 @@
 package edu.illinois.cs.cs125.fall2019.mp;
 
 import android.content.Context;
-import android.graphics.Color;
 
 import com.google.android.gms.maps.GoogleMap;
-import com.google.android.gms.maps.model.Circle;
-import com.google.android.gms.maps.model.CircleOptions;
+import com.google.android.gms.maps.Projection;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.VisibleRegion;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.neovisionaries.ws.client.WebSocket;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Represents a multiplayer game, providing or defining methods common to all game modes.
@@ -27,8 +33,11 @@ public abstract class Game {
     /** The Google Maps view to render to. */
     private GoogleMap map;
 
-    /** The websocket for sending data to the server. */
-    private WebSocket websocket;
+    /** The map's scene, which every map object the game shows is declared in. */
+    private MapScene scene;
+
+    /** The websocket for sending data to the server. Set on the UI thread, used on the game-loop thread. */
+    private volatile WebSocket websocket;
 
     /** The Android UI context. */
     private Context context;
@@ -36,8 +45,32 @@ public abstract class Game {
     /** All participants' team IDs. */
     private Map<String, Integer> playerTeams = new HashMap<>();
 
+    /** Fill color for each team, read from resources once. */
+    private int[] teamColors;
+
     /** The map indicators for other players. */
-    private Map<String, Circle> otherPlayerCircles = new HashMap<>();
+    private PlayerMarkers otherPlayerMarkers;
+
+    /** The emails of the other players shown on the map, as far as the game logic is concerned. */
+    private Set<String> shownPlayers = new HashSet<>();
+
+    /** Running count of each team's objectives, kept up to date by subclasses. */
+    private Scoreboard scoreboard = new Scoreboard();
+
+    /** The handler for each kind of server event this game understands. */
+    private GameEventHandlers eventHandlers = new GameEventHandlers();
+
+    /** Called before each message is sent, or null if nothing needs to happen first. */
+    private volatile Runnable beforeSendListener;
+
+    /** Map changes made by the step in progress, or null if map changes are made right away. */
+    private List<Runnable> pendingMapChanges;
+
+    /** How many steps have been run. */
+    private long steps;
+
+    /** Keeps map objects only for what's in view, or null if this game draws everything. */
+    private ViewportCuller culler;
 
     /**
      * Sets up this Game.
@@ -51,11 +84,30 @@ public abstract class Game {
                 final JsonObject initialState, final Context setContext) {
         email = setEmail;
         map = setMap;
+        scene = MapScene.of(map);
         websocket = setWebSocket;
         context = setContext;
+        teamColors = context.getResources().getIntArray(R.array.team_colors);
+        otherPlayerMarkers = new PlayerMarkers(map, teamColors);
+        eventHandlers.register(GameEvent.PlayerLocation.class, event -> updateOtherPlayerPosition(event.getEmail(),
+                new LatLng(event.getLatitude(), event.getLongitude())));
+        eventHandlers.register(GameEvent.PlayerExit.class, event -> removeOtherPlayer(event.getEmail()));
 
-        map.clear();
-        for (JsonElement p : initialState.getAsJsonArray("players")) {
+        scene.clearMap();
+        loadPlayers(initialState);
+        if (!playerTeams.containsKey(email)) {
+            throw new IllegalArgumentException("The user specified by setEmail is not in the game");
+        }
+    }
+
+    /**
+     * Records every player's team and shows the other active players' locations.
+     * @param state a "full" update from the server
+     * @return the emails of the players shown on the map
+     */
+    private Set<String> loadPlayers(final JsonObject state) {
+        Set<String> shown = new HashSet<>();
+        for (JsonElement p : state.getAsJsonArray("players")) {
             JsonObject player = p.getAsJsonObject();
             String playerEmail = player.get("email").getAsString();
             int playerTeam = player.get("team").getAsInt();
@@ -63,12 +115,134 @@ public abstract class Game {
             playerTeams.put(playerEmail, playerTeam);
             if (!playerEmail.equals(email) && playerTeam != TeamID.OBSERVER && playerState == PlayerStateID.PLAYING
                     && player.has("lastLatitude")) {
-                updateOtherPlayerPosition(player);
+                updateOtherPlayerPosition(playerEmail, new LatLng(player.get("lastLatitude").getAsDouble(),
+                        player.get("lastLongitude").getAsDouble()));
+                shown.add(playerEmail);
             }
         }
-        if (!playerTeams.containsKey(email)) {
-            throw new IllegalArgumentException("The user specified by setEmail is not in the game");
+        return shown;
+    }
+
+    /**
+     * Brings this game up to date with a new "full" update, changing only what differs.
+     * <p>
+     * Creating a new Game clears the map and redraws every object, which takes a long time in big games. This
+     * instead moves or removes player circles and applies the captures made since this game's state was
+     * loaded. It only works if the update describes the same game, which subclasses check in canReconcile;
+     * if it doesn't, nothing is changed and a new Game must be created instead.
+     * @param fullState the "full" update from the server
+     * @return whether the game was brought up to date; false if a new Game is needed
+     */
+    public final boolean reconcile(final JsonObject fullState) {
+        boolean sameUser = false;
+        for (JsonElement p : fullState.getAsJsonArray("players")) {
+            JsonObject player = p.getAsJsonObject();
+            if (player.get("email").getAsString().equals(email) && player.get("team").getAsInt() == getMyTeam()) {
+                sameUser = true;
+            }
+        }
+        if (!sameUser || !canReconcile(fullState)) {
+            return false;
+        }
+        Set<String> shown = loadPlayers(fullState);
+        for (String playerEmail : new ArrayList<>(shownPlayers)) {
+            if (!shown.contains(playerEmail)) {
+                removeOtherPlayer(playerEmail);
+            }
+        }
+        reconcileObjectives(fullState);
+        return true;
+    }
+
+    /**
+     * Determines whether a "full" update describes this game, so that reconcileObjectives can apply it.
+     * <p>
+     * Must not change anything. Returns false by default, so games that don't override it are recreated.
+     * @param fullState the "full" update from the server
+     * @return whether the update has the same mode and layout and only adds captures to this game's state
+     */
+    protected boolean canReconcile(final JsonObject fullState) {
+        return false;
+    }
+
+    /**
+     * Applies the captures in a "full" update that this game doesn't know about yet.
+     * <p>
+     * Only called if canReconcile returned true. Does nothing by default.
+     * @param fullState the "full" update from the server
+     */
+    protected void reconcileObjectives(final JsonObject fullState) { }
+
+    /**
+     * Runs game logic as one step, collecting its map changes instead of making them.
+     * <p>
+     * GameLoop uses this to run logic off the UI thread: the returned snapshot is applied on the UI thread
+     * later. Must not be called from inside a step.
+     * @param logic the logic to run, e.g. a call to locationUpdated or handleEvent
+     * @return the scores after the step and the map changes it made
+     */
+    final GameSnapshot step(final Consumer<Game> logic) {
+        if (pendingMapChanges != null) {
+            throw new IllegalStateException("Steps cannot be nested");
+        }
+        List<Runnable> mapChanges = new ArrayList<>();
+        pendingMapChanges = mapChanges;
+        try {
+            logic.accept(this);
+        } finally {
+            pendingMapChanges = null;
         }
+        steps++;
+        return new GameSnapshot(steps, currentScores(), mapChanges);
+    }
+
+    /**
+     * Describes the game as it is now, without running a step, e.g. for GameLoop to show before its first step.
+     * <p>
+     * Must not be called while a step is running on another thread.
+     * @return the current scores, with no map changes
+     */
+    final GameSnapshot snapshot() {
+        return new GameSnapshot(steps, currentScores(), Collections.emptyList());
+    }
+
+    /**
+     * Gets every team's score through getTeamScore, so subclasses that override it are respected.
+     * @return the scores, indexed by team ID
+     */
+    private int[] currentScores() {
+        int[] scores = scoreboard.getScores();
+        for (int team = 0; team < scores.length; team++) {
+            scores[team] = getTeamScore(team);
+        }
+        return scores;
+    }
+
+    /**
+     * Makes a change to the map: right away, or when the current step's snapshot is applied if in a step.
+     * <p>
+     * Subclasses must make every map change through this, since game logic may not be running on the UI
+     * thread. The change must not read game state that later logic could modify; capture the values instead.
+     * @param mapChange the map change
+     */
+    protected final void render(final Runnable mapChange) {
+        if (pendingMapChanges != null) {
+            pendingMapChanges.add(mapChange);
+        } else {
+            mapChange.run();
+        }
+    }
+
+    /**
+     * Gets how many objectives the game has, e.g. to decide whether its logic is worth running on another thread.
+     * @return the total number of targets or cells
+     */
+    public final int getObjectiveCount() {
+        int total = 0;
+        for (int score : scoreboard.getScores()) {
+            total += score;
+        }
+        return total;
     }
 
     /**
@@ -91,6 +265,16 @@ public abstract class Game {
         return map;
     }
 
+    /**
+     * Gets the scene of the map used by this Game.
+     * <p>
+     * Subclasses declare their map objects here, inside render calls, rather than adding them to the map.
+     * @return the map's scene
+     */
+    protected final MapScene getScene() {
+        return scene;
+    }
+
     /**
      * Gets the UI context.
      * <p>
@@ -101,11 +285,92 @@ public abstract class Game {
         return context;
     }
 
+    /**
+     * Gets the team colors.
+     * <p>
+     * These are read from the team_colors resource once, when the game is created.
+     * @return fill color for each team, indexed by team ID (do not modify)
+     */
+    protected final int[] getTeamColors() {
+        return teamColors;
+    }
+
+    /**
+     * Gets the viewport culler, which large games register their map objects with.
+     * @return the culler, or null if this game draws everything
+     */
+    public final ViewportCuller getCuller() {
+        return culler;
+    }
+
+    /**
+     * Starts culling map objects outside the visible region. Subclasses call this from their constructor.
+     * <p>
+     * The culler starts from the map's current visible region, if it has one yet, so objects far from the view
+     * aren't created in the first place. Other players' circles are registered with it too.
+     * @param setCuller the culler to register map objects with
+     */
+    protected final void setCuller(final ViewportCuller setCuller) {
+        culler = setCuller;
+        PlayerMarkers markers = otherPlayerMarkers;
+        render(() -> markers.setCuller(setCuller));
+        Projection projection = map.getProjection();
+        if (projection == null) {
+            return;
+        }
+        VisibleRegion region = projection.getVisibleRegion();
+        if (region != null && region.latLngBounds != null
+                && !region.latLngBounds.northeast.equals(region.latLngBounds.southwest)) {
+            // A map that hasn't been laid out yet has an empty region, which would hide everything
+            culler.setViewport(region.latLngBounds);
+        }
+    }
+
+    /**
+     * Gets the layer showing other players on the map, e.g. to check how much map work it has done.
+     * @return the other players' markers
+     */
+    public final PlayerMarkers getPlayerMarkers() {
+        return otherPlayerMarkers;
+    }
+
+    /**
+     * Gets the scoreboard.
+     * <p>
+     * Subclasses must report every change in objective ownership to it.
+     * @return the scoreboard
+     */
+    protected final Scoreboard getScoreboard() {
+        return scoreboard;
+    }
+
+    /**
+     * Changes the websocket this game sends updates to, e.g. after reconnecting.
+     * @param setWebSocket the new websocket
+     */
+    public final void setWebSocket(final WebSocket setWebSocket) {
+        websocket = setWebSocket;
+    }
+
+    /**
+     * Sets a function to run just before this game sends a message to the server.
+     * <p>
+     * GameActivity uses this to send any held-back location first, so the server sees the position a capture
+     * was made from.
+     * @param setBeforeSendListener the function to run, or null for none
+     */
+    public final void setBeforeSendListener(final Runnable setBeforeSendListener) {
+        beforeSendListener = setBeforeSendListener;
+    }
+
     /**
      * Sends a message to the server.
      * @param text serialized JSON to send
      */
     protected final void sendMessage(final String text) {
+        if (beforeSendListener != null) {
+            beforeSendListener.run();
+        }
         websocket.sendText(text);
     }
 
@@ -128,39 +393,81 @@ public abstract class Game {
      */
     public abstract void locationUpdated(LatLng location);
 
+    /**
+     * Called on the UI thread when the map's camera stops moving.
+     * <p>
+     * Attaches the culled map objects now in view, if this game culls, then lets the subclass adjust what's drawn
+     * for the zoom level. The resulting map changes are reconciled together.
+     * @param zoom the camera's zoom level
+     * @param visible the visible region of the map
+     */
+    public final void cameraIdle(final float zoom, final LatLngBounds visible) {
+        scene.batch(() -> {
+            if (culler != null) {
+                culler.setViewport(visible);
+            }
+            zoomChanged(zoom);
+        });
+    }
+
+    /**
+     * Called on the UI thread when the map's camera stops moving, so games can adjust what's drawn for the zoom.
+     * <p>
+     * This doesn't run as a game loop step, so it must only touch map objects, not game logic state.
+     * Does nothing by default.
+     * @param zoom the camera's zoom level
+     */
+    protected void zoomChanged(final float zoom) { }
+
     /**
      * Gets a team's score.
      * <p>
-     * Subclasses should implement this in a way specific to their game mode's type of objective.
+     * By default this is answered from the scoreboard, which subclasses update as objectives change hands.
      * @param teamId the team ID
      * @return how many objectives the team has captured
      */
-    public abstract int getTeamScore(int teamId);
+    public int getTeamScore(final int teamId) {
+        return scoreboard.getScore(teamId);
+    }
 
     /**
      * Processes an update from the server.
      * <p>
-     * This implementation handles playerLocation and playerExit events, updating the
-     * player circles appropriately. Subclass implementations should handle events specific
-     * to their game mode, delegating others to this implementation with a super call.
+     * This class handles playerLocation and playerExit events, updating the player circles appropriately.
+     * By default the message is converted to a GameEvent and passed to the handler registered with onEvent.
+     * Subclasses may instead override this to handle their own message types, calling the superclass
+     * implementation for the rest.
      * @param message JSON from the server
      * @param type the update type
-     * @return whether the message was handled
+     * @return whether the message type was recognized and handled
      */
     public boolean handleMessage(final JsonObject message, final String type) {
-        switch (type) {
-            case "playerLocation":
-                updateOtherPlayerPosition(message);
-                return true;
-            case "playerExit":
-                Circle c = otherPlayerCircles.remove(message.get("email").getAsString());
-                if (c != null) {
-                    c.remove();
-                }
-                return true;
-            default:
-                return false;
+        return eventHandlers.dispatch(GameEventDecoder.fromJson(message, type));
+    }
+
+    /**
+     * Processes an already-decoded update from the server.
+     * <p>
+     * The event goes straight to the handler registered for it with onEvent. Events without one are converted
+     * back to JSON and passed to handleMessage, so subclasses that override that still see them.
+     * @param event the decoded update
+     * @return whether this game handles that kind of event
+     */
+    public final boolean handleEvent(final GameEvent event) {
+        if (eventHandlers.dispatch(event)) {
+            return true;
         }
+        return handleMessage(GameEventDecoder.toJson(event), event.getType());
+    }
+
+    /**
+     * Sets the handler for a kind of server event.
+     * @param kind the event class
+     * @param handler the function to call with events of that class
+     * @param <T> the event class
+     */
+    protected final <T extends GameEvent> void onEvent(final Class<T> kind, final Consumer<? super T> handler) {
+        eventHandlers.register(kind, handler);
     }
 
     /**
@@ -174,25 +481,23 @@ public abstract class Game {
 
     /**
      * Updates the map indicator of another player.
-     * @param player parsed JSON from a player location update or a player section of a full update
+     * @param playerEmail the player's email
+     * @param location the player's location
      */
     @SuppressWarnings("ConstantConditions")
-    private void updateOtherPlayerPosition(final JsonObject player) {
-        String playerEmail = player.get("email").getAsString();
-        LatLng location = new LatLng(player.get("lastLatitude").getAsDouble(),
-                player.get("lastLongitude").getAsDouble());
-        int[] teamColors = getContext().getResources().getIntArray(R.array.team_colors);
-        final double circleRadius = 4.0;
-        CircleOptions c = new CircleOptions().center(location)
-                .radius(circleRadius)
-                .fillColor(teamColors[playerTeams.get(playerEmail)])
-                .zIndex(2.0f)
-                .strokeColor(Color.BLACK)
-                .strokeWidth(2);
-        Circle old = otherPlayerCircles.put(playerEmail, map.addCircle(c));
-        if (old != null) {
-            old.remove();
-        }
+    private void updateOtherPlayerPosition(final String playerEmail, final LatLng location) {
+        int team = playerTeams.get(playerEmail);
+        shownPlayers.add(playerEmail);
+        render(() -> otherPlayerMarkers.moveTo(playerEmail, team, location));
+    }
+
+    /**
+     * Removes another player's map indicator.
+     * @param playerEmail the player's email
+     */
+    private void removeOtherPlayer(final String playerEmail) {
+        shownPlayers.remove(playerEmail);
+        render(() -> otherPlayerMarkers.remove(playerEmail));
     }
 
 }
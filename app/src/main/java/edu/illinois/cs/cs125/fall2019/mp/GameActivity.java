@@ -16,7 +16,11 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.Button;
@@ -33,6 +37,9 @@ import com.google.gson.JsonObject;
 import com.neovisionaries.ws.client.WebSocket;
 import com.neovisionaries.ws.client.WebSocketCloseCode;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Represents the game activity, where the user plays the game and sees its state.
  */
@@ -44,6 +51,9 @@ public final class GameActivity extends AppCompatActivity {
     /** The radial location accuracy required to send a location update. */
     private static final float REQUIRED_LOCATION_ACCURACY = 28f;
 
+    /** How many server messages can wait for the UI thread before location updates are shed. */
+    private static final int INBOUND_CAPACITY = 256;
+
     /** The handler for location updates sent by the location listener service. */
     private BroadcastReceiver locationUpdateReceiver;
 
@@ -53,6 +63,9 @@ public final class GameActivity extends AppCompatActivity {
     /** An object representing the game. */
     private Game game;
 
+    /** Runs the game's logic and applies the results to the map, or null before the game is loaded. */
+    private GameLoop gameLoop;
+
     /** A reference to the map control. */
     private GoogleMap map;
 
@@ -62,12 +75,33 @@ public final class GameActivity extends AppCompatActivity {
     /** The ID of the game being played. */
     private String gameId;
 
-    /** The websocket used to communicate gameplay events. */
-    private WebSocket webSocket;
+    /** The websocket used to communicate gameplay events. Also used by the game-loop thread. */
+    private volatile WebSocket webSocket;
 
     /** Whether permission has been granted to access the phone's exact location. */
     private boolean hasLocationPermission;
 
+    /** Server messages waiting to be processed on the UI thread. */
+    private InboundPipeline inbound = new InboundPipeline(INBOUND_CAPACITY);
+
+    /** Encoder for binary location updates, or null if the server wants JSON on this connection. */
+    private volatile LocationCodec.Sender locationSender;
+
+    /** Decides which location fixes to send, or null before the game information is received. */
+    private volatile LocationThrottle locationThrottle;
+
+    /** Tracks the session across dropped connections and spaces out reconnection attempts. */
+    private ReconnectManager reconnect = new ReconnectManager();
+
+    /** Whether the current connection replaced one that dropped while a game was loaded. */
+    private boolean reconnected;
+
+    /** Gameplay updates received while a reconnection's reconciliation is in progress, or null if none is. */
+    private List<GameEvent> heldEvents;
+
+    /** Handler for delayed reconnection attempts. */
+    private Handler reconnectHandler = new Handler(Looper.getMainLooper());
+
     /**
      * Called by the Android system when the activity is created. Performs initial setup.
      * @param savedInstanceState saved state from the last terminated instance (unused)
@@ -151,9 +185,21 @@ public final class GameActivity extends AppCompatActivity {
         LocalBroadcastManager.getInstance(this).unregisterReceiver(locationUpdateReceiver);
 
         // Disconnect from the web socket
+        reconnectHandler.removeCallbacksAndMessages(null);
         if (webSocket != null) {
             webSocket.disconnect(WebSocketCloseCode.AWAY);
         }
+        Log.i(TAG, "Inbound messages: " + inbound.getOffered() + " received, " + inbound.getDelivered()
+                + " processed, " + inbound.getCoalesced() + " coalesced, " + inbound.getDropped()
+                + " dropped, max queue depth " + inbound.getMaxDepth());
+        logLocationStats();
+        if (gameLoop != null) {
+            Log.i(TAG, "Game loop: " + gameLoop.getAverageStepTime() + " ms per step, "
+                    + gameLoop.getAverageApplyTime() + " ms per map update");
+            gameLoop.close();
+        }
+        Log.i(TAG, "Reconnections: " + reconnect.getResumes() + " resumed, " + reconnect.getFullUpdates()
+                + " needed a full update, " + reconnect.getDuplicates() + " replayed events skipped");
         Log.i(TAG, "Destroyed");
     }
 
@@ -201,6 +247,17 @@ public final class GameActivity extends AppCompatActivity {
         map.getUiSettings().setIndoorLevelPickerEnabled(false);
         map.getUiSettings().setMapToolbarEnabled(false);
 
+        // Let the game adjust what it draws for the part of the map in view
+        map.setOnCameraIdleListener(() -> {
+            if (game != null) {
+                game.cameraIdle(map.getCameraPosition().zoom, map.getProjection().getVisibleRegion().latLngBounds);
+            }
+        });
+
+        // Games declare their map objects in the map's scene; apply the changes at most once per frame
+        MapScene.of(map).getReconciler().setFrameScheduler(task ->
+                Choreographer.getInstance().postFrameCallback(unused -> task.run()));
+
         // This function is no longer responsible for rendering game-specific elements
         // That's taken care of by the Game subclasses
     }
@@ -238,21 +295,46 @@ public final class GameActivity extends AppCompatActivity {
             return;
         }
 
-        // Notify the server of the movement - start by creating a Gson JSON object representing the message
-        JsonObject locUpdate = new JsonObject();
-        locUpdate.addProperty("type", "locationUpdate");
-        locUpdate.addProperty("latitude", location.getLatitude());
-        locUpdate.addProperty("longitude", location.getLongitude());
-        // You need to fill the object out with the properties of a location update
-        // Once the object is ready, convert it to a JSON string and send it over the websocket
-        webSocket.sendText(locUpdate.toString());
+        // Notify the server of the movement if the user has moved far enough for it to matter
+        LatLng latLng = new LatLng(location.getLatitude(), location.getLongitude());
+        locationThrottle.offer(latLng, SystemClock.elapsedRealtime());
         if (gameState == GameStateID.RUNNING) {
-            game.locationUpdated(new LatLng(location.getLatitude(), location.getLongitude()));
+            gameLoop.submit(g -> g.locationUpdated(latLng));
         }
         updateScores();
         // Call the logic that updates gameplay based on the user's movements
     }
 
+    /**
+     * Logs how many location fixes were sent out of how many were received on this connection.
+     */
+    private void logLocationStats() {
+        if (locationThrottle != null) {
+            Log.i(TAG, "Location fixes: " + locationThrottle.getFixesReceived() + " received, "
+                    + locationThrottle.getFixesSent() + " sent (" + locationThrottle.getFlushed()
+                    + " flushed before a capture)");
+        }
+    }
+
+    /**
+     * Sends the user's location to the server, in binary if the server enabled that for this connection.
+     * @param location the user's location
+     */
+    private void sendLocation(final LatLng location) {
+        if (webSocket == null) {
+            return;
+        }
+        if (locationSender != null) {
+            webSocket.sendBinary(locationSender.encode(location.latitude, location.longitude));
+        } else {
+            JsonObject locUpdate = new JsonObject();
+            locUpdate.addProperty("type", "locationUpdate");
+            locUpdate.addProperty("latitude", location.latitude);
+            locUpdate.addProperty("longitude", location.longitude);
+            webSocket.sendText(locUpdate.toString());
+        }
+    }
+
     /**
      * Starts watching for location changes if possible under the current permissions.
      */
@@ -290,12 +372,12 @@ public final class GameActivity extends AppCompatActivity {
      * Called when a message is received from the server.
      * <p>
      * You should fill out this function to react to game data, gameplay events, and game state changes.
-     * @param message the parsed JSON from the server
+     * @param event the decoded update from the server
      */
-    private void receivedData(final JsonObject message) {
-        String type = message.get("type").getAsString();
-        switch (type) {
+    private void receivedData(final GameEvent event) {
+        switch (event.getType()) {
             case "full":
+                JsonObject message = ((GameEvent.Full) event).getJson();
                 // The full update contains the entire current state of the game
                 String myEmail = FirebaseAuth.getInstance().getCurrentUser().getEmail();
                 if (message.get("owner").getAsString().equals(myEmail)) {
@@ -303,6 +385,14 @@ public final class GameActivity extends AppCompatActivity {
                     findViewById(R.id.gameOwnerControls).setVisibility(View.VISIBLE);
                 }
                 updateGameState(message.get("state").getAsInt());
+                // Each connection starts location deltas and throttling afresh
+                if (LocationCodec.isEnabled(message)) {
+                    locationSender = new LocationCodec.Sender();
+                } else {
+                    locationSender = null;
+                }
+                logLocationStats();
+                locationThrottle = new LocationThrottle(this::sendLocation);
 
                 // 4.2: You need to fill this in to act on the game's current state
                 // Call the updateGameState helper function with the game state
@@ -310,26 +400,110 @@ public final class GameActivity extends AppCompatActivity {
                 // 4.3: You need to fill this in to load the game progress into the game variable
                 // Initialize the game instance variable with an instance of the Game subclass appropriate for the mode
                 // Then you can uncomment the if statement below
-                if (message.get("mode").getAsString().equals("target")) {
-                    game = new TargetGame(myEmail, map, webSocket, message, this);
-                } else if (message.get("mode").getAsString().equals("area")) {
-                    game = new AreaGame(myEmail, map, webSocket, message, this);
-                }
-                // Observers don't need to have their location tracked
-                if (game.getMyTeam() == TeamID.OBSERVER && centeredMap) {
-                    stopLocationWatching();
+                if (reconnected && game != null) {
+                    // After a reconnection, only what changed while disconnected needs to be redrawn
+                    // The game loop decides whether that's possible; updates wait until it has
+                    heldEvents = new ArrayList<>();
+                    gameLoop.call(g -> g.reconcile(message), reconciled -> finishReconnect(reconciled, message));
+                } else {
+                    loadGame(message);
                 }
-                updateScores();
+                reconnected = false;
+                break;
+            case "resumed":
+                // The connection dropped briefly and the server is replaying what was missed - keep the game
+                updateGameState(gameState);
                 break;
             case "gameState":
                 // 4.7: If the game is over, show the winner in a dialog that finishes the activity when dismissed
                 // 4.2: Otherwise use the updateGameState helper function to display the state change
-                updateGameState(message.get("state").getAsInt());
+                updateGameState(((GameEvent.GameState) event).getState());
                 break;
             default:
                 // 4.3: Process any other message as a gameplay update, using the game object
-                game.handleMessage(message, type);
-                updateScores();
+                if (heldEvents != null) {
+                    heldEvents.add(event);
+                } else {
+                    gameLoop.submit(g -> g.handleEvent(event));
+                }
+        }
+    }
+
+    /**
+     * Creates the game object for a "full" update, replacing any existing game.
+     * @param message the "full" update from the server
+     */
+    @SuppressWarnings("ConstantConditions")
+    private void loadGame(final JsonObject message) {
+        String myEmail = FirebaseAuth.getInstance().getCurrentUser().getEmail();
+        // The old game's unapplied map changes must not be drawn over the new game
+        if (gameLoop != null) {
+            gameLoop.close();
+        }
+        // Updates held for an unfinished reconciliation are already part of this state
+        heldEvents = null;
+        if (message.get("mode").getAsString().equals("target")) {
+            game = new TargetGame(myEmail, map, webSocket, message, this);
+        } else if (message.get("mode").getAsString().equals("area")) {
+            game = new AreaGame(myEmail, map, webSocket, message, this);
+        }
+        // Big games' logic runs on its own thread, with results applied here as they arrive
+        gameLoop = GameLoop.forGame(game, this::runOnUiThread, this::updateScores);
+        gameLoaded();
+    }
+
+    /**
+     * Finishes handling the "full" update sent after a reconnection, once the game loop has tried to reconcile.
+     * @param reconciled whether the existing game was brought up to date
+     * @param message the "full" update from the server
+     */
+    private void finishReconnect(final boolean reconciled, final JsonObject message) {
+        List<GameEvent> held = heldEvents;
+        if (reconciled) {
+            game.setWebSocket(webSocket);
+            gameLoaded();
+        } else {
+            loadGame(message);
+        }
+        heldEvents = null;
+        // Updates that arrived while reconciling come after the "full" update, so they still apply
+        for (GameEvent event : held) {
+            gameLoop.submit(g -> g.handleEvent(event));
+        }
+        updateScores();
+    }
+
+    /**
+     * Finishes setting up a game that was just loaded or reconciled.
+     */
+    private void gameLoaded() {
+        // Captures are checked against the user's position, so it must reach the server first
+        game.setBeforeSendListener(() -> locationThrottle.flush(SystemClock.elapsedRealtime()));
+        // Observers don't need to have their location tracked
+        if (game.getMyTeam() == TeamID.OBSERVER && centeredMap) {
+            stopLocationWatching();
+        }
+    }
+
+    /**
+     * Arranges for pending server messages to be processed on the UI thread.
+     * <p>
+     * Off the UI thread, processing waits for the next frame so a burst of messages is handled in one batch.
+     */
+    private void scheduleInboundDrain() {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            drainInbound();
+        } else {
+            runOnUiThread(() -> Choreographer.getInstance().postFrameCallback(unused -> drainInbound()));
+        }
+    }
+
+    /**
+     * Processes all pending server messages, then refreshes the scores once for the whole batch.
+     */
+    private void drainInbound() {
+        if (inbound.drain(this::receivedData) > 0) {
+            updateScores();
         }
     }
 
@@ -338,24 +512,53 @@ public final class GameActivity extends AppCompatActivity {
      */
     private void connectWebSocket() {
         // Reset UI
-        findViewById(R.id.gameOwnerControls).setVisibility(View.GONE);
         TextView gameStateLabel = findViewById(R.id.gameState);
-        gameStateLabel.setText("Connecting...");
+        if (reconnect.isReconnecting()) {
+            // Keep showing the game while trying to resume it
+            gameStateLabel.setText("Reconnecting...");
+        } else {
+            findViewById(R.id.gameOwnerControls).setVisibility(View.GONE);
+            gameStateLabel.setText("Connecting...");
+        }
         webSocket = null;
-
-        // Start connecting to the websocket
-        WebApi.connectWebSocket(WebApi.WEBSOCKET_BASE + "/games/" + gameId + "/play",
-                // When an update is received from the server, use the receivedData function to act on it
-            data -> runOnUiThread(() -> receivedData(data)),
+        reconnected = game != null;
+
+        // Start connecting to the websocket, resuming the session if there was one
+        ServerClient.connectWebSocket(reconnect.getConnectUrl(WebApi.WEBSOCKET_BASE + "/games/" + gameId + "/play"),
+                // When an update is received from the server, queue it for receivedData on the UI thread
+            (GameEventListener) event -> {
+                if (reconnect.accept(event) && inbound.offer(event)) {
+                    scheduleInboundDrain();
+                }
+            },
             // When the websocket is first created, store it in an instance variable (analogous to getMapAsync)
             ws -> webSocket = ws,
-            // When an existing connection is lost, try to reconnect
-            () -> runOnUiThread(this::connectWebSocket),
-            // When a new connection fails, display an error
-            error -> runOnUiThread(() -> gameStateLabel.setText("Connection lost")));
+            // When an existing connection is lost, try to reconnect after a while
+            () -> runOnUiThread(this::scheduleReconnect),
+            // When a new connection fails, display an error, and keep trying if there's a game to get back to
+            error -> runOnUiThread(() -> {
+                gameStateLabel.setText("Connection lost");
+                if (reconnect.isReconnecting()) {
+                    scheduleReconnect();
+                }
+            }));
 
     }
 
+    /**
+     * Arranges for connectWebSocket to be called after the next backoff delay.
+     */
+    private void scheduleReconnect() {
+        if (isDestroyed()) {
+            return;
+        }
+        long delay = reconnect.nextDelay();
+        Log.i(TAG, "Reconnecting in " + delay + " ms");
+        TextView gameStateLabel = findViewById(R.id.gameState);
+        gameStateLabel.setText("Reconnecting...");
+        reconnectHandler.postDelayed(this::connectWebSocket, delay);
+    }
+
     /**
      * Updates UI according to the state of the ongoing game.
      * <p>
@@ -378,10 +581,10 @@ public final class GameActivity extends AppCompatActivity {
             gameStateText.setText("Paused");
             gameState = GameStateID.PAUSED;
         } else if (newState == GameStateID.ENDED) {
-            int red = game.getTeamScore(TeamID.TEAM_RED);
-            int green = game.getTeamScore(TeamID.TEAM_GREEN);
-            int yellow = game.getTeamScore(TeamID.TEAM_YELLOW);
-            int blue = game.getTeamScore(TeamID.TEAM_BLUE);
+            int red = gameLoop.getTeamScore(TeamID.TEAM_RED);
+            int green = gameLoop.getTeamScore(TeamID.TEAM_GREEN);
+            int yellow = gameLoop.getTeamScore(TeamID.TEAM_YELLOW);
+            int blue = gameLoop.getTeamScore(TeamID.TEAM_BLUE);
             if (blue > yellow && blue > green && blue > red) {
                 AlertDialog.Builder builder = new AlertDialog.Builder(this);
                 builder.setMessage("Blue wins!");
@@ -436,7 +639,7 @@ public final class GameActivity extends AppCompatActivity {
      * @param action the game sub-endpoint: "resume", "pause", or "end"
      */
     private void gameLifecycleControl(final String action) {
-        WebApi.startRequest(this, WebApi.API_BASE + "/games/" + gameId + "/" + action, Request.Method.POST, null,
+        ServerClient.startRequest(this, WebApi.API_BASE + "/games/" + gameId + "/" + action, Request.Method.POST, null,
             unused -> { }, error -> Toast.makeText(this, "Could not connect to server.", Toast.LENGTH_LONG).show());
     }
 
@@ -447,13 +650,16 @@ public final class GameActivity extends AppCompatActivity {
      * This can be used in several places after you have gameplay working.
      */
     private void updateScores() {
-        if (game == null) {
+        if (gameLoop == null) {
             return;
         }
+        // The scores shown must match the map, which may be behind the game logic
         TextView scoresLabel = findViewById(R.id.gameScores);
         String text = "";
-        text += "Red: " + game.getTeamScore(TeamID.TEAM_RED) + " Green: " + game.getTeamScore(TeamID.TEAM_GREEN)
-                + " Yellow: " + game.getTeamScore(TeamID.TEAM_YELLOW) + " Blue: " + game.getTeamScore(TeamID.TEAM_BLUE);
+        text += "Red: " + gameLoop.getTeamScore(TeamID.TEAM_RED)
+                + " Green: " + gameLoop.getTeamScore(TeamID.TEAM_GREEN)
+                + " Yellow: " + gameLoop.getTeamScore(TeamID.TEAM_YELLOW)
+                + " Blue: " + gameLoop.getTeamScore(TeamID.TEAM_BLUE);
 
         scoresLabel.setText(text);
         //System.out.println(scoresLabel.getText().toString());
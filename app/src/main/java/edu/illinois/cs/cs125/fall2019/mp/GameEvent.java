@@ -0,0 +1,320 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+
+/**
+ * An update from the game server, decoded into a small typed object.
+ * <p>
+ * There is one subclass per kind of message the app understands. Messages of any other type are represented
+ * as {@link Other}, which keeps the parsed JSON. GameEventDecoder produces these from websocket text or from
+ * already-parsed JSON.
+ */
+public abstract class GameEvent {
+
+    /** Sequence number of events that don't have one. */
+    public static final long NO_SEQUENCE = -1;
+
+    /** The message type, as in the JSON's "type" property. */
+    private final String type;
+
+    /** The server's sequence number for this event, or NO_SEQUENCE. */
+    private long sequence = NO_SEQUENCE;
+
+    /**
+     * Sets up a GameEvent.
+     * @param setType the message type
+     */
+    GameEvent(final String setType) {
+        type = setType;
+    }
+
+    /**
+     * Gets the message type.
+     * @return the type, as in the JSON's "type" property
+     */
+    public final String getType() {
+        return type;
+    }
+
+    /**
+     * Gets the server's sequence number for this event, used to resume a session after reconnecting.
+     * @return the JSON's "seq" property, or NO_SEQUENCE if the message didn't have one
+     */
+    public final long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Records the event's sequence number. Only GameEventDecoder calls this, while creating the event.
+     * @param setSequence the JSON's "seq" property
+     * @return this event, for chaining
+     */
+    final GameEvent withSequence(final long setSequence) {
+        sequence = setSequence;
+        return this;
+    }
+
+    /**
+     * Another player moved.
+     */
+    public static final class PlayerLocation extends GameEvent {
+
+        /** The player's email. */
+        private final String email;
+
+        /** The player's new latitude. */
+        private final double latitude;
+
+        /** The player's new longitude. */
+        private final double longitude;
+
+        /**
+         * Creates a PlayerLocation event.
+         * @param setEmail the player's email
+         * @param setLatitude the player's latitude
+         * @param setLongitude the player's longitude
+         */
+        public PlayerLocation(final String setEmail, final double setLatitude, final double setLongitude) {
+            super("playerLocation");
+            email = setEmail;
+            latitude = setLatitude;
+            longitude = setLongitude;
+        }
+
+        /**
+         * Gets the player's email.
+         * @return the email
+         */
+        public String getEmail() {
+            return email;
+        }
+
+        /**
+         * Gets the player's latitude.
+         * @return the latitude
+         */
+        public double getLatitude() {
+            return latitude;
+        }
+
+        /**
+         * Gets the player's longitude.
+         * @return the longitude
+         */
+        public double getLongitude() {
+            return longitude;
+        }
+    }
+
+    /**
+     * Another player left the game.
+     */
+    public static final class PlayerExit extends GameEvent {
+
+        /** The player's email. */
+        private final String email;
+
+        /**
+         * Creates a PlayerExit event.
+         * @param setEmail the player's email
+         */
+        public PlayerExit(final String setEmail) {
+            super("playerExit");
+            email = setEmail;
+        }
+
+        /**
+         * Gets the player's email.
+         * @return the email
+         */
+        public String getEmail() {
+            return email;
+        }
+    }
+
+    /**
+     * Another player captured a target.
+     */
+    public static final class PlayerTargetVisit extends GameEvent {
+
+        /** The capturing player's email. */
+        private final String email;
+
+        /** The capturing player's team ID. */
+        private final int team;
+
+        /** The captured target's ID. */
+        private final String targetId;
+
+        /**
+         * Creates a PlayerTargetVisit event.
+         * @param setEmail the player's email
+         * @param setTeam the player's team ID
+         * @param setTargetId the target's ID
+         */
+        public PlayerTargetVisit(final String setEmail, final int setTeam, final String setTargetId) {
+            super("playerTargetVisit");
+            email = setEmail;
+            team = setTeam;
+            targetId = setTargetId;
+        }
+
+        /**
+         * Gets the capturing player's email.
+         * @return the email
+         */
+        public String getEmail() {
+            return email;
+        }
+
+        /**
+         * Gets the capturing player's team.
+         * @return the team ID
+         */
+        public int getTeam() {
+            return team;
+        }
+
+        /**
+         * Gets the captured target's ID.
+         * @return the target ID
+         */
+        public String getTargetId() {
+            return targetId;
+        }
+    }
+
+    /**
+     * Another player captured a cell.
+     */
+    public static final class PlayerCellCapture extends GameEvent {
+
+        /** The capturing player's team ID. */
+        private final int team;
+
+        /** The cell's X coordinate. */
+        private final int x;
+
+        /** The cell's Y coordinate. */
+        private final int y;
+
+        /**
+         * Creates a PlayerCellCapture event.
+         * @param setTeam the player's team ID
+         * @param setX the cell's X coordinate
+         * @param setY the cell's Y coordinate
+         */
+        public PlayerCellCapture(final int setTeam, final int setX, final int setY) {
+            super("playerCellCapture");
+            team = setTeam;
+            x = setX;
+            y = setY;
+        }
+
+        /**
+         * Gets the capturing player's team.
+         * @return the team ID
+         */
+        public int getTeam() {
+            return team;
+        }
+
+        /**
+         * Gets the cell's X coordinate.
+         * @return the X coordinate
+         */
+        public int getX() {
+            return x;
+        }
+
+        /**
+         * Gets the cell's Y coordinate.
+         * @return the Y coordinate
+         */
+        public int getY() {
+            return y;
+        }
+    }
+
+    /**
+     * The game was paused, resumed, or ended.
+     */
+    public static final class GameState extends GameEvent {
+
+        /** The new state, a GameStateID constant. */
+        private final int state;
+
+        /**
+         * Creates a GameState event.
+         * @param setState the new state
+         */
+        public GameState(final int setState) {
+            super("gameState");
+            state = setState;
+        }
+
+        /**
+         * Gets the new game state.
+         * @return a GameStateID constant
+         */
+        public int getState() {
+            return state;
+        }
+    }
+
+    /**
+     * The entire current state of the game, sent when connecting.
+     * <p>
+     * Game constructors load everything from this, so it keeps the parsed JSON.
+     */
+    public static final class Full extends GameEvent {
+
+        /** The parsed message. */
+        private final JsonObject json;
+
+        /**
+         * Creates a Full event.
+         * @param setJson the parsed message
+         */
+        public Full(final JsonObject setJson) {
+            super("full");
+            json = setJson;
+        }
+
+        /**
+         * Gets the parsed message.
+         * @return the "full" update JSON
+         */
+        public JsonObject getJson() {
+            return json;
+        }
+    }
+
+    /**
+     * A message of a type without its own event class.
+     */
+    public static final class Other extends GameEvent {
+
+        /** The parsed message. */
+        private final JsonObject json;
+
+        /**
+         * Creates an Other event.
+         * @param setType the message type
+         * @param setJson the parsed message
+         */
+        public Other(final String setType, final JsonObject setJson) {
+            super(setType);
+            json = setJson;
+        }
+
+        /**
+         * Gets the parsed message.
+         * @return the message JSON
+         */
+        public JsonObject getJson() {
+            return json;
+        }
+    }
+
+}
@@ -0,0 +1,298 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Turns websocket messages from the game server into GameEvent objects.
+ * <p>
+ * decode reads the message text with a streaming JsonReader, picking out the few fields the frequent message
+ * types need without building a JsonObject tree. Only "full" updates and message types without their own
+ * event class are parsed into a tree, since their consumers need the JSON. The "type" property may appear
+ * anywhere in the message. fromJson does the same conversion for JSON that has already been parsed.
+ * <p>
+ * Binary location messages (see LocationCodec) are decoded too, using the players listed in the last full
+ * update. Instances are not thread-safe; use one per connection.
+ */
+public final class GameEventDecoder {
+
+    /** Bit recording that the email property was read. */
+    private static final int HAS_EMAIL = 1;
+
+    /** Bit recording that the team property was read. */
+    private static final int HAS_TEAM = HAS_EMAIL << 1;
+
+    /** Bit recording that the lastLatitude property was read. */
+    private static final int HAS_LATITUDE = HAS_TEAM << 1;
+
+    /** Bit recording that the lastLongitude property was read. */
+    private static final int HAS_LONGITUDE = HAS_LATITUDE << 1;
+
+    /** Bit recording that the targetId property was read. */
+    private static final int HAS_TARGET = HAS_LONGITUDE << 1;
+
+    /** Bit recording that the x property was read. */
+    private static final int HAS_X = HAS_TARGET << 1;
+
+    /** Bit recording that the y property was read. */
+    private static final int HAS_Y = HAS_X << 1;
+
+    /** Bit recording that the state property was read. */
+    private static final int HAS_STATE = HAS_Y << 1;
+
+    /** Parser for the messages that need a tree. */
+    private final JsonParser parser = new JsonParser();
+
+    /** Decoder for binary location messages, set up by each full update. */
+    private final LocationCodec.Receiver locations = new LocationCodec.Receiver();
+
+    /**
+     * Decodes a message from the server.
+     * @param text the websocket message text
+     * @return the decoded event
+     */
+    public GameEvent decode(final String text) {
+        String type = null;
+        String email = null;
+        String targetId = null;
+        int team = 0;
+        double latitude = 0;
+        double longitude = 0;
+        int x = 0;
+        int y = 0;
+        int state = 0;
+        long sequence = GameEvent.NO_SEQUENCE;
+        int seen = 0;
+        try (JsonReader reader = new JsonReader(new StringReader(text))) {
+            reader.setLenient(true);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "type":
+                        type = reader.nextString();
+                        if (type.equals("full")) {
+                            JsonObject full = parser.parse(text).getAsJsonObject();
+                            locations.reset(full);
+                            return fromJson(full);
+                        } else if (!hasEventClass(type)) {
+                            // This one needs the whole tree anyway
+                            return fromJson(parser.parse(text).getAsJsonObject());
+                        }
+                        break;
+                    case "email":
+                        email = reader.nextString();
+                        seen |= HAS_EMAIL;
+                        break;
+                    case "team":
+                        team = reader.nextInt();
+                        seen |= HAS_TEAM;
+                        break;
+                    case "lastLatitude":
+                        latitude = reader.nextDouble();
+                        seen |= HAS_LATITUDE;
+                        break;
+                    case "lastLongitude":
+                        longitude = reader.nextDouble();
+                        seen |= HAS_LONGITUDE;
+                        break;
+                    case "targetId":
+                        targetId = reader.nextString();
+                        seen |= HAS_TARGET;
+                        break;
+                    case "x":
+                        x = reader.nextInt();
+                        seen |= HAS_X;
+                        break;
+                    case "y":
+                        y = reader.nextInt();
+                        seen |= HAS_Y;
+                        break;
+                    case "state":
+                        state = reader.nextInt();
+                        seen |= HAS_STATE;
+                        break;
+                    case "seq":
+                        sequence = reader.nextLong();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | RuntimeException e) {
+            // Unexpected shape - let the tree parser handle it (and report any real error)
+            return fromJson(parser.parse(text).getAsJsonObject());
+        }
+        if (type == null) {
+            return fromJson(parser.parse(text).getAsJsonObject());
+        }
+        switch (type) {
+            case "playerLocation":
+                if (has(seen, HAS_EMAIL | HAS_LATITUDE | HAS_LONGITUDE)) {
+                    return new GameEvent.PlayerLocation(email, latitude, longitude).withSequence(sequence);
+                }
+                break;
+            case "playerExit":
+                if (has(seen, HAS_EMAIL)) {
+                    return new GameEvent.PlayerExit(email).withSequence(sequence);
+                }
+                break;
+            case "playerTargetVisit":
+                if (has(seen, HAS_EMAIL | HAS_TEAM | HAS_TARGET)) {
+                    return new GameEvent.PlayerTargetVisit(email, team, targetId).withSequence(sequence);
+                }
+                break;
+            case "playerCellCapture":
+                if (has(seen, HAS_TEAM | HAS_X | HAS_Y)) {
+                    return new GameEvent.PlayerCellCapture(team, x, y).withSequence(sequence);
+                }
+                break;
+            case "gameState":
+                if (has(seen, HAS_STATE)) {
+                    return new GameEvent.GameState(state).withSequence(sequence);
+                }
+                break;
+            default:
+                break;
+        }
+        // A required property was missing - the tree path reports that the same way it always has
+        return fromJson(parser.parse(text).getAsJsonObject());
+    }
+
+    /**
+     * Decodes a binary message from the server.
+     * <p>
+     * Binary messages are only sent if the last full update enabled LocationCodec.
+     * @param message the websocket binary frame's payload
+     * @return the decoded event
+     */
+    public GameEvent decode(final byte[] message) {
+        return locations.decode(message);
+    }
+
+    /**
+     * Converts an already-parsed message to an event, using the message's own type property.
+     * @param message the parsed message
+     * @return the event
+     */
+    public static GameEvent fromJson(final JsonObject message) {
+        return fromJson(message, message.get("type").getAsString());
+    }
+
+    /**
+     * Converts an already-parsed message to an event.
+     * @param message the parsed message
+     * @param type the message type
+     * @return the event
+     */
+    public static GameEvent fromJson(final JsonObject message, final String type) {
+        GameEvent event = eventFromJson(message, type);
+        JsonElement sequence = message.get("seq");
+        if (sequence != null && sequence.isJsonPrimitive()) {
+            event.withSequence(sequence.getAsLong());
+        }
+        return event;
+    }
+
+    /**
+     * Creates the event for an already-parsed message, without its sequence number.
+     * @param message the parsed message
+     * @param type the message type
+     * @return the event
+     */
+    private static GameEvent eventFromJson(final JsonObject message, final String type) {
+        switch (type) {
+            case "playerLocation":
+                return new GameEvent.PlayerLocation(message.get("email").getAsString(),
+                        message.get("lastLatitude").getAsDouble(), message.get("lastLongitude").getAsDouble());
+            case "playerExit":
+                return new GameEvent.PlayerExit(message.get("email").getAsString());
+            case "playerTargetVisit":
+                return new GameEvent.PlayerTargetVisit(message.get("email").getAsString(),
+                        message.get("team").getAsInt(), message.get("targetId").getAsString());
+            case "playerCellCapture":
+                return new GameEvent.PlayerCellCapture(message.get("team").getAsInt(),
+                        message.get("x").getAsInt(), message.get("y").getAsInt());
+            case "gameState":
+                return new GameEvent.GameState(message.get("state").getAsInt());
+            case "full":
+                return new GameEvent.Full(message);
+            default:
+                return new GameEvent.Other(type, message);
+        }
+    }
+
+    /**
+     * Converts an event back to the JSON the server sends for it, e.g. for code that handles the JSON directly.
+     * @param event the event
+     * @return the message JSON, the event's own if it kept one
+     */
+    public static JsonObject toJson(final GameEvent event) {
+        if (event instanceof GameEvent.Full) {
+            return ((GameEvent.Full) event).getJson();
+        } else if (event instanceof GameEvent.Other) {
+            return ((GameEvent.Other) event).getJson();
+        }
+        JsonObject message = new JsonObject();
+        message.addProperty("type", event.getType());
+        if (event.getSequence() != GameEvent.NO_SEQUENCE) {
+            message.addProperty("seq", event.getSequence());
+        }
+        if (event instanceof GameEvent.PlayerLocation) {
+            GameEvent.PlayerLocation location = (GameEvent.PlayerLocation) event;
+            message.addProperty("email", location.getEmail());
+            message.addProperty("lastLatitude", location.getLatitude());
+            message.addProperty("lastLongitude", location.getLongitude());
+        } else if (event instanceof GameEvent.PlayerExit) {
+            message.addProperty("email", ((GameEvent.PlayerExit) event).getEmail());
+        } else if (event instanceof GameEvent.PlayerTargetVisit) {
+            GameEvent.PlayerTargetVisit visit = (GameEvent.PlayerTargetVisit) event;
+            message.addProperty("email", visit.getEmail());
+            message.addProperty("team", visit.getTeam());
+            message.addProperty("targetId", visit.getTargetId());
+        } else if (event instanceof GameEvent.PlayerCellCapture) {
+            GameEvent.PlayerCellCapture capture = (GameEvent.PlayerCellCapture) event;
+            message.addProperty("team", capture.getTeam());
+            message.addProperty("x", capture.getX());
+            message.addProperty("y", capture.getY());
+        } else if (event instanceof GameEvent.GameState) {
+            message.addProperty("state", ((GameEvent.GameState) event).getState());
+        }
+        return message;
+    }
+
+    /**
+     * Determines whether a message type has its own event class.
+     * @param type the message type
+     * @return whether fromJson produces something other than Other for it
+     */
+    private static boolean hasEventClass(final String type) {
+        switch (type) {
+            case "playerLocation":
+            case "playerExit":
+            case "playerTargetVisit":
+            case "playerCellCapture":
+            case "gameState":
+            case "full":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks that all the required properties were read.
+     * @param seen the bits for the properties that were read
+     * @param required the bits for the properties that are required
+     * @return whether every required bit is set
+     */
+    private static boolean has(final int seen, final int required) {
+        return (seen & required) == required;
+    }
+
+}
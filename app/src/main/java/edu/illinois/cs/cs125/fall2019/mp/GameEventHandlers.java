@@ -0,0 +1,41 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A table of handlers for GameEvents, looked up by the event's class.
+ * <p>
+ * Each event class can have one handler; registering another replaces it.
+ */
+public final class GameEventHandlers {
+
+    /** The handler for each event class. */
+    private final Map<Class<? extends GameEvent>, Consumer<GameEvent>> handlers = new HashMap<>();
+
+    /**
+     * Sets the handler for a kind of event.
+     * @param kind the event class
+     * @param handler the function to call with events of that class
+     * @param <T> the event class
+     */
+    public <T extends GameEvent> void register(final Class<T> kind, final Consumer<? super T> handler) {
+        handlers.put(kind, event -> handler.accept(kind.cast(event)));
+    }
+
+    /**
+     * Passes an event to the handler registered for its class.
+     * @param event the event
+     * @return whether there was a handler for it
+     */
+    public boolean dispatch(final GameEvent event) {
+        Consumer<GameEvent> handler = handlers.get(event.getClass());
+        if (handler == null) {
+            return false;
+        }
+        handler.accept(event);
+        return true;
+    }
+
+}
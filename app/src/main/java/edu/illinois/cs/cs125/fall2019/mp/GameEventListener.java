@@ -0,0 +1,32 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+
+import java.util.function.Consumer;
+
+/**
+ * A websocket data listener that wants decoded GameEvents instead of parsed JSON.
+ * <p>
+ * ServerClient.connectWebSocket recognizes listeners of this type and decodes each message
+ * with a streaming GameEventDecoder, so no JSON tree is built for the common message types. Anything that
+ * delivers JsonObjects through the plain Consumer interface still works: accept converts the JSON to an event.
+ */
+@FunctionalInterface
+public interface GameEventListener extends Consumer<JsonObject> {
+
+    /**
+     * Called when an event is received from the server.
+     * @param event the decoded event
+     */
+    void onEvent(GameEvent event);
+
+    /**
+     * Handles an already-parsed message by converting it to an event.
+     * @param message the parsed JSON from the server
+     */
+    @Override
+    default void accept(final JsonObject message) {
+        onEvent(GameEventDecoder.fromJson(message));
+    }
+
+}
@@ -0,0 +1,316 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import android.util.Log;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs a game's logic on a dedicated thread and publishes the results to the UI thread.
+ * <p>
+ * Location fixes and server events are submitted as steps, which run one at a time in the order they were
+ * submitted. Each step produces a GameSnapshot - the scores afterward and the map changes the step made -
+ * which is applied on the UI thread. The UI thread therefore only draws; capture checks, scoring, and message
+ * sending never hold up a frame.
+ * <p>
+ * Small games don't gain anything from the hand-off, so their loops run inline: each step runs on the
+ * caller's thread and its snapshot is applied right away, exactly as if the game were used directly.
+ */
+public final class GameLoop {
+
+    /** Games with at least this many objectives get their own thread. */
+    public static final int THREAD_THRESHOLD = 1000;
+
+    /** The tag for Log calls. */
+    private static final String TAG = "GameLoop";
+
+    /** The game whose logic this runs. */
+    private final Game game;
+
+    /** Runs steps in order, or null if steps run inline. */
+    private final ExecutorService executor;
+
+    /** Runs work on the UI thread. */
+    private final Executor ui;
+
+    /** Called on the UI thread after a snapshot from the game-loop thread has been applied, or null. */
+    private final Runnable onPublished;
+
+    /** The latest snapshot applied on the UI thread, starting with the game's state when the loop was created. */
+    private volatile GameSnapshot latest;
+
+    /** Whether the loop has been closed. */
+    private volatile boolean closed;
+
+    /** How many steps have been run. */
+    private long steps;
+
+    /** Total time spent running steps, in nanoseconds. */
+    private long stepNanos;
+
+    /** How many snapshots have been applied. */
+    private long applied;
+
+    /** Total time spent applying snapshots on the UI thread, in nanoseconds. */
+    private long applyNanos;
+
+    /**
+     * Creates a loop.
+     * @param setGame the game whose logic to run
+     * @param threaded whether to run steps on a dedicated thread rather than inline
+     * @param setUi runs work on the UI thread
+     * @param setOnPublished called on the UI thread after each snapshot from the dedicated thread is applied,
+     *                       e.g. to update the scores; not called for inline steps. May be null.
+     */
+    public GameLoop(final Game setGame, final boolean threaded, final Executor setUi,
+                    final Runnable setOnPublished) {
+        game = setGame;
+        ui = setUi;
+        onPublished = setOnPublished;
+        latest = game.snapshot();
+        if (threaded) {
+            executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "game-loop"));
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Creates a loop that gets its own thread only if the game is big enough to benefit.
+     * @param setGame the game whose logic to run
+     * @param setUi runs work on the UI thread
+     * @param setOnPublished called on the UI thread after each snapshot from the dedicated thread is applied
+     * @return a loop for the game
+     */
+    public static GameLoop forGame(final Game setGame, final Executor setUi, final Runnable setOnPublished) {
+        return new GameLoop(setGame, setGame.getObjectiveCount() >= THREAD_THRESHOLD, setUi, setOnPublished);
+    }
+
+    /**
+     * Determines whether steps run on the caller's thread.
+     * @return true if inline, false if on the dedicated thread
+     */
+    public boolean isInline() {
+        return executor == null;
+    }
+
+    /**
+     * Queues game logic to run after the steps already submitted.
+     * @param step the logic, e.g. a call to locationUpdated or handleEvent
+     */
+    public void submit(final Consumer<Game> step) {
+        if (closed) {
+            return;
+        }
+        if (executor == null) {
+            runVoidStep(step);
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                runVoidStep(step);
+            } catch (RuntimeException e) {
+                // The step's map changes are lost, but the game can carry on with the next one
+                Log.e(TAG, "Step failed", e);
+            }
+        });
+    }
+
+    /**
+     * Runs game logic after the steps already submitted, then passes its result to a callback on the UI thread.
+     * <p>
+     * The callback runs after the step's snapshot has been applied. It doesn't run if the step fails or the loop
+     * is closed first. Inline loops run the step and the callback right away.
+     * @param step the logic, e.g. reconciling with a "full" update
+     * @param onResult called on the UI thread with what the logic returned
+     * @param <T> the type of result
+     */
+    public <T> void call(final Function<Game, T> step, final Consumer<? super T> onResult) {
+        if (closed) {
+            return;
+        }
+        if (executor == null) {
+            onResult.accept(runStep(step));
+            return;
+        }
+        executor.execute(() -> {
+            T value;
+            try {
+                value = runStep(step);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Step failed", e);
+                return;
+            }
+            ui.execute(() -> {
+                if (!closed) {
+                    onResult.accept(value);
+                }
+            });
+        });
+    }
+
+    /**
+     * Runs game logic after the steps already submitted, waiting for it to finish.
+     * <p>
+     * This blocks the caller until the dedicated thread gets to it, so it must not be called from the UI thread
+     * (use the callback version there) or the game-loop thread. Tests use it to wait for the loop.
+     * @param step the logic
+     * @param <T> the type of result
+     * @return what the logic returned
+     */
+    public <T> T call(final Function<Game, T> step) {
+        if (executor == null) {
+            return runStep(step);
+        }
+        Future<T> result = executor.submit(() -> runStep(step));
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the game loop", e);
+        }
+    }
+
+    /**
+     * Gets a team's score as currently shown on the map.
+     * @param team the team ID
+     * @return how many objectives the team owns as of the latest applied snapshot
+     */
+    public int getTeamScore(final int team) {
+        if (executor == null) {
+            // Inline steps finish before returning, so the game itself is up to date with the map
+            return game.getTeamScore(team);
+        }
+        return latest.getScore(team);
+    }
+
+    /**
+     * Gets the latest snapshot applied on the UI thread.
+     * @return the snapshot, with sequence number 0 if no step has been applied yet
+     */
+    public GameSnapshot getLatest() {
+        return latest;
+    }
+
+    /**
+     * Gets the average time a step took to run.
+     * @return milliseconds per step
+     */
+    public synchronized double getAverageStepTime() {
+        if (steps == 0) {
+            return 0;
+        }
+        final double nanosPerMilli = 1e6;
+        return stepNanos / nanosPerMilli / steps;
+    }
+
+    /**
+     * Gets the average time the UI thread spent applying a snapshot.
+     * @return milliseconds per snapshot
+     */
+    public synchronized double getAverageApplyTime() {
+        if (applied == 0) {
+            return 0;
+        }
+        final double nanosPerMilli = 1e6;
+        return applyNanos / nanosPerMilli / applied;
+    }
+
+    /**
+     * Stops the loop. Steps still queued are dropped and snapshots not yet applied are discarded, e.g.
+     * because the game is being replaced and the map cleared.
+     */
+    public void close() {
+        closed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs one step and publishes its snapshot.
+     * @param step the logic
+     * @param <T> the type of result
+     * @return what the logic returned
+     */
+    private <T> T runStep(final Function<Game, T> step) {
+        Object[] result = new Object[1];
+        long start = System.nanoTime();
+        GameSnapshot snapshot = game.step(g -> result[0] = step.apply(g));
+        recordStep(System.nanoTime() - start);
+        publish(snapshot);
+        @SuppressWarnings("unchecked") T value = (T) result[0];
+        return value;
+    }
+
+    /**
+     * Runs one step that has no result and publishes its snapshot.
+     * @param step the logic
+     */
+    private void runVoidStep(final Consumer<Game> step) {
+        runStep(g -> {
+            step.accept(g);
+            return null;
+        });
+    }
+
+    /**
+     * Applies a snapshot on the UI thread: right away if inline, otherwise by posting it.
+     * @param snapshot the snapshot
+     */
+    private void publish(final GameSnapshot snapshot) {
+        if (executor == null) {
+            applySnapshot(snapshot);
+            return;
+        }
+        ui.execute(() -> {
+            if (closed) {
+                return;
+            }
+            applySnapshot(snapshot);
+            if (onPublished != null) {
+                onPublished.run();
+            }
+        });
+    }
+
+    /**
+     * Makes a snapshot's map changes, reconciling them together, and records it as the latest.
+     * @param snapshot the snapshot
+     */
+    private void applySnapshot(final GameSnapshot snapshot) {
+        long start = System.nanoTime();
+        game.getScene().batch(snapshot::apply);
+        latest = snapshot;
+        recordApply(System.nanoTime() - start);
+    }
+
+    /**
+     * Records how long a step took.
+     * @param time time spent running the step, in nanoseconds
+     */
+    private synchronized void recordStep(final long time) {
+        steps++;
+        stepNanos += time;
+    }
+
+    /**
+     * Records how long applying a snapshot took.
+     * @param time time spent applying the snapshot, in nanoseconds
+     */
+    private synchronized void recordApply(final long time) {
+        applied++;
+        applyNanos += time;
+    }
+
+}
@@ -0,0 +1,73 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of one step of game logic: the scores afterward and the map changes the step made.
+ * <p>
+ * Snapshots are created on the game-loop thread and handed to the UI thread, so they never change after
+ * creation. The map changes must be applied on the UI thread, in the order snapshots were created.
+ */
+public final class GameSnapshot {
+
+    /** Position of this snapshot in the sequence produced by its game. */
+    private final long sequence;
+
+    /** Each team's score after the step, indexed by team ID. */
+    private final int[] scores;
+
+    /** Map changes made by the step, in order. */
+    private final List<Runnable> mapChanges;
+
+    /**
+     * Creates a snapshot.
+     * @param setSequence position in the sequence produced by the game
+     * @param setScores each team's score after the step (copied)
+     * @param setMapChanges map changes made by the step, in order (copied)
+     */
+    public GameSnapshot(final long setSequence, final int[] setScores, final List<Runnable> setMapChanges) {
+        sequence = setSequence;
+        scores = setScores.clone();
+        mapChanges = Collections.unmodifiableList(new ArrayList<>(setMapChanges));
+    }
+
+    /**
+     * Gets this snapshot's position in the sequence produced by its game.
+     * @return the sequence number, starting from 1
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets a team's score after the step.
+     * @param team the team ID
+     * @return how many objectives the team owned
+     */
+    public int getScore(final int team) {
+        if (team < 0 || team >= scores.length) {
+            return 0;
+        }
+        return scores[team];
+    }
+
+    /**
+     * Gets the map changes made by the step.
+     * @return the changes, in order (unmodifiable)
+     */
+    public List<Runnable> getMapChanges() {
+        return mapChanges;
+    }
+
+    /**
+     * Applies the step's map changes. Must be called on the UI thread.
+     */
+    public void apply() {
+        for (Runnable change : mapChanges) {
+            change.run();
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.Circle;
+import com.google.android.gms.maps.model.CircleOptions;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polygon;
+import com.google.android.gms.maps.model.PolygonOptions;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A MapBackend that draws on a Google map. Updates only call the setters for what changed.
+ * <p>
+ * Circles come and go often, e.g. as players leave or walk in and out of view, so removed circles are hidden
+ * and kept in a small pool instead, and the next circle added reuses one of them.
+ */
+public final class GoogleMapBackend implements MapBackend {
+
+    /** How many hidden circles to keep around for reuse. */
+    private static final int MAX_POOLED = 16;
+
+    /** The map to draw on. */
+    private final GoogleMap map;
+
+    /** What each circle on the map shows, including hidden pooled ones. */
+    private final Map<Circle, MapScene.CircleSpec> circleSpecs = new IdentityHashMap<>();
+
+    /** Hidden circles available for reuse. */
+    private final Deque<Circle> pool = new ArrayDeque<>();
+
+    /**
+     * Creates a backend.
+     * @param setMap the map to draw on
+     */
+    public GoogleMapBackend(final GoogleMap setMap) {
+        map = setMap;
+    }
+
+    @Override
+    public Object add(final MapScene.Spec spec) {
+        if (spec instanceof MapScene.MarkerSpec) {
+            MapScene.MarkerSpec marker = (MapScene.MarkerSpec) spec;
+            MarkerOptions options = new MarkerOptions().position(marker.getPosition()).title(marker.getTitle())
+                    .visible(marker.isVisible());
+            if (marker.getIcon() != null) {
+                options.icon(marker.getIcon());
+            }
+            return map.addMarker(options);
+        } else if (spec instanceof MapScene.LineSpec) {
+            MapScene.LineSpec line = (MapScene.LineSpec) spec;
+            return map.addPolyline(new PolylineOptions().addAll(line.getPoints()).color(line.getColor()));
+        } else if (spec instanceof MapScene.PolygonSpec) {
+            MapScene.PolygonSpec polygon = (MapScene.PolygonSpec) spec;
+            PolygonOptions options = new PolygonOptions().addAll(polygon.getOutline())
+                    .fillColor(polygon.getFillColor());
+            for (List<LatLng> hole : polygon.getHoles()) {
+                options.addHole(hole);
+            }
+            return map.addPolygon(options);
+        } else {
+            return addCircle((MapScene.CircleSpec) spec);
+        }
+    }
+
+    @Override
+    public void update(final Object object, final MapScene.Spec from, final MapScene.Spec to) {
+        if (to instanceof MapScene.MarkerSpec) {
+            updateMarker((Marker) object, (MapScene.MarkerSpec) from, (MapScene.MarkerSpec) to);
+        } else if (to instanceof MapScene.LineSpec) {
+            Polyline polyline = (Polyline) object;
+            MapScene.LineSpec oldLine = (MapScene.LineSpec) from;
+            MapScene.LineSpec line = (MapScene.LineSpec) to;
+            if (!oldLine.getPoints().equals(line.getPoints())) {
+                polyline.setPoints(line.getPoints());
+            }
+            if (oldLine.getColor() != line.getColor()) {
+                polyline.setColor(line.getColor());
+            }
+        } else if (to instanceof MapScene.PolygonSpec) {
+            Polygon polygon = (Polygon) object;
+            MapScene.PolygonSpec oldPolygon = (MapScene.PolygonSpec) from;
+            MapScene.PolygonSpec newPolygon = (MapScene.PolygonSpec) to;
+            if (!oldPolygon.getOutline().equals(newPolygon.getOutline())) {
+                polygon.setPoints(newPolygon.getOutline());
+            }
+            if (!oldPolygon.getHoles().equals(newPolygon.getHoles())) {
+                polygon.setHoles(newPolygon.getHoles());
+            }
+            if (oldPolygon.getFillColor() != newPolygon.getFillColor()) {
+                polygon.setFillColor(newPolygon.getFillColor());
+            }
+        } else {
+            updateCircle((Circle) object, (MapScene.CircleSpec) from, (MapScene.CircleSpec) to);
+        }
+    }
+
+    @Override
+    public void remove(final Object object) {
+        if (object instanceof Marker) {
+            ((Marker) object).remove();
+        } else if (object instanceof Polyline) {
+            ((Polyline) object).remove();
+        } else if (object instanceof Polygon) {
+            ((Polygon) object).remove();
+        } else {
+            Circle circle = (Circle) object;
+            if (pool.size() < MAX_POOLED) {
+                circle.setVisible(false);
+                pool.push(circle);
+            } else {
+                circleSpecs.remove(circle);
+                circle.remove();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+        circleSpecs.clear();
+        pool.clear();
+    }
+
+    /**
+     * Shows a circle, reusing a pooled one if there is one.
+     * @param spec what the circle should show
+     * @return the circle
+     */
+    @SuppressWarnings("ConstantConditions")
+    private Circle addCircle(final MapScene.CircleSpec spec) {
+        Circle circle = pool.poll();
+        if (circle == null) {
+            circle = map.addCircle(new CircleOptions().center(spec.getCenter())
+                    .radius(spec.getRadius())
+                    .fillColor(spec.getFillColor())
+                    .strokeColor(spec.getStrokeColor())
+                    .strokeWidth(spec.getStrokeWidth())
+                    .zIndex(spec.getZIndex()));
+            circleSpecs.put(circle, spec);
+            return circle;
+        }
+        updateCircle(circle, circleSpecs.get(circle), spec);
+        circle.setVisible(true);
+        return circle;
+    }
+
+    /**
+     * Changes a circle to match a new spec.
+     * @param circle the circle
+     * @param from what it currently shows
+     * @param to what it should show
+     */
+    private void updateCircle(final Circle circle, final MapScene.CircleSpec from, final MapScene.CircleSpec to) {
+        if (!from.getCenter().equals(to.getCenter())) {
+            circle.setCenter(to.getCenter());
+        }
+        if (from.getRadius() != to.getRadius()) {
+            circle.setRadius(to.getRadius());
+        }
+        if (from.getFillColor() != to.getFillColor()) {
+            circle.setFillColor(to.getFillColor());
+        }
+        if (from.getStrokeColor() != to.getStrokeColor()) {
+            circle.setStrokeColor(to.getStrokeColor());
+        }
+        if (from.getStrokeWidth() != to.getStrokeWidth()) {
+            circle.setStrokeWidth(to.getStrokeWidth());
+        }
+        if (from.getZIndex() != to.getZIndex()) {
+            circle.setZIndex(to.getZIndex());
+        }
+        circleSpecs.put(circle, to);
+    }
+
+    /**
+     * Changes a marker to match a new spec.
+     * @param marker the marker
+     * @param from what it currently shows
+     * @param to what it should show
+     */
+    private static void updateMarker(final Marker marker, final MapScene.MarkerSpec from,
+                                     final MapScene.MarkerSpec to) {
+        if (!from.getPosition().equals(to.getPosition())) {
+            marker.setPosition(to.getPosition());
+        }
+        if (from.getIcon() != to.getIcon()) {
+            marker.setIcon(to.getIcon());
+        }
+        if (!Objects.equals(from.getTitle(), to.getTitle())) {
+            marker.setTitle(to.getTitle());
+        }
+        if (from.isVisible() != to.isVisible()) {
+            marker.setVisible(to.isVisible());
+        }
+    }
+
+}
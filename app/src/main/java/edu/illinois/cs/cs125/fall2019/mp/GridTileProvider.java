@@ -0,0 +1,126 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Draws an area mode grid into map tiles, for areas with too many lines to show each as a Polyline.
+ * <p>
+ * Tiles are drawn on Google Maps' background threads, only for the part of the area in view. Lines that
+ * would be closer together than MIN_LINE_SPACING pixels at a tile's zoom level are skipped: every nth line
+ * is drawn instead, always including the area's boundary, so zoomed out the grid thins rather than turning
+ * into a solid block. The grid never changes, so Maps' own tile cache is enough.
+ */
+public final class GridTileProvider implements TileProvider {
+
+    /** Width and height of a tile in pixels. */
+    public static final int TILE_SIZE = WebMercator.TILE_SIZE;
+
+    /** The closest together grid lines may be drawn, in pixels. */
+    public static final double MIN_LINE_SPACING = 6;
+
+    /** Width of the grid lines in pixels. */
+    private static final float LINE_WIDTH = 2f;
+
+    /** The grid to draw. */
+    private final AreaDivider divider;
+
+    /** How many tiles have been drawn. */
+    private long drawn;
+
+    /**
+     * Creates a provider.
+     * @param setDivider the grid to draw
+     */
+    public GridTileProvider(final AreaDivider setDivider) {
+        divider = setDivider;
+    }
+
+    /**
+     * Gets how many lines apart the drawn lines are.
+     * @param cells the number of cells across the area in one direction
+     * @param extent the area's size in that direction at the zoom level, in pixels
+     * @return 1 to draw every line, 2 for every other line, etc.
+     */
+    static int getStride(final int cells, final double extent) {
+        double spacing = extent / cells;
+        if (spacing >= MIN_LINE_SPACING) {
+            return 1;
+        }
+        return (int) Math.ceil(MIN_LINE_SPACING / spacing);
+    }
+
+    /**
+     * Gets a tile. Called by Google Maps on a background thread.
+     * @param tileX the tile's X coordinate
+     * @param tileY the tile's Y coordinate
+     * @param zoom the zoom level
+     * @return the tile image, or NO_TILE if the tile doesn't overlap the area
+     */
+    @Override
+    public Tile getTile(final int tileX, final int tileY, final int zoom) {
+        double originX = (double) tileX * TILE_SIZE;
+        double originY = (double) tileY * TILE_SIZE;
+        int xCells = divider.getXCells();
+        int yCells = divider.getYCells();
+        float west = (float) (WebMercator.toPixelX(divider.getCellWest(0), zoom) - originX);
+        float east = (float) (WebMercator.toPixelX(divider.getCellWest(xCells), zoom) - originX);
+        float south = (float) (WebMercator.toPixelY(divider.getCellSouth(0), zoom) - originY);
+        float north = (float) (WebMercator.toPixelY(divider.getCellSouth(yCells), zoom) - originY);
+        if (east < -LINE_WIDTH || west > TILE_SIZE + LINE_WIDTH
+                || south < -LINE_WIDTH || north > TILE_SIZE + LINE_WIDTH) {
+            return NO_TILE;
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        paint.setColor(Color.BLACK);
+        paint.setStrokeWidth(LINE_WIDTH);
+
+        // Only the lines that fall in the tile (or just outside, since lines have width) are drawn
+        int xStride = getStride(xCells, east - west);
+        int firstColumn = Math.max(divider.getXCoordinate(WebMercator.toLongitude(originX, zoom)), 0);
+        int lastColumn = Math.min(divider.getXCoordinate(WebMercator.toLongitude(originX + TILE_SIZE, zoom)) + 1,
+                xCells);
+        for (int i = firstColumn; i <= lastColumn; i++) {
+            if (i % xStride == 0 || i == xCells) {
+                float x = (float) (WebMercator.toPixelX(divider.getCellWest(i), zoom) - originX);
+                canvas.drawLine(x, north, x, south, paint);
+            }
+        }
+        int yStride = getStride(yCells, south - north);
+        int firstRow = Math.max(divider.getYCoordinate(WebMercator.toLatitude(originY + TILE_SIZE, zoom)), 0);
+        int lastRow = Math.min(divider.getYCoordinate(WebMercator.toLatitude(originY, zoom)) + 1, yCells);
+        for (int i = firstRow; i <= lastRow; i++) {
+            if (i % yStride == 0 || i == yCells) {
+                float y = (float) (WebMercator.toPixelY(divider.getCellSouth(i), zoom) - originY);
+                canvas.drawLine(west, y, east, y, paint);
+            }
+        }
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 0, png);
+        bitmap.recycle();
+        synchronized (this) {
+            drawn++;
+        }
+        return new Tile(TILE_SIZE, TILE_SIZE, png.toByteArray());
+    }
+
+    /**
+     * Gets how many tiles have been drawn.
+     * @return the number of tiles drawn
+     */
+    public synchronized long getDrawn() {
+        return drawn;
+    }
+
+}
@@ -0,0 +1,95 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A MapBackend with no map: it records what would be shown and counts the operations, so tests and benchmarks
+ * can check the map work a scene causes without Google Maps.
+ */
+public final class HeadlessMapBackend implements MapBackend {
+
+    /** What each object shows, by handle. */
+    private final Map<Object, MapScene.Spec> shown = new IdentityHashMap<>();
+
+    /** How many objects have been added. */
+    private long adds;
+
+    /** How many objects have been updated. */
+    private long updates;
+
+    /** How many objects have been removed. */
+    private long removes;
+
+    @Override
+    public Object add(final MapScene.Spec spec) {
+        Object handle = new Object();
+        shown.put(handle, spec);
+        adds++;
+        return handle;
+    }
+
+    @Override
+    public void update(final Object object, final MapScene.Spec from, final MapScene.Spec to) {
+        if (shown.put(object, to) == null) {
+            throw new IllegalArgumentException("Updated an object that isn't on the map");
+        }
+        updates++;
+    }
+
+    @Override
+    public void remove(final Object object) {
+        if (shown.remove(object) == null) {
+            throw new IllegalArgumentException("Removed an object that isn't on the map");
+        }
+        removes++;
+    }
+
+    @Override
+    public void clear() {
+        shown.clear();
+    }
+
+    /**
+     * Gets what would be on the map.
+     * @return the spec of each object (do not modify)
+     */
+    public Collection<MapScene.Spec> getShown() {
+        return Collections.unmodifiableCollection(shown.values());
+    }
+
+    /**
+     * Gets how many objects have been added.
+     * @return the number of adds
+     */
+    public long getAdds() {
+        return adds;
+    }
+
+    /**
+     * Gets how many objects have been updated.
+     * @return the number of updates
+     */
+    public long getUpdates() {
+        return updates;
+    }
+
+    /**
+     * Gets how many objects have been removed.
+     * @return the number of removes
+     */
+    public long getRemoves() {
+        return removes;
+    }
+
+    /**
+     * Gets the total number of map operations.
+     * @return adds plus updates plus removes
+     */
+    public long getOperations() {
+        return adds + updates + removes;
+    }
+
+}
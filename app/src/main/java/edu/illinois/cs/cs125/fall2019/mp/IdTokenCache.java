@@ -0,0 +1,269 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.firebase.auth.FirebaseUser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the user's Firebase ID token so requests can attach it without waiting for Firebase.
+ * <p>
+ * Getting a token from FirebaseUser.getIdToken is asynchronous even when Firebase has it cached, which delays
+ * the start of every request. This cache hands out its token immediately while it has more than a safety
+ * margin left before expiring. When the token gets close to expiring, a refresh is started in the background
+ * so requests keep getting a token right away. Only if there is no usable token does a request wait for
+ * Firebase; requests arriving while a fetch is in progress wait for that same fetch.
+ * <p>
+ * Callbacks run on the thread that delivered the token: the caller's for cached tokens, otherwise Firebase's
+ * (the main thread).
+ */
+public final class IdTokenCache {
+
+    /** Default time before expiry at which a token is no longer handed out, in milliseconds. */
+    public static final long DEFAULT_EXPIRY_MARGIN = TimeUnit.MINUTES.toMillis(1);
+
+    /** Default time before expiry at which a background refresh starts, in milliseconds. */
+    public static final long DEFAULT_REFRESH_AHEAD = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Fetches a new token.
+     */
+    interface Source {
+
+        /**
+         * Starts fetching a token.
+         * @param forceRefresh whether a new token must be issued even if the current one is still valid
+         * @param onToken callback to run with the token and its expiry time in milliseconds
+         * @param onError callback to run if the token can't be fetched
+         */
+        void fetch(boolean forceRefresh, BiConsumer<String, Long> onToken, Consumer<Exception> onError);
+
+    }
+
+    /** Wall clock in milliseconds, which token expiry times are measured against. */
+    private final LongSupplier clock;
+
+    /** Time before expiry at which a token is no longer used. */
+    private final long expiryMargin;
+
+    /** Time before expiry at which a refresh starts. */
+    private final long refreshAhead;
+
+    /** The ID of the user the token belongs to, or null if there is no token. */
+    private String user;
+
+    /** The current token, or null if there is none. */
+    private String token;
+
+    /** When the current token expires, in milliseconds since the epoch. */
+    private long expiresAt;
+
+    /** Whether a fetch is in progress. */
+    private boolean fetching;
+
+    /** Requests waiting for the fetch in progress. */
+    private List<Consumer<String>> waiting = new ArrayList<>();
+
+    /** Error callbacks of the requests waiting for the fetch in progress. */
+    private List<Consumer<Exception>> waitingErrors = new ArrayList<>();
+
+    /** How many requests got a token right away. */
+    private long immediate;
+
+    /** How many requests had to wait for Firebase. */
+    private long waited;
+
+    /** Total time requests spent waiting for Firebase, in milliseconds. */
+    private long totalWait;
+
+    /** How many background refreshes were started. */
+    private long refreshes;
+
+    /**
+     * Creates a cache with the default margins, using the system clock.
+     */
+    public IdTokenCache() {
+        this(System::currentTimeMillis, DEFAULT_EXPIRY_MARGIN, DEFAULT_REFRESH_AHEAD);
+    }
+
+    /**
+     * Creates a cache.
+     * @param setClock wall clock in milliseconds
+     * @param setExpiryMargin how long before expiry to stop using a token, in milliseconds
+     * @param setRefreshAhead how long before expiry to start a background refresh, in milliseconds
+     */
+    public IdTokenCache(final LongSupplier setClock, final long setExpiryMargin, final long setRefreshAhead) {
+        if (setExpiryMargin < 0 || setRefreshAhead < setExpiryMargin) {
+            throw new IllegalArgumentException("The refresh must start before the token stops being used");
+        }
+        clock = setClock;
+        expiryMargin = setExpiryMargin;
+        refreshAhead = setRefreshAhead;
+    }
+
+    /**
+     * Gets an ID token for a user, right away if one is cached.
+     * @param firebaseUser the logged-in user
+     * @param onToken callback to run with the token
+     * @param onError callback to run if no token could be fetched
+     */
+    public void getToken(final FirebaseUser firebaseUser, final Consumer<String> onToken,
+                         final Consumer<Exception> onError) {
+        getToken(firebaseUser.getUid(), (forceRefresh, fetched, failed) -> firebaseUser.getIdToken(forceRefresh)
+                .addOnSuccessListener(result -> fetched.accept(result.getToken(),
+                        TimeUnit.SECONDS.toMillis(result.getExpirationTimestamp())))
+                .addOnFailureListener(failed::accept), onToken, onError);
+    }
+
+    /**
+     * Gets an ID token, right away if one is cached.
+     * @param userId the user's ID
+     * @param source how to fetch a new token for the user
+     * @param onToken callback to run with the token
+     * @param onError callback to run if no token could be fetched
+     */
+    void getToken(final String userId, final Source source, final Consumer<String> onToken,
+                  final Consumer<Exception> onError) {
+        long start = clock.getAsLong();
+        String ready = null;
+        boolean startFetch = false;
+        boolean forceRefresh = false;
+        synchronized (this) {
+            if (!userId.equals(user)) {
+                // A different user logged in: whatever is cached or being fetched is for the old one
+                user = userId;
+                token = null;
+                fetching = false;
+            }
+            if (token != null && start < expiresAt - expiryMargin) {
+                immediate++;
+                ready = token;
+                if (start >= expiresAt - refreshAhead && !fetching) {
+                    refreshes++;
+                    fetching = true;
+                    startFetch = true;
+                    forceRefresh = true;
+                }
+            } else {
+                waiting.add(fetched -> {
+                    recordWait(start);
+                    onToken.accept(fetched);
+                });
+                waitingErrors.add(onError);
+                if (!fetching) {
+                    fetching = true;
+                    startFetch = true;
+                }
+            }
+        }
+        if (ready != null) {
+            onToken.accept(ready);
+        }
+        if (startFetch) {
+            BiConsumer<String, Long> onFetched = (fetched, expiry) -> fetched(userId, fetched, expiry);
+            source.fetch(forceRefresh, onFetched, error -> failed(userId, error));
+        }
+    }
+
+    /**
+     * Forgets the cached token, e.g. after the server rejected it or the user logged out.
+     */
+    public synchronized void invalidate() {
+        token = null;
+    }
+
+    /**
+     * Gets how many requests got a token without waiting.
+     * @return the number of immediate tokens
+     */
+    public synchronized long getImmediate() {
+        return immediate;
+    }
+
+    /**
+     * Gets how many requests had to wait for Firebase.
+     * @return the number of requests that waited
+     */
+    public synchronized long getWaited() {
+        return waited;
+    }
+
+    /**
+     * Gets the average time from a request asking for a token to getting it, over all requests.
+     * @return the average start latency in milliseconds, or 0 if there were no requests
+     */
+    public synchronized double getAverageStartLatency() {
+        if (immediate + waited == 0) {
+            return 0;
+        }
+        return (double) totalWait / (immediate + waited);
+    }
+
+    /**
+     * Gets how many background refreshes were started.
+     * @return the number of refreshes
+     */
+    public synchronized long getRefreshes() {
+        return refreshes;
+    }
+
+    /**
+     * Records how long a request waited for its token.
+     * @param start when the request asked, in milliseconds
+     */
+    private synchronized void recordWait(final long start) {
+        waited++;
+        totalWait += Math.max(0, clock.getAsLong() - start);
+    }
+
+    /**
+     * Stores a fetched token and hands it to the waiting requests.
+     * @param userId the user the token was fetched for
+     * @param fetched the token
+     * @param expiry when the token expires, in milliseconds since the epoch
+     */
+    private void fetched(final String userId, final String fetched, final long expiry) {
+        List<Consumer<String>> callbacks;
+        synchronized (this) {
+            if (!userId.equals(user)) {
+                return;
+            }
+            fetching = false;
+            token = fetched;
+            expiresAt = expiry;
+            callbacks = waiting;
+            waiting = new ArrayList<>();
+            waitingErrors = new ArrayList<>();
+        }
+        for (Consumer<String> callback : callbacks) {
+            callback.accept(fetched);
+        }
+    }
+
+    /**
+     * Reports a failed fetch to the waiting requests. A failed background refresh has nobody waiting; the
+     * current token stays in use until it expires and the next request tries again.
+     * @param userId the user the token was fetched for
+     * @param error what went wrong
+     */
+    private void failed(final String userId, final Exception error) {
+        List<Consumer<Exception>> callbacks;
+        synchronized (this) {
+            if (!userId.equals(user)) {
+                return;
+            }
+            fetching = false;
+            callbacks = waitingErrors;
+            waiting = new ArrayList<>();
+            waitingErrors = new ArrayList<>();
+        }
+        for (Consumer<Exception> callback : callbacks) {
+            callback.accept(error);
+        }
+    }
+
+}
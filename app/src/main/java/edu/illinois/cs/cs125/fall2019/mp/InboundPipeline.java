@@ -0,0 +1,193 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Buffers messages from the websocket thread until the UI thread is ready to process them.
+ * <p>
+ * The websocket thread offers each message as it arrives; the UI thread drains everything pending in one go,
+ * normally once per frame. Messages are handled according to their type:
+ * <ul>
+ *     <li>A playerLocation replaces any still-pending playerLocation for the same player, since only the
+ *     newest position matters. If the queue is at capacity, new playerLocation messages for other players
+ *     are dropped.</li>
+ *     <li>A full update replaces everything still pending, since it describes the whole game.</li>
+ *     <li>Everything else - ownership changes like playerTargetVisit and playerCellCapture, gameState, and
+ *     playerExit - is always kept and delivered in order, even past capacity.</li>
+ * </ul>
+ * offer may be called from any thread; drain must only be called from one thread at a time.
+ */
+public final class InboundPipeline {
+
+    /** The pending messages, oldest first. Entries are arrays of one so coalescing can replace them in place. */
+    private final ArrayDeque<GameEvent[]> queue = new ArrayDeque<>();
+
+    /** The queue entry holding each player's pending playerLocation, by email. */
+    private final Map<String, GameEvent[]> pendingLocations = new HashMap<>();
+
+    /** How many messages can be pending before playerLocation messages are dropped. */
+    private final int capacity;
+
+    /** Whether a drain has been requested and hasn't started yet. */
+    private boolean drainRequested;
+
+    /** How many messages have been accepted. */
+    private long offered;
+
+    /** How many messages have been handed to the handler. */
+    private long delivered;
+
+    /** How many messages were dropped because the queue was full. */
+    private long dropped;
+
+    /** How many pending messages were replaced by newer ones. */
+    private long coalesced;
+
+    /** The most messages that have been pending at once. */
+    private int maxDepth;
+
+    /**
+     * Creates an empty pipeline.
+     * @param setCapacity how many messages may be pending before location updates are shed
+     */
+    public InboundPipeline(final int setCapacity) {
+        if (setCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        capacity = setCapacity;
+    }
+
+    /**
+     * Adds a message from the server to the queue.
+     * @param message the decoded message
+     * @return true if the caller should arrange for drain to be called, false if a drain is already pending
+     */
+    public synchronized boolean offer(final GameEvent message) {
+        offered++;
+        if (message instanceof GameEvent.PlayerLocation) {
+            String email = ((GameEvent.PlayerLocation) message).getEmail();
+            GameEvent[] pending = pendingLocations.get(email);
+            if (pending != null) {
+                pending[0] = message;
+                coalesced++;
+                return requestDrain();
+            } else if (queue.size() >= capacity) {
+                dropped++;
+                return requestDrain();
+            }
+            GameEvent[] entry = {message};
+            pendingLocations.put(email, entry);
+            enqueue(entry);
+        } else if (message instanceof GameEvent.Full) {
+            coalesced += queue.size();
+            queue.clear();
+            pendingLocations.clear();
+            enqueue(new GameEvent[] {message});
+        } else if (message instanceof GameEvent.PlayerExit) {
+            // Later locations for this player must come after the exit, not be merged into an earlier one
+            pendingLocations.remove(((GameEvent.PlayerExit) message).getEmail());
+            enqueue(new GameEvent[] {message});
+        } else {
+            enqueue(new GameEvent[] {message});
+        }
+        return requestDrain();
+    }
+
+    /**
+     * Hands every pending message to a handler, oldest first.
+     * @param handler the function to process each message
+     * @return how many messages were processed
+     */
+    public int drain(final Consumer<GameEvent> handler) {
+        List<GameEvent> batch;
+        synchronized (this) {
+            drainRequested = false;
+            batch = new ArrayList<>(queue.size());
+            for (GameEvent[] entry : queue) {
+                batch.add(entry[0]);
+            }
+            queue.clear();
+            pendingLocations.clear();
+            delivered += batch.size();
+        }
+        for (GameEvent message : batch) {
+            handler.accept(message);
+        }
+        return batch.size();
+    }
+
+    /**
+     * Gets how many messages are waiting to be drained.
+     * @return the current queue depth
+     */
+    public synchronized int getDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the most messages that have been waiting at once.
+     * @return the maximum queue depth so far
+     */
+    public synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Gets how many messages have been offered.
+     * @return the number of messages received
+     */
+    public synchronized long getOffered() {
+        return offered;
+    }
+
+    /**
+     * Gets how many messages have been drained.
+     * @return the number of messages delivered to a handler
+     */
+    public synchronized long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * Gets how many location updates were dropped because the queue was full.
+     * @return the number of dropped messages
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Gets how many pending messages were replaced by newer ones (a newer location or a full update).
+     * @return the number of coalesced messages
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * Adds an entry to the back of the queue.
+     * @param entry the entry
+     */
+    private void enqueue(final GameEvent[] entry) {
+        queue.add(entry);
+        maxDepth = Math.max(maxDepth, queue.size());
+    }
+
+    /**
+     * Notes that a drain is needed.
+     * @return whether this is the first request since the last drain started
+     */
+    private boolean requestDrain() {
+        if (drainRequested) {
+            return false;
+        }
+        drainRequested = true;
+        return true;
+    }
+
+}
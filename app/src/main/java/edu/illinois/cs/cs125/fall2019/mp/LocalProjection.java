@@ -0,0 +1,191 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+
+/**
+ * Projects locations in a small area onto a flat plane measured in meters.
+ * <p>
+ * LatLngUtils.distance recomputes the east-west scale (a cosine) from the first point's latitude on every call.
+ * Over an area a few kilometers across that scale barely changes, so this class computes it once for a
+ * reference latitude. Distances then need only a few multiplications, and comparisons against a range can
+ * use squared distances to skip the square root as well.
+ * <p>
+ * X increases to the east and Y to the north, both in meters from the reference point.
+ * With the reference latitude equal to the first point's, distance gives exactly LatLngUtils.distance's result;
+ * elsewhere maxRelativeError says how far apart they can be.
+ */
+public final class LocalProjection {
+
+    /** Meters per degree of latitude, the same scale LatLngUtils.distance uses. */
+    private static final double LAT_DISTANCE_SCALE = 110574;
+
+    /** Meters per degree of longitude at the equator, the same scale LatLngUtils.distance uses. */
+    private static final double LNG_DISTANCE_SCALE = 111320;
+
+    /** Radians per degree, computed the way LatLngUtils.distance does. */
+    private static final double DEG_TO_RAD = Math.PI / 180;
+
+    /** The latitude the east-west scale was computed for. */
+    private final double referenceLatitude;
+
+    /** The longitude of the plane's origin. */
+    private final double referenceLongitude;
+
+    /** The cosine of the reference latitude. */
+    private final double referenceCos;
+
+    /** Meters per degree of longitude at the reference latitude. */
+    private final double metersPerDegreeLongitude;
+
+    /**
+     * Creates a projection centered on a point.
+     * @param setReferenceLatitude a latitude near the middle of the area of interest
+     * @param setReferenceLongitude a longitude near the middle of the area of interest
+     */
+    public LocalProjection(final double setReferenceLatitude, final double setReferenceLongitude) {
+        referenceLatitude = setReferenceLatitude;
+        referenceLongitude = setReferenceLongitude;
+        referenceCos = Math.cos(DEG_TO_RAD * setReferenceLatitude);
+        metersPerDegreeLongitude = LNG_DISTANCE_SCALE * referenceCos;
+    }
+
+    /**
+     * Creates a projection centered on the middle of the bounding box of some positions.
+     * @param positions points spread over the area of interest (e.g. all targets' positions)
+     * @return a projection for that area, or one centered on (0, 0) if there are no positions
+     */
+    public static LocalProjection around(final Iterable<LatLng> positions) {
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double minLng = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY;
+        for (LatLng position : positions) {
+            minLat = Math.min(minLat, position.latitude);
+            maxLat = Math.max(maxLat, position.latitude);
+            minLng = Math.min(minLng, position.longitude);
+            maxLng = Math.max(maxLng, position.longitude);
+        }
+        if (minLat > maxLat) {
+            return new LocalProjection(0, 0);
+        }
+        return new LocalProjection((minLat + maxLat) / 2, (minLng + maxLng) / 2);
+    }
+
+    /**
+     * Gets the latitude the projection's scale was computed for.
+     * @return the reference latitude
+     */
+    public double getReferenceLatitude() {
+        return referenceLatitude;
+    }
+
+    /**
+     * Gets how many meters one degree of latitude spans.
+     * @return meters per degree of latitude
+     */
+    public double getMetersPerDegreeLatitude() {
+        return LAT_DISTANCE_SCALE;
+    }
+
+    /**
+     * Gets how many meters one degree of longitude spans at the reference latitude.
+     * @return meters per degree of longitude
+     */
+    public double getMetersPerDegreeLongitude() {
+        return metersPerDegreeLongitude;
+    }
+
+    /**
+     * Projects a longitude onto the plane.
+     * @param longitude the longitude
+     * @return meters east of the reference point
+     */
+    public double toX(final double longitude) {
+        return (longitude - referenceLongitude) * metersPerDegreeLongitude;
+    }
+
+    /**
+     * Projects a latitude onto the plane.
+     * @param latitude the latitude
+     * @return meters north of the reference point
+     */
+    public double toY(final double latitude) {
+        return (latitude - referenceLatitude) * LAT_DISTANCE_SCALE;
+    }
+
+    /**
+     * Computes the square of the distance between two points.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return the squared distance, in square meters
+     */
+    public double squaredDistance(final double oneLat, final double oneLng,
+                                  final double anotherLat, final double anotherLng) {
+        // Multiplied in the same order as LatLngUtils.distance, so the results agree to the last bit
+        double latDistance = LAT_DISTANCE_SCALE * (oneLat - anotherLat);
+        double lngDistance = LNG_DISTANCE_SCALE * (oneLng - anotherLng) * referenceCos;
+        return latDistance * latDistance + lngDistance * lngDistance;
+    }
+
+    /**
+     * Computes the distance between two points.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return the distance, in meters
+     */
+    public double distance(final double oneLat, final double oneLng,
+                           final double anotherLat, final double anotherLng) {
+        return Math.sqrt(squaredDistance(oneLat, oneLng, anotherLat, anotherLng));
+    }
+
+    /**
+     * Determines whether two points are within a given distance of each other, without taking a square root.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @param range the maximum distance in meters
+     * @return whether the points are at most that far apart
+     */
+    public boolean withinRange(final double oneLat, final double oneLng,
+                               final double anotherLat, final double anotherLng, final double range) {
+        return squaredDistance(oneLat, oneLng, anotherLat, anotherLng) <= range * range;
+    }
+
+    /**
+     * Determines whether two points are within a given distance of each other, without taking a square root.
+     * @param one one point
+     * @param another the other point
+     * @param range the maximum distance in meters
+     * @return whether the points are at most that far apart
+     */
+    public boolean withinRange(final LatLng one, final LatLng another, final double range) {
+        return withinRange(one.latitude, one.longitude, another.latitude, another.longitude, range);
+    }
+
+    /**
+     * Bounds how far this projection's distances can be from LatLngUtils.distance for points in a band of
+     * latitudes.
+     * <p>
+     * The two only differ in the east-west scale: LatLngUtils uses the cosine of the first point's latitude,
+     * this uses the cosine of the reference latitude. The relative error of a distance is therefore at most
+     * the largest relative difference between those cosines over the band.
+     * @param minLatitude the southern edge of the band
+     * @param maxLatitude the northern edge of the band
+     * @return the largest possible relative error (e.g. 0.001 means within 0.1%)
+     */
+    public double maxRelativeError(final double minLatitude, final double maxLatitude) {
+        // Cosine is monotonic on each side of the equator, so its extremes are at the edges or the equator
+        double error = Math.max(Math.abs(Math.cos(DEG_TO_RAD * minLatitude) / referenceCos - 1),
+                Math.abs(Math.cos(DEG_TO_RAD * maxLatitude) / referenceCos - 1));
+        if (minLatitude < 0 && maxLatitude > 0) {
+            error = Math.max(error, Math.abs(1 / referenceCos - 1));
+        }
+        return error;
+    }
+
+}
@@ -0,0 +1,249 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary encoding for location traffic, sent as websocket binary frames instead of JSON text.
+ * <p>
+ * Coordinates are fixed-point integers in units of 1e-7 degrees (about a centimeter). Each message carries
+ * the difference from the previous position sent on the same connection for the same player, written as a
+ * zigzag variable-length integer, so a few meters of movement takes one or two bytes per coordinate. The first
+ * position for a player is a difference from zero. Other players are identified by the small integer "wireId"
+ * the server assigns in the full update rather than by email; the server keeps sending JSON for players who
+ * joined after the client's full update.
+ * <p>
+ * The client announces support when connecting; the server opts in by setting the {@link #CAPABILITY} property
+ * of the full update to true. If it doesn't, both directions keep using JSON. Since the full update is resent
+ * on every connection, delta state never outlives a connection.
+ * <p>
+ * Message layouts:
+ * <ul>
+ *     <li>locationUpdate (client to server): {@link #LOCATION_UPDATE}, latitude delta, longitude delta</li>
+ *     <li>playerLocation (server to client): {@link #PLAYER_LOCATION}, wireId, latitude delta, longitude
+ *     delta</li>
+ * </ul>
+ */
+public final class LocationCodec {
+
+    /** Name of the capability, used in the connection header and the full update. */
+    public static final String CAPABILITY = "binaryLocations";
+
+    /** First byte of a client's own location update. */
+    public static final byte LOCATION_UPDATE = 1;
+
+    /** First byte of another player's location. */
+    public static final byte PLAYER_LOCATION = 2;
+
+    /** Fixed-point units per degree. */
+    public static final double UNITS_PER_DEGREE = 1e7;
+
+    /** Longest possible message: a tag, a wireId, and two 64-bit varints. */
+    private static final int MAX_MESSAGE_LENGTH = 1 + 5 + 10 + 10;
+
+    /** Bits of payload in each varint byte. */
+    private static final int VARINT_BITS = 7;
+
+    /** Mask for the payload of a varint byte. */
+    private static final int VARINT_PAYLOAD = 0x7F;
+
+    /** Bit set on every varint byte except the last. */
+    private static final int VARINT_CONTINUE = 0x80;
+
+    /** Private constructor to prevent creating instances. */
+    private LocationCodec() { }
+
+    /**
+     * Determines whether the server enabled binary locations for this connection.
+     * @param fullUpdate the "full" update JSON
+     * @return whether location traffic should use this encoding
+     */
+    public static boolean isEnabled(final JsonObject fullUpdate) {
+        JsonElement flag = fullUpdate.get(CAPABILITY);
+        return flag != null && flag.isJsonPrimitive() && flag.getAsBoolean();
+    }
+
+    /**
+     * Converts a coordinate to fixed point.
+     * @param degrees the latitude or longitude
+     * @return the coordinate in 1e-7 degree units
+     */
+    public static long toFixed(final double degrees) {
+        return Math.round(degrees * UNITS_PER_DEGREE);
+    }
+
+    /**
+     * Converts a fixed-point coordinate back to degrees.
+     * @param units the coordinate in 1e-7 degree units
+     * @return the latitude or longitude
+     */
+    public static double fromFixed(final long units) {
+        return units / UNITS_PER_DEGREE;
+    }
+
+    /**
+     * Writes an unsigned variable-length integer, seven bits per byte, least significant first.
+     * @param buffer the buffer to write to
+     * @param value the value, treated as unsigned
+     */
+    static void writeVarint(final ByteBuffer buffer, final long value) {
+        long remaining = value;
+        while ((remaining & ~VARINT_PAYLOAD) != 0) {
+            buffer.put((byte) ((remaining & VARINT_PAYLOAD) | VARINT_CONTINUE));
+            remaining >>>= VARINT_BITS;
+        }
+        buffer.put((byte) remaining);
+    }
+
+    /**
+     * Reads an unsigned variable-length integer.
+     * @param buffer the buffer to read from
+     * @return the value
+     */
+    static long readVarint(final ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += VARINT_BITS) {
+            int next = buffer.get();
+            value |= (long) (next & VARINT_PAYLOAD) << shift;
+            if ((next & VARINT_CONTINUE) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Writes a signed value so that small magnitudes of either sign take few bytes.
+     * @param buffer the buffer to write to
+     * @param value the value
+     */
+    static void writeSignedVarint(final ByteBuffer buffer, final long value) {
+        writeVarint(buffer, (value << 1) ^ (value >> (Long.SIZE - 1)));
+    }
+
+    /**
+     * Reads a value written by writeSignedVarint.
+     * @param buffer the buffer to read from
+     * @return the value
+     */
+    static long readSignedVarint(final ByteBuffer buffer) {
+        long zigzag = readVarint(buffer);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * Creates a buffer big enough for any message.
+     * @return an empty buffer
+     */
+    static ByteBuffer newMessageBuffer() {
+        return ByteBuffer.allocate(MAX_MESSAGE_LENGTH);
+    }
+
+    /**
+     * Copies the written part of a buffer out.
+     * @param buffer the buffer
+     * @return the message bytes
+     */
+    static byte[] toBytes(final ByteBuffer buffer) {
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Encodes this client's location updates for one connection.
+     */
+    public static final class Sender {
+
+        /** Reused message buffer. */
+        private final ByteBuffer buffer = newMessageBuffer();
+
+        /** Latitude of the last update sent, in fixed point. */
+        private long lastLatitude;
+
+        /** Longitude of the last update sent, in fixed point. */
+        private long lastLongitude;
+
+        /**
+         * Encodes a location update.
+         * @param latitude the user's latitude
+         * @param longitude the user's longitude
+         * @return the message to send as a binary frame
+         */
+        public byte[] encode(final double latitude, final double longitude) {
+            long fixedLatitude = toFixed(latitude);
+            long fixedLongitude = toFixed(longitude);
+            buffer.clear();
+            buffer.put(LOCATION_UPDATE);
+            writeSignedVarint(buffer, fixedLatitude - lastLatitude);
+            writeSignedVarint(buffer, fixedLongitude - lastLongitude);
+            lastLatitude = fixedLatitude;
+            lastLongitude = fixedLongitude;
+            return toBytes(buffer);
+        }
+
+    }
+
+    /**
+     * Decodes other players' locations for one connection.
+     * <p>
+     * Players are learned from the full update; locations for unknown wireIds are rejected.
+     */
+    public static final class Receiver {
+
+        /** Each player's email, by wireId. */
+        private final Map<Integer, String> emails = new HashMap<>();
+
+        /** Each player's last position in fixed point (latitude, longitude), by wireId. */
+        private final Map<Integer, long[]> positions = new HashMap<>();
+
+        /**
+         * Learns the wireIds in a full update, forgetting any previous players and positions.
+         * @param fullUpdate the "full" update JSON
+         */
+        public void reset(final JsonObject fullUpdate) {
+            emails.clear();
+            positions.clear();
+            if (!isEnabled(fullUpdate)) {
+                return;
+            }
+            for (JsonElement p : fullUpdate.getAsJsonArray("players")) {
+                JsonObject player = p.getAsJsonObject();
+                if (player.has("wireId")) {
+                    emails.put(player.get("wireId").getAsInt(), player.get("email").getAsString());
+                }
+            }
+        }
+
+        /**
+         * Decodes a binary message from the server.
+         * @param message the binary frame's payload
+         * @return the decoded event
+         */
+        public GameEvent decode(final byte[] message) {
+            ByteBuffer buffer = ByteBuffer.wrap(message);
+            byte tag = buffer.get();
+            if (tag != PLAYER_LOCATION) {
+                throw new IllegalArgumentException("Unknown binary message " + tag);
+            }
+            int wireId = (int) readVarint(buffer);
+            String email = emails.get(wireId);
+            if (email == null) {
+                throw new IllegalArgumentException("Unknown player " + wireId);
+            }
+            long[] position = positions.get(wireId);
+            if (position == null) {
+                position = new long[2];
+                positions.put(wireId, position);
+            }
+            position[0] += readSignedVarint(buffer);
+            position[1] += readSignedVarint(buffer);
+            return new GameEvent.PlayerLocation(email, fromFixed(position[0]), fromFixed(position[1]));
+        }
+
+    }
+
+}
@@ -0,0 +1,159 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.function.Consumer;
+
+/**
+ * Decides which of the user's location fixes are worth sending to the server.
+ * <p>
+ * A fix is sent if the user has moved more than a minimum distance since the last fix sent, or if the maximum
+ * interval has passed since then. Other fixes are held back, and the newest one is sent by flush - which must
+ * happen before anything the server checks against the user's position, like a capture. The first fix is
+ * always sent. Distances are measured on a LocalProjection centered on the first fix, which stays accurate over
+ * the few kilometers a game covers.
+ * <p>
+ * The methods may be called from any thread, e.g. offer on the UI thread and flush on the game-loop thread.
+ */
+public final class LocationThrottle {
+
+    /** Default minimum movement, in meters, for a fix to be sent right away. */
+    public static final double DEFAULT_MIN_DISTANCE = 5.0;
+
+    /** Default longest time, in milliseconds, between fixes sent while fixes are arriving. */
+    public static final long DEFAULT_MAX_INTERVAL = 15000;
+
+    /** The function that actually sends a location. */
+    private final Consumer<LatLng> send;
+
+    /** Minimum movement in meters. */
+    private final double minDistance;
+
+    /** Maximum interval in milliseconds. */
+    private final long maxInterval;
+
+    /** Projection for measuring movement, created for the first fix sent. */
+    private LocalProjection projection;
+
+    /** The last location sent, or null if none has been. */
+    private LatLng lastSent;
+
+    /** When the last location was sent, in milliseconds. */
+    private long lastSentTime;
+
+    /** The newest fix that hasn't been sent, or null if there isn't one. */
+    private LatLng pending;
+
+    /** How many fixes have been offered. */
+    private long fixesReceived;
+
+    /** How many fixes have been sent. */
+    private long fixesSent;
+
+    /** How many of the sent fixes were sent by flush. */
+    private long flushed;
+
+    /**
+     * Creates a throttle with the default distance and interval.
+     * @param setSend the function to send a location to the server
+     */
+    public LocationThrottle(final Consumer<LatLng> setSend) {
+        this(setSend, DEFAULT_MIN_DISTANCE, DEFAULT_MAX_INTERVAL);
+    }
+
+    /**
+     * Creates a throttle.
+     * @param setSend the function to send a location to the server
+     * @param setMinDistance how far, in meters, the user must move for a fix to be sent right away
+     * @param setMaxInterval the longest time, in milliseconds, to hold back fixes
+     */
+    public LocationThrottle(final Consumer<LatLng> setSend, final double setMinDistance,
+                            final long setMaxInterval) {
+        if (setMinDistance < 0 || setMaxInterval < 0) {
+            throw new IllegalArgumentException("Distance and interval must not be negative");
+        }
+        send = setSend;
+        minDistance = setMinDistance;
+        maxInterval = setMaxInterval;
+    }
+
+    /**
+     * Processes a new location fix, sending it if the user has moved far enough or enough time has passed.
+     * @param location the user's location
+     * @param now the current time in milliseconds, from a monotonic clock
+     * @return whether the fix was sent
+     */
+    public synchronized boolean offer(final LatLng location, final long now) {
+        fixesReceived++;
+        if (lastSent == null || now - lastSentTime >= maxInterval || movedFar(location)) {
+            sendNow(location, now);
+            return true;
+        }
+        pending = location;
+        return false;
+    }
+
+    /**
+     * Sends the newest held-back fix, if there is one.
+     * @param now the current time in milliseconds
+     * @return whether a fix was sent
+     */
+    public synchronized boolean flush(final long now) {
+        if (pending == null) {
+            return false;
+        }
+        flushed++;
+        sendNow(pending, now);
+        return true;
+    }
+
+    /**
+     * Gets how many fixes have been offered.
+     * @return the number of fixes received
+     */
+    public synchronized long getFixesReceived() {
+        return fixesReceived;
+    }
+
+    /**
+     * Gets how many fixes have been sent to the server.
+     * @return the number of fixes sent
+     */
+    public synchronized long getFixesSent() {
+        return fixesSent;
+    }
+
+    /**
+     * Gets how many fixes were sent by flush rather than because of distance or time.
+     * @return the number of flushed fixes
+     */
+    public synchronized long getFlushed() {
+        return flushed;
+    }
+
+    /**
+     * Determines whether a location is far enough from the last one sent.
+     * @param location the new location
+     * @return whether the user has moved more than the minimum distance
+     */
+    private boolean movedFar(final LatLng location) {
+        return !projection.withinRange(lastSent, location, minDistance);
+    }
+
+    /**
+     * Sends a location and records it as the last one sent.
+     * @param location the location
+     * @param now the current time in milliseconds
+     */
+    private void sendNow(final LatLng location, final long now) {
+        if (projection == null) {
+            projection = new LocalProjection(location.latitude, location.longitude);
+        }
+        send.accept(location);
+        fixesSent++;
+        lastSent = location;
+        lastSentTime = now;
+        pending = null;
+    }
+
+}
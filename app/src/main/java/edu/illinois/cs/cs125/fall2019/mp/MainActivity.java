@@ -22,6 +22,9 @@ import com.google.gson.JsonObject;
  */
 public final class MainActivity extends AppCompatActivity {
 
+    /** Server requests made by this activity, cancelled if it's destroyed. */
+    private RequestScope requests;
+
     /**
      * Called by the Android system when the activity is created.
      * @param savedInstanceState saved state from the previously terminated instance of this activity (unused)
@@ -30,6 +33,7 @@ public final class MainActivity extends AppCompatActivity {
     protected void onCreate(final Bundle savedInstanceState) {
         // This "super" call is required for all activities
         super.onCreate(savedInstanceState);
+        requests = new RequestScope(this);
 
 
         // Create the UI from a layout resource
@@ -53,9 +57,9 @@ public final class MainActivity extends AppCompatActivity {
      */
     private void connect() {
         // Make any "loading" UI adjustments you like
-        // Use WebApi.startRequest to fetch the games lists
+        // Use ServerClient.startRequest to fetch the games lists
         // In the response callback, call setUpUi with the received data
-        WebApi.startRequest(this, WebApi.API_BASE + "/games", response -> {
+        ServerClient.startRequest(this, WebApi.API_BASE + "/games", Request.Method.GET, null, response -> {
             // Code in this handler will run when the request completes successfully
             // Do something with the response?
             if (response != null) {
@@ -133,14 +137,12 @@ public final class MainActivity extends AppCompatActivity {
 
                         Button acceptButton = invitationsChunk.findViewById(R.id.acceptButton);
                         acceptButton.setOnClickListener((View v) ->
-                                WebApi.startRequest(this, WebApi.API_BASE + "/games/" + gameId + "/accept",
-                                        Request.Method.POST, null, response -> connect(), error -> {
-                                    }));
+                                requests.post(WebApi.API_BASE + "/games/" + gameId + "/accept", null)
+                                        .thenRun(this::connect));
                         Button declineButton = invitationsChunk.findViewById(R.id.declineButton);
                         declineButton.setOnClickListener((View v) ->
-                                WebApi.startRequest(this, WebApi.API_BASE + "/games/" + gameId + "/decline",
-                                        Request.Method.POST, null, response -> connect(), error -> {
-                                    }));
+                                requests.post(WebApi.API_BASE + "/games/" + gameId + "/decline", null)
+                                        .thenRun(this::connect));
                     }
                     if (currentState == PlayerStateID.ACCEPTED || currentState == PlayerStateID.PLAYING) {
 
@@ -162,9 +164,8 @@ public final class MainActivity extends AppCompatActivity {
 
 
                         leaveButton.setOnClickListener((View v) ->
-                                WebApi.startRequest(this, WebApi.API_BASE + "/games/" + gameId + "/leave",
-                                        Request.Method.POST, null, response -> connect(), error -> {
-                                    }));
+                                requests.post(WebApi.API_BASE + "/games/" + gameId + "/leave", null)
+                                        .thenRun(this::connect));
                         ongoingGroup.setVisibility(View.VISIBLE);
 
                     }
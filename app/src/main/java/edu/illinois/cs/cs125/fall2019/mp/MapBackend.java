@@ -0,0 +1,34 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+/**
+ * Where a SceneReconciler applies map operations: Google Maps, or something that only records them.
+ */
+public interface MapBackend {
+
+    /**
+     * Adds an object to the map.
+     * @param spec what to show
+     * @return a handle to the new object, passed back to update and remove
+     */
+    Object add(MapScene.Spec spec);
+
+    /**
+     * Changes an object to match a new spec of the same kind, touching only what differs.
+     * @param object the object's handle
+     * @param from what the object currently shows
+     * @param to what it should show
+     */
+    void update(Object object, MapScene.Spec from, MapScene.Spec to);
+
+    /**
+     * Removes an object from the map.
+     * @param object the object's handle
+     */
+    void remove(Object object);
+
+    /**
+     * Removes everything from the map at once, including objects the reconciler didn't add.
+     */
+    void clear();
+
+}
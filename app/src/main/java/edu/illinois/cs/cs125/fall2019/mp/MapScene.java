@@ -0,0 +1,550 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * The markers, lines, polygons and circles that should be on the map, keyed by entity ID.
+ * <p>
+ * Game code declares what it wants shown with put and remove instead of calling GoogleMap directly, and the
+ * scene's SceneReconciler works out the fewest map operations that bring the map in line. Declaring the same
+ * thing twice costs nothing, and several changes to one entity between reconciliations become at most one map
+ * operation. The scene remembers which IDs changed, so reconciling only looks at those.
+ * <p>
+ * Changes are reconciled as soon as they're made, unless they're made inside a batch, in which case they're
+ * reconciled together when the outermost batch ends. If the reconciler has a frame scheduler, reconciling waits
+ * for the next frame instead, so it happens at most once per frame. Each GoogleMap has one scene, shared by
+ * everything drawn on it. Must only be used on the UI thread.
+ */
+public final class MapScene {
+
+    /**
+     * Something to show on the map. Specs are immutable and compared by value.
+     */
+    public abstract static class Spec {
+
+        /**
+         * Prevents subclassing outside this file.
+         */
+        private Spec() { }
+
+    }
+
+    /**
+     * A marker.
+     */
+    public static final class MarkerSpec extends Spec {
+
+        /** Where the marker is. */
+        private final LatLng position;
+
+        /** The marker's icon (compared by identity, so share icons), or null for the default. */
+        private final BitmapDescriptor icon;
+
+        /** The marker's title, or null for none. */
+        private final String title;
+
+        /** Whether the marker is shown. */
+        private final boolean visible;
+
+        /**
+         * Creates a marker spec.
+         * @param setPosition where the marker is
+         * @param setIcon the marker's icon, or null for the default
+         * @param setTitle the marker's title, or null for none
+         * @param setVisible whether the marker is shown; hidden markers stay on the map, ready to show again
+         */
+        public MarkerSpec(final LatLng setPosition, final BitmapDescriptor setIcon, final String setTitle,
+                          final boolean setVisible) {
+            position = setPosition;
+            icon = setIcon;
+            title = setTitle;
+            visible = setVisible;
+        }
+
+        /**
+         * Gets where the marker is.
+         * @return the position
+         */
+        public LatLng getPosition() {
+            return position;
+        }
+
+        /**
+         * Gets the marker's icon.
+         * @return the icon, or null for the default
+         */
+        public BitmapDescriptor getIcon() {
+            return icon;
+        }
+
+        /**
+         * Gets the marker's title.
+         * @return the title, or null for none
+         */
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * Gets whether the marker is shown.
+         * @return true if visible, false if hidden
+         */
+        public boolean isVisible() {
+            return visible;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof MarkerSpec)) {
+                return false;
+            }
+            MarkerSpec marker = (MarkerSpec) other;
+            return same(position, marker.position) && icon == marker.icon && Objects.equals(title, marker.title)
+                    && visible == marker.visible;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(position.latitude, position.longitude, title);
+        }
+
+    }
+
+    /**
+     * A line through some points.
+     */
+    public static final class LineSpec extends Spec {
+
+        /** The line's points, in order. */
+        private final List<LatLng> points;
+
+        /** The line's color. */
+        private final int color;
+
+        /**
+         * Creates a line spec.
+         * @param setPoints the line's points, in order
+         * @param setColor the line's color
+         */
+        public LineSpec(final List<LatLng> setPoints, final int setColor) {
+            points = Collections.unmodifiableList(new ArrayList<>(setPoints));
+            color = setColor;
+        }
+
+        /**
+         * Gets the line's points.
+         * @return the points, in order
+         */
+        public List<LatLng> getPoints() {
+            return points;
+        }
+
+        /**
+         * Gets the line's color.
+         * @return the color
+         */
+        public int getColor() {
+            return color;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof LineSpec)) {
+                return false;
+            }
+            LineSpec line = (LineSpec) other;
+            return color == line.color && same(points, line.points);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(points.size(), color);
+        }
+
+    }
+
+    /**
+     * A filled polygon, possibly with holes.
+     */
+    public static final class PolygonSpec extends Spec {
+
+        /** The polygon's outline. */
+        private final List<LatLng> outline;
+
+        /** The polygon's holes. */
+        private final List<List<LatLng>> holes;
+
+        /** The polygon's fill color. */
+        private final int fillColor;
+
+        /**
+         * Creates a polygon spec.
+         * @param setOutline the polygon's outline
+         * @param setHoles the polygon's holes
+         * @param setFillColor the polygon's fill color
+         */
+        public PolygonSpec(final List<LatLng> setOutline, final List<List<LatLng>> setHoles,
+                           final int setFillColor) {
+            outline = Collections.unmodifiableList(new ArrayList<>(setOutline));
+            List<List<LatLng>> copiedHoles = new ArrayList<>();
+            for (List<LatLng> hole : setHoles) {
+                copiedHoles.add(Collections.unmodifiableList(new ArrayList<>(hole)));
+            }
+            holes = Collections.unmodifiableList(copiedHoles);
+            fillColor = setFillColor;
+        }
+
+        /**
+         * Gets the polygon's outline.
+         * @return the outline's vertices
+         */
+        public List<LatLng> getOutline() {
+            return outline;
+        }
+
+        /**
+         * Gets the polygon's holes.
+         * @return each hole's vertices
+         */
+        public List<List<LatLng>> getHoles() {
+            return holes;
+        }
+
+        /**
+         * Gets the polygon's fill color.
+         * @return the color
+         */
+        public int getFillColor() {
+            return fillColor;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof PolygonSpec)) {
+                return false;
+            }
+            PolygonSpec polygon = (PolygonSpec) other;
+            if (fillColor != polygon.fillColor || !same(outline, polygon.outline)
+                    || holes.size() != polygon.holes.size()) {
+                return false;
+            }
+            for (int i = 0; i < holes.size(); i++) {
+                if (!same(holes.get(i), polygon.holes.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(outline.size(), holes.size(), fillColor);
+        }
+
+    }
+
+    /**
+     * A filled circle with an outline.
+     */
+    public static final class CircleSpec extends Spec {
+
+        /** The circle's center. */
+        private final LatLng center;
+
+        /** The circle's radius in meters. */
+        private final double radius;
+
+        /** The circle's fill color. */
+        private final int fillColor;
+
+        /** The circle's outline color. */
+        private final int strokeColor;
+
+        /** The width of the circle's outline in pixels. */
+        private final float strokeWidth;
+
+        /** The circle's z-index. */
+        private final float zIndex;
+
+        /**
+         * Creates a circle spec.
+         * @param setCenter the circle's center
+         * @param setRadius the circle's radius in meters
+         * @param setFillColor the circle's fill color
+         * @param setStrokeColor the circle's outline color
+         * @param setStrokeWidth the width of the circle's outline in pixels
+         * @param setZIndex the circle's z-index
+         */
+        public CircleSpec(final LatLng setCenter, final double setRadius, final int setFillColor,
+                          final int setStrokeColor, final float setStrokeWidth, final float setZIndex) {
+            center = setCenter;
+            radius = setRadius;
+            fillColor = setFillColor;
+            strokeColor = setStrokeColor;
+            strokeWidth = setStrokeWidth;
+            zIndex = setZIndex;
+        }
+
+        /**
+         * Gets the circle's center.
+         * @return the center
+         */
+        public LatLng getCenter() {
+            return center;
+        }
+
+        /**
+         * Gets the circle's radius.
+         * @return the radius in meters
+         */
+        public double getRadius() {
+            return radius;
+        }
+
+        /**
+         * Gets the circle's fill color.
+         * @return the color
+         */
+        public int getFillColor() {
+            return fillColor;
+        }
+
+        /**
+         * Gets the circle's outline color.
+         * @return the color
+         */
+        public int getStrokeColor() {
+            return strokeColor;
+        }
+
+        /**
+         * Gets the width of the circle's outline.
+         * @return the width in pixels
+         */
+        public float getStrokeWidth() {
+            return strokeWidth;
+        }
+
+        /**
+         * Gets the circle's z-index.
+         * @return the z-index
+         */
+        public float getZIndex() {
+            return zIndex;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof CircleSpec)) {
+                return false;
+            }
+            CircleSpec circle = (CircleSpec) other;
+            return same(center, circle.center) && radius == circle.radius && fillColor == circle.fillColor
+                    && strokeColor == circle.strokeColor && strokeWidth == circle.strokeWidth
+                    && zIndex == circle.zIndex;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(center.latitude, center.longitude, radius, fillColor);
+        }
+
+    }
+
+    /** The scene of each map, so everything drawn on a map shares one. */
+    private static Map<GoogleMap, MapScene> scenes = new WeakHashMap<>();
+
+    /** What should be shown for each entity ID. */
+    private final Map<String, Spec> specs = new HashMap<>();
+
+    /** The IDs changed since the last reconciliation, in the order they were first changed. */
+    private Set<String> dirty = new LinkedHashSet<>();
+
+    /** Applies the scene's changes to the map. */
+    private final SceneReconciler reconciler;
+
+    /** How many batches are open. */
+    private int batchDepth;
+
+    /** The number used in the last ID handed out by newId. */
+    private long lastId;
+
+    /**
+     * Creates an empty scene.
+     * @param backend where the scene's reconciler applies map operations
+     */
+    public MapScene(final MapBackend backend) {
+        reconciler = new SceneReconciler(this, backend);
+    }
+
+    /**
+     * Gets the scene of a Google map, creating it the first time.
+     * @param map the map
+     * @return the map's scene
+     */
+    public static MapScene of(final GoogleMap map) {
+        MapScene scene = scenes.get(map);
+        if (scene == null) {
+            scene = new MapScene(new GoogleMapBackend(map));
+            scenes.put(map, scene);
+        }
+        return scene;
+    }
+
+    /**
+     * Makes up an ID no other entity in this scene has, for entities that have no ID of their own.
+     * @param kind what sort of entity it is, e.g. "target"
+     * @return a new ID
+     */
+    public String newId(final String kind) {
+        lastId++;
+        return kind + "#" + lastId;
+    }
+
+    /**
+     * Declares what should be shown for an entity, replacing anything declared for it before.
+     * @param id the entity's ID
+     * @param spec what to show
+     */
+    public void put(final String id, final Spec spec) {
+        if (!spec.equals(specs.put(id, spec))) {
+            markDirty(id);
+        }
+    }
+
+    /**
+     * Declares that nothing should be shown for an entity.
+     * @param id the entity's ID
+     */
+    public void remove(final String id) {
+        if (specs.remove(id) != null) {
+            markDirty(id);
+        }
+    }
+
+    /**
+     * Gets what should be shown for an entity.
+     * @param id the entity's ID
+     * @return the spec, or null if nothing should be shown
+     */
+    public Spec get(final String id) {
+        return specs.get(id);
+    }
+
+    /**
+     * Gets the number of entities that should be shown.
+     * @return the entity count
+     */
+    public int size() {
+        return specs.size();
+    }
+
+    /**
+     * Starts a batch: changes aren't reconciled until every open batch has ended.
+     */
+    public void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * Ends a batch, reconciling its changes if it was the outermost one.
+     */
+    public void endBatch() {
+        batchDepth--;
+        if (batchDepth == 0 && !dirty.isEmpty()) {
+            reconciler.changed();
+        }
+    }
+
+    /**
+     * Runs something as one batch, so all the changes it makes are reconciled together.
+     * @param changes the changes, e.g. applying a game step's snapshot
+     */
+    public void batch(final Runnable changes) {
+        beginBatch();
+        try {
+            changes.run();
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Empties the scene and the map at once, including anything drawn on the map without the scene.
+     */
+    public void clearMap() {
+        specs.clear();
+        dirty.clear();
+        reconciler.forget();
+    }
+
+    /**
+     * Gets the reconciler that applies this scene's changes, e.g. to give it a frame scheduler.
+     * @return the reconciler
+     */
+    public SceneReconciler getReconciler() {
+        return reconciler;
+    }
+
+    /**
+     * Takes the IDs changed since the last call. Used by SceneReconciler.
+     * @return the changed IDs, in the order they were first changed
+     */
+    Set<String> takeDirty() {
+        Set<String> taken = dirty;
+        dirty = new LinkedHashSet<>();
+        return taken;
+    }
+
+    /**
+     * Records that an entity changed, reconciling right away if no batch is open.
+     * @param id the entity's ID
+     */
+    private void markDirty(final String id) {
+        dirty.add(id);
+        if (batchDepth == 0) {
+            reconciler.changed();
+        }
+    }
+
+    /**
+     * Determines whether two positions are the same.
+     * @param one a position
+     * @param other another position
+     * @return whether both coordinates match exactly
+     */
+    private static boolean same(final LatLng one, final LatLng other) {
+        return one.latitude == other.latitude && one.longitude == other.longitude;
+    }
+
+    /**
+     * Determines whether two lists of positions are the same.
+     * @param one a list of positions
+     * @param other another list of positions
+     * @return whether they have the same positions in the same order
+     */
+    private static boolean same(final List<LatLng> one, final List<LatLng> other) {
+        if (one.size() != other.size()) {
+            return false;
+        }
+        for (int i = 0; i < one.size(); i++) {
+            if (!same(one.get(i), other.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
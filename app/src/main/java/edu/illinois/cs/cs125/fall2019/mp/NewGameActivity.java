@@ -18,7 +18,6 @@ import android.widget.TextView;
 import android.widget.Toast;
 //import android.widget.RadioButton;
 
-import com.android.volley.Request;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.SupportMapFragment;
@@ -33,6 +32,7 @@ import com.google.gson.JsonObject;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 /**
  * Represents the game creation screen, where the user configures a new game.
@@ -49,6 +49,8 @@ public final class NewGameActivity extends AppCompatActivity {
     private List<Marker> targets = new ArrayList<>();
     /** Stores the players. */
     private List<Invitee> invitees;
+    /** Server requests made by this activity, cancelled if it's destroyed. */
+    private RequestScope requests;
 
 
     /**
@@ -59,6 +61,7 @@ public final class NewGameActivity extends AppCompatActivity {
     @SuppressWarnings("ConstantConditions")
     protected void onCreate(final Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        requests = new RequestScope(this);
         setContentView(R.layout.activity_new_game); // app/src/main/res/layout/activity_new_game.xml
         setTitle(R.string.create_game); // Change the title in the top bar
         // Now that setContentView has been called, findViewById and findFragmentById work
@@ -341,13 +344,7 @@ public final class NewGameActivity extends AppCompatActivity {
 
             game.add("invitees", inviteesArray);
 
-            WebApi.startRequest(this, WebApi.API_BASE + "/games/create", Request.Method.POST, game, response -> {
-                intent.putExtra("game", response.get("game").getAsString());
-                startActivity(intent);
-                finish();
-            }, error ->  {
-                    Toast.makeText(this, error.getMessage(), Toast.LENGTH_LONG).show();
-                });
+            createGame(game, intent);
 
         } else if (radio.getCheckedRadioButtonId() == R.id.areaModeOption) {
             //EditText cellSize = findViewById(R.id.cellSize);
@@ -374,13 +371,7 @@ public final class NewGameActivity extends AppCompatActivity {
             game.add("invitees", inviteesArray);
 
 
-            WebApi.startRequest(this, WebApi.API_BASE + "/games/create", Request.Method.POST, game, response -> {
-                intent.putExtra("game", response.get("game").getAsString());
-                startActivity(intent);
-                finish();
-            }, error ->  {
-                    Toast.makeText(this, error.getMessage(), Toast.LENGTH_LONG).show();
-                });
+            createGame(game, intent);
 
         }
     }
@@ -391,6 +382,21 @@ public final class NewGameActivity extends AppCompatActivity {
 
         // Complete this function so that it populates the Intent with the user's settings (using putExtra)
         // If the user has set all necessary settings, launch the GameActivity and finish this activity
-}
-
 
+    /**
+     * Asks the server to create a game, then launches it.
+     * @param game the game configuration
+     * @param intent the intent to launch GameActivity with, to which the new game's ID is added
+     */
+    private void createGame(final JsonObject game, final Intent intent) {
+        requests.post(WebApi.API_BASE + "/games/create", game).whenComplete((response, error) -> {
+            if (error == null) {
+                intent.putExtra("game", response.get("game").getAsString());
+                startActivity(intent);
+                finish();
+            } else if (!(error instanceof CancellationException)) {
+                Toast.makeText(this, error.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+}
@@ -0,0 +1,116 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows a player's whole path as one line that grows as the path is extended.
+ * <p>
+ * A long game would otherwise have a two-point Polyline for every segment of every path. The line is declared
+ * in the map's MapScene, so extending the path updates the existing line's points instead of adding a new map
+ * object. The line is a ViewportCuller item, so it only exists while some part of the path is near the view.
+ * Must only be used on the UI thread.
+ */
+public final class PathLine implements ViewportCuller.Item {
+
+    /** The scene the line is declared in. */
+    private final MapScene scene;
+
+    /** The line's ID in the scene. */
+    private final String id;
+
+    /** The line's color. */
+    private final int color;
+
+    /** The path's points, in order. */
+    private final List<LatLng> points = new ArrayList<>();
+
+    /** Southern edge of the path's bounding box. */
+    private double south = Double.POSITIVE_INFINITY;
+
+    /** Western edge of the path's bounding box. */
+    private double west = Double.POSITIVE_INFINITY;
+
+    /** Northern edge of the path's bounding box. */
+    private double north = Double.NEGATIVE_INFINITY;
+
+    /** Eastern edge of the path's bounding box. */
+    private double east = Double.NEGATIVE_INFINITY;
+
+    /** Whether the line is in the scene, i.e. attached. */
+    private boolean attached;
+
+    /**
+     * Creates a path line with no points. It isn't drawn until it's attached.
+     * @param setMap the map to draw on
+     * @param setColor the line's color
+     */
+    public PathLine(final GoogleMap setMap, final int setColor) {
+        scene = MapScene.of(setMap);
+        id = scene.newId("path");
+        color = setColor;
+    }
+
+    /**
+     * Adds a point to the end of the path, updating the line if it's on the map.
+     * @param point the new point
+     */
+    public void extend(final LatLng point) {
+        points.add(point);
+        south = Math.min(south, point.latitude);
+        west = Math.min(west, point.longitude);
+        north = Math.max(north, point.latitude);
+        east = Math.max(east, point.longitude);
+        if (attached) {
+            declare();
+        }
+    }
+
+    /**
+     * Gets the area the path covers.
+     * @return the path's bounding box
+     */
+    public LatLngBounds getBounds() {
+        return new LatLngBounds(new LatLng(south, west), new LatLng(north, east));
+    }
+
+    /**
+     * Gets the number of points in the path.
+     * @return the point count
+     */
+    public int size() {
+        return points.size();
+    }
+
+    /**
+     * Adds the line to the map.
+     */
+    @Override
+    public void attach() {
+        attached = true;
+        declare();
+    }
+
+    /**
+     * Removes the line from the map.
+     */
+    @Override
+    public void detach() {
+        if (attached) {
+            attached = false;
+            scene.remove(id);
+        }
+    }
+
+    /**
+     * Declares the line with all the path's points in the scene.
+     */
+    private void declare() {
+        scene.put(id, new MapScene.LineSpec(points, color));
+    }
+
+}
@@ -0,0 +1,183 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import android.graphics.Color;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shows other players' positions on the map as circles colored by team.
+ * <p>
+ * Each player's circle is declared in the map's MapScene under their email, so location updates move the same
+ * circle in place instead of adding a new circle and removing the old one, and don't touch it at all if the
+ * player hasn't moved. When a player leaves, their circle is removed from the scene, which keeps it in a small
+ * pool to be reused for the next player who appears. In a game with a ViewportCuller, each player is registered
+ * with it as an item, and only players in view have a circle: one who walks out of view gives up their circle
+ * like one who leaves.
+ */
+public final class PlayerMarkers {
+
+    /** Radius of each circle in meters. */
+    private static final double CIRCLE_RADIUS = 4.0;
+
+    /** Z-index of the circles, above targets' lines and cells. */
+    private static final float CIRCLE_Z_INDEX = 2.0f;
+
+    /** Width of each circle's outline in pixels. */
+    private static final float STROKE_WIDTH = 2;
+
+    /** The scene of the map to draw on. */
+    private final MapScene scene;
+
+    /** Fill color for each team, indexed by team ID. */
+    private final int[] teamColors;
+
+    /** The team each player is on, by email. */
+    private final Map<String, Integer> playerTeams = new HashMap<>();
+
+    /** Where each player is, by email. */
+    private final Map<String, LatLng> playerLocations = new HashMap<>();
+
+    /** Each player's item in the culler, by email. */
+    private final Map<String, ViewportCuller.Item> items = new HashMap<>();
+
+    /** Keeps circles only for players in view, or null to show every player. */
+    private ViewportCuller culler;
+
+    /** The emails of the players with a circle. */
+    private final Set<String> circles = new HashSet<>();
+
+    /**
+     * Creates an empty marker layer.
+     * @param setMap the map to draw on
+     * @param setTeamColors fill color for each team, indexed by team ID
+     */
+    public PlayerMarkers(final GoogleMap setMap, final int[] setTeamColors) {
+        scene = MapScene.of(setMap);
+        teamColors = setTeamColors;
+    }
+
+    /**
+     * Starts showing circles only for players in view. Players already shown are registered with the culler.
+     * @param setCuller the culler to register players with
+     */
+    public void setCuller(final ViewportCuller setCuller) {
+        culler = setCuller;
+        for (String email : new ArrayList<>(playerTeams.keySet())) {
+            hide(email);
+            register(email);
+        }
+    }
+
+    /**
+     * Shows a player at a location, moving their circle if they already have one.
+     * @param email the player's email
+     * @param team the player's team ID
+     * @param location the player's location
+     */
+    public void moveTo(final String email, final int team, final LatLng location) {
+        playerTeams.put(email, team);
+        playerLocations.put(email, location);
+        if (culler == null) {
+            show(email);
+            return;
+        }
+        ViewportCuller.Item item = items.get(email);
+        if (item == null) {
+            register(email);
+            return;
+        }
+        culler.move(item, new LatLngBounds(location, location));
+        if (circles.contains(email)) {
+            show(email);
+        }
+    }
+
+    /**
+     * Stops showing a player.
+     * @param email the player's email
+     */
+    public void remove(final String email) {
+        playerTeams.remove(email);
+        playerLocations.remove(email);
+        ViewportCuller.Item item = items.remove(email);
+        if (item != null) {
+            culler.remove(item);
+        } else {
+            hide(email);
+        }
+    }
+
+    /**
+     * Registers a player with the culler, which shows them if they're in view.
+     * @param email the player's email
+     */
+    private void register(final String email) {
+        ViewportCuller.Item item = new ViewportCuller.Item() {
+            @Override
+            public void attach() {
+                show(email);
+            }
+
+            @Override
+            public void detach() {
+                hide(email);
+            }
+        };
+        items.put(email, item);
+        culler.add(item, playerLocations.get(email));
+    }
+
+    /**
+     * Gives a player a circle at their location, or moves and recolors the one they have.
+     * @param email the player's email
+     */
+    @SuppressWarnings("ConstantConditions")
+    private void show(final String email) {
+        circles.add(email);
+        scene.put("player:" + email, new MapScene.CircleSpec(playerLocations.get(email), CIRCLE_RADIUS,
+                teamColors[playerTeams.get(email)], Color.BLACK, STROKE_WIDTH, CIRCLE_Z_INDEX));
+    }
+
+    /**
+     * Takes a player's circle away.
+     * @param email the player's email
+     */
+    private void hide(final String email) {
+        if (circles.remove(email)) {
+            scene.remove("player:" + email);
+        }
+    }
+
+    /**
+     * Gets the players currently shown, including any the culler is keeping out of view.
+     * @return a copy of the set of emails of players on the map
+     */
+    public Set<String> getShownPlayers() {
+        return new HashSet<>(playerTeams.keySet());
+    }
+
+    /**
+     * Gets the number of players currently shown, including any the culler is keeping out of view.
+     * @return how many players are on the map
+     */
+    public int size() {
+        return playerTeams.size();
+    }
+
+    /**
+     * Gets the number of players with a visible circle.
+     * @return how many circles are shown
+     */
+    public int getCircleCount() {
+        return circles.size();
+    }
+
+}
@@ -0,0 +1,181 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonElement;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Random;
+
+/**
+ * Keeps track of a game session across dropped websocket connections.
+ * <p>
+ * Reconnection attempts are spaced out with exponential backoff: each delay is drawn at random from the upper
+ * half of a window that doubles with every failed attempt, up to a cap, so many clients dropped at once don't
+ * all come back at the same moment. The window resets once the server answers.
+ * <p>
+ * If the server's full update included a "resumeToken", reconnecting asks to resume the session from the last
+ * event sequence number seen. The server then answers with a "resumed" message followed by just the events
+ * that were missed, or with a new full update if it can't fill the gap. Events the client has already seen are
+ * recognized by their sequence numbers and skipped.
+ * <p>
+ * Events should be passed to accept as they arrive, in order, before any queueing; the methods may be called
+ * from any thread.
+ */
+public final class ReconnectManager {
+
+    /** Smallest backoff window, in milliseconds. */
+    public static final long DEFAULT_BASE_DELAY = 500;
+
+    /** Largest backoff window, in milliseconds. */
+    public static final long DEFAULT_MAX_DELAY = 30000;
+
+    /** Random source for the jitter. */
+    private final Random random;
+
+    /** Smallest backoff window in milliseconds. */
+    private final long baseDelay;
+
+    /** Largest backoff window in milliseconds. */
+    private final long maxDelay;
+
+    /** The current session's resume token, or null if the session can't be resumed. */
+    private String resumeToken;
+
+    /** The sequence number of the newest event received, or GameEvent.NO_SEQUENCE. */
+    private long lastSequence = GameEvent.NO_SEQUENCE;
+
+    /** How many attempts have been made since the server last answered. */
+    private int attempts;
+
+    /** How many times the session was resumed. */
+    private int resumes;
+
+    /** How many times the server sent a full update instead. */
+    private int fullUpdates;
+
+    /** How many already-seen events were skipped. */
+    private long duplicates;
+
+    /**
+     * Creates a manager with the default backoff.
+     */
+    public ReconnectManager() {
+        this(new Random(), DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * Creates a manager.
+     * @param setRandom random source for the jitter
+     * @param setBaseDelay the first backoff window in milliseconds
+     * @param setMaxDelay the largest backoff window in milliseconds
+     */
+    public ReconnectManager(final Random setRandom, final long setBaseDelay, final long setMaxDelay) {
+        if (setBaseDelay <= 0 || setMaxDelay < setBaseDelay) {
+            throw new IllegalArgumentException("Invalid backoff window");
+        }
+        random = setRandom;
+        baseDelay = setBaseDelay;
+        maxDelay = setMaxDelay;
+    }
+
+    /**
+     * Gets how long to wait before the next connection attempt, and counts the attempt.
+     * @return the delay in milliseconds
+     */
+    public synchronized long nextDelay() {
+        long window = Math.min(maxDelay, baseDelay);
+        for (int i = 0; i < attempts && window < maxDelay; i++) {
+            window = Math.min(maxDelay, window * 2);
+        }
+        attempts++;
+        long half = window / 2;
+        return half + (long) (random.nextDouble() * (window - half));
+    }
+
+    /**
+     * Gets the URL to connect to, asking to resume the session if possible.
+     * @param url the game's websocket URL
+     * @return the URL with resume parameters, or the URL unchanged if there's no session to resume
+     */
+    public synchronized String getConnectUrl(final String url) {
+        if (resumeToken == null || lastSequence == GameEvent.NO_SEQUENCE) {
+            return url;
+        }
+        try {
+            return url + "?resume=" + URLEncoder.encode(resumeToken, "UTF-8") + "&seq=" + lastSequence;
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Processes an event from the server, deciding whether it still needs to be handled.
+     * <p>
+     * A full update starts a new session; a "resumed" message confirms the old one continues. Either one means
+     * the connection works, so the backoff resets.
+     * @param event the event
+     * @return false if the event was already handled before the connection dropped
+     */
+    public synchronized boolean accept(final GameEvent event) {
+        if (event instanceof GameEvent.Full) {
+            JsonElement token = ((GameEvent.Full) event).getJson().get("resumeToken");
+            if (token != null && token.isJsonPrimitive()) {
+                resumeToken = token.getAsString();
+            } else {
+                resumeToken = null;
+            }
+            lastSequence = event.getSequence();
+            if (attempts > 0) {
+                fullUpdates++;
+            }
+            attempts = 0;
+            return true;
+        } else if (event.getType().equals("resumed")) {
+            resumes++;
+            attempts = 0;
+            return true;
+        }
+        long sequence = event.getSequence();
+        if (sequence == GameEvent.NO_SEQUENCE) {
+            return true;
+        } else if (sequence <= lastSequence) {
+            duplicates++;
+            return false;
+        }
+        lastSequence = sequence;
+        return true;
+    }
+
+    /**
+     * Gets whether a reconnection is in progress.
+     * @return whether there have been attempts the server hasn't answered yet
+     */
+    public synchronized boolean isReconnecting() {
+        return attempts > 0;
+    }
+
+    /**
+     * Gets how many times the session was resumed without a full update.
+     * @return the number of resumes
+     */
+    public synchronized int getResumes() {
+        return resumes;
+    }
+
+    /**
+     * Gets how many reconnections needed a full update.
+     * @return the number of full updates after a reconnection
+     */
+    public synchronized int getFullUpdates() {
+        return fullUpdates;
+    }
+
+    /**
+     * Gets how many replayed events were skipped because they had already been handled.
+     * @return the number of duplicate events
+     */
+    public synchronized long getDuplicates() {
+        return duplicates;
+    }
+
+}
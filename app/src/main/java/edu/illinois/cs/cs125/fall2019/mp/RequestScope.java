@@ -0,0 +1,149 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.OnLifecycleEvent;
+
+import com.android.volley.Request;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes server requests on behalf of an activity, as futures that are cancelled when the activity is destroyed.
+ * <p>
+ * The futures are completed on the main thread by ServerClient.startRequest's callbacks, so they can be composed
+ * with thenApply, thenCombine, all, etc. A future fails with a TimeoutException if the server takes too long.
+ * When the activity is destroyed, pending futures are cancelled - dependent stages don't run - and the
+ * activity's requests are cancelled in ServerClient, so responses nobody will use aren't downloaded or parsed.
+ * <p>
+ * A GET with a cached response completes right away with the cached copy; the cache is still revalidated.
+ * Callers that need to see the revalidated data should use ServerClient.startRequest's callbacks instead.
+ */
+public final class RequestScope implements LifecycleObserver {
+
+    /** Default time to wait for a response, in milliseconds. */
+    public static final long DEFAULT_TIMEOUT = 15000;
+
+    /** The activity the requests belong to. */
+    private final AppCompatActivity activity;
+
+    /** Handler for timeouts. */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /** Futures that haven't completed yet. */
+    private final Set<CompletableFuture<JsonObject>> pending = new HashSet<>();
+
+    /** Whether the activity has been destroyed. */
+    private boolean closed;
+
+    /** How many futures were cancelled because the activity was destroyed. */
+    private long discarded;
+
+    /**
+     * Creates a scope that closes itself when the activity is destroyed.
+     * @param setActivity the activity making requests
+     */
+    public RequestScope(final AppCompatActivity setActivity) {
+        activity = setActivity;
+        activity.getLifecycle().addObserver(this);
+    }
+
+    /**
+     * Starts a GET request.
+     * @param url the URL to contact
+     * @return a future for the response JSON (null if the response was empty)
+     */
+    public CompletableFuture<JsonObject> get(final String url) {
+        return fetch(url, Request.Method.GET, null, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Starts a POST request.
+     * @param url the URL to contact
+     * @param body the JSON to send, or null
+     * @return a future for the response JSON (null if the response was empty)
+     */
+    public CompletableFuture<JsonObject> post(final String url, final JsonElement body) {
+        return fetch(url, Request.Method.POST, body, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Starts a request.
+     * @param url the URL to contact
+     * @param method the HTTP method
+     * @param body the JSON to send, or null
+     * @param timeout how long to wait for a response, in milliseconds
+     * @return a future for the response JSON (null if the response was empty)
+     */
+    public CompletableFuture<JsonObject> fetch(final String url, final int method, final JsonElement body,
+                                               final long timeout) {
+        CompletableFuture<JsonObject> future = new CompletableFuture<>();
+        if (closed) {
+            future.cancel(false);
+            return future;
+        }
+        pending.add(future);
+        Runnable timedOut = () -> future.completeExceptionally(new TimeoutException("No response from " + url));
+        handler.postDelayed(timedOut, timeout);
+        future.whenComplete((response, error) -> {
+            handler.removeCallbacks(timedOut);
+            pending.remove(future);
+        });
+        ServerClient.startRequest(activity, url, method, body, future::complete, future::completeExceptionally);
+        return future;
+    }
+
+    /**
+     * Combines futures into one that completes when all of them have, e.g. to make requests in parallel.
+     * @param futures the futures
+     * @param <T> the type of result
+     * @return a future for the results in the same order, which fails if any of the futures fails
+     */
+    public static <T> CompletableFuture<List<T>> all(final List<CompletableFuture<T>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(unused -> {
+            List<T> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Cancels everything pending. Called automatically when the activity is destroyed.
+     */
+    @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (CompletableFuture<JsonObject> future : new ArrayList<>(pending)) {
+            if (future.cancel(false)) {
+                discarded++;
+            }
+        }
+        ServerClient.cancelAll(activity);
+        activity.getLifecycle().removeObserver(this);
+    }
+
+    /**
+     * Gets how many futures were cancelled because the activity was destroyed first.
+     * @return the number of discarded requests
+     */
+    public long getDiscarded() {
+        return discarded;
+    }
+
+}
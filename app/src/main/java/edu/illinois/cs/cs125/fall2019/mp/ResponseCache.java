@@ -0,0 +1,343 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores server responses in memory and on disk so screens can be shown before the server answers.
+ * <p>
+ * Entries are keyed by user and URL, since the server answers the same URL differently for each user. Each
+ * entry keeps the response's ETag so the request can be revalidated with If-None-Match: if the server answers
+ * 304 Not Modified, the cached copy - already parsed - is still current. The most recently used entries are
+ * kept in memory; all of them are also written to disk so they survive the app being closed.
+ * <p>
+ * The methods may be called from any thread. Only getInMemory is meant for the UI thread; the others may touch
+ * the disk.
+ */
+public final class ResponseCache {
+
+    /** Default number of entries to keep in memory. */
+    public static final int DEFAULT_MEMORY_ENTRIES = 16;
+
+    /** Version tag at the start of each file, so the format can change. */
+    private static final int FILE_VERSION = 1;
+
+    /** Directory holding one file per entry. */
+    private final File directory;
+
+    /** Held while storing entries, so files are written in the same order as memory is updated. */
+    private final Object writeLock = new Object();
+
+    /** Most recently used entries, in access order. Guarded by this cache's lock. */
+    private final Map<String, Entry> memory;
+
+    /** The entry being written to disk, so eviction can't lose it before the file exists. Guarded like memory. */
+    private final Map<String, Entry> unwritten = new HashMap<>();
+
+    /** How many lookups found an entry. */
+    private long hits;
+
+    /** How many lookups found nothing. */
+    private long misses;
+
+    /** How many revalidations were answered with 304 Not Modified. */
+    private long notModified;
+
+    /**
+     * A cached response.
+     */
+    public static final class Entry {
+
+        /** The response's ETag, or null if it had none. */
+        private final String etag;
+
+        /** The response body. */
+        private final String body;
+
+        /** The parsed body, or null if it hasn't been parsed yet or is empty. */
+        private JsonObject parsed;
+
+        /**
+         * Creates an entry.
+         * @param setEtag the ETag header, or null
+         * @param setBody the response body
+         * @param setParsed the parsed body, or null to parse it when first needed
+         */
+        Entry(final String setEtag, final String setBody, final JsonObject setParsed) {
+            etag = setEtag;
+            body = setBody;
+            parsed = setParsed;
+        }
+
+        /**
+         * Gets the response's ETag, for revalidating with If-None-Match.
+         * @return the ETag, or null if the server didn't send one
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * Gets the response body.
+         * @return the body text
+         */
+        public String getBody() {
+            return body;
+        }
+
+        /**
+         * Gets the parsed response, parsing it the first time.
+         * <p>
+         * The same object is returned every time, so it must not be modified.
+         * @return the response JSON, or null if the body was empty
+         */
+        public synchronized JsonObject getJson() {
+            if (parsed == null && !body.isEmpty()) {
+                parsed = new JsonParser().parse(body).getAsJsonObject();
+            }
+            return parsed;
+        }
+
+    }
+
+    /**
+     * Creates a cache.
+     * @param setDirectory the directory to store entries in; created if it doesn't exist
+     * @param memoryEntries how many entries to keep in memory
+     */
+    public ResponseCache(final File setDirectory, final int memoryEntries) {
+        if (memoryEntries < 1) {
+            throw new IllegalArgumentException("The cache must hold at least one entry in memory");
+        }
+        directory = setDirectory;
+        memory = new LinkedHashMap<String, Entry>(memoryEntries, 1.0f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+    }
+
+    /**
+     * Looks up a response in memory only, without touching the disk, counting a hit if there is one.
+     * <p>
+     * Nothing is counted if the response isn't in memory, since the caller is expected to go on to call get
+     * off the UI thread.
+     * @param user the user's ID
+     * @param url the URL requested
+     * @return the cached response, or null if it isn't in memory
+     */
+    public synchronized Entry getInMemory(final String user, final String url) {
+        Entry entry = inMemory(key(user, url));
+        if (entry != null) {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Looks up a response, counting a hit or miss.
+     * <p>
+     * Entries not in memory are read from disk, so this should not be called on the UI thread. The disk is read
+     * without holding the cache's lock.
+     * @param user the user's ID
+     * @param url the URL requested
+     * @return the cached response, or null if there is none
+     */
+    public Entry get(final String user, final String url) {
+        String key = key(user, url);
+        synchronized (this) {
+            Entry entry = inMemory(key);
+            if (entry != null) {
+                hits++;
+                return entry;
+            }
+        }
+        Entry fromDisk = read(key);
+        synchronized (this) {
+            // A newer response may have been stored while the disk was read
+            Entry entry = inMemory(key);
+            if (entry == null && fromDisk != null) {
+                memory.put(key, fromDisk);
+                entry = fromDisk;
+            }
+            if (entry == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Stores a response, replacing any older one for the same user and URL.
+     * <p>
+     * The file is written without holding the lock lookups use, so lookups never wait for the disk.
+     * @param user the user's ID
+     * @param url the URL requested
+     * @param etag the response's ETag header, or null
+     * @param body the response body
+     * @param parsed the parsed body, or null if it hasn't been parsed
+     */
+    public void put(final String user, final String url, final String etag, final String body,
+                    final JsonObject parsed) {
+        String key = key(user, url);
+        Entry entry = new Entry(etag, body, parsed);
+        synchronized (writeLock) {
+            synchronized (this) {
+                memory.put(key, entry);
+                unwritten.put(key, entry);
+            }
+            write(key, etag, body);
+            synchronized (this) {
+                unwritten.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Records that a revalidation found the cached response still current.
+     */
+    public synchronized void recordNotModified() {
+        notModified++;
+    }
+
+    /**
+     * Gets how many lookups found a cached response.
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets how many lookups found nothing cached.
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets how many revalidations were answered with 304 Not Modified, saving a download and a parse.
+     * @return the number of unmodified responses
+     */
+    public synchronized long getNotModified() {
+        return notModified;
+    }
+
+    /**
+     * Gets the fraction of lookups that found a cached response.
+     * @return the hit rate between 0 and 1, or 0 if nothing has been looked up
+     */
+    public synchronized double getHitRate() {
+        if (hits + misses == 0) {
+            return 0;
+        }
+        return (double) hits / (hits + misses);
+    }
+
+    /**
+     * Finds an entry without touching the disk. Must be called with this cache's lock held.
+     * @param key the entry's key
+     * @return the entry in memory or being written, or null if there is none
+     */
+    private Entry inMemory(final String key) {
+        Entry entry = memory.get(key);
+        if (entry == null) {
+            entry = unwritten.get(key);
+        }
+        return entry;
+    }
+
+    /**
+     * Computes the file name for an entry.
+     * @param user the user's ID
+     * @param url the URL
+     * @return a hex digest of the user and URL
+     */
+    private static String key(final String user, final String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(user.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads an entry from disk.
+     * @param key the entry's key
+     * @return the entry, or null if there is no usable file for it
+     */
+    private Entry read(final String key) {
+        File file = new File(directory, key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != FILE_VERSION) {
+                return null;
+            }
+            String etag = null;
+            if (in.readBoolean()) {
+                etag = in.readUTF();
+            }
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Entry(etag, new String(body, StandardCharsets.UTF_8), null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry to disk. Failures only mean the entry won't survive a restart, so they are ignored.
+     * @param key the entry's key
+     * @param etag the ETag, or null
+     * @param body the response body
+     */
+    private void write(final String key, final String etag, final String body) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+        File temporary = new File(directory, key + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temporary))) {
+            out.writeInt(FILE_VERSION);
+            out.writeBoolean(etag != null);
+            if (etag != null) {
+                out.writeUTF(etag);
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            return;
+        }
+        if (!temporary.renameTo(new File(directory, key))) {
+            temporary.delete();
+        }
+    }
+
+}
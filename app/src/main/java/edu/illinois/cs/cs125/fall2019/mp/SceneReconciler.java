@@ -0,0 +1,147 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Brings a MapBackend in line with a MapScene using the fewest operations.
+ * <p>
+ * Only the entities changed since the last reconciliation are looked at. An entity that appeared is added, one
+ * that disappeared is removed, and one whose spec changed is updated in place; a change in kind (e.g. from a
+ * marker to a circle) is a remove and an add. Without a frame scheduler, changes are reconciled as soon as the
+ * scene has them. Given one, the reconciler asks it to run once after the first change, so any number of
+ * changes made before the next frame are applied together. Must only be used on the UI thread.
+ */
+public final class SceneReconciler {
+
+    /** The desired state. */
+    private final MapScene scene;
+
+    /** Where operations are applied. */
+    private final MapBackend backend;
+
+    /** What each entity currently shows, by ID. */
+    private final Map<String, MapScene.Spec> applied = new HashMap<>();
+
+    /** The backend's handle for each entity's object, by ID. */
+    private final Map<String, Object> objects = new HashMap<>();
+
+    /** Runs a task at the next frame, or null to reconcile right away. */
+    private Consumer<Runnable> frameScheduler;
+
+    /** Whether a reconciliation is waiting for the next frame. */
+    private boolean scheduled;
+
+    /** How many reconciliations have run. */
+    private long frames;
+
+    /** How many objects have been added. */
+    private long adds;
+
+    /** How many objects have been updated. */
+    private long updates;
+
+    /** How many objects have been removed. */
+    private long removes;
+
+    /**
+     * Creates a reconciler. Only MapScene creates these, so each scene has exactly one.
+     * @param setScene the desired state
+     * @param setBackend where operations are applied
+     */
+    SceneReconciler(final MapScene setScene, final MapBackend setBackend) {
+        scene = setScene;
+        backend = setBackend;
+    }
+
+    /**
+     * Sets what schedules reconciliations.
+     * @param setFrameScheduler runs a task at the next frame, e.g. through Choreographer, or null to reconcile
+     *                          as soon as the scene changes
+     */
+    public void setFrameScheduler(final Consumer<Runnable> setFrameScheduler) {
+        frameScheduler = setFrameScheduler;
+    }
+
+    /**
+     * Called by the scene when it has changes to apply: reconciles now or at the next frame.
+     */
+    void changed() {
+        if (frameScheduler == null) {
+            reconcile();
+        } else if (!scheduled) {
+            scheduled = true;
+            frameScheduler.accept(() -> {
+                scheduled = false;
+                reconcile();
+            });
+        }
+    }
+
+    /**
+     * Applies the changes made to the scene since the last reconciliation.
+     */
+    public void reconcile() {
+        frames++;
+        for (String id : scene.takeDirty()) {
+            MapScene.Spec want = scene.get(id);
+            MapScene.Spec have = applied.get(id);
+            if (want == null) {
+                if (have != null) {
+                    backend.remove(objects.remove(id));
+                    applied.remove(id);
+                    removes++;
+                }
+            } else if (have == null) {
+                objects.put(id, backend.add(want));
+                applied.put(id, want);
+                adds++;
+            } else if (have.getClass() != want.getClass()) {
+                backend.remove(objects.get(id));
+                objects.put(id, backend.add(want));
+                applied.put(id, want);
+                removes++;
+                adds++;
+            } else if (!have.equals(want)) {
+                backend.update(objects.get(id), have, want);
+                applied.put(id, want);
+                updates++;
+            }
+        }
+    }
+
+    /**
+     * Clears the map and forgets every object on it. Used by MapScene.clearMap.
+     */
+    void forget() {
+        applied.clear();
+        objects.clear();
+        backend.clear();
+    }
+
+    /**
+     * Gets the number of objects on the map.
+     * @return the object count
+     */
+    public int size() {
+        return objects.size();
+    }
+
+    /**
+     * Gets how many reconciliations have run.
+     * @return the number of frames applied
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Gets how many map operations reconciling has caused.
+     * @return the number of objects added, updated, and removed
+     */
+    public long getOperations() {
+        return adds + updates + removes;
+    }
+
+}
@@ -0,0 +1,67 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+/**
+ * Keeps a running count of how many objectives (targets or cells) each team owns.
+ * <p>
+ * Games report every ownership change here as it happens - when loading the initial state, when the user
+ * captures something, and when the server reports another player's capture - so score queries never need to
+ * look at the objectives themselves. Unclaimed objectives are counted under TeamID.OBSERVER.
+ */
+public final class Scoreboard {
+
+    /** Number of objectives owned by each team, indexed by team ID. */
+    private final int[] scores = new int[TeamID.MAX_TEAM + 1];
+
+    /**
+     * Records objectives that are owned by a team from the start (e.g. loaded from the "full" update).
+     * @param team the owning team ID (OBSERVER for unclaimed objectives)
+     * @param count how many objectives
+     */
+    public void add(final int team, final int count) {
+        checkTeam(team);
+        scores[team] += count;
+    }
+
+    /**
+     * Records an objective changing hands.
+     * @param oldTeam the team that owned the objective before (OBSERVER if it was unclaimed)
+     * @param newTeam the team that owns it now
+     */
+    public void change(final int oldTeam, final int newTeam) {
+        checkTeam(oldTeam);
+        checkTeam(newTeam);
+        scores[oldTeam]--;
+        scores[newTeam]++;
+    }
+
+    /**
+     * Gets a team's score.
+     * @param team the team ID
+     * @return how many objectives the team owns, or 0 for an unknown team
+     */
+    public int getScore(final int team) {
+        if (team < 0 || team >= scores.length) {
+            return 0;
+        }
+        return scores[team];
+    }
+
+    /**
+     * Gets every team's score at once.
+     * @return an array indexed by team ID, which the caller may modify
+     */
+    public int[] getScores() {
+        return scores.clone();
+    }
+
+    /**
+     * Makes sure a team ID can be recorded.
+     * @param team the team ID
+     */
+    private void checkTeam(final int team) {
+        if (team < 0 || team >= scores.length) {
+            throw new IllegalArgumentException("Unknown team " + team);
+        }
+    }
+
+}
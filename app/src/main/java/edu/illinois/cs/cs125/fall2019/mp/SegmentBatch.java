@@ -0,0 +1,181 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+/**
+ * Holds allocation-free line crossing checks for segments stored as raw coordinates.
+ * <p>
+ * These take doubles instead of LatLng objects so hot loops over many segments don't allocate. linesCross here is
+ * the only copy of the crossing rule; LineCrossDetector.linesCross passes its LatLngs' coordinates to it. Batch
+ * methods work on a packed array holding SEGMENT_STRIDE entries per segment: start latitude, start longitude, end
+ * latitude, end longitude.
+ */
+public final class SegmentBatch {
+
+    /** How many entries each segment takes up in the packed arrays used by the batch methods. */
+    public static final int SEGMENT_STRIDE = 4;
+
+    /** Offset of a segment's end latitude within its entries in a packed array. */
+    private static final int SEGMENT_END_LAT = 2;
+
+    /** Offset of a segment's end longitude within its entries in a packed array. */
+    private static final int SEGMENT_END_LNG = 3;
+
+    /** Private constructor to prevent creating instances. */
+    private SegmentBatch() { }
+
+    /**
+     * Determines whether two lines cross.
+     * <p>
+     * This is the check behind LineCrossDetector.linesCross, taking raw coordinates so it never allocates.
+     * @param firstStartLat the latitude of an endpoint of one line
+     * @param firstStartLng the longitude of that endpoint
+     * @param firstEndLat the latitude of the other endpoint of that line
+     * @param firstEndLng the longitude of that other endpoint
+     * @param secondStartLat the latitude of an endpoint of another line
+     * @param secondStartLng the longitude of that endpoint
+     * @param secondEndLat the latitude of the other endpoint of that other line
+     * @param secondEndLng the longitude of that other endpoint
+     * @return whether the two lines cross
+     */
+    static boolean linesCross(final double firstStartLat, final double firstStartLng,
+                              final double firstEndLat, final double firstEndLng,
+                              final double secondStartLat, final double secondStartLng,
+                              final double secondEndLat, final double secondEndLng) {
+        if (LatLngUtils.same(firstStartLat, firstStartLng, secondStartLat, secondStartLng)
+                || LatLngUtils.same(firstStartLat, firstStartLng, secondEndLat, secondEndLng)
+                || LatLngUtils.same(firstEndLat, firstEndLng, secondStartLat, secondStartLng)
+                || LatLngUtils.same(firstEndLat, firstEndLng, secondEndLat, secondEndLng)) {
+            // The lines are just sharing endpoints, not crossing each other
+            return false;
+        }
+
+        // A line is vertical (purely north-south) if its longitude is constant
+        boolean firstVertical = LatLngUtils.same(firstStartLng, firstEndLng);
+        boolean secondVertical = LatLngUtils.same(secondStartLng, secondEndLng);
+        if (firstVertical && secondVertical) {
+            // They're parallel vertical lines
+            return false;
+        } else if (firstVertical) {
+            return lineCrossesVertical(firstStartLat, firstStartLng, firstEndLat,
+                    secondStartLat, secondStartLng, secondEndLat, secondEndLng);
+        } else if (secondVertical) {
+            return lineCrossesVertical(secondStartLat, secondStartLng, secondEndLat,
+                    firstStartLat, firstStartLng, firstEndLat, firstEndLng);
+        }
+
+        // At this point, neither line is vertical
+        double firstSlope = (firstEndLat - firstStartLat) / (firstEndLng - firstStartLng);
+        double secondSlope = (secondEndLat - secondStartLat) / (secondEndLng - secondStartLng);
+        if (LatLngUtils.same(firstSlope, secondSlope)) {
+            // They're parallel
+            return false;
+        }
+
+        // At this point, the lines are non-parallel (would intersect if infinitely extended)
+        double firstIntercept = firstStartLat - firstSlope * firstStartLng;
+        double secondIntercept = secondStartLat - secondSlope * secondStartLng;
+        double intersectionX = -(firstIntercept - secondIntercept) / (firstSlope - secondSlope);
+        if (LatLngUtils.same(intersectionX, firstStartLng)
+                || LatLngUtils.same(intersectionX, firstEndLng)
+                || LatLngUtils.same(intersectionX, secondStartLng)
+                || LatLngUtils.same(intersectionX, secondEndLng)) {
+            // Endpoint of one line is in the middle of the other line
+            return true;
+        }
+        boolean onFirst = intersectionX > Math.min(firstStartLng, firstEndLng)
+                && intersectionX < Math.max(firstStartLng, firstEndLng);
+        boolean onSecond = intersectionX > Math.min(secondStartLng, secondEndLng)
+                && intersectionX < Math.max(secondStartLng, secondEndLng);
+        return onFirst && onSecond;
+    }
+
+    /**
+     * Finds the first segment in a packed array that a candidate line crosses.
+     * <p>
+     * Segment i occupies entries i * SEGMENT_STRIDE through i * SEGMENT_STRIDE + 3 of the array, in the order
+     * start latitude, start longitude, end latitude, end longitude. Only the first count segments are examined,
+     * so the array may have spare capacity at the end.
+     * @param segments the packed segment coordinates
+     * @param count how many segments to examine
+     * @param startLat the latitude of an endpoint of the candidate line
+     * @param startLng the longitude of that endpoint
+     * @param endLat the latitude of the other endpoint of the candidate line
+     * @param endLng the longitude of that other endpoint
+     * @return the index of the first segment the candidate crosses, or -1 if it crosses none
+     */
+    public static int firstCrossing(final double[] segments, final int count, final double startLat,
+                                    final double startLng, final double endLat, final double endLng) {
+        for (int i = 0; i < count; i++) {
+            int base = i * SEGMENT_STRIDE;
+            if (linesCross(segments[base], segments[base + 1], segments[base + SEGMENT_END_LAT],
+                    segments[base + SEGMENT_END_LNG], startLat, startLng, endLat, endLng)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds every segment in a packed array that a candidate line crosses.
+     * <p>
+     * The segments are laid out as for firstCrossing. Bit (i % 64) of hits[i / 64] is set if the candidate
+     * crosses segment i and cleared otherwise; the hits array must have room for count bits.
+     * @param segments the packed segment coordinates
+     * @param count how many segments to examine
+     * @param startLat the latitude of an endpoint of the candidate line
+     * @param startLng the longitude of that endpoint
+     * @param endLat the latitude of the other endpoint of the candidate line
+     * @param endLng the longitude of that other endpoint
+     * @param hits the bitmap to fill in
+     * @return how many segments the candidate crosses
+     */
+    public static int findCrossings(final double[] segments, final int count, final double startLat,
+                                    final double startLng, final double endLat, final double endLng,
+                                    final long[] hits) {
+        int total = 0;
+        for (int word = 0; word * Long.SIZE < count; word++) {
+            long bits = 0;
+            int end = Math.min(count, (word + 1) * Long.SIZE);
+            for (int i = word * Long.SIZE; i < end; i++) {
+                int base = i * SEGMENT_STRIDE;
+                if (linesCross(segments[base], segments[base + 1], segments[base + SEGMENT_END_LAT],
+                        segments[base + SEGMENT_END_LNG], startLat, startLng, endLat, endLng)) {
+                    bits |= 1L << (i - word * Long.SIZE);
+                    total++;
+                }
+            }
+            hits[word] = bits;
+        }
+        return total;
+    }
+
+    /**
+     * Determines if a non-vertical line crosses a vertical line.
+     * @param verticalStartLat the latitude of one endpoint of the vertical line
+     * @param verticalLng the longitude of the vertical line
+     * @param verticalEndLat the latitude of the other endpoint of the vertical line
+     * @param lineStartLat the latitude of one endpoint of the non-vertical line
+     * @param lineStartLng the longitude of that endpoint
+     * @param lineEndLat the latitude of the other endpoint of the non-vertical line
+     * @param lineEndLng the longitude of that other endpoint
+     * @return whether the lines cross
+     */
+    private static boolean lineCrossesVertical(final double verticalStartLat, final double verticalLng,
+                                               final double verticalEndLat,
+                                               final double lineStartLat, final double lineStartLng,
+                                               final double lineEndLat, final double lineEndLng) {
+        if (Math.max(lineStartLng, lineEndLng) < verticalLng || Math.min(lineStartLng, lineEndLng) > verticalLng) {
+            // The non-vertical line is completely off to the side of the vertical line
+            return false;
+        }
+        double slope = (lineEndLat - lineStartLat) / (lineEndLng - lineStartLng);
+        double yAtVert = slope * (verticalLng - lineStartLng) + lineStartLat;
+        if (LatLngUtils.same(yAtVert, verticalStartLat) || LatLngUtils.same(yAtVert, verticalEndLat)) {
+            // Ends on the middle of the non-vertical line
+            return true;
+        }
+        // See if the intersection of the lines is between the endpoints of the vertical line segment
+        return yAtVert > Math.min(verticalStartLat, verticalEndLat)
+                && yAtVert < Math.max(verticalStartLat, verticalEndLat);
+    }
+
+}
@@ -0,0 +1,283 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buckets line segments into a uniform grid so crossing checks only examine segments nearby.
+ * <p>
+ * Each segment is registered in every grid cell it passes through. Two segments that meet within their extents
+ * can only do so at a point in a cell both pass through, so only segments sharing a cell with the candidate, and
+ * whose bounding boxes overlap the candidate's, are checked with LineCrossDetector.linesCross. linesCross also
+ * reports a crossing when the lines' intersection is within tolerance of an endpoint's longitude even if it's far
+ * out on the extension of one line; such a segment can be anywhere in the game, and the index doesn't report it.
+ * Otherwise the result matches running linesCross against every segment. Like LineCrossDetector, this treats
+ * longitude and latitude as X and Y on a flat plane.
+ */
+public final class SegmentIndex {
+
+    /** How many bits to shift a cell's X coordinate when packing it into a key. */
+    private static final int KEY_SHIFT = 32;
+
+    /** Mask for the low (Y coordinate) half of a packed cell key. */
+    private static final long KEY_MASK = 0xFFFFFFFFL;
+
+    /** How many doubles are stored per segment, in the same layout SegmentBatch's methods use. */
+    private static final int STRIDE = SegmentBatch.SEGMENT_STRIDE;
+
+    /** Offset of the end latitude within a segment's entries. */
+    private static final int END_LAT = 2;
+
+    /** Offset of the end longitude within a segment's entries. */
+    private static final int END_LNG = 3;
+
+    /** Initial capacity (in segments) of the coordinate storage. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Tolerance added around segments when finding their cells and comparing extents, matching LatLngUtils.same. */
+    private static final double CELL_EPSILON = 0.0000001;
+
+    /** Size of each grid cell in degrees (both latitude and longitude). */
+    private double cellSize;
+
+    /** Coordinates of all segments, STRIDE entries per segment. */
+    private double[] coordinates = new double[INITIAL_CAPACITY * STRIDE];
+
+    /** How many segments have been added. */
+    private int count;
+
+    /** Map of packed cell coordinates to the indexes of the segments passing through that cell. */
+    private Map<Long, List<Integer>> buckets = new HashMap<>();
+
+    /** The query number each segment was last examined in, to avoid testing a segment twice per query. */
+    private int[] lastVisited = new int[INITIAL_CAPACITY];
+
+    /** The number of the current query. */
+    private int queryNumber;
+
+    /** How many segments have been checked with linesCross, over all queries. */
+    private long examined;
+
+    /**
+     * Creates an empty index.
+     * @param setCellSize the size of each grid cell in degrees
+     */
+    public SegmentIndex(final double setCellSize) {
+        if (!(setCellSize > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        cellSize = setCellSize;
+    }
+
+    /**
+     * Chooses a cell size that divides an area into a reasonable number of cells per side.
+     * @param positions points spread over the area of interest (e.g. all targets' positions)
+     * @param cellsPerSide roughly how many cells the longer side of the area should be divided into
+     * @return a cell size in degrees suitable for the constructor
+     */
+    public static double chooseCellSize(final Iterable<LatLng> positions, final int cellsPerSide) {
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double minLng = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY;
+        for (LatLng position : positions) {
+            minLat = Math.min(minLat, position.latitude);
+            maxLat = Math.max(maxLat, position.latitude);
+            minLng = Math.min(minLng, position.longitude);
+            maxLng = Math.max(maxLng, position.longitude);
+        }
+        double span = Math.max(maxLat - minLat, maxLng - minLng);
+        if (!(span > 0)) {
+            // No area to divide (zero or one distinct position) - any size works
+            return 1;
+        }
+        return span / cellsPerSide;
+    }
+
+    /**
+     * Adds a segment to the index.
+     * @param start one endpoint
+     * @param end the other endpoint
+     */
+    public void add(final LatLng start, final LatLng end) {
+        if (count == lastVisited.length) {
+            coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+            lastVisited = Arrays.copyOf(lastVisited, lastVisited.length * 2);
+        }
+        int base = count * STRIDE;
+        coordinates[base] = start.latitude;
+        coordinates[base + 1] = start.longitude;
+        coordinates[base + END_LAT] = end.latitude;
+        coordinates[base + END_LNG] = end.longitude;
+        Integer segment = count;
+        count++;
+
+        // Register the segment in each row of cells it passes through, covering the part of the row it spans
+        double minLat = Math.min(start.latitude, end.latitude) - CELL_EPSILON;
+        double maxLat = Math.max(start.latitude, end.latitude) + CELL_EPSILON;
+        for (int y = cell(minLat); y <= cell(maxLat); y++) {
+            double rowBottom = Math.max(minLat, y * cellSize);
+            double rowTop = Math.min(maxLat, (y + 1) * cellSize);
+            double lngAtBottom = longitudeAt(start, end, rowBottom);
+            double lngAtTop = longitudeAt(start, end, rowTop);
+            int minX = cell(Math.min(lngAtBottom, lngAtTop) - CELL_EPSILON);
+            int maxX = cell(Math.max(lngAtBottom, lngAtTop) + CELL_EPSILON);
+            for (int x = minX; x <= maxX; x++) {
+                long key = cellKey(x, y);
+                List<Integer> bucket = buckets.get(key);
+                if (bucket == null) {
+                    bucket = new ArrayList<>();
+                    buckets.put(key, bucket);
+                }
+                bucket.add(segment);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of segments in the index.
+     * @return how many segments have been added
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets how many segments crossing checks have examined.
+     * @return how many times linesCross has been run, over all calls to crossesAny
+     */
+    public long getExamined() {
+        return examined;
+    }
+
+    /**
+     * Removes all segments from the index.
+     */
+    public void clear() {
+        buckets.clear();
+        count = 0;
+    }
+
+    /**
+     * Determines whether a candidate segment crosses any segment in the index.
+     * <p>
+     * "Crosses" has the same meaning as in LineCrossDetector.linesCross, except that segments whose bounding boxes
+     * don't overlap the candidate's never cross it.
+     * @param start one endpoint of the candidate segment
+     * @param end the other endpoint of the candidate segment
+     * @return whether the candidate crosses an indexed segment
+     */
+    public boolean crossesAny(final LatLng start, final LatLng end) {
+        queryNumber++;
+        double west = Math.min(start.longitude, end.longitude) - CELL_EPSILON;
+        double east = Math.max(start.longitude, end.longitude) + CELL_EPSILON;
+        double minLat = Math.min(start.latitude, end.latitude) - CELL_EPSILON;
+        double maxLat = Math.max(start.latitude, end.latitude) + CELL_EPSILON;
+        for (int y = cell(minLat); y <= cell(maxLat); y++) {
+            double rowBottom = Math.max(minLat, y * cellSize);
+            double rowTop = Math.min(maxLat, (y + 1) * cellSize);
+            double lngAtBottom = longitudeAt(start, end, rowBottom);
+            double lngAtTop = longitudeAt(start, end, rowTop);
+            int minX = cell(Math.min(lngAtBottom, lngAtTop) - CELL_EPSILON);
+            int maxX = cell(Math.max(lngAtBottom, lngAtTop) + CELL_EPSILON);
+            for (int x = minX; x <= maxX; x++) {
+                List<Integer> bucket = buckets.get(cellKey(x, y));
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = 0; i < bucket.size(); i++) {
+                    int segment = bucket.get(i);
+                    if (lastVisited[segment] == queryNumber) {
+                        continue;
+                    }
+                    lastVisited[segment] = queryNumber;
+                    if (!overlaps(segment, minLat, maxLat, west, east)) {
+                        continue;
+                    }
+                    examined++;
+                    if (crosses(segment, start, end)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether an indexed segment's bounding box overlaps a box.
+     * @param segment the index of the indexed segment
+     * @param minLat the box's southern edge
+     * @param maxLat the box's northern edge
+     * @param west the box's western edge
+     * @param east the box's eastern edge
+     * @return whether they overlap
+     */
+    private boolean overlaps(final int segment, final double minLat, final double maxLat,
+                             final double west, final double east) {
+        int base = segment * STRIDE;
+        return Math.max(coordinates[base], coordinates[base + END_LAT]) >= minLat
+                && Math.min(coordinates[base], coordinates[base + END_LAT]) <= maxLat
+                && Math.max(coordinates[base + 1], coordinates[base + END_LNG]) >= west
+                && Math.min(coordinates[base + 1], coordinates[base + END_LNG]) <= east;
+    }
+
+    /**
+     * Determines whether an indexed segment crosses a candidate segment.
+     * @param segment the index of the indexed segment
+     * @param start one endpoint of the candidate
+     * @param end the other endpoint of the candidate
+     * @return whether they cross
+     */
+    private boolean crosses(final int segment, final LatLng start, final LatLng end) {
+        int base = segment * STRIDE;
+        return SegmentBatch.linesCross(coordinates[base], coordinates[base + 1],
+                coordinates[base + END_LAT], coordinates[base + END_LNG],
+                start.latitude, start.longitude, end.latitude, end.longitude);
+    }
+
+    /**
+     * Finds the longitude at which a segment reaches a latitude, clamped to the segment's extent.
+     * @param start one endpoint of the segment
+     * @param end the other endpoint of the segment
+     * @param latitude the latitude of interest
+     * @return the longitude of the segment at that latitude
+     */
+    private static double longitudeAt(final LatLng start, final LatLng end, final double latitude) {
+        double latSpan = end.latitude - start.latitude;
+        if (latSpan == 0) {
+            // Horizontal (or degenerate) segments span their whole longitude range in their only row
+            if (latitude <= start.latitude) {
+                return start.longitude;
+            }
+            return end.longitude;
+        }
+        double fraction = Math.max(0, Math.min(1, (latitude - start.latitude) / latSpan));
+        return start.longitude + fraction * (end.longitude - start.longitude);
+    }
+
+    /**
+     * Gets the grid coordinate of the cell containing a latitude or longitude.
+     * @param degrees the latitude or longitude
+     * @return the cell coordinate along that axis
+     */
+    private int cell(final double degrees) {
+        return (int) Math.floor(degrees / cellSize);
+    }
+
+    /**
+     * Packs a cell's coordinates into a single map key.
+     * @param x the cell's X coordinate
+     * @param y the cell's Y coordinate
+     * @return the key for that cell
+     */
+    private static long cellKey(final int x, final int y) {
+        return ((long) x << KEY_SHIFT) | (y & KEY_MASK);
+    }
+
+}
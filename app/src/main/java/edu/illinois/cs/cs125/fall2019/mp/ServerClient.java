@@ -0,0 +1,393 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.StringRequest;
+import com.android.volley.toolbox.Volley;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.neovisionaries.ws.client.WebSocket;
+import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketException;
+import com.neovisionaries.ws.client.WebSocketFactory;
+import com.neovisionaries.ws.client.WebSocketFrame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Contacts the server: HTTP requests and game websockets.
+ * <p>
+ * WebApi is provided and must not be modified, so everything added to contacting the server lives here: the ID
+ * token cache, the per-user response cache with ETag revalidation, merging of identical GETs, cancelling a
+ * context's requests, and decoding websocket messages into GameEvents (including binary location frames).
+ * Activities call this class directly; WebApi still supplies the server URLs.
+ */
+public final class ServerClient {
+
+    /** Tag for logged messages. */
+    private static final String TAG = "ServerClient";
+
+    /** The HTTP status code for Bad Request. */
+    private static final int HTTP_BAD_REQUEST = 400;
+
+    /** The HTTP status code for Unauthorized, sent if the ID token was rejected. */
+    private static final int HTTP_UNAUTHORIZED = 401;
+
+    /** Timeout (milliseconds) for connecting to a game websocket. */
+    private static final int WEBSOCKET_CONNECTION_TIMEOUT = 5000;
+
+    /** Interval (milliseconds) at which to make sure the websocket is still connected. */
+    private static final int WEBSOCKET_PING_INTERVAL = 60000;
+
+    /** The Volley request queue for the application, or null if the queue hasn't been set up yet. */
+    private static RequestQueue requestQueue;
+
+    /** The Gson parser used to parse response JSON. */
+    private static JsonParser jsonParser = new JsonParser();
+
+    /** The user's cached Firebase ID token. */
+    private static IdTokenCache tokenCache = new IdTokenCache();
+
+    /** GET requests in progress, so identical ones can share a response. */
+    private static SingleFlight<JsonObject> getsInFlight = new SingleFlight<>();
+
+    /** Cache of GET responses, or null if it hasn't been set up yet. */
+    private static ResponseCache responseCache;
+
+    /** Reads cached responses from disk, off the UI thread. */
+    private static Executor diskReader = Executors.newSingleThreadExecutor(
+        runnable -> new Thread(runnable, "response-cache"));
+
+    /** Runs work on the UI thread, or null if it hasn't been set up yet. */
+    private static Handler mainThread;
+
+    /** Private constructor to prevent creating instances. */
+    private ServerClient() { }
+
+    /**
+     * Starts a network request with a JSON object as the payload.
+     * <p>
+     * Responses to GET requests without a body are cached per user. If there is a cached response, the listener
+     * is called with it right away, and the request only revalidates it: the listener is called a second time
+     * only if the server has something newer. A GET made while an identical one (same URL and user) is in
+     * progress doesn't start a new request but gets the same response. Cached or shared JSON must not be
+     * modified.
+     * @param context an Android context
+     * @param url the URL to contact
+     * @param method the HTTP method (e.g. GET or POST)
+     * @param body the JSON object to include in the body
+     * @param listener callback to run with response data
+     * @param errorListener callback to run if an error occurs
+     */
+    public static void startRequest(final Context context, final String url, final int method, final JsonElement body,
+                             final Response.Listener<JsonObject> listener, final Response.ErrorListener errorListener) {
+        if (requestQueue == null) {
+            Log.i(TAG, "Creating request queue");
+            requestQueue = Volley.newRequestQueue(context.getApplicationContext());
+        }
+        if (mainThread == null) {
+            mainThread = new Handler(Looper.getMainLooper());
+        }
+        if (responseCache == null) {
+            responseCache = new ResponseCache(new File(context.getApplicationContext().getCacheDir(), "responses"),
+                    ResponseCache.DEFAULT_MEMORY_ENTRIES);
+        }
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            Log.e(TAG, "startRequest called before Firebase Authentication login");
+            throw new IllegalStateException("No user is logged in");
+        }
+        Response.Listener<String> serverResponseListener = stringResponse -> {
+            if (stringResponse == null || stringResponse.isEmpty()) {
+                Log.i(TAG, "Delivering empty response from " + url);
+                listener.onResponse(null);
+            } else {
+                Log.i(TAG, "Delivering parsed response from " + url);
+                listener.onResponse(jsonParser.parse(stringResponse).getAsJsonObject());
+            }
+        };
+        Response.ErrorListener serverErrorListener = error -> {
+            if (error.networkResponse != null && error.networkResponse.statusCode == HTTP_UNAUTHORIZED) {
+                tokenCache.invalidate();
+            }
+            if (error.networkResponse != null && error.networkResponse.data != null
+                    && error.networkResponse.statusCode == HTTP_BAD_REQUEST) {
+                String responseData = new String(error.networkResponse.data);
+                try {
+                    JsonObject errObject = jsonParser.parse(responseData).getAsJsonObject();
+                    Log.i(TAG, "Delivering application-level error from " + url);
+                    errorListener.onErrorResponse(new VolleyError(errObject.get("error").getAsString()));
+                } catch (Exception e) {
+                    Log.i(TAG, "Delivering 400 error from " + url);
+                    errorListener.onErrorResponse(error);
+                }
+            } else {
+                Log.i(TAG, "Delivering Volley error response from " + url);
+                errorListener.onErrorResponse(error);
+            }
+        };
+        if (method == Request.Method.GET && body == null) {
+            startCachedRequest(context, user, url, listener, serverErrorListener);
+            return;
+        }
+        tokenCache.getToken(user, token -> {
+            if (isDestroyed(context)) {
+                Log.i(TAG, "Not starting request to " + url + " for a destroyed activity");
+                return;
+            }
+            requestQueue.add(new StringRequest(method, url, serverResponseListener, serverErrorListener) {
+                {
+                    Log.i(TAG, "startRequest creating Volley request (have Firebase ID token)");
+                    setTag(context);
+                }
+                @Override
+                public byte[] getBody() throws AuthFailureError {
+                    if (body == null) {
+                        return super.getBody();
+                    } else {
+                        return body.toString().getBytes();
+                    }
+                }
+                @Override
+                public String getBodyContentType() {
+                    if (body == null) {
+                        return super.getBodyContentType();
+                    } else {
+                        return "application/json";
+                    }
+                }
+                @Override
+                public Map<String, String> getHeaders() {
+                    return Collections.singletonMap("Firebase-Token", token);
+                }
+            });
+        }, e -> errorListener.onErrorResponse(new VolleyError(e)));
+        logTokenLatency("startRequest");
+    }
+
+    /**
+     * Starts a GET request through the response cache, delivering any cached response as soon as it's found.
+     * <p>
+     * Responses in memory are used right away. Otherwise the disk is checked on a background thread, and the
+     * request continues on the UI thread once that's done.
+     * @param context the context the request belongs to
+     * @param user the logged-in user
+     * @param url the URL to contact
+     * @param listener callback to run with parsed response data from the server
+     * @param serverErrorListener callback to run if an error occurs
+     */
+    private static void startCachedRequest(final Context context, final FirebaseUser user, final String url,
+                                           final Response.Listener<JsonObject> listener,
+                                           final Response.ErrorListener serverErrorListener) {
+        ResponseCache.Entry inMemory = responseCache.getInMemory(user.getUid(), url);
+        if (inMemory != null) {
+            continueCachedRequest(context, user, url, inMemory, listener, serverErrorListener);
+            return;
+        }
+        diskReader.execute(() -> {
+            ResponseCache.Entry fromDisk = responseCache.get(user.getUid(), url);
+            if (fromDisk != null) {
+                try {
+                    // Parse here rather than on the UI thread
+                    fromDisk.getJson();
+                } catch (JsonParseException | IllegalStateException e) {
+                    Log.w(TAG, "Ignoring corrupt cached response from " + url, e);
+                    fromDisk = null;
+                }
+            }
+            ResponseCache.Entry found = fromDisk;
+            mainThread.post(() -> {
+                if (isDestroyed(context)) {
+                    Log.i(TAG, "Not starting request to " + url + " for a destroyed activity");
+                    return;
+                }
+                continueCachedRequest(context, user, url, found, listener, serverErrorListener);
+            });
+        });
+    }
+
+    /**
+     * Starts or joins the GET for a cached request once the cache has been checked. Runs on the UI thread.
+     * @param context the context the request belongs to
+     * @param user the logged-in user
+     * @param url the URL to contact
+     * @param entry the cached response, or null if there is none
+     * @param listener callback to run with parsed response data from the server
+     * @param serverErrorListener callback to run if an error occurs
+     */
+    private static void continueCachedRequest(final Context context, final FirebaseUser user, final String url,
+                                              final ResponseCache.Entry entry,
+                                              final Response.Listener<JsonObject> listener,
+                                              final Response.ErrorListener serverErrorListener) {
+        ResponseCache.Entry cached = entry;
+        JsonObject cachedJson = null;
+        if (cached != null) {
+            try {
+                cachedJson = cached.getJson();
+            } catch (JsonParseException | IllegalStateException e) {
+                Log.w(TAG, "Ignoring corrupt cached response from " + url, e);
+                cached = null;
+            }
+        }
+        ResponseCache.Entry revalidate = cached;
+        Response.Listener<JsonObject> deliver = response -> {
+            Log.i(TAG, "Delivering new response from " + url);
+            listener.onResponse(response);
+        };
+        String key = user.getUid() + " " + url;
+        if (getsInFlight.join(key, context, deliver, serverErrorListener)) {
+            tokenCache.getToken(user, token -> {
+                CachedJsonRequest request = new CachedJsonRequest(url, responseCache, user.getUid(), token,
+                    revalidate, response -> getsInFlight.complete(key, response),
+                    error -> getsInFlight.fail(key, error));
+                request.setNotModifiedListener(() -> getsInFlight.cancel(key));
+                if (getsInFlight.setCanceller(key, request::cancel)) {
+                    requestQueue.add(request);
+                }
+            }, e -> getsInFlight.fail(key, new VolleyError(e)));
+            logTokenLatency("startRequest");
+        } else {
+            Log.i(TAG, "Joined GET already in progress for " + url);
+        }
+        Log.i(TAG, "Response cache hit rate " + responseCache.getHitRate() + ", " + getsInFlight.getSaved()
+                + " of " + (getsInFlight.getStarted() + getsInFlight.getSaved()) + " GETs merged");
+        if (revalidate != null) {
+            Log.i(TAG, "Delivering cached response from " + url);
+            listener.onResponse(cachedJson);
+        }
+    }
+
+    /**
+     * Cancels the requests started for a context, usually because the activity is being destroyed.
+     * <p>
+     * Their callbacks won't run. Requests not sent yet aren't sent, and responses that arrive anyway aren't
+     * parsed. A GET shared with other contexts keeps going for them.
+     * @param context the context passed to startRequest
+     */
+    public static void cancelAll(final Context context) {
+        if (requestQueue != null) {
+            requestQueue.cancelAll(context);
+        }
+        getsInFlight.leaveAll(context);
+        Log.i(TAG, "Cancelled requests for " + context + "; " + getsInFlight.getAbandoned() + " GETs abandoned");
+    }
+
+    /**
+     * Determines whether a context is an activity that has been destroyed.
+     * @param context the context
+     * @return whether requests for the context are no longer wanted
+     */
+    private static boolean isDestroyed(final Context context) {
+        return context instanceof Activity && ((Activity) context).isDestroyed();
+    }
+
+    /**
+     * Logs how quickly requests get their ID token.
+     * @param caller the method starting a request
+     */
+    private static void logTokenLatency(final String caller) {
+        Log.i(TAG, caller + " requested ID token; " + tokenCache.getImmediate() + " immediate, "
+                + tokenCache.getWaited() + " waited, average start latency "
+                + tokenCache.getAverageStartLatency() + " ms");
+    }
+
+    /**
+     * Connects to a websocket.
+     * @param url the websocket endpoint
+     * @param dataListener receiver for data messages
+     * @param onCreatedListener callback to run with the websocket when it is created
+     * @param connectionLostListener callback to run if the connection is lost
+     * @param errorListener callback to run if an error occurs during the initial connection
+     */
+    public static void connectWebSocket(final String url, final Consumer<JsonObject> dataListener,
+                                 final Consumer<WebSocket> onCreatedListener,
+                                 final Runnable connectionLostListener,
+                                 final Consumer<Throwable> errorListener) {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            Log.e(TAG, "connectWebSocket called before Firebase Authentication login");
+            throw new IllegalStateException("No user is logged in");
+        }
+        tokenCache.getToken(user, token -> {
+            Log.i(TAG, "connectWebSocket has Firebase ID token");
+            WebSocketFactory factory = new WebSocketFactory();
+            factory.setConnectionTimeout(WEBSOCKET_CONNECTION_TIMEOUT);
+            try {
+                WebSocket socket = factory.createSocket(url);
+                socket.setPingInterval(WEBSOCKET_PING_INTERVAL);
+                socket.addHeader("Firebase-Token", token);
+                socket.addHeader("Game-Capabilities", LocationCodec.CAPABILITY);
+                socket.addListener(new WebSocketAdapter() {
+                    private boolean disconnectedDueToError = false;
+                    private final GameEventDecoder decoder = new GameEventDecoder();
+                    @Override
+                    public void onTextMessage(final WebSocket websocket, final String text) {
+                        if (dataListener instanceof GameEventListener) {
+                            ((GameEventListener) dataListener).onEvent(decoder.decode(text));
+                        } else {
+                            dataListener.accept(jsonParser.parse(text).getAsJsonObject());
+                        }
+                    }
+                    @Override
+                    public void onBinaryMessage(final WebSocket websocket, final byte[] binary) {
+                        // Binary frames only carry GameEvents - the server sends them once the full update enabled them
+                        if (dataListener instanceof GameEventListener) {
+                            try {
+                                ((GameEventListener) dataListener).onEvent(decoder.decode(binary));
+                            } catch (RuntimeException e) {
+                                Log.w(TAG, "Ignoring malformed binary message from " + url, e);
+                            }
+                        }
+                    }
+                    @Override
+                    public void onError(final WebSocket websocket, final WebSocketException cause) {
+                        disconnectedDueToError = true;
+                    }
+                    @Override
+                    public void onDisconnected(final WebSocket websocket, final WebSocketFrame serverCloseFrame,
+                                               final WebSocketFrame clientCloseFrame, final boolean closedByServer) {
+                        if (disconnectedDueToError) {
+                            Log.i(TAG, "Delivering connection-lost error for " + url);
+                            connectionLostListener.run();
+                        } else {
+                            Log.i(TAG, "Websocket closed to " + url);
+                        }
+                    }
+                    @Override
+                    public void onConnectError(final WebSocket websocket, final WebSocketException exception) {
+                        disconnectedDueToError = false;
+                        Log.i(TAG, "Delivering websocket connection error for " + url);
+                        errorListener.accept(exception);
+                    }
+                });
+                socket.connectAsynchronously();
+                Log.i(TAG, "Delivering websocket instance for " + url);
+                onCreatedListener.accept(socket);
+            } catch (IOException e) {
+                Log.i(TAG, "Delivering websocket setup error for " + url);
+                errorListener.accept(e);
+            }
+        }, errorListener::accept);
+        logTokenLatency("connectWebSocket");
+    }
+
+}
@@ -0,0 +1,211 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges identical requests made while one is already in progress, so only one goes over the network.
+ * <p>
+ * The first caller for a key starts the request; callers that join before it finishes are queued. When the
+ * request finishes, every caller gets the same result - for JSON, the same parsed object, which therefore
+ * must not be modified. Callers belong to an owner, e.g. an activity, and can all be removed when it goes
+ * away; a request nobody is waiting for any more is cancelled. The methods may be called from any thread;
+ * callbacks run on the thread that completes the flight.
+ * @param <V> the type of response
+ */
+public final class SingleFlight<V> {
+
+    /**
+     * One caller waiting for a request.
+     */
+    private final class Caller {
+
+        /** What the caller belongs to. */
+        private final Object owner;
+
+        /** Callback to run with the response. */
+        private final Response.Listener<V> listener;
+
+        /** Callback to run if the request fails. */
+        private final Response.ErrorListener errorListener;
+
+        /**
+         * Creates a caller.
+         * @param setOwner what the caller belongs to
+         * @param setListener callback to run with the response
+         * @param setErrorListener callback to run if the request fails
+         */
+        Caller(final Object setOwner, final Response.Listener<V> setListener,
+               final Response.ErrorListener setErrorListener) {
+            owner = setOwner;
+            listener = setListener;
+            errorListener = setErrorListener;
+        }
+
+    }
+
+    /**
+     * The callers waiting for one request.
+     */
+    private final class Flight {
+
+        /** The callers, in the order they joined. */
+        private final List<Caller> callers = new ArrayList<>();
+
+        /** Cancels the underlying request, or null if it hasn't been started. */
+        private Runnable canceller;
+
+    }
+
+    /** Requests in progress by key. */
+    private final Map<String, Flight> flights = new HashMap<>();
+
+    /** How many requests were actually started. */
+    private long started;
+
+    /** How many requests were merged into one already in progress. */
+    private long saved;
+
+    /** How many requests were cancelled because all their callers went away. */
+    private long abandoned;
+
+    /**
+     * Adds a caller to the request for a key.
+     * @param key what identifies identical requests, e.g. the user and URL
+     * @param owner what the caller belongs to, for leaveAll
+     * @param listener callback to run with the response
+     * @param errorListener callback to run if the request fails
+     * @return true if the caller must start the request, false if it joined one already in progress
+     */
+    public synchronized boolean join(final String key, final Object owner, final Response.Listener<V> listener,
+                                     final Response.ErrorListener errorListener) {
+        Flight flight = flights.get(key);
+        boolean first = flight == null;
+        if (first) {
+            flight = new Flight();
+            flights.put(key, flight);
+            started++;
+        } else {
+            saved++;
+        }
+        flight.callers.add(new Caller(owner, listener, errorListener));
+        return first;
+    }
+
+    /**
+     * Records how to cancel a request once it has been created.
+     * @param key the request's key
+     * @param canceller cancels the request
+     * @return false if every caller has already left, in which case the request shouldn't be sent at all
+     */
+    public synchronized boolean setCanceller(final String key, final Runnable canceller) {
+        Flight flight = flights.get(key);
+        if (flight == null) {
+            return false;
+        }
+        flight.canceller = canceller;
+        return true;
+    }
+
+    /**
+     * Finishes a request successfully, delivering the response to every caller.
+     * @param key the request's key
+     * @param response the response
+     */
+    public void complete(final String key, final V response) {
+        Flight flight = finish(key);
+        if (flight != null) {
+            for (Caller caller : flight.callers) {
+                caller.listener.onResponse(response);
+            }
+        }
+    }
+
+    /**
+     * Finishes a failed request, delivering the error to every caller.
+     * @param key the request's key
+     * @param error what went wrong
+     */
+    public void fail(final String key, final VolleyError error) {
+        Flight flight = finish(key);
+        if (flight != null) {
+            for (Caller caller : flight.callers) {
+                caller.errorListener.onErrorResponse(error);
+            }
+        }
+    }
+
+    /**
+     * Finishes a request without delivering anything, e.g. because the callers already have the response.
+     * @param key the request's key
+     */
+    public void cancel(final String key) {
+        finish(key);
+    }
+
+    /**
+     * Removes every caller belonging to an owner, which will then get no callbacks. Requests left without
+     * callers are cancelled.
+     * @param owner the owner whose callers to remove
+     */
+    public void leaveAll(final Object owner) {
+        List<Runnable> cancellers = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Flight> flightIterator = flights.values().iterator();
+            while (flightIterator.hasNext()) {
+                Flight flight = flightIterator.next();
+                flight.callers.removeIf(caller -> caller.owner == owner);
+                if (flight.callers.isEmpty()) {
+                    flightIterator.remove();
+                    abandoned++;
+                    if (flight.canceller != null) {
+                        cancellers.add(flight.canceller);
+                    }
+                }
+            }
+        }
+        for (Runnable canceller : cancellers) {
+            canceller.run();
+        }
+    }
+
+    /**
+     * Gets how many requests went over the network.
+     * @return the number of requests started
+     */
+    public synchronized long getStarted() {
+        return started;
+    }
+
+    /**
+     * Gets how many requests were saved by merging them into one in progress.
+     * @return the number of merged requests
+     */
+    public synchronized long getSaved() {
+        return saved;
+    }
+
+    /**
+     * Gets how many requests were cancelled because nobody was waiting for them any more.
+     * @return the number of abandoned requests
+     */
+    public synchronized long getAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * Removes a request from the ones in progress, so the next caller starts a new one.
+     * @param key the request's key
+     * @return the request's callers, or null if it wasn't in progress
+     */
+    private synchronized Flight finish(final String key) {
+        return flights.remove(key);
+    }
+
+}
@@ -1,16 +1,15 @@
 package edu.illinois.cs.cs125.fall2019.mp;
 
 import com.google.android.gms.maps.GoogleMap;
-import com.google.android.gms.maps.model.BitmapDescriptor;
-import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.LatLng;
-import com.google.android.gms.maps.model.Marker;
-import com.google.android.gms.maps.model.MarkerOptions;
 
 /**
  * This class provides refactored code representing targets on the map.
+ * <p>
+ * The marker is declared in the map's MapScene under an ID of its own. In games that cull, the marker only
+ * exists while the target is near the part of the map in view.
  */
-public class Target {
+public class Target implements ViewportCuller.Item {
 
     /** Stores the current map as a GoogleMap. */
     private GoogleMap targetsMap;
@@ -18,8 +17,14 @@ public class Target {
     private LatLng targetPosition;
     /** Stores the current TeamId. */
     private int targetTeamID;
-    /** Stores the current target marker. */
-    private Marker targetMarker;
+    /** The scene the marker is declared in. */
+    private MapScene targetScene;
+    /** The marker's ID in the scene. */
+    private String targetSceneId;
+    /** Whether the marker is in the scene, i.e. not culled. */
+    private boolean attached;
+    /** Whether the marker is shown. */
+    private boolean visible = true;
 
     /**
      *
@@ -32,25 +37,26 @@ public class Target {
         targetsMap = setMap;
         targetPosition = setPosition;
         targetTeamID = setTeamId;
-        MarkerOptions options = new MarkerOptions().position(setPosition);
-        targetMarker = targetsMap.addMarker(options);
-        if (targetTeamID == TeamID.OBSERVER) {
-            BitmapDescriptor icon = BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_VIOLET);
-            targetMarker.setIcon(icon);
-        } else if (targetTeamID == TeamID.TEAM_RED) {
-            BitmapDescriptor icon = BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED);
-            targetMarker.setIcon(icon);
-        } else if (targetTeamID == TeamID.TEAM_GREEN) {
-            BitmapDescriptor icon = BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_GREEN);
-            targetMarker.setIcon(icon);
-        } else if (targetTeamID == TeamID.TEAM_YELLOW) {
-            BitmapDescriptor icon = BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_YELLOW);
-            targetMarker.setIcon(icon);
-        } else if (targetTeamID == TeamID.TEAM_BLUE) {
-            BitmapDescriptor icon = BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_BLUE);
-            targetMarker.setIcon(icon);
-        }
+        targetScene = MapScene.of(setMap);
+        targetSceneId = targetScene.newId("target");
+        attach();
+    }
 
+    /**
+     * Creates a target whose marker is only on the map while the culler has it in view.
+     * @param setMap sets current map status.
+     * @param setPosition sets current position.
+     * @param setTeamId sets current team id.
+     * @param culler the culler to register the target with
+     */
+    public Target(final GoogleMap setMap, final LatLng setPosition, final int setTeamId,
+                  final ViewportCuller culler) {
+        targetsMap = setMap;
+        targetPosition = setPosition;
+        targetTeamID = setTeamId;
+        targetScene = MapScene.of(setMap);
+        targetSceneId = targetScene.newId("target");
+        culler.add(this, setPosition);
     }
 
     /**
@@ -60,24 +66,52 @@ public class Target {
 
     public void setTeam(final int newTeam) {
         targetTeamID = newTeam;
-        if (targetTeamID == TeamID.OBSERVER) {
-            BitmapDescriptor icon = BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_VIOLET);
-            targetMarker.setIcon(icon);
-        } else if (targetTeamID == TeamID.TEAM_RED) {
-            BitmapDescriptor icon = BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED);
-            targetMarker.setIcon(icon);
-        } else if (targetTeamID == TeamID.TEAM_GREEN) {
-            BitmapDescriptor icon = BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_GREEN);
-            targetMarker.setIcon(icon);
-        } else if (targetTeamID == TeamID.TEAM_YELLOW) {
-            BitmapDescriptor icon = BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_YELLOW);
-            targetMarker.setIcon(icon);
-        } else if (targetTeamID == TeamID.TEAM_BLUE) {
-            BitmapDescriptor icon = BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_BLUE);
-            targetMarker.setIcon(icon);
+        if (attached) {
+            declare();
+        }
+    }
+
+    /**
+     * Shows or hides the target's marker, e.g. while it's part of a cluster.
+     * @param setVisible whether the marker should be shown
+     */
+    public void setVisible(final boolean setVisible) {
+        if (setVisible != visible) {
+            visible = setVisible;
+            if (attached) {
+                declare();
+            }
+        }
+    }
+
+    /**
+     * Adds the target's marker to the map.
+     */
+    @Override
+    public final void attach() {
+        attached = true;
+        declare();
+    }
+
+    /**
+     * Removes the target's marker from the map.
+     */
+    @Override
+    public final void detach() {
+        if (attached) {
+            attached = false;
+            targetScene.remove(targetSceneId);
         }
     }
 
+    /**
+     * Declares the marker in the scene, colored for the current team with the shared icon for that team.
+     */
+    private void declare() {
+        targetScene.put(targetSceneId, new MapScene.MarkerSpec(targetPosition,
+                TargetIcons.get(targetsMap, targetTeamID), null, visible));
+    }
+
     /**
      *
      * @return returns target position.
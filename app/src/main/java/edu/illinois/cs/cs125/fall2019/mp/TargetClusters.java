@@ -0,0 +1,326 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groups nearby targets owned by the same team into one counted marker when the map is zoomed out.
+ * <p>
+ * Below CLUSTER_ZOOM, targets are bucketed into a grid of squares CLUSTER_PIXELS wide on screen, one grid per
+ * team. Buckets with more than one target are shown as a single marker with the count, and the targets' own
+ * markers are hidden; zooming back in shows every target again. Grouping is redone only when the whole-number
+ * zoom level changes or a target changes team. Cluster markers are declared in the map's MapScene by team and
+ * grid square, so regrouping keeps the marker of each cluster that's still there, only moving or relabeling it
+ * if needed. Must only be used on the UI thread.
+ */
+public final class TargetClusters {
+
+    /** Targets are clustered when the camera's zoom is below this. */
+    public static final float CLUSTER_ZOOM = 16f;
+
+    /** Width and height of a cluster's grid square on screen, in pixels. */
+    public static final int CLUSTER_PIXELS = 64;
+
+    /** Counts above this are shown as this number with a plus sign. */
+    private static final int MAX_SHOWN_COUNT = 99;
+
+    /** Width and height of a cluster icon, in pixels. */
+    private static final int ICON_SIZE = 72;
+
+    /** Size of the count text on a cluster icon, in pixels. */
+    private static final float TEXT_SIZE = 28f;
+
+    /** Width of the white ring around a cluster icon, in pixels. */
+    private static final float RING_WIDTH = 4f;
+
+    /** How many bits to shift a grid column when packing it into a bucket key. */
+    private static final int COLUMN_SHIFT = 32;
+
+    /** Mask for a grid row in a bucket key. */
+    private static final long ROW_MASK = 0xFFFFFFFFL;
+
+    /**
+     * A group of same-team targets close together at some zoom level.
+     */
+    public static final class Cluster {
+
+        /** The owning team. */
+        private final int team;
+
+        /** Identifies the cluster's team and grid square. */
+        private final String id;
+
+        /** The targets in the cluster. */
+        private final List<Target> members = new ArrayList<>();
+
+        /** Sum of the members' latitudes. */
+        private double latitudeSum;
+
+        /** Sum of the members' longitudes. */
+        private double longitudeSum;
+
+        /**
+         * Creates an empty cluster.
+         * @param setTeam the owning team
+         * @param setId identifies the cluster's team and grid square
+         */
+        Cluster(final int setTeam, final String setId) {
+            team = setTeam;
+            id = setId;
+        }
+
+        /**
+         * Adds a target.
+         * @param target the target
+         */
+        void add(final Target target) {
+            members.add(target);
+            latitudeSum += target.getPosition().latitude;
+            longitudeSum += target.getPosition().longitude;
+        }
+
+        /**
+         * Gets the team that owns every target in the cluster.
+         * @return the team ID
+         */
+        public int getTeam() {
+            return team;
+        }
+
+        /**
+         * Gets the targets in the cluster.
+         * @return the members (do not modify)
+         */
+        public List<Target> getMembers() {
+            return members;
+        }
+
+        /**
+         * Gets where the cluster's marker goes: the average of its targets' positions.
+         * @return the cluster's position
+         */
+        public LatLng getPosition() {
+            return new LatLng(latitudeSum / members.size(), longitudeSum / members.size());
+        }
+
+    }
+
+    /** The scene of the map to draw on. */
+    private final MapScene scene;
+
+    /** Fill color for each team, indexed by team ID. */
+    private final int[] teamColors;
+
+    /** The targets that can be clustered. */
+    private final List<Target> targets = new ArrayList<>();
+
+    /** Each target's pixel X coordinate at zoom level 0, in the same order as targets. */
+    private double[] worldX = new double[0];
+
+    /** Each target's pixel Y coordinate at zoom level 0, in the same order as targets. */
+    private double[] worldY = new double[0];
+
+    /** Cluster icons by team and shown count. */
+    private final Map<Integer, BitmapDescriptor> icons = new HashMap<>();
+
+    /** The scene IDs of the cluster markers on the map. */
+    private Set<String> clusterMarkers = new HashSet<>();
+
+    /** The whole-number zoom level the clusters were grouped for, or -1 if targets aren't clustered. */
+    private int shownZoom = -1;
+
+    /**
+     * Creates a layer with no targets.
+     * @param setMap the map to draw on
+     * @param setTeamColors fill color for each team, indexed by team ID
+     */
+    public TargetClusters(final GoogleMap setMap, final int[] setTeamColors) {
+        scene = MapScene.of(setMap);
+        teamColors = setTeamColors;
+    }
+
+    /**
+     * Adds targets that can be clustered.
+     * @param add the targets
+     */
+    public void addAll(final Collection<Target> add) {
+        int start = targets.size();
+        targets.addAll(add);
+        double[] newX = new double[targets.size()];
+        double[] newY = new double[targets.size()];
+        System.arraycopy(worldX, 0, newX, 0, start);
+        System.arraycopy(worldY, 0, newY, 0, start);
+        for (int i = start; i < targets.size(); i++) {
+            LatLng position = targets.get(i).getPosition();
+            newX[i] = WebMercator.toPixelX(position.longitude, 0);
+            newY[i] = WebMercator.toPixelY(position.latitude, 0);
+        }
+        worldX = newX;
+        worldY = newY;
+        if (shownZoom >= 0) {
+            show(shownZoom);
+        }
+    }
+
+    /**
+     * Updates the clusters for the camera's zoom level. Call when the camera stops moving.
+     * @param zoom the camera's zoom
+     */
+    public void setZoom(final float zoom) {
+        if (zoom >= CLUSTER_ZOOM) {
+            if (shownZoom >= 0) {
+                clearClusters();
+                for (Target target : targets) {
+                    target.setVisible(true);
+                }
+                shownZoom = -1;
+            }
+        } else if ((int) zoom != shownZoom) {
+            show((int) zoom);
+        }
+    }
+
+    /**
+     * Regroups the clusters after targets change team.
+     */
+    public void refresh() {
+        if (shownZoom >= 0) {
+            show(shownZoom);
+        }
+    }
+
+    /**
+     * Gets how many cluster markers are on the map.
+     * @return the number of cluster markers
+     */
+    public int getClusterMarkerCount() {
+        return clusterMarkers.size();
+    }
+
+    /**
+     * Groups the targets by team and grid square at a zoom level.
+     * @param zoom the whole-number zoom level
+     * @return the groups, including ones with a single target
+     */
+    public Collection<Cluster> group(final int zoom) {
+        double scale = WebMercator.worldSize(zoom) / WebMercator.worldSize(0) / CLUSTER_PIXELS;
+        List<Map<Long, Cluster>> buckets = newBuckets();
+        List<Cluster> result = new ArrayList<>();
+        for (int i = 0; i < targets.size(); i++) {
+            Target target = targets.get(i);
+            long key = ((long) Math.floor(worldX[i] * scale) << COLUMN_SHIFT)
+                    | ((long) Math.floor(worldY[i] * scale) & ROW_MASK);
+            Map<Long, Cluster> teamBuckets = buckets.get(target.getTeam());
+            Cluster cluster = teamBuckets.get(key);
+            if (cluster == null) {
+                cluster = new Cluster(target.getTeam(), target.getTeam() + ":" + key);
+                teamBuckets.put(key, cluster);
+                result.add(cluster);
+            }
+            cluster.add(target);
+        }
+        return result;
+    }
+
+    /**
+     * Shows the clusters grouped for a zoom level. Cluster markers that didn't change stay as they are, since
+     * declaring the same spec again isn't a change.
+     * @param zoom the whole-number zoom level
+     */
+    private void show(final int zoom) {
+        Set<String> shown = new HashSet<>();
+        for (Cluster cluster : group(zoom)) {
+            boolean single = cluster.getMembers().size() == 1;
+            for (Target target : cluster.getMembers()) {
+                target.setVisible(single);
+            }
+            if (!single) {
+                int count = cluster.getMembers().size();
+                String id = "cluster:" + cluster.id;
+                scene.put(id, new MapScene.MarkerSpec(cluster.getPosition(), getIcon(cluster.getTeam(), count),
+                        count + " targets", true));
+                clusterMarkers.remove(id);
+                shown.add(id);
+            }
+        }
+        // Whatever is left is for clusters that no longer exist
+        clearClusters();
+        clusterMarkers = shown;
+        shownZoom = zoom;
+    }
+
+    /**
+     * Removes the cluster markers from the map.
+     */
+    private void clearClusters() {
+        for (String id : clusterMarkers) {
+            scene.remove(id);
+        }
+        clusterMarkers.clear();
+    }
+
+    /**
+     * Gets the icon for a cluster, drawing it the first time: a circle in the team's color with the count.
+     * @param team the owning team
+     * @param count how many targets are in the cluster
+     * @return the icon
+     */
+    private BitmapDescriptor getIcon(final int team, final int count) {
+        int shown = Math.min(count, MAX_SHOWN_COUNT + 1);
+        int key = shown * teamColors.length + team;
+        BitmapDescriptor icon = icons.get(key);
+        if (icon != null) {
+            return icon;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        float center = ICON_SIZE / 2f;
+        paint.setColor(Color.WHITE);
+        canvas.drawCircle(center, center, center, paint);
+        paint.setColor(teamColors[team] | Color.BLACK);
+        canvas.drawCircle(center, center, center - RING_WIDTH, paint);
+        paint.setColor(Color.WHITE);
+        paint.setTextSize(TEXT_SIZE);
+        paint.setTextAlign(Paint.Align.CENTER);
+        String text;
+        if (count > MAX_SHOWN_COUNT) {
+            text = MAX_SHOWN_COUNT + "+";
+        } else {
+            text = Integer.toString(count);
+        }
+        canvas.drawText(text, center, center - (paint.descent() + paint.ascent()) / 2, paint);
+        icon = BitmapDescriptorFactory.fromBitmap(bitmap);
+        icons.put(key, icon);
+        return icon;
+    }
+
+    /**
+     * Creates an empty bucket map for each team.
+     * @return bucket maps indexed by team ID
+     */
+    private List<Map<Long, Cluster>> newBuckets() {
+        List<Map<Long, Cluster>> buckets = new ArrayList<>(teamColors.length);
+        for (int team = 0; team < teamColors.length; team++) {
+            buckets.add(new LinkedHashMap<>());
+        }
+        return buckets;
+    }
+
+}
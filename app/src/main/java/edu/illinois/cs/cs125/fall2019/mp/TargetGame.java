@@ -4,12 +4,14 @@ import android.content.Context;
 
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.model.LatLng;
-import com.google.android.gms.maps.model.PolylineOptions;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.neovisionaries.ws.client.WebSocket;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,15 +21,44 @@ import java.util.Map;
  */
 public final class TargetGame extends Game {
 
+    /** Roughly how many cells the segment index divides the longer side of the play area into. */
+    private static final int SEGMENT_GRID_CELLS = 64;
+
+    /**
+     * Games with at least this many targets cluster nearby targets when zoomed out, draw each path as one line, and
+     * only keep map objects for the part of the map in view.
+     */
+    public static final int CLUSTER_THRESHOLD = 200;
+
     /** The game's proximity threshold in meters. */
     private int proximityThreshold;
 
     /** Stores Target instances looked up by server ID. */
     private Map<String, Target> targets = new HashMap<>();
 
+    /**
+     * The owning team of each target by server ID. The Targets' own teams are only updated when map changes
+     * are applied, so game logic uses this instead.
+     */
+    private Map<String, Integer> owners = new HashMap<>();
+
     /** Map of player emails to their paths (visited target IDs). */
     private Map<String, List<String>> playerPaths = new HashMap<>();
 
+    /** Spatial index of the targets that are still unclaimed. */
+    private TargetIndex unclaimedTargets;
+
+    /** Spatial index of every segment of every player's path, for checking the snake rule. */
+    private SegmentIndex pathSegments;
+
+    /**
+     * Each player's path line by email, in games large enough to cull. Only used in map changes, on the UI thread.
+     */
+    private Map<String, PathLine> pathLines = new HashMap<>();
+
+    /** Groups nearby targets when zoomed out, or null if the game has too few targets to need it. */
+    private TargetClusters clusters;
+
     /**
      * Creates a game in target mode.
      * <p>
@@ -42,23 +73,67 @@ public final class TargetGame extends Game {
                       final JsonObject fullState, final Context context) {
         // Call the super constructor so functionality defined in Game will work
         super(email, map, webSocket, fullState, context);
+        onEvent(GameEvent.PlayerTargetVisit.class, this::playerTargetVisited);
 
         // Load the proximity threshold from the JSON
         proximityThreshold = fullState.get("proximityThreshold").getAsInt();
 
+        // Large games only keep map objects for the part of the map in view
+        JsonArray targetList = fullState.getAsJsonArray("targets");
+        if (targetList.size() >= CLUSTER_THRESHOLD) {
+            LatLngBounds.Builder area = LatLngBounds.builder();
+            for (JsonElement t : targetList) {
+                JsonObject targetInfo = t.getAsJsonObject();
+                area.include(new LatLng(targetInfo.get("latitude").getAsDouble(),
+                        targetInfo.get("longitude").getAsDouble()));
+            }
+            setCuller(new ViewportCuller(area.build()));
+        }
+
         // Load the list of all targets in the game
-        for (JsonElement t : fullState.getAsJsonArray("targets")) {
+        for (JsonElement t : targetList) {
             JsonObject targetInfo = t.getAsJsonObject();
 
-            // Create the Target, which places a marker on the map
-            Target target = new Target(map,
-                    new LatLng(targetInfo.get("latitude").getAsDouble(), targetInfo.get("longitude").getAsDouble()),
-                    targetInfo.get("team").getAsInt());
+            // Create the Target, which places a marker on the map (or registers it with the culler)
+            LatLng position = new LatLng(targetInfo.get("latitude").getAsDouble(),
+                    targetInfo.get("longitude").getAsDouble());
+            Target target;
+            if (getCuller() == null) {
+                target = new Target(map, position, targetInfo.get("team").getAsInt());
+            } else {
+                target = new Target(map, position, targetInfo.get("team").getAsInt(), getCuller());
+            }
 
             // Add it to the targets map so we can look it up by ID later
             targets.put(targetInfo.get("id").getAsString(), target);
+            owners.put(targetInfo.get("id").getAsString(), target.getTeam());
+            getScoreboard().add(target.getTeam(), 1);
+        }
+
+        // Large games show nearby targets as one marker when zoomed out
+        if (targets.size() >= CLUSTER_THRESHOLD) {
+            clusters = new TargetClusters(map, getTeamColors());
+            clusters.addAll(targets.values());
+        }
+
+        // Project the play area onto a flat plane once, so distance checks don't need trigonometry
+        List<LatLng> positions = new ArrayList<>();
+        for (Target target : targets.values()) {
+            positions.add(target.getPosition());
+        }
+        LocalProjection projection = LocalProjection.around(positions);
+
+        // Index the unclaimed targets so location updates only need to check the nearby ones
+        unclaimedTargets = new TargetIndex(Math.max(proximityThreshold, 1), projection);
+        for (Map.Entry<String, Target> entry : targets.entrySet()) {
+            if (entry.getValue().getTeam() == TeamID.OBSERVER) {
+                unclaimedTargets.add(entry.getKey(), entry.getValue().getPosition());
+            }
         }
 
+        // Set up the segment index, which extendPlayerPath fills as paths are loaded and extended
+        pathSegments = new SegmentIndex(SegmentIndex.chooseCellSize(positions, SEGMENT_GRID_CELLS));
+
         // Load the path of each player, which will be needed for checking for line crosses
         for (JsonElement p : fullState.get("players").getAsJsonArray()) {
             JsonObject player = p.getAsJsonObject();
@@ -101,61 +176,111 @@ public final class TargetGame extends Game {
      */
     @Override
     public void locationUpdated(final LatLng location) {
-        // For each target within range of the player's current location, call tryClaimTarget
-        for (Map.Entry<String, Target> entry : targets.entrySet()) {
-            // The type names in the angle brackets should match the types in the map
-            // The current key is entry.getKey()
-            // The current value is entry.getValue()
-            // Do something with the key and value?
-            Target current = entry.getValue();
-            if (LatLngUtils.distance(location, current.getPosition()) <= proximityThreshold) {
-                tryClaimTarget(entry.getKey(), entry.getValue());
-            }
+        // For each unclaimed target within range of the player's current location, call tryClaimTarget
+        // The index only examines the grid cells around the player, not every target in the game
+        for (String id : unclaimedTargets.findNearby(location, proximityThreshold)) {
+            tryClaimTarget(id, targets.get(id).getPosition());
         }
-
     }
 
     /**
-     * Processes an update from the server.
+     * Processes another player's capture of a target.
      * <p>
-     * Since playerTargetVisit events are specific to target mode games, this method handles those.
-     * All other events are delegated to the superclass.
+     * Since playerTargetVisit events are specific to target mode games, this class handles those.
+     * @param event the capture
+     */
+    private void playerTargetVisited(final GameEvent.PlayerTargetVisit event) {
+        String targetId = event.getTargetId();
+        setOwner(targetId, event.getTeam());
+        unclaimedTargets.remove(targetId);
+        extendPlayerPath(event.getEmail(), targetId, event.getTeam());
+    }
+
+    /**
+     * Determines whether a "full" update describes this game.
      * <p>
-     * Some of this function is written for you, but there is a little piece for you to fill in.
-     * @param message JSON from the server
-     * @param type the update type
-     * @return whether the message type was recognized and handled
+     * It must be a target mode game with the same proximity threshold and the same targets in the same places,
+     * and every player's path known here must be the start of their path in the update.
+     * @param fullState the "full" update from the server
+     * @return whether reconcileObjectives can apply the update
      */
     @Override
-    public boolean handleMessage(final JsonObject message, final String type) {
-        // Some messages are common to all games - see if the superclass can handle it
-        if (super.handleMessage(message, type)) {
-            // If it took care of the update, this class's implementation doesn't need to do anything
-            // Inform the caller that the update was handled
-            return true;
+    protected boolean canReconcile(final JsonObject fullState) {
+        if (!fullState.get("mode").getAsString().equals("target")
+                || fullState.get("proximityThreshold").getAsInt() != proximityThreshold) {
+            return false;
         }
-
-        // Check the type of update to see if we can handle it and what to do
-        if (type.equals("playerTargetVisit")) {
-            // Got an update indicating that another player captured a target
-            // Load the information from the JSON
-            String playerEmail = message.get("email").getAsString();
-            String targetId = message.get("targetId").getAsString();
-            int playerTeam = message.get("team").getAsInt();
-            targets.get(targetId).setTeam(playerTeam);
-            extendPlayerPath(playerEmail, targetId, playerTeam);
-
-
-            // You need to use that information to update the game state and map
-            // First update the captured target's team
-            // Then call a helper function to update the player's path and add any needed line to the map
-
-            // Once that's done, inform the caller that we handled it
-            return true;
-        } else {
-            // An unknown type of update was received - inform the caller of the situation
+        JsonArray targetList = fullState.getAsJsonArray("targets");
+        if (targetList.size() != targets.size()) {
             return false;
         }
+        for (JsonElement t : targetList) {
+            JsonObject targetInfo = t.getAsJsonObject();
+            Target target = targets.get(targetInfo.get("id").getAsString());
+            if (target == null || target.getPosition().latitude != targetInfo.get("latitude").getAsDouble()
+                    || target.getPosition().longitude != targetInfo.get("longitude").getAsDouble()) {
+                return false;
+            }
+        }
+        Map<String, JsonArray> newPaths = new HashMap<>();
+        for (JsonElement p : fullState.getAsJsonArray("players")) {
+            JsonObject player = p.getAsJsonObject();
+            newPaths.put(player.get("email").getAsString(), player.getAsJsonArray("path"));
+        }
+        for (Map.Entry<String, List<String>> entry : playerPaths.entrySet()) {
+            List<String> path = entry.getValue();
+            JsonArray newPath = newPaths.get(entry.getKey());
+            if (path.isEmpty()) {
+                continue;
+            } else if (newPath == null || newPath.size() < path.size()) {
+                return false;
+            }
+            for (int i = 0; i < path.size(); i++) {
+                if (!path.get(i).equals(newPath.get(i).getAsJsonObject().get("id").getAsString())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies target ownership changes and path extensions from a "full" update.
+     * <p>
+     * Only the targets whose owner changed are recolored, and only the new parts of paths are drawn.
+     * @param fullState the "full" update from the server
+     */
+    @Override
+    protected void reconcileObjectives(final JsonObject fullState) {
+        for (JsonElement t : fullState.getAsJsonArray("targets")) {
+            JsonObject targetInfo = t.getAsJsonObject();
+            String id = targetInfo.get("id").getAsString();
+            Target target = targets.get(id);
+            int team = targetInfo.get("team").getAsInt();
+            if (owners.get(id) == team) {
+                continue;
+            }
+            setOwner(id, team);
+            if (team == TeamID.OBSERVER) {
+                unclaimedTargets.add(id, target.getPosition());
+            } else {
+                unclaimedTargets.remove(id);
+            }
+        }
+        for (JsonElement p : fullState.getAsJsonArray("players")) {
+            JsonObject player = p.getAsJsonObject();
+            String playerEmail = player.get("email").getAsString();
+            List<String> path = playerPaths.get(playerEmail);
+            if (path == null) {
+                path = new ArrayList<>();
+                playerPaths.put(playerEmail, path);
+            }
+            JsonArray newPath = player.getAsJsonArray("path");
+            for (int i = path.size(); i < newPath.size(); i++) {
+                extendPlayerPath(playerEmail, newPath.get(i).getAsJsonObject().get("id").getAsString(),
+                        player.get("team").getAsInt());
+            }
+        }
     }
 
     /**
@@ -163,9 +288,10 @@ public final class TargetGame extends Game {
      * <p>
      * You need to implement this helper function to help locationUpdated do its job.
      * @param id the server ID of the target
-     * @param target the target
+     * @param position the target's position
      */
-    private void tryClaimTarget(final String id, final Target target) {
+    @SuppressWarnings("ConstantConditions")
+    private void tryClaimTarget(final String id, final LatLng position) {
         // Make sure the target isn't already captured - return if so
         // See if the player has already captured a target - if yes:
         //   See if the line between this target and the player's last capture intersects any existing line
@@ -174,30 +300,20 @@ public final class TargetGame extends Game {
         // Now that we know the target can be captured, update its owning team
         // Use extendPlayerPath to update the game state and map
         // Send a targetVisit update to the server
-        if (target.getTeam() != TeamID.OBSERVER) {
+        if (owners.get(id) != TeamID.OBSERVER) {
             return;
         }
         List<String> paths = playerPaths.get(getEmail());
 
         if (paths.size() > 0) {
+            // Check the new line against the segments of all players' paths that could possibly cross it
             Target currentTarget = targets.get(paths.get(paths.size() - 1));
-            for (Map.Entry<String, List<String>> entry : playerPaths.entrySet()) {
-                // The type names in the angle brackets should match the types in the map
-                // The current key is entry.getKey()
-                // The current value is entry.getValue()
-                // Do something with the key and value?
-                List<String> otherPath = entry.getValue();
-                for (int i = 0; i < otherPath.size() - 1; i++) {
-                    Target first = targets.get(otherPath.get(i));
-                    Target second = targets.get(otherPath.get(i + 1));
-                    if (LineCrossDetector.linesCross(first.getPosition(), second.getPosition(),
-                            currentTarget.getPosition(), target.getPosition())) {
-                        return;
-                    }
-                }
+            if (pathSegments.crossesAny(currentTarget.getPosition(), position)) {
+                return;
             }
         }
-        target.setTeam(getMyTeam());
+        setOwner(id, getMyTeam());
+        unclaimedTargets.remove(id);
         extendPlayerPath(getEmail(), id, getMyTeam());
         JsonObject update = new JsonObject();
         update.addProperty("type", "targetVisit");
@@ -209,7 +325,7 @@ public final class TargetGame extends Game {
     /**
      * Adds a target to a player's path.
      * <p>
-     * Updates the game state (the player's path list in playerPaths) and places a line on
+     * Updates the game state (the player's path list in playerPaths and the segment index) and places a line on
      * the map (if appropriate) to display the capture.
      * <p>
      * You do not need to modify this function, but you will need to make the addLineSegment
@@ -224,7 +340,8 @@ public final class TargetGame extends Game {
         List<String> path = playerPaths.get(email);
         if (!path.isEmpty()) {
             LatLng lastPoint = targets.get(path.get(path.size() - 1)).getPosition();
-            addLineSegment(lastPoint, current, team);
+            pathSegments.add(lastPoint, current);
+            addLineSegment(email, lastPoint, current, team);
         }
         path.add(targetId);
     }
@@ -233,48 +350,69 @@ public final class TargetGame extends Game {
      * Adds a line segment to the map to indicate part of a player's path.
      * <p>
      * You need to implement this helper function so that extendPlayerPath can update the map.
+     * @param email email of the player whose path this is
      * @param start one endpoint
      * @param end the other endpoint
      * @param team a team ID (not OBSERVER)
      */
-    private void addLineSegment(final LatLng start, final LatLng end, final int team) {
+    private void addLineSegment(final String email, final LatLng start, final LatLng end, final int team) {
         // Place a line (Polyline) on the Google map, colored as appropriate for the team
         // See the provided addLine function from GameActivity for an example of how to add lines
         // The colors to use are provided by the team_colors integer array resource
         // (that's why Game instances need an Android Context object)
         // You may add the extra black border line if you like
         GoogleMap map = getMap();
-        int[] colors = getContext().getResources().getIntArray(R.array.team_colors);
-        int color = colors[team];
-        PolylineOptions fill = new PolylineOptions().add(start, end).color(color);
-        map.addPolyline(fill);
+        MapScene scene = getScene();
+        int color = getTeamColors()[team];
+        ViewportCuller culler = getCuller();
+        if (culler == null) {
+            render(() -> scene.put(scene.newId("segment"), new MapScene.LineSpec(Arrays.asList(start, end), color)));
+            return;
+        }
 
+        // Large games draw each path as one line that grows, which is only created once there's a segment
+        Map<String, PathLine> lines = pathLines;
+        render(() -> {
+            PathLine line = lines.get(email);
+            if (line == null) {
+                line = new PathLine(map, color);
+                line.extend(start);
+                line.extend(end);
+                lines.put(email, line);
+                culler.add(line, line.getBounds());
+            } else {
+                line.extend(end);
+                culler.move(line, line.getBounds());
+            }
+        });
     }
 
     /**
-     * Gets a team's score in this target mode game.
-     * <p>
-     * You need to implement this function.
-     * @param teamId the team ID (same kind of value as the TeamID constants)
-     * @return the number of targets owned by the team
+     * Changes a target's owning team, keeping the scoreboard up to date.
+     * @param id the target's server ID
+     * @param team the new owning team
      */
-    @Override
-    public int getTeamScore(final int teamId) {
-        // Find how many targets are currently owned by the specified team
-        int count = 0;
-
-
-        for (Map.Entry<String, List<String>> entry : playerPaths.entrySet()) {
-            List<String> otherPath = entry.getValue();
-            for (int i = 0; i < otherPath.size(); i++) {
-                Target target = targets.get(otherPath.get(i));
-                if (teamId == target.getTeam()) {
-                    count++;
-                }
+    @SuppressWarnings("ConstantConditions")
+    private void setOwner(final String id, final int team) {
+        getScoreboard().change(owners.put(id, team), team);
+        Target target = targets.get(id);
+        TargetClusters targetClusters = clusters;
+        render(() -> {
+            target.setTeam(team);
+            if (targetClusters != null) {
+                targetClusters.refresh();
             }
-        }
-        return count;
-
+        });
+    }
 
+    /**
+     * Regroups the target clusters, if any, for the new zoom level.
+     * @param zoom the camera's zoom level
+     */
+    @Override
+    protected void zoomChanged(final float zoom) {
+        if (clusters != null) {
+            clusters.setZoom(zoom);
+        }
     }
 }
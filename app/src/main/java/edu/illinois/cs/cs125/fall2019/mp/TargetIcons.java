@@ -0,0 +1,58 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Holds the marker icon for targets owned by each team, per map.
+ * <p>
+ * Each icon is created once per map, the first time it's needed, and then shared by every Target on that map,
+ * instead of asking BitmapDescriptorFactory for a new one whenever a marker is created or recolored. The icons
+ * are only weakly tied to their map, so they go away with it when the activity and its map are recreated.
+ * Must only be used on the UI thread.
+ */
+final class TargetIcons {
+
+    /** Marker hue for each team, indexed by team ID. */
+    private static final float[] HUES = {
+        BitmapDescriptorFactory.HUE_VIOLET,
+        BitmapDescriptorFactory.HUE_RED,
+        BitmapDescriptorFactory.HUE_YELLOW,
+        BitmapDescriptorFactory.HUE_GREEN,
+        BitmapDescriptorFactory.HUE_BLUE
+    };
+
+    /** The icons created so far for each map, indexed by team ID. */
+    private static Map<GoogleMap, BitmapDescriptor[]> icons = new WeakHashMap<>();
+
+    /**
+     * Prevents instantiation.
+     */
+    private TargetIcons() { }
+
+    /**
+     * Gets the marker icon for a team's targets.
+     * @param map the map the marker is on
+     * @param team the owning team, or OBSERVER for unclaimed targets
+     * @return the icon, or null if the team ID isn't valid
+     */
+    static BitmapDescriptor get(final GoogleMap map, final int team) {
+        if (team < 0 || team >= HUES.length) {
+            return null;
+        }
+        BitmapDescriptor[] mapIcons = icons.get(map);
+        if (mapIcons == null) {
+            mapIcons = new BitmapDescriptor[HUES.length];
+            icons.put(map, mapIcons);
+        }
+        if (mapIcons[team] == null) {
+            mapIcons[team] = BitmapDescriptorFactory.defaultMarker(HUES[team]);
+        }
+        return mapIcons[team];
+    }
+
+}
@@ -0,0 +1,151 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buckets targets into a uniform grid so proximity checks only examine nearby targets.
+ * <p>
+ * Each grid cell is roughly as wide and tall as the cell size passed to the constructor (normally the
+ * game's proximity threshold), so a location update only needs to look at a handful of cells around
+ * the player instead of every target in the game. Targets can be added and removed as the game goes on.
+ * Cells and distances are measured on a LocalProjection of the play area, so a search needs no trigonometry.
+ */
+public final class TargetIndex {
+
+    /** How many bits to shift a cell's X coordinate when packing it into a key. */
+    private static final int KEY_SHIFT = 32;
+
+    /** Mask for the low (Y coordinate) half of a packed cell key. */
+    private static final long KEY_MASK = 0xFFFFFFFFL;
+
+    /** Extra distance in meters added to the cell search to absorb rounding. */
+    private static final double SEARCH_SLACK = 0.001;
+
+    /** Size of each grid cell in meters. */
+    private double cellSize;
+
+    /** The projection used to place targets in cells and measure distances. */
+    private LocalProjection projection;
+
+    /** Map of packed cell coordinates to the IDs of the targets in that cell. */
+    private Map<Long, List<String>> buckets = new HashMap<>();
+
+    /** Positions of the indexed targets, looked up by ID. */
+    private Map<String, LatLng> positions = new HashMap<>();
+
+    /**
+     * Creates an empty index.
+     * @param setCellSize size of each grid cell in meters (the proximity threshold works well)
+     * @param setProjection a projection of the play area
+     */
+    public TargetIndex(final double setCellSize, final LocalProjection setProjection) {
+        if (setCellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        cellSize = setCellSize;
+        projection = setProjection;
+    }
+
+    /**
+     * Adds a target to the index.
+     * @param id the target's ID
+     * @param position the target's position
+     */
+    public void add(final String id, final LatLng position) {
+        long key = cellKey(cell(projection.toX(position.longitude)), cell(projection.toY(position.latitude)));
+        List<String> bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            buckets.put(key, bucket);
+        }
+        bucket.add(id);
+        positions.put(id, position);
+    }
+
+    /**
+     * Removes a target from the index.
+     * @param id the target's ID
+     * @return whether the target was in the index
+     */
+    public boolean remove(final String id) {
+        LatLng position = positions.remove(id);
+        if (position == null) {
+            return false;
+        }
+        long key = cellKey(cell(projection.toX(position.longitude)), cell(projection.toY(position.latitude)));
+        List<String> bucket = buckets.get(key);
+        bucket.remove(id);
+        if (bucket.isEmpty()) {
+            buckets.remove(key);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of targets in the index.
+     * @return how many targets have been added and not removed
+     */
+    public int size() {
+        return positions.size();
+    }
+
+    /**
+     * Finds the targets within a given distance of a location.
+     * <p>
+     * Distances are compared with the projection's withinRange, so the result is exactly the set of indexed
+     * targets a linear scan with that function would accept. They can differ from LatLngUtils.distance by the
+     * projection's maxRelativeError for the latitudes involved, which is negligible over a play area.
+     * @param location the location to search around
+     * @param range the maximum distance in meters
+     * @return the IDs of all indexed targets within the range
+     */
+    public List<String> findNearby(final LatLng location, final double range) {
+        List<String> result = new ArrayList<>();
+        double locationX = projection.toX(location.longitude);
+        double locationY = projection.toY(location.latitude);
+        double searchRange = range + SEARCH_SLACK;
+        int minX = cell(locationX - searchRange);
+        int maxX = cell(locationX + searchRange);
+        int minY = cell(locationY - searchRange);
+        int maxY = cell(locationY + searchRange);
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                List<String> bucket = buckets.get(cellKey(x, y));
+                if (bucket == null) {
+                    continue;
+                }
+                for (String id : bucket) {
+                    if (projection.withinRange(location, positions.get(id), range)) {
+                        result.add(id);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the grid coordinate of the cell containing a projected coordinate.
+     * @param meters the X or Y coordinate on the projection
+     * @return the cell coordinate along that axis
+     */
+    private int cell(final double meters) {
+        return (int) Math.floor(meters / cellSize);
+    }
+
+    /**
+     * Packs a cell's coordinates into a single map key.
+     * @param x the cell's X coordinate
+     * @param y the cell's Y coordinate
+     * @return the key for that cell
+     */
+    private static long cellKey(final int x, final int y) {
+        return ((long) x << KEY_SHIFT) | (y & KEY_MASK);
+    }
+
+}
@@ -43,6 +43,9 @@ public class TargetVisitChecker {
     public static int getTargetWithinRange(final double[] latitudes, final double[] longitudes, final int[] path,
                                            final double currentLatitude, final double currentLongitude,
                                            final int range) {
+        // Scaled at the current latitude, the projection gives the distances LatLngUtils.distance would, but
+        // computes the cosine once instead of once per target
+        LocalProjection projection = new LocalProjection(currentLatitude, currentLongitude);
         for (int i = 0; i < path.length; i++) {
             boolean b = true;
             for (int j = 0; j < path.length; j++) {
@@ -51,7 +54,7 @@ public class TargetVisitChecker {
                 }
             }
             if (b == true) {
-                if (LatLngUtils.distance(currentLatitude, currentLongitude, latitudes[i], longitudes[i])
+                if (projection.distance(currentLatitude, currentLongitude, latitudes[i], longitudes[i])
                         <= (double) range) {
                     return i;
                 }
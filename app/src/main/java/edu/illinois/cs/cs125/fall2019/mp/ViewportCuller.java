@@ -0,0 +1,517 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps map objects only for the game entities near the part of the map in view.
+ * <p>
+ * Each entity is registered as an Item with the area it covers. When the camera stops moving, setViewport
+ * attaches (creates the map object for) the items within the visible region plus a margin, and detaches the
+ * ones that scrolled away. At most a fixed budget of items is attached at once; if more are in view, the ones
+ * farthest from the center of the view are left out. Until the first viewport is known, items anywhere may be
+ * attached, but the budget still holds, favoring the center of the play area, so a big game doesn't create
+ * every map object only to remove most at the first camera move; give the culler the map's visible region as
+ * soon as there is one. Items are found with a uniform grid over the play area, so the work per camera move
+ * depends on what's in view, not on the size of the game. Must only be used on the UI thread.
+ */
+public final class ViewportCuller {
+
+    /** Default limit on how many items are attached at once. */
+    public static final int DEFAULT_BUDGET = 500;
+
+    /** How far beyond each side of the visible region items are attached, as a fraction of its size. */
+    public static final double MARGIN = 0.5;
+
+    /** Roughly how many grid cells the longer side of the play area is divided into. */
+    private static final int GRID_CELLS = 32;
+
+    /** Smallest allowed grid cell size in degrees. */
+    private static final double MIN_CELL_DEGREES = 1e-6;
+
+    /** Most grid cells a query or an item may cover before all cells are scanned instead. */
+    private static final int MAX_QUERY_CELLS = 65536;
+
+    /** How many bits to shift a grid column when packing it into a cell key. */
+    private static final int COLUMN_SHIFT = 32;
+
+    /** Mask for a grid row in a cell key. */
+    private static final long ROW_MASK = 0xFFFFFFFFL;
+
+    /** Position of the south edge in a box array. */
+    private static final int SOUTH = 0;
+
+    /** Position of the west edge in a box array. */
+    private static final int WEST = 1;
+
+    /** Position of the north edge in a box array. */
+    private static final int NORTH = 2;
+
+    /** Position of the east edge in a box array. */
+    private static final int EAST = 3;
+
+    /**
+     * Something drawn on the map only while it's in view.
+     */
+    public interface Item {
+
+        /**
+         * Creates the item's map object.
+         */
+        void attach();
+
+        /**
+         * Removes the item's map object.
+         */
+        void detach();
+
+    }
+
+    /**
+     * An item backed by a single map object, created and removed by the given functions.
+     * @param <T> the type of map object
+     */
+    private static final class ObjectItem<T> implements Item {
+
+        /** Adds the map object. */
+        private final Supplier<T> create;
+
+        /** Removes the map object. */
+        private final Consumer<T> remove;
+
+        /** The map object, or null if detached. */
+        private T object;
+
+        /**
+         * Creates an item.
+         * @param setCreate adds the map object
+         * @param setRemove removes the map object
+         */
+        ObjectItem(final Supplier<T> setCreate, final Consumer<T> setRemove) {
+            create = setCreate;
+            remove = setRemove;
+        }
+
+        @Override
+        public void attach() {
+            object = create.get();
+        }
+
+        @Override
+        public void detach() {
+            if (object != null) {
+                remove.accept(object);
+                object = null;
+            }
+        }
+
+    }
+
+    /**
+     * Where a registered item is.
+     */
+    private static final class Entry {
+
+        /** The item. */
+        private final Item item;
+
+        /** Southern edge of the area the item covers. */
+        private double south;
+
+        /** Western edge of the area the item covers. */
+        private double west;
+
+        /** Northern edge of the area the item covers. */
+        private double north;
+
+        /** Eastern edge of the area the item covers. */
+        private double east;
+
+        /** The keys of the grid cells the entry is in. */
+        private List<Long> cells = new ArrayList<>();
+
+        /** Whether the item is attached. */
+        private boolean attached;
+
+        /**
+         * Creates an entry.
+         * @param setItem the item
+         */
+        Entry(final Item setItem) {
+            item = setItem;
+        }
+
+    }
+
+    /** Size of each grid cell in degrees. */
+    private final double cellDegrees;
+
+    /** Limit on how many items are attached at once. */
+    private final int budget;
+
+    /** Every registered item's entry. */
+    private final Map<Item, Entry> entries = new IdentityHashMap<>();
+
+    /** The entries in each grid cell, by packed cell key. */
+    private final Map<Long, List<Entry>> grid = new HashMap<>();
+
+    /** Entries covering too many grid cells to list, which every query checks. */
+    private final List<Entry> oversized = new ArrayList<>();
+
+    /** The attached entries. */
+    private final Set<Entry> attached = new HashSet<>();
+
+    /** The play area (south, west, north, east), whose center the budget favors before there's a viewport. */
+    private final double[] playArea;
+
+    /** The visible region plus the margin (south, west, north, east), or null if no viewport is known yet. */
+    private double[] view;
+
+    /** How many times an item has been attached or detached. */
+    private long operations;
+
+    /**
+     * Creates a culler with the default budget.
+     * @param area the play area, used to size the grid
+     */
+    public ViewportCuller(final LatLngBounds area) {
+        this(area, DEFAULT_BUDGET);
+    }
+
+    /**
+     * Creates a culler.
+     * @param area the play area, used to size the grid
+     * @param setBudget limit on how many items are attached at once
+     */
+    public ViewportCuller(final LatLngBounds area, final int setBudget) {
+        double span = Math.max(area.northeast.latitude - area.southwest.latitude,
+                area.northeast.longitude - area.southwest.longitude);
+        cellDegrees = Math.max(span / GRID_CELLS, MIN_CELL_DEGREES);
+        budget = setBudget;
+        playArea = new double[] {area.southwest.latitude, area.southwest.longitude,
+            area.northeast.latitude, area.northeast.longitude};
+    }
+
+    /**
+     * Wraps a single map object as an item.
+     * @param create adds the map object, e.g. a call to GoogleMap.addPolyline
+     * @param remove removes the map object
+     * @param <T> the type of map object
+     * @return an item that creates the object when attached and removes it when detached
+     */
+    public static <T> Item item(final Supplier<T> create, final Consumer<T> remove) {
+        return new ObjectItem<>(create, remove);
+    }
+
+    /**
+     * Registers an item, attaching it if it's in view.
+     * @param item the item
+     * @param bounds the area the item covers
+     */
+    public void add(final Item item, final LatLngBounds bounds) {
+        Entry entry = new Entry(item);
+        entries.put(item, entry);
+        place(entry, bounds);
+        if (view == null || intersects(entry, view)) {
+            attachWithinBudget(entry);
+        }
+    }
+
+    /**
+     * Registers an item at a single point, attaching it if it's in view.
+     * @param item the item
+     * @param position where the item is
+     */
+    public void add(final Item item, final LatLng position) {
+        add(item, new LatLngBounds(position, position));
+    }
+
+    /**
+     * Changes the area an item covers, attaching or detaching it as needed.
+     * @param item the item
+     * @param bounds the new area
+     */
+    public void move(final Item item, final LatLngBounds bounds) {
+        Entry entry = entries.get(item);
+        if (entry == null) {
+            return;
+        }
+        unplace(entry);
+        place(entry, bounds);
+        if (view != null && !intersects(entry, view)) {
+            detach(entry);
+        } else if (!entry.attached) {
+            attachWithinBudget(entry);
+        }
+    }
+
+    /**
+     * Unregisters an item, detaching it if it's attached.
+     * @param item the item
+     */
+    public void remove(final Item item) {
+        Entry entry = entries.remove(item);
+        if (entry != null) {
+            unplace(entry);
+            detach(entry);
+        }
+    }
+
+    /**
+     * Attaches the items in view and detaches the rest. Call when the camera stops moving.
+     * @param visible the visible region of the map
+     */
+    public void setViewport(final LatLngBounds visible) {
+        double latitudeMargin = (visible.northeast.latitude - visible.southwest.latitude) * MARGIN;
+        double longitudeMargin = (visible.northeast.longitude - visible.southwest.longitude) * MARGIN;
+        view = new double[] {visible.southwest.latitude - latitudeMargin,
+            visible.southwest.longitude - longitudeMargin,
+            visible.northeast.latitude + latitudeMargin,
+            visible.northeast.longitude + longitudeMargin};
+
+        // Find the items in view, closest first, up to the budget
+        List<Entry> inView = query(view);
+        if (inView.size() > budget) {
+            sortByDistance(inView);
+            inView = inView.subList(0, budget);
+        }
+        Set<Entry> keep = new HashSet<>(inView);
+        for (Entry entry : new ArrayList<>(attached)) {
+            if (!keep.contains(entry)) {
+                detach(entry);
+            }
+        }
+        for (Entry entry : inView) {
+            attach(entry);
+        }
+    }
+
+    /**
+     * Gets how many items are registered.
+     * @return the number of items
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets how many items are attached.
+     * @return the number of items with a map object
+     */
+    public int getAttachedCount() {
+        return attached.size();
+    }
+
+    /**
+     * Gets how many times an item has been attached or detached.
+     * @return the number of attach and detach calls
+     */
+    public long getOperations() {
+        return operations;
+    }
+
+    /**
+     * Records an entry's area and adds it to the grid cells it covers.
+     * @param entry the entry
+     * @param bounds the area the entry's item covers
+     */
+    private void place(final Entry entry, final LatLngBounds bounds) {
+        entry.south = bounds.southwest.latitude;
+        entry.west = bounds.southwest.longitude;
+        entry.north = bounds.northeast.latitude;
+        entry.east = bounds.northeast.longitude;
+        entry.cells.clear();
+        List<Long> keys = cellKeys(entry.south, entry.west, entry.north, entry.east);
+        if (keys == null) {
+            oversized.add(entry);
+            return;
+        }
+        for (long key : keys) {
+            List<Entry> bucket = grid.get(key);
+            if (bucket == null) {
+                bucket = new ArrayList<>();
+                grid.put(key, bucket);
+            }
+            bucket.add(entry);
+            entry.cells.add(key);
+        }
+    }
+
+    /**
+     * Removes an entry from the grid cells it's in.
+     * @param entry the entry
+     */
+    private void unplace(final Entry entry) {
+        oversized.remove(entry);
+        for (long key : entry.cells) {
+            List<Entry> bucket = grid.get(key);
+            bucket.remove(entry);
+            if (bucket.isEmpty()) {
+                grid.remove(key);
+            }
+        }
+        entry.cells.clear();
+    }
+
+    /**
+     * Finds the entries whose areas overlap a box.
+     * @param box south, west, north, east
+     * @return the overlapping entries
+     */
+    private List<Entry> query(final double[] box) {
+        Set<Entry> seen = new HashSet<>();
+        List<Entry> result = new ArrayList<>();
+        List<Long> keys = cellKeys(box[SOUTH], box[WEST], box[NORTH], box[EAST]);
+        Iterable<List<Entry>> buckets;
+        if (keys == null) {
+            List<List<Entry>> all = new ArrayList<>(grid.values());
+            all.add(oversized);
+            buckets = all;
+        } else {
+            List<List<Entry>> found = new ArrayList<>();
+            for (long key : keys) {
+                List<Entry> bucket = grid.get(key);
+                if (bucket != null) {
+                    found.add(bucket);
+                }
+            }
+            found.add(oversized);
+            buckets = found;
+        }
+        for (List<Entry> bucket : buckets) {
+            for (Entry entry : bucket) {
+                if (intersects(entry, box) && seen.add(entry)) {
+                    result.add(entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the keys of the grid cells covering a box.
+     * @param south the box's south edge
+     * @param west the box's west edge
+     * @param north the box's north edge
+     * @param east the box's east edge
+     * @return the cell keys, or null if the box covers too many cells to list
+     */
+    private List<Long> cellKeys(final double south, final double west, final double north, final double east) {
+        long minX = (long) Math.floor(west / cellDegrees);
+        long maxX = (long) Math.floor(east / cellDegrees);
+        long minY = (long) Math.floor(south / cellDegrees);
+        long maxY = (long) Math.floor(north / cellDegrees);
+        if ((maxX - minX + 1) * (maxY - minY + 1) > MAX_QUERY_CELLS) {
+            return null;
+        }
+        List<Long> keys = new ArrayList<>();
+        for (long x = minX; x <= maxX; x++) {
+            for (long y = minY; y <= maxY; y++) {
+                keys.add((x << COLUMN_SHIFT) | (y & ROW_MASK));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Attaches an entry's item if there's room in the budget, or if it's closer to the center of the view than an
+     * attached item, which is then detached to make room.
+     * @param entry the entry
+     */
+    private void attachWithinBudget(final Entry entry) {
+        if (attached.size() < budget) {
+            attach(entry);
+            return;
+        }
+        Entry farthest = null;
+        double farthestDistance = distance(entry);
+        for (Entry other : attached) {
+            double otherDistance = distance(other);
+            if (otherDistance > farthestDistance) {
+                farthest = other;
+                farthestDistance = otherDistance;
+            }
+        }
+        if (farthest != null) {
+            detach(farthest);
+            attach(entry);
+        }
+    }
+
+    /**
+     * Sorts entries by the distance of their centers from the center of the view, closest first.
+     * @param list the entries to sort
+     */
+    private void sortByDistance(final List<Entry> list) {
+        Map<Entry, Double> distances = new HashMap<>();
+        for (Entry entry : list) {
+            distances.put(entry, distance(entry));
+        }
+        list.sort((one, other) -> Double.compare(distances.get(one), distances.get(other)));
+    }
+
+    /**
+     * Measures how far an entry's center is from the center of the view, or of the play area if there's no view.
+     * @param entry the entry
+     * @return the squared distance, in degrees of latitude squared
+     */
+    private double distance(final Entry entry) {
+        double[] focus = playArea;
+        if (view != null) {
+            focus = view;
+        }
+        double centerLatitude = (focus[SOUTH] + focus[NORTH]) / 2;
+        double centerLongitude = (focus[WEST] + focus[EAST]) / 2;
+        double latitude = (entry.south + entry.north) / 2 - centerLatitude;
+        double longitude = ((entry.west + entry.east) / 2 - centerLongitude) * Math.cos(Math.toRadians(centerLatitude));
+        return latitude * latitude + longitude * longitude;
+    }
+
+    /**
+     * Determines whether an entry's area overlaps a box.
+     * @param entry the entry
+     * @param box south, west, north, east
+     * @return whether they overlap
+     */
+    private static boolean intersects(final Entry entry, final double[] box) {
+        return entry.north >= box[SOUTH] && entry.east >= box[WEST]
+                && entry.south <= box[NORTH] && entry.west <= box[EAST];
+    }
+
+    /**
+     * Attaches an entry's item if it isn't already.
+     * @param entry the entry
+     */
+    private void attach(final Entry entry) {
+        if (!entry.attached) {
+            entry.attached = true;
+            attached.add(entry);
+            entry.item.attach();
+            operations++;
+        }
+    }
+
+    /**
+     * Detaches an entry's item if it's attached.
+     * @param entry the entry
+     */
+    private void detach(final Entry entry) {
+        if (entry.attached) {
+            entry.attached = false;
+            attached.remove(entry);
+            entry.item.detach();
+            operations++;
+        }
+    }
+
+}
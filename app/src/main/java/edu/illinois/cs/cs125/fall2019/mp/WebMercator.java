@@ -0,0 +1,77 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+/**
+ * Converts between latitude/longitude and the Web Mercator pixel coordinates Google Maps tiles use.
+ * <p>
+ * At zoom level z the world is 256 * 2^z pixels square. X increases eastward from longitude -180 and Y
+ * increases southward from the top of the map, so tile (x, y) covers pixels 256x to 256(x + 1) horizontally
+ * and 256y to 256(y + 1) vertically.
+ */
+public final class WebMercator {
+
+    /** Width and height of a map tile in pixels. */
+    public static final int TILE_SIZE = 256;
+
+    /** Degrees in a full turn of longitude. */
+    private static final double FULL_TURN = 360.0;
+
+    /** Degrees in a half turn of longitude. */
+    private static final double HALF_TURN = 180.0;
+
+    /** The pixel Y coordinate of the equator, as a fraction of the world's height. */
+    private static final double EQUATOR = 0.5;
+
+    /** Scale factor from the Mercator y value (in radians) to a fraction of the world's height. */
+    private static final double MERCATOR_SCALE = 4 * Math.PI;
+
+    /**
+     * Gets the width and height of the world at a zoom level.
+     * @param zoom the zoom level
+     * @return the world size in pixels
+     */
+    public static double worldSize(final int zoom) {
+        return TILE_SIZE * (double) (1L << zoom);
+    }
+
+    /**
+     * Converts a longitude to a pixel X coordinate.
+     * @param longitude the longitude
+     * @param zoom the zoom level
+     * @return the pixel X coordinate at that zoom level
+     */
+    public static double toPixelX(final double longitude, final int zoom) {
+        return (longitude + HALF_TURN) / FULL_TURN * worldSize(zoom);
+    }
+
+    /**
+     * Converts a latitude to a pixel Y coordinate.
+     * @param latitude the latitude
+     * @param zoom the zoom level
+     * @return the pixel Y coordinate at that zoom level
+     */
+    public static double toPixelY(final double latitude, final int zoom) {
+        double sin = Math.sin(Math.toRadians(latitude));
+        return (EQUATOR - Math.log((1 + sin) / (1 - sin)) / MERCATOR_SCALE) * worldSize(zoom);
+    }
+
+    /**
+     * Converts a pixel X coordinate to a longitude.
+     * @param pixelX the pixel X coordinate
+     * @param zoom the zoom level
+     * @return the longitude
+     */
+    public static double toLongitude(final double pixelX, final int zoom) {
+        return pixelX / worldSize(zoom) * FULL_TURN - HALF_TURN;
+    }
+
+    /**
+     * Converts a pixel Y coordinate to a latitude.
+     * @param pixelY the pixel Y coordinate
+     * @param zoom the zoom level
+     * @return the latitude
+     */
+    public static double toLatitude(final double pixelY, final int zoom) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * pixelY / worldSize(zoom)))));
+    }
+
+}
@@ -0,0 +1,138 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class AreaDividerTest {
+
+    @Test(timeout = 60000)
+    public void testMatchesOriginalGeometry() {
+        Random random = new Random(125);
+        for (int area = 0; area < 3000; area++) {
+            double south = 40 + random.nextDouble();
+            double west = -89 + random.nextDouble();
+            double north = south + 0.0005 + random.nextDouble() * 0.02;
+            double east = west + 0.0005 + random.nextDouble() * 0.02;
+            double cellSize = 5 + random.nextDouble() * 200;
+            AreaDivider divider = new AreaDivider(north, east, south, west, cellSize);
+            OriginalDivider original = new OriginalDivider(north, east, south, west, cellSize);
+
+            Assert.assertEquals(original.getXCells(), divider.getXCells());
+            Assert.assertEquals(original.getYCells(), divider.getYCells());
+            int xCells = divider.getXCells();
+            int yCells = divider.getYCells();
+
+            // Every cell's edges, including the last column and row, which end at the east and north edges
+            for (int x = 0; x < xCells; x++) {
+                for (int y = 0; y < yCells; y += Math.max(1, yCells / 7)) {
+                    LatLngBounds bounds = original.getCellBounds(x, y);
+                    LatLngBounds actual = divider.getCellBounds(x, y);
+                    Assert.assertEquals(bounds.southwest.latitude, actual.southwest.latitude, 0);
+                    Assert.assertEquals(bounds.southwest.longitude, actual.southwest.longitude, 0);
+                    Assert.assertEquals(bounds.northeast.latitude, actual.northeast.latitude, 0);
+                    Assert.assertEquals(bounds.northeast.longitude, actual.northeast.longitude, 0);
+                    Assert.assertEquals(bounds.southwest.longitude, divider.getCellWest(x), 0);
+                    Assert.assertEquals(bounds.northeast.longitude, divider.getCellEast(x), 0);
+                    Assert.assertEquals(bounds.southwest.latitude, divider.getCellSouth(y), 0);
+                    Assert.assertEquals(bounds.northeast.latitude, divider.getCellNorth(y), 0);
+                }
+                LatLngBounds top = original.getCellBounds(x, yCells - 1);
+                Assert.assertEquals(top.northeast.latitude, divider.getCellNorth(yCells - 1), 0);
+                Assert.assertEquals(top.northeast.latitude, divider.getCellSouth(yCells), 0);
+            }
+            LatLngBounds corner = original.getCellBounds(xCells - 1, yCells - 1);
+            Assert.assertEquals(corner.northeast.longitude, divider.getCellEast(xCells - 1), 0);
+            Assert.assertEquals(corner.northeast.longitude, divider.getCellWest(xCells), 0);
+
+            // Points exactly on grid lines, on the area's edges, just outside it, and anywhere
+            for (int i = 0; i < 40; i++) {
+                int x = random.nextInt(xCells + 1);
+                int y = random.nextInt(yCells + 1);
+                checkPoint(divider, original, divider.getCellSouth(y), divider.getCellWest(x));
+                checkPoint(divider, original, divider.getCellSouth(y), west + random.nextDouble() * (east - west));
+                checkPoint(divider, original, south + random.nextDouble() * (north - south), divider.getCellWest(x));
+                checkPoint(divider, original, south + random.nextDouble() * (north - south),
+                        west + random.nextDouble() * (east - west));
+            }
+            checkPoint(divider, original, north, east);
+            checkPoint(divider, original, north, west);
+            checkPoint(divider, original, south, east);
+            checkPoint(divider, original, south, west);
+            checkPoint(divider, original, Math.nextDown(south), west);
+            checkPoint(divider, original, south, Math.nextDown(west));
+            checkPoint(divider, original, Math.nextUp(north), east);
+            checkPoint(divider, original, north, Math.nextUp(east));
+        }
+    }
+
+    private static void checkPoint(final AreaDivider divider, final OriginalDivider original,
+                                   final double latitude, final double longitude) {
+        LatLng point = new LatLng(latitude, longitude);
+        int x = original.getXCoordinate(point);
+        int y = original.getYCoordinate(point);
+        Assert.assertEquals(x, divider.getXCoordinate(point));
+        Assert.assertEquals(y, divider.getYCoordinate(point));
+        int expectedIndex = -1;
+        if (x >= 0 && x < original.getXCells() && y >= 0 && y < original.getYCells()) {
+            expectedIndex = x * original.getYCells() + y;
+        }
+        Assert.assertEquals(expectedIndex, divider.getCellIndex(latitude, longitude));
+    }
+
+    /** AreaDivider as it was before its geometry was precomputed. */
+    private static final class OriginalDivider {
+
+        private final double north;
+        private final double south;
+        private final double east;
+        private final double west;
+        private final double cellSize;
+
+        OriginalDivider(final double setNorth, final double setEast, final double setSouth, final double setWest,
+                        final double setCellSize) {
+            north = setNorth;
+            south = setSouth;
+            east = setEast;
+            west = setWest;
+            cellSize = setCellSize;
+        }
+
+        int getXCells() {
+            return (int) Math.ceil(LatLngUtils.distance(south, west, south, east) / cellSize);
+        }
+
+        int getYCells() {
+            return (int) Math.ceil(LatLngUtils.distance(south, west, north, west) / cellSize);
+        }
+
+        int getXCoordinate(final LatLng location) {
+            double xCoordinate = (location.longitude - west) / ((east - west) / getXCells());
+            if (xCoordinate < 0) {
+                return -1;
+            }
+            return (int) xCoordinate;
+        }
+
+        int getYCoordinate(final LatLng location) {
+            double yCoordinate = (location.latitude - south) / ((north - south) / getYCells());
+            if (yCoordinate < 0) {
+                return -1;
+            }
+            return (int) yCoordinate;
+        }
+
+        LatLngBounds getCellBounds(final int x, final int y) {
+            double xDist = (east - west) / getXCells();
+            double yDist = (north - south) / getYCells();
+            return new LatLngBounds(new LatLng(south + yDist * y, west + xDist * x),
+                    new LatLng(south + yDist * (y + 1), west + xDist * (x + 1)));
+        }
+
+    }
+
+}
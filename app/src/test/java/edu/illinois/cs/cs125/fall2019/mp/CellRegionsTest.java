@@ -0,0 +1,149 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class CellRegionsTest {
+
+    @Test(timeout = 60000)
+    public void testBlocksBecomeOnePolygon() {
+        CellRegions regions = new CellRegions(5, 5);
+        CellRegions.Changes changes = regions.setOwner(1, 1, TeamID.TEAM_RED);
+        Assert.assertEquals(1, changes.getAdded().size());
+        Assert.assertArrayEquals(new int[] {1, 1, 2, 1, 2, 2, 1, 2}, rotateToMin(changes.getAdded().get(0).getOutline()));
+
+        // Filling in a 3x3 block keeps it as one region with four corners
+        for (int x = 1; x <= 3; x++) {
+            for (int y = 1; y <= 3; y++) {
+                regions.setOwner(x, y, TeamID.TEAM_RED);
+            }
+        }
+        Assert.assertEquals(1, regions.getRegions().size());
+        CellRegions.Region block = regions.getRegions().iterator().next();
+        Assert.assertEquals(9, block.getSize());
+        Assert.assertArrayEquals(new int[] {1, 1, 4, 1, 4, 4, 1, 4}, rotateToMin(block.getOutline()));
+        Assert.assertTrue(block.getHoles().isEmpty());
+
+        // Another team taking the middle leaves a ring with a hole, and a separate region
+        changes = regions.setOwner(2, 2, TeamID.TEAM_BLUE);
+        Assert.assertEquals(1, changes.getRemoved().size());
+        Assert.assertEquals(2, changes.getAdded().size());
+        Assert.assertEquals(2, regions.getRegions().size());
+        for (CellRegions.Region region : regions.getRegions()) {
+            if (region.getTeam() == TeamID.TEAM_RED) {
+                Assert.assertEquals(8, region.getSize());
+                Assert.assertEquals(1, region.getHoles().size());
+                Assert.assertTrue("Holes run clockwise", signedArea(region.getHoles().get(0)) < 0);
+                Assert.assertEquals(1, -signedArea(region.getHoles().get(0)));
+            }
+        }
+
+        // Cells touching only at a corner are separate regions
+        changes = regions.setOwner(0, 0, TeamID.TEAM_RED);
+        Assert.assertTrue(changes.getRemoved().isEmpty());
+        Assert.assertEquals(3, regions.getRegions().size());
+    }
+
+    @Test(timeout = 60000)
+    public void testIncrementalMatchesFullRebuild() {
+        Random random = new Random(125);
+        for (int trial = 0; trial < 20; trial++) {
+            int xCells = 3 + random.nextInt(12);
+            int yCells = 3 + random.nextInt(12);
+            CellRegions incremental = new CellRegions(xCells, yCells);
+            int[] owners = new int[xCells * yCells];
+            for (int i = 0; i < xCells * yCells * 2; i++) {
+                int x = random.nextInt(xCells);
+                int y = random.nextInt(yCells);
+                int team = random.nextInt(3);
+                owners[x * yCells + y] = team;
+                incremental.setOwner(x, y, team);
+            }
+            CellRegions rebuilt = new CellRegions(xCells, yCells);
+            for (int x = 0; x < xCells; x++) {
+                for (int y = 0; y < yCells; y++) {
+                    rebuilt.load(x, y, owners[x * yCells + y]);
+                }
+            }
+            rebuilt.groupAll();
+            Assert.assertEquals(describe(rebuilt), describe(incremental));
+            for (CellRegions.Region region : incremental.getRegions()) {
+                long area = signedArea(region.getOutline());
+                for (int[] hole : region.getHoles()) {
+                    area += signedArea(hole);
+                }
+                Assert.assertEquals("The outline minus the holes should cover exactly the region's cells",
+                        region.getSize(), area);
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testDenselyCapturedGrid() {
+        // A 40x40 area captured by four teams working outward from the corners, with some stragglers
+        final int size = 40;
+        Random random = new Random(2019);
+        CellRegions regions = new CellRegions(size, size);
+        int captures = 0;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                int team = 1 + (x * 2 / size) * 2 + (y * 2 / size);
+                if (random.nextInt(10) == 0) {
+                    team = 1 + random.nextInt(4);
+                }
+                regions.setOwner(x, y, team);
+                captures++;
+            }
+        }
+        int vertices = 0;
+        for (CellRegions.Region region : regions.getRegions()) {
+            vertices += region.getOutline().length / 2;
+            for (int[] hole : region.getHoles()) {
+                vertices += hole.length / 2;
+            }
+        }
+        Assert.assertTrue(regions.getRegions().size() * 5 < captures);
+        Assert.assertTrue("Merged outlines should need far fewer vertices than a square per cell",
+                vertices < captures);
+    }
+
+    private static long signedArea(final int[] loop) {
+        long area = 0;
+        for (int i = 0; i < loop.length; i += 2) {
+            int next = (i + 2) % loop.length;
+            area += (long) loop[i] * loop[next + 1] - (long) loop[next] * loop[i + 1];
+        }
+        return area / 2;
+    }
+
+    private static int[] rotateToMin(final int[] loop) {
+        int best = 0;
+        for (int i = 2; i < loop.length; i += 2) {
+            if (loop[i + 1] < loop[best + 1] || (loop[i + 1] == loop[best + 1] && loop[i] < loop[best])) {
+                best = i;
+            }
+        }
+        int[] result = new int[loop.length];
+        for (int i = 0; i < loop.length; i++) {
+            result[i] = loop[(best + i) % loop.length];
+        }
+        return result;
+    }
+
+    private static Set<String> describe(final CellRegions regions) {
+        Set<String> result = new HashSet<>();
+        for (CellRegions.Region region : regions.getRegions()) {
+            StringBuilder builder = new StringBuilder(region.getTeam() + ":" + region.getSize() + ":");
+            for (int value : rotateToMin(region.getOutline())) {
+                builder.append(value).append(',');
+            }
+            result.add(builder.toString());
+        }
+        return result;
+    }
+
+}
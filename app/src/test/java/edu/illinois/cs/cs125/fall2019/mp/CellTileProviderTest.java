@@ -0,0 +1,152 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class CellTileProviderTest {
+
+    private static final double NORTH = 40.116319;
+    private static final double EAST = -88.223576;
+    private static final double SOUTH = 40.112905;
+    private static final double WEST = -88.228933;
+    private static final int ZOOM = 18;
+
+    private static final int[] COLORS = {0, 0xffff0000, 0xff00ff00, 0xffffff00, 0xff0000ff};
+
+    @Test(timeout = 60000)
+    public void testCapturesOnlyRedrawAffectedTiles() {
+        AreaDivider divider = new AreaDivider(NORTH, EAST, SOUTH, WEST, 5);
+        CellTileProvider provider = new CellTileProvider(divider, COLORS);
+        provider.setOwner(0, 0, TeamID.TEAM_RED);
+
+        int[] southWest = tileAt(SOUTH + 1e-5, WEST + 1e-5);
+        int[] northEast = tileAt(NORTH - 1e-5, EAST - 1e-5);
+        Assert.assertFalse("The area should span several tiles", southWest[0] == northEast[0]);
+
+        Tile first = provider.getTile(southWest[0], southWest[1], ZOOM);
+        Assert.assertEquals(CellTileProvider.TILE_SIZE, first.width);
+        Assert.assertNotNull(first.data);
+        provider.getTile(northEast[0], northEast[1], ZOOM);
+        Assert.assertEquals(2, provider.getDrawn());
+
+        // Asked again after clearTileCache: both come from the cache
+        provider.getTile(southWest[0], southWest[1], ZOOM);
+        provider.getTile(northEast[0], northEast[1], ZOOM);
+        Assert.assertEquals(2, provider.getDrawn());
+        Assert.assertEquals(2, provider.getCacheHits());
+
+        // A capture in the southwest corner only invalidates that tile
+        provider.setOwner(1, 0, TeamID.TEAM_BLUE);
+        provider.getTile(southWest[0], southWest[1], ZOOM);
+        provider.getTile(northEast[0], northEast[1], ZOOM);
+        Assert.assertEquals(3, provider.getDrawn());
+        Assert.assertEquals(3, provider.getCacheHits());
+
+        // Tiles away from the play area are empty and cost nothing
+        Assert.assertSame(TileProvider.NO_TILE, provider.getTile(0, 0, ZOOM));
+    }
+
+    @Test(timeout = 60000)
+    public void testCaptureInvalidatesExactlyOneTile() {
+        AreaDivider divider = new AreaDivider(NORTH, EAST, SOUTH, WEST, 5);
+        CellTileProvider provider = new CellTileProvider(divider, COLORS);
+        int[] southWest = tileAt(SOUTH, WEST);
+        int[] northEast = tileAt(NORTH, EAST);
+        int tiles = 0;
+        for (int x = southWest[0]; x <= northEast[0]; x++) {
+            for (int y = northEast[1]; y <= southWest[1]; y++) {
+                provider.getTile(x, y, ZOOM);
+                tiles++;
+            }
+        }
+        Assert.assertTrue("The area should span several tiles", tiles > 2);
+        Assert.assertEquals(tiles, provider.getDrawn());
+
+        // Find a cell well inside one tile, with some room around it
+        int cellX = -1;
+        int cellY = -1;
+        for (int x = 0; x < divider.getXCells() && cellX < 0; x++) {
+            for (int y = 0; y < divider.getYCells() && cellX < 0; y++) {
+                int[] northWestCorner = tileAt(divider.getCellNorth(y) + 1e-7, divider.getCellWest(x) - 1e-7);
+                int[] southEastCorner = tileAt(divider.getCellSouth(y) - 1e-7, divider.getCellEast(x) + 1e-7);
+                if (northWestCorner[0] == southEastCorner[0] && northWestCorner[1] == southEastCorner[1]) {
+                    cellX = x;
+                    cellY = y;
+                }
+            }
+        }
+        Assert.assertTrue(cellX >= 0);
+
+        Assert.assertEquals(1, provider.setOwner(cellX, cellY, TeamID.TEAM_GREEN));
+        for (int x = southWest[0]; x <= northEast[0]; x++) {
+            for (int y = northEast[1]; y <= southWest[1]; y++) {
+                provider.getTile(x, y, ZOOM);
+            }
+        }
+        Assert.assertEquals(tiles + 1, provider.getDrawn());
+        Assert.assertEquals(tiles - 1, provider.getCacheHits());
+
+        // Nothing is cached at other zoom levels, so there is nothing else to drop
+        Assert.assertEquals(1, provider.setOwner(cellX, cellY, TeamID.TEAM_RED));
+    }
+
+    @Test(timeout = 60000)
+    public void testCacheSizeIsBounded() {
+        AreaDivider divider = new AreaDivider(NORTH, EAST, SOUTH, WEST, 5);
+        int[] southWest = tileAt(SOUTH + 1e-5, WEST + 1e-5);
+        Tile tile = new CellTileProvider(divider, COLORS).getTile(southWest[0], southWest[1], ZOOM);
+        int limit = tile.data.length * 2;
+        CellTileProvider provider = new CellTileProvider(divider, COLORS, limit);
+        int[] northEast = tileAt(NORTH - 1e-5, EAST - 1e-5);
+        for (int x = southWest[0]; x <= northEast[0]; x++) {
+            for (int y = northEast[1]; y <= southWest[1]; y++) {
+                provider.getTile(x, y, ZOOM);
+                Assert.assertTrue(provider.getCacheBytes() <= limit);
+            }
+        }
+        Assert.assertTrue(provider.getCacheBytes() > 0);
+    }
+
+    @Test(timeout = 60000)
+    public void testTilesAtEveryZoomCopyTheirCells() {
+        AreaDivider divider = new AreaDivider(NORTH, EAST, SOUTH, WEST, 7);
+        CellTileProvider provider = new CellTileProvider(divider, COLORS);
+        for (int x = 0; x < divider.getXCells(); x++) {
+            for (int y = 0; y < divider.getYCells(); y++) {
+                provider.setOwner(x, y, (x + y) % COLORS.length);
+            }
+        }
+        // From one tile holding the whole grid to many tiles each holding part of a cell
+        for (int zoom = 12; zoom <= 21; zoom++) {
+            int[] southWest = tileAt(SOUTH, WEST, zoom);
+            int[] northEast = tileAt(NORTH, EAST, zoom);
+            for (int x = southWest[0] - 1; x <= northEast[0] + 1; x++) {
+                for (int y = northEast[1] - 1; y <= southWest[1] + 1; y++) {
+                    Tile tile = provider.getTile(x, y, zoom);
+                    if (x >= southWest[0] && x <= northEast[0] && y >= northEast[1] && y <= southWest[1]) {
+                        Assert.assertNotSame(TileProvider.NO_TILE, tile);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] tileAt(final double latitude, final double longitude) {
+        return tileAt(latitude, longitude, ZOOM);
+    }
+
+    private static int[] tileAt(final double latitude, final double longitude, final int zoom) {
+        double scale = 1 << zoom;
+        double sin = Math.sin(Math.toRadians(latitude));
+        double y = (0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * scale;
+        double x = (longitude + 180) / 360 * scale;
+        return new int[] {(int) x, (int) y};
+    }
+
+}
@@ -63,7 +63,7 @@ import edu.illinois.cs.cs125.robolectricsecurity.Trusted;
 @RunWith(RobolectricTestRunner.class)
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 @PowerMockIgnore({"org.mockito.*", "org.powermock.*", "org.robolectric.*", "android.*", "androidx.*", "com.google.android.*", "edu.illinois.cs.cs125.fall2019.mp.shadows.*"})
-@PrepareForTest({WebApi.class, FirebaseAuth.class})
+@PrepareForTest({WebApi.class, ServerClient.class, FirebaseAuth.class})
 @Trusted
 public class Checkpoint3Test {
 
@@ -0,0 +1,113 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class GameEventDecoderTest {
+
+    @Test(timeout = 60000)
+    public void testMatchesTreeParsing() {
+        Random random = new Random(125);
+        List<JsonObject> messages = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            messages.addAll(sampleUpdates(random, i));
+        }
+        messages.add(SampleData.createTargetModeTestGame());
+        messages.add(SampleData.createAreaModeTestGame());
+        messages.add(SampleData.createMinimalTestGame(TeamID.TEAM_RED));
+        JsonObject nonsense = new JsonObject();
+        nonsense.addProperty("type", "nonsense");
+        nonsense.add("payload", SampleData.createTargetPresetsResponse());
+        messages.add(nonsense);
+
+        GameEventDecoder decoder = new GameEventDecoder();
+        for (JsonObject message : messages) {
+            GameEvent expected = GameEventDecoder.fromJson(message);
+            GameEvent actual = decoder.decode(message.toString());
+            Assert.assertEquals(describe(expected), describe(actual));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testTypeFirstAndExtraProperties() {
+        String text = "{\"type\":\"playerLocation\",\"extra\":{\"nested\":[1,2,{\"a\":null}]},"
+                + "\"email\":\"a@example.com\",\"team\":2,\"lastLatitude\":40.1,\"lastLongitude\":-88.2}";
+        GameEvent event = new GameEventDecoder().decode(text);
+        Assert.assertTrue(event instanceof GameEvent.PlayerLocation);
+        GameEvent.PlayerLocation location = (GameEvent.PlayerLocation) event;
+        Assert.assertEquals("a@example.com", location.getEmail());
+        Assert.assertEquals(40.1, location.getLatitude(), 0);
+        Assert.assertEquals(-88.2, location.getLongitude(), 0);
+
+        GameEvent full = new GameEventDecoder().decode(SampleData.createAreaModeTestGame().toString());
+        Assert.assertTrue(full instanceof GameEvent.Full);
+        Assert.assertEquals("area", ((GameEvent.Full) full).getJson().get("mode").getAsString());
+    }
+
+    @Test(timeout = 60000)
+    public void testToJsonRoundTrip() {
+        Random random = new Random(225);
+        for (int i = 0; i < 200; i++) {
+            for (JsonObject message : sampleUpdates(random, i)) {
+                GameEvent event = GameEventDecoder.fromJson(message);
+                GameEvent again = GameEventDecoder.fromJson(GameEventDecoder.toJson(event));
+                Assert.assertEquals(describe(event), describe(again));
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testHandlerTable() {
+        GameEventHandlers handlers = new GameEventHandlers();
+        List<String> visited = new ArrayList<>();
+        handlers.register(GameEvent.PlayerTargetVisit.class, visit -> visited.add(visit.getTargetId()));
+        Assert.assertTrue(handlers.dispatch(new GameEvent.PlayerTargetVisit("a@example.com", 1, "T1")));
+        Assert.assertFalse(handlers.dispatch(new GameEvent.PlayerCellCapture(1, 0, 0)));
+        Assert.assertFalse(handlers.dispatch(GameEventDecoder.fromJson(new JsonObject(), "nonsense")));
+        Assert.assertEquals(1, visited.size());
+    }
+
+    private static List<JsonObject> sampleUpdates(final Random random, final int i) {
+        List<JsonObject> updates = new ArrayList<>();
+        int team = TeamID.MIN_TEAM + random.nextInt(TeamID.NUM_TEAMS);
+        String email = "player" + random.nextInt(20) + "@example.com";
+        for (int j = 0; j < 8; j++) {
+            updates.add(JsonHelper.updatePlayerLocation(email, team, 40 + random.nextDouble(),
+                    -88 - random.nextDouble()));
+        }
+        updates.add(JsonHelper.updatePlayerTargetVisit(email, team, "T" + i));
+        updates.add(JsonHelper.updatePlayerCellCapture(email, team, random.nextInt(30), random.nextInt(30)));
+        if (i % 10 == 0) {
+            updates.add(JsonHelper.updatePlayerExit(email));
+            updates.add(JsonHelper.updateGameState(GameStateID.RUNNING));
+        }
+        return updates;
+    }
+
+    private static String describe(final GameEvent event) {
+        if (event instanceof GameEvent.PlayerLocation) {
+            GameEvent.PlayerLocation e = (GameEvent.PlayerLocation) event;
+            return e.getType() + e.getEmail() + e.getLatitude() + "," + e.getLongitude();
+        } else if (event instanceof GameEvent.PlayerExit) {
+            return event.getType() + ((GameEvent.PlayerExit) event).getEmail();
+        } else if (event instanceof GameEvent.PlayerTargetVisit) {
+            GameEvent.PlayerTargetVisit e = (GameEvent.PlayerTargetVisit) event;
+            return e.getType() + e.getEmail() + e.getTeam() + e.getTargetId();
+        } else if (event instanceof GameEvent.PlayerCellCapture) {
+            GameEvent.PlayerCellCapture e = (GameEvent.PlayerCellCapture) event;
+            return e.getType() + e.getTeam() + "," + e.getX() + "," + e.getY();
+        } else if (event instanceof GameEvent.GameState) {
+            return event.getType() + ((GameEvent.GameState) event).getState();
+        } else if (event instanceof GameEvent.Full) {
+            return event.getType() + ((GameEvent.Full) event).getJson();
+        }
+        return event.getType() + ((GameEvent.Other) event).getJson();
+    }
+
+}
@@ -0,0 +1,169 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.firebase.auth.FirebaseAuth;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.illinois.cs.cs125.fall2019.mp.shadows.MockedWrapperInstantiator;
+import edu.illinois.cs.cs125.fall2019.mp.shadows.ShadowGoogleMap;
+import edu.illinois.cs.cs125.fall2019.mp.shadows.ShadowLocalBroadcastManager;
+import edu.illinois.cs.cs125.fall2019.mp.shadows.ShadowMarker;
+import edu.illinois.cs.cs125.robolectricsecurity.PowerMockSecurity;
+import edu.illinois.cs.cs125.robolectricsecurity.Trusted;
+
+@RunWith(RobolectricTestRunner.class)
+@PowerMockIgnore({"org.mockito.*", "org.powermock.*", "org.robolectric.*", "android.*", "androidx.*", "com.google.android.*", "edu.illinois.cs.cs125.fall2019.mp.shadows.*"})
+@PrepareForTest({WebApi.class, ServerClient.class, FirebaseAuth.class})
+@Trusted
+public class GameLoopTest {
+
+    private static final LatLng OTHER1 = new LatLng(40.114507, -88.180760);
+
+    private Context appContext;
+
+    @Rule
+    public PowerMockRule mockStaticClasses = new PowerMockRule();
+
+    @Before
+    public void setup() {
+        PowerMockSecurity.secureMockMethodCache();
+        FirebaseMocker.mock();
+        FirebaseMocker.setEmail(SampleData.USER_EMAIL);
+        appContext = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void teardown() {
+        WebApiMocker.reset();
+        ShadowLocalBroadcastManager.reset();
+    }
+
+    @Test(timeout = 60000)
+    public void testThreadedStepsAreAppliedOnlyWhenPublished() {
+        GoogleMap map = MockedWrapperInstantiator.create(GoogleMap.class);
+        ShadowGoogleMap shadowMap = Shadow.extract(map);
+        WebSocketMocker webSocketControl = new WebSocketMocker();
+        Game game = new TargetGame(SampleData.USER_EMAIL, map, webSocketControl.getWebSocket(),
+                SampleData.createTargetModeTestGame(), appContext);
+        List<Runnable> uiQueue = new ArrayList<>();
+        int[] published = {0};
+        GameLoop loop = new GameLoop(game, true, uiQueue::add, () -> published[0]++);
+        Assert.assertFalse(loop.isInline());
+        int polylines = shadowMap.getPolylines().size();
+        Assert.assertEquals("Scores are shown from the start", 0, loop.getLatest().getSequence());
+        int redScore = loop.getTeamScore(TeamID.TEAM_RED);
+        Assert.assertEquals(game.getTeamScore(TeamID.TEAM_RED), redScore);
+
+        // The opponent moves and captures Other1; the events are processed in order on the loop thread
+        loop.submit(g -> g.handleEvent(new GameEvent.PlayerLocation("opponent@example.com", 40.1145, -88.1808)));
+        loop.submit(g -> g.handleEvent(new GameEvent.PlayerTargetVisit("opponent@example.com", TeamID.TEAM_RED,
+                "Other1")));
+        Assert.assertEquals("call waits for the earlier steps", redScore + 1,
+                (int) loop.call(g -> g.getTeamScore(TeamID.TEAM_RED)));
+
+        // Nothing has touched the map yet
+        Assert.assertEquals(polylines, shadowMap.getPolylines().size());
+        ShadowMarker shadowMarker = Shadow.extract(shadowMap.getMarkerAt(OTHER1));
+        Assert.assertEquals(BitmapDescriptorFactory.HUE_VIOLET, shadowMarker.getHue(), 1e-3);
+        Assert.assertEquals("Shown scores match the map", redScore, loop.getTeamScore(TeamID.TEAM_RED));
+        Assert.assertEquals(0, game.getPlayerMarkers().size());
+
+        // The UI thread applies the snapshots in order
+        Assert.assertEquals(3, uiQueue.size());
+        for (Runnable post : uiQueue) {
+            post.run();
+        }
+        Assert.assertEquals(3, published[0]);
+        Assert.assertEquals(3, loop.getLatest().getSequence());
+        Assert.assertEquals(polylines + 1, shadowMap.getPolylines().size());
+        Marker marker = shadowMap.getMarkerAt(OTHER1);
+        shadowMarker = Shadow.extract(marker);
+        Assert.assertEquals(BitmapDescriptorFactory.HUE_RED, shadowMarker.getHue(), 1e-3);
+        Assert.assertEquals(redScore + 1, loop.getTeamScore(TeamID.TEAM_RED));
+        Assert.assertEquals(1, game.getPlayerMarkers().size());
+
+        // After closing, unapplied snapshots are discarded
+        uiQueue.clear();
+        loop.call(g -> g.handleEvent(new GameEvent.PlayerExit("opponent@example.com")));
+        loop.close();
+        for (Runnable post : uiQueue) {
+            post.run();
+        }
+        Assert.assertEquals(1, game.getPlayerMarkers().size());
+    }
+
+    @Test(timeout = 60000)
+    public void testCallbackRunsOnUiAfterSnapshot() {
+        GoogleMap map = MockedWrapperInstantiator.create(GoogleMap.class);
+        WebSocketMocker webSocketControl = new WebSocketMocker();
+        Game game = new TargetGame(SampleData.USER_EMAIL, map, webSocketControl.getWebSocket(),
+                SampleData.createTargetModeTestGame(), appContext);
+        List<Runnable> uiQueue = new ArrayList<>();
+        GameLoop loop = new GameLoop(game, true, uiQueue::add, null);
+        int redScore = loop.getTeamScore(TeamID.TEAM_RED);
+        List<Integer> shownScores = new ArrayList<>();
+        loop.call(g -> g.handleEvent(new GameEvent.PlayerTargetVisit("opponent@example.com", TeamID.TEAM_RED,
+                "Other1")), handled -> {
+                    Assert.assertTrue(handled);
+                    shownScores.add(loop.getTeamScore(TeamID.TEAM_RED));
+                });
+        loop.call(g -> null);
+
+        // The step's snapshot and then the callback were posted, followed by the second step's snapshot
+        Assert.assertTrue("Callbacks only run on the UI thread", shownScores.isEmpty());
+        Assert.assertEquals(3, uiQueue.size());
+        for (Runnable post : uiQueue) {
+            post.run();
+        }
+        Assert.assertEquals("The callback sees the step's snapshot applied",
+                Collections.singletonList(redScore + 1), shownScores);
+
+        // Callbacks are dropped once the loop is closed
+        uiQueue.clear();
+        loop.call(g -> true, unused -> Assert.fail("Closed loops don't call back"));
+        loop.call(g -> null);
+        loop.close();
+        for (Runnable post : uiQueue) {
+            post.run();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testSmallGamesRunInline() {
+        GoogleMap map = MockedWrapperInstantiator.create(GoogleMap.class);
+        ShadowGoogleMap shadowMap = Shadow.extract(map);
+        WebSocketMocker webSocketControl = new WebSocketMocker();
+        Game game = new AreaGame(SampleData.USER_EMAIL, map, webSocketControl.getWebSocket(),
+                SampleData.createAreaModeTestGame(), appContext);
+        GameLoop loop = GameLoop.forGame(game, runnable -> Assert.fail("Inline steps aren't posted"), null);
+        Assert.assertTrue(loop.isInline());
+        int polygons = shadowMap.getPolygons().size();
+        loop.submit(g -> g.handleEvent(new GameEvent.PlayerCellCapture(TeamID.TEAM_YELLOW, 2, 2)));
+        Assert.assertEquals("Inline steps are applied right away", polygons + 1, shadowMap.getPolygons().size());
+        Assert.assertEquals(game.getTeamScore(TeamID.TEAM_YELLOW), loop.getTeamScore(TeamID.TEAM_YELLOW));
+        loop.close();
+    }
+
+}
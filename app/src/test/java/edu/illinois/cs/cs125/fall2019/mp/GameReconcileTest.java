@@ -0,0 +1,162 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadow.api.Shadow;
+
+import edu.illinois.cs.cs125.fall2019.mp.shadows.MockedWrapperInstantiator;
+import edu.illinois.cs.cs125.fall2019.mp.shadows.ShadowGoogleMap;
+import edu.illinois.cs.cs125.fall2019.mp.shadows.ShadowLocalBroadcastManager;
+import edu.illinois.cs.cs125.fall2019.mp.shadows.ShadowMarker;
+import edu.illinois.cs.cs125.robolectricsecurity.PowerMockSecurity;
+import edu.illinois.cs.cs125.robolectricsecurity.Trusted;
+
+@RunWith(RobolectricTestRunner.class)
+@PowerMockIgnore({"org.mockito.*", "org.powermock.*", "org.robolectric.*", "android.*", "androidx.*", "com.google.android.*", "edu.illinois.cs.cs125.fall2019.mp.shadows.*"})
+@PrepareForTest({WebApi.class, ServerClient.class, FirebaseAuth.class})
+@Trusted
+public class GameReconcileTest {
+
+    private Context appContext;
+
+    @Rule
+    public PowerMockRule mockStaticClasses = new PowerMockRule();
+
+    @Before
+    public void setup() {
+        PowerMockSecurity.secureMockMethodCache();
+        FirebaseMocker.mock();
+        FirebaseMocker.setEmail(SampleData.USER_EMAIL);
+        appContext = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void teardown() {
+        WebApiMocker.reset();
+        ShadowLocalBroadcastManager.reset();
+    }
+
+    @Test(timeout = 60000)
+    public void testTargetGameAppliesOnlyChanges() {
+        GoogleMap map = MockedWrapperInstantiator.create(GoogleMap.class);
+        ShadowGoogleMap shadowMap = Shadow.extract(map);
+        WebSocketMocker webSocketControl = new WebSocketMocker();
+        Game game = new TargetGame(SampleData.USER_EMAIL, map, webSocketControl.getWebSocket(),
+                SampleData.createTargetModeTestGame(), appContext);
+        int markers = shadowMap.getMarkers().size();
+        int polylines = shadowMap.getPolylines().size();
+        int redScore = game.getTeamScore(TeamID.TEAM_RED);
+
+        // While disconnected, the opponent captured Other1 and moved
+        JsonObject snapshot = SampleData.createTargetModeTestGame();
+        JsonObject other1 = findById(snapshot.getAsJsonArray("targets"), "Other1");
+        other1.addProperty("team", TeamID.TEAM_RED);
+        JsonObject opponent = findPlayer(snapshot, "opponent@example.com");
+        JsonObject visit = other1.deepCopy();
+        visit.remove("team");
+        opponent.getAsJsonArray("path").add(visit);
+        opponent.addProperty("lastLatitude", 40.1145);
+        opponent.addProperty("lastLongitude", -88.1808);
+
+        Assert.assertTrue(game.reconcile(snapshot));
+        Assert.assertEquals("Reconciling should not recreate markers", markers, shadowMap.getMarkers().size());
+        Assert.assertEquals("Only the new path segment should be drawn", polylines + 1, shadowMap.getPolylines().size());
+        Assert.assertEquals(1, shadowMap.getPolylinesConnecting(new LatLng(40.108952, -88.224957),
+                new LatLng(40.114507, -88.180760)).size());
+        Marker marker = shadowMap.getMarkerAt(new LatLng(40.114507, -88.180760));
+        ShadowMarker shadowMarker = Shadow.extract(marker);
+        Assert.assertEquals(BitmapDescriptorFactory.HUE_RED, shadowMarker.getHue(), 1e-3);
+        Assert.assertEquals(redScore + 1, game.getTeamScore(TeamID.TEAM_RED));
+        Assert.assertEquals(1, game.getPlayerMarkers().size());
+
+        // Nothing changed since: nothing to draw; the opponent left: their circle goes
+        long operations = MapScene.of(map).getReconciler().getOperations();
+        Assert.assertTrue(game.reconcile(snapshot));
+        Assert.assertEquals(polylines + 1, shadowMap.getPolylines().size());
+        Assert.assertEquals("Reconciling an unchanged game touches nothing", operations,
+                MapScene.of(map).getReconciler().getOperations());
+        opponent.addProperty("state", PlayerStateID.REMOVED);
+        Assert.assertTrue(game.reconcile(snapshot));
+        Assert.assertEquals(0, game.getPlayerMarkers().size());
+
+        // A different game can't be reconciled, and is left alone
+        JsonObject different = SampleData.createTargetModeTestGame();
+        different.addProperty("proximityThreshold", 50);
+        Assert.assertFalse(game.reconcile(different));
+        Assert.assertEquals(redScore + 1, game.getTeamScore(TeamID.TEAM_RED));
+        JsonObject rewritten = snapshot.deepCopy();
+        findPlayer(rewritten, SampleData.USER_EMAIL).getAsJsonArray("path").remove(0);
+        Assert.assertFalse("A path that isn't an extension of the known one needs a rebuild", game.reconcile(rewritten));
+    }
+
+    @Test(timeout = 60000)
+    public void testAreaGameAppliesOnlyChanges() {
+        GoogleMap map = MockedWrapperInstantiator.create(GoogleMap.class);
+        ShadowGoogleMap shadowMap = Shadow.extract(map);
+        WebSocketMocker webSocketControl = new WebSocketMocker();
+        Game game = new AreaGame(SampleData.USER_EMAIL, map, webSocketControl.getWebSocket(),
+                SampleData.createAreaModeTestGame(), appContext);
+        int polygons = shadowMap.getPolygons().size();
+        int polylines = shadowMap.getPolylines().size();
+        int yellowScore = game.getTeamScore(TeamID.TEAM_YELLOW);
+
+        JsonObject snapshot = SampleData.createAreaModeTestGame();
+        JsonObject capture = JsonHelper.area(2, 2, "opponent@example.com", TeamID.TEAM_YELLOW);
+        snapshot.getAsJsonArray("cells").add(capture);
+        JsonObject step = capture.deepCopy();
+        step.remove("email");
+        step.remove("team");
+        findPlayer(snapshot, "opponent@example.com").getAsJsonArray("path").add(step);
+
+        Assert.assertTrue(game.reconcile(snapshot));
+        Assert.assertEquals("Only the new capture should be drawn", polygons + 1, shadowMap.getPolygons().size());
+        Assert.assertEquals("The grid should not be redrawn", polylines, shadowMap.getPolylines().size());
+        Assert.assertEquals(yellowScore + 1, game.getTeamScore(TeamID.TEAM_YELLOW));
+
+        JsonObject different = SampleData.createAreaModeTestGame();
+        different.addProperty("cellSize", 40);
+        Assert.assertFalse(game.reconcile(different));
+        Assert.assertFalse("Captured cells can't become unclaimed", game.reconcile(SampleData.createAreaModeTestGame()));
+        Assert.assertEquals(polygons + 1, shadowMap.getPolygons().size());
+    }
+
+    private static JsonObject findById(final JsonArray array, final String id) {
+        for (JsonElement element : array) {
+            if (element.getAsJsonObject().get("id").getAsString().equals(id)) {
+                return element.getAsJsonObject();
+            }
+        }
+        throw new IllegalArgumentException(id);
+    }
+
+    private static JsonObject findPlayer(final JsonObject game, final String email) {
+        for (JsonElement element : game.getAsJsonArray("players")) {
+            if (element.getAsJsonObject().get("email").getAsString().equals(email)) {
+                return element.getAsJsonObject();
+            }
+        }
+        throw new IllegalArgumentException(email);
+    }
+
+}
@@ -0,0 +1,38 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class GridTileProviderTest {
+
+    @Test(timeout = 60000)
+    public void testLinesThinOutWhenZoomedOut() {
+        Assert.assertEquals(1, GridTileProvider.getStride(100, 1000));
+        Assert.assertEquals(1, GridTileProvider.getStride(100, 600));
+        Assert.assertEquals(2, GridTileProvider.getStride(100, 300));
+        Assert.assertEquals(60, GridTileProvider.getStride(1000, 100));
+    }
+
+    @Test(timeout = 60000)
+    public void testOnlyTilesOverTheAreaAreDrawn() {
+        // A huge area: 1 meter cells over about 450 by 380 meters
+        AreaDivider divider = new AreaDivider(40.116319, -88.223576, 40.112905, -88.228933, 1);
+        GridTileProvider provider = new GridTileProvider(divider);
+        final int zoom = 16;
+        int x = (int) (WebMercator.toPixelX(-88.226, zoom) / WebMercator.TILE_SIZE);
+        int y = (int) (WebMercator.toPixelY(40.114, zoom) / WebMercator.TILE_SIZE);
+        Tile tile = provider.getTile(x, y, zoom);
+        Assert.assertEquals(WebMercator.TILE_SIZE, tile.width);
+        Assert.assertNotNull(tile.data);
+        Assert.assertSame(TileProvider.NO_TILE, provider.getTile(0, 0, zoom));
+        Assert.assertSame(TileProvider.NO_TILE, provider.getTile(x + 3, y, zoom));
+        Assert.assertEquals(1, provider.getDrawn());
+    }
+
+}
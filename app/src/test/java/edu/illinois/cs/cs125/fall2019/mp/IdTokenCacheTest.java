@@ -0,0 +1,144 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class IdTokenCacheTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    /** Stands in for Firebase: fetches complete when the test says so. */
+    private static final class FakeSource implements IdTokenCache.Source {
+        private final long[] clock;
+        private final List<BiConsumer<String, Long>> pending = new ArrayList<>();
+        private final List<Consumer<Exception>> pendingErrors = new ArrayList<>();
+        private final List<Boolean> forced = new ArrayList<>();
+        private int issued;
+
+        FakeSource(long[] setClock) {
+            clock = setClock;
+        }
+
+        @Override
+        public void fetch(boolean forceRefresh, BiConsumer<String, Long> onToken, Consumer<Exception> onError) {
+            forced.add(forceRefresh);
+            pending.add(onToken);
+            pendingErrors.add(onError);
+        }
+
+        void complete(long delay) {
+            clock[0] += delay;
+            issued++;
+            List<BiConsumer<String, Long>> callbacks = new ArrayList<>(pending);
+            pending.clear();
+            pendingErrors.clear();
+            for (BiConsumer<String, Long> callback : callbacks) {
+                callback.accept("token" + issued, clock[0] + HOUR);
+            }
+        }
+
+        void fail() {
+            List<Consumer<Exception>> callbacks = new ArrayList<>(pendingErrors);
+            pending.clear();
+            pendingErrors.clear();
+            for (Consumer<Exception> callback : callbacks) {
+                callback.accept(new Exception("offline"));
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testTokenIsReusedUntilNearExpiry() {
+        long[] clock = {1000000};
+        IdTokenCache cache = new IdTokenCache(() -> clock[0], IdTokenCache.DEFAULT_EXPIRY_MARGIN,
+                IdTokenCache.DEFAULT_REFRESH_AHEAD);
+        FakeSource source = new FakeSource(clock);
+        List<String> tokens = new ArrayList<>();
+
+        // The first two requests share one fetch
+        cache.getToken("alice", source, tokens::add, Assert::assertNull);
+        cache.getToken("alice", source, tokens::add, Assert::assertNull);
+        Assert.assertTrue(tokens.isEmpty());
+        Assert.assertEquals(1, source.pending.size());
+        source.complete(40);
+        Assert.assertEquals(2, tokens.size());
+        Assert.assertEquals(2, cache.getWaited());
+
+        // Later requests get the token right away, without asking Firebase
+        clock[0] += TimeUnit.MINUTES.toMillis(30);
+        cache.getToken("alice", source, tokens::add, Assert::assertNull);
+        Assert.assertEquals("token1", tokens.get(2));
+        Assert.assertTrue(source.pending.isEmpty());
+
+        // Close to expiry the token is still used, but a refresh starts
+        clock[0] += TimeUnit.MINUTES.toMillis(25);
+        cache.getToken("alice", source, tokens::add, Assert::assertNull);
+        Assert.assertEquals("token1", tokens.get(3));
+        Assert.assertEquals(Boolean.TRUE, source.forced.get(source.forced.size() - 1));
+        cache.getToken("alice", source, tokens::add, Assert::assertNull);
+        Assert.assertEquals("Only one refresh at a time", 1, source.pending.size());
+        source.complete(40);
+        cache.getToken("alice", source, tokens::add, Assert::assertNull);
+        Assert.assertEquals("token2", tokens.get(tokens.size() - 1));
+        Assert.assertEquals(1, cache.getRefreshes());
+        Assert.assertEquals(4, cache.getImmediate());
+    }
+
+    @Test(timeout = 60000)
+    public void testFailuresAndUserChanges() {
+        long[] clock = {0};
+        IdTokenCache cache = new IdTokenCache(() -> clock[0], 1000, 10000);
+        FakeSource source = new FakeSource(clock);
+        List<String> tokens = new ArrayList<>();
+        List<Exception> errors = new ArrayList<>();
+
+        cache.getToken("alice", source, tokens::add, errors::add);
+        source.fail();
+        Assert.assertEquals(1, errors.size());
+        cache.getToken("alice", source, tokens::add, errors::add);
+        Assert.assertEquals("A failed fetch should be retried by the next request", 1, source.pending.size());
+        source.complete(10);
+        Assert.assertEquals(1, tokens.size());
+
+        // Another user must not get alice's token
+        cache.getToken("bob", source, tokens::add, errors::add);
+        Assert.assertEquals(1, tokens.size());
+        source.complete(10);
+        Assert.assertEquals("token2", tokens.get(1));
+
+        // A rejected token is fetched again
+        cache.invalidate();
+        cache.getToken("bob", source, tokens::add, errors::add);
+        Assert.assertEquals(2, tokens.size());
+        source.complete(10);
+        Assert.assertEquals("token3", tokens.get(2));
+    }
+
+    @Test(timeout = 60000)
+    public void testStartLatency() {
+        // A session: a request every 20 seconds for two hours, with Firebase taking 30 ms to answer
+        long[] clock = {0};
+        IdTokenCache cache = new IdTokenCache(() -> clock[0], IdTokenCache.DEFAULT_EXPIRY_MARGIN,
+                IdTokenCache.DEFAULT_REFRESH_AHEAD);
+        FakeSource source = new FakeSource(clock);
+        int requests = 0;
+        for (long time = 0; time < 2 * HOUR; time += TimeUnit.SECONDS.toMillis(20)) {
+            clock[0] = time;
+            cache.getToken("alice", source, token -> { }, Assert::assertNull);
+            requests++;
+            if (!source.pending.isEmpty()) {
+                source.complete(30);
+            }
+        }
+        Assert.assertEquals(1, cache.getWaited());
+        Assert.assertEquals(requests - 1, cache.getImmediate());
+        Assert.assertTrue(cache.getAverageStartLatency() < 1);
+    }
+
+}
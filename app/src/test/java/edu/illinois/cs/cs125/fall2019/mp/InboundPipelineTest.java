@@ -0,0 +1,81 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class InboundPipelineTest {
+
+    @Test(timeout = 60000)
+    public void testCoalescesLocations() {
+        InboundPipeline pipeline = new InboundPipeline(100);
+        Assert.assertTrue(pipeline.offer(event(JsonHelper.updatePlayerLocation("a@example.com", TeamID.TEAM_RED, 1, 1))));
+        Assert.assertFalse("Only the first offer needs to schedule a drain",
+                pipeline.offer(event(JsonHelper.updatePlayerLocation("b@example.com", TeamID.TEAM_RED, 2, 2))));
+        pipeline.offer(event(JsonHelper.updatePlayerTargetVisit("b@example.com", TeamID.TEAM_RED, "T1")));
+        pipeline.offer(event(JsonHelper.updatePlayerLocation("a@example.com", TeamID.TEAM_RED, 3, 3)));
+        Assert.assertEquals(3, pipeline.getDepth());
+        Assert.assertEquals(1, pipeline.getCoalesced());
+
+        List<GameEvent> received = drain(pipeline);
+        Assert.assertEquals(3, received.size());
+        GameEvent.PlayerLocation first = (GameEvent.PlayerLocation) received.get(0);
+        Assert.assertEquals("a@example.com", first.getEmail());
+        Assert.assertEquals(3, first.getLatitude(), 1e-9);
+        Assert.assertEquals("playerTargetVisit", received.get(2).getType());
+        Assert.assertEquals(0, pipeline.getDepth());
+        Assert.assertTrue("A new message after a drain should schedule another",
+                pipeline.offer(event(JsonHelper.updatePlayerLocation("a@example.com", TeamID.TEAM_RED, 4, 4))));
+    }
+
+    @Test(timeout = 60000)
+    public void testNeverDropsOwnershipChanges() {
+        InboundPipeline pipeline = new InboundPipeline(10);
+        int visits = 0;
+        for (int i = 0; i < 1000; i++) {
+            pipeline.offer(event(JsonHelper.updatePlayerLocation("p" + i + "@example.com", TeamID.TEAM_BLUE, i, i)));
+            if (i % 10 == 0) {
+                pipeline.offer(event(JsonHelper.updatePlayerTargetVisit("p@example.com", TeamID.TEAM_BLUE, "T" + i)));
+                visits++;
+            }
+        }
+        List<GameEvent> received = drain(pipeline);
+        Assert.assertEquals(visits, received.stream().filter(m -> m.getType().equals("playerTargetVisit"))
+                .count());
+        Assert.assertTrue(pipeline.getDropped() > 0);
+        Assert.assertEquals(pipeline.getOffered(), pipeline.getDelivered() + pipeline.getDropped()
+                + pipeline.getCoalesced());
+    }
+
+    @Test(timeout = 60000)
+    public void testExitAndFullUpdate() {
+        InboundPipeline pipeline = new InboundPipeline(100);
+        pipeline.offer(event(JsonHelper.updatePlayerLocation("a@example.com", TeamID.TEAM_RED, 1, 1)));
+        pipeline.offer(event(JsonHelper.updatePlayerExit("a@example.com")));
+        pipeline.offer(event(JsonHelper.updatePlayerLocation("a@example.com", TeamID.TEAM_RED, 2, 2)));
+        List<GameEvent> received = drain(pipeline);
+        Assert.assertEquals("A location after an exit must not be merged into one before it", 3, received.size());
+        Assert.assertEquals("playerExit", received.get(1).getType());
+
+        pipeline.offer(event(JsonHelper.updatePlayerLocation("a@example.com", TeamID.TEAM_RED, 1, 1)));
+        pipeline.offer(event(SampleData.createTargetModeTestGame()));
+        received = drain(pipeline);
+        Assert.assertEquals(1, received.size());
+        Assert.assertEquals("full", received.get(0).getType());
+    }
+
+    private static List<GameEvent> drain(final InboundPipeline pipeline) {
+        List<GameEvent> received = new ArrayList<>();
+        pipeline.drain(received::add);
+        return received;
+    }
+
+    private static GameEvent event(final JsonObject message) {
+        return GameEventDecoder.fromJson(message);
+    }
+
+}
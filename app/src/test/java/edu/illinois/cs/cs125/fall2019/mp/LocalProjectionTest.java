@@ -0,0 +1,70 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class LocalProjectionTest {
+
+    private static final double CENTER_LAT = 40.109395;
+
+    private static final double CENTER_LNG = -88.227212;
+
+    @Test(timeout = 60000)
+    public void testMatchesAtReferenceLatitude() {
+        Random random = new Random(125);
+        for (int i = 0; i < 1000; i++) {
+            double lat = CENTER_LAT + (random.nextDouble() - 0.5) * 0.05;
+            double lng = CENTER_LNG + (random.nextDouble() - 0.5) * 0.05;
+            double otherLat = lat + (random.nextDouble() - 0.5) * 0.01;
+            double otherLng = lng + (random.nextDouble() - 0.5) * 0.01;
+            LocalProjection projection = new LocalProjection(lat, lng);
+            double expected = LatLngUtils.distance(lat, lng, otherLat, otherLng);
+            Assert.assertEquals(expected, projection.distance(lat, lng, otherLat, otherLng), 0);
+            Assert.assertEquals(expected <= 500, projection.withinRange(lat, lng, otherLat, otherLng, 500));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testErrorBound() {
+        Random random = new Random(125);
+        double span = 0.04;
+        List<LatLng> positions = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            positions.add(new LatLng(CENTER_LAT + (random.nextDouble() - 0.5) * span,
+                    CENTER_LNG + (random.nextDouble() - 0.5) * span));
+        }
+        LocalProjection projection = LocalProjection.around(positions);
+        double bound = projection.maxRelativeError(CENTER_LAT - span / 2, CENTER_LAT + span / 2);
+        Assert.assertTrue("A few kilometers should give a tiny error, not " + bound, bound < 0.001);
+        double worst = 0;
+        for (LatLng one : positions) {
+            for (LatLng another : positions) {
+                double expected = LatLngUtils.distance(one, another);
+                if (expected == 0) {
+                    continue;
+                }
+                double actual = projection.distance(one.latitude, one.longitude, another.latitude, another.longitude);
+                worst = Math.max(worst, Math.abs(actual - expected) / expected);
+            }
+        }
+        Assert.assertTrue(worst <= bound + 1e-12);
+    }
+
+    @Test
+    public void testProjectedCoordinates() {
+        LocalProjection projection = new LocalProjection(CENTER_LAT, CENTER_LNG);
+        Assert.assertEquals(0, projection.toX(CENTER_LNG), 1e-9);
+        Assert.assertEquals(0, projection.toY(CENTER_LAT), 1e-9);
+        double x = projection.toX(CENTER_LNG + 0.001);
+        double y = projection.toY(CENTER_LAT + 0.001);
+        Assert.assertEquals(Math.hypot(x, y),
+                projection.distance(CENTER_LAT, CENTER_LNG, CENTER_LAT + 0.001, CENTER_LNG + 0.001), 1e-9);
+    }
+
+}
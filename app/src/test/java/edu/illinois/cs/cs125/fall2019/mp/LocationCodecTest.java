@@ -0,0 +1,106 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class LocationCodecTest {
+
+    private static final double ONE_UNIT = 1 / LocationCodec.UNITS_PER_DEGREE;
+
+    @Test(timeout = 60000)
+    public void testVarints() {
+        long[] values = {0, 1, -1, 63, -64, 64, 1000, -1000, Integer.MAX_VALUE, Integer.MIN_VALUE,
+            Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            ByteBuffer buffer = LocationCodec.newMessageBuffer();
+            LocationCodec.writeSignedVarint(buffer, value);
+            int length = buffer.position();
+            buffer.flip();
+            Assert.assertEquals(value, LocationCodec.readSignedVarint(buffer));
+            Assert.assertEquals(length, buffer.position());
+        }
+        ByteBuffer small = LocationCodec.newMessageBuffer();
+        LocationCodec.writeSignedVarint(small, -64);
+        Assert.assertEquals("Small deltas should take one byte", 1, small.position());
+    }
+
+    @Test(timeout = 60000)
+    public void testRelayMatchesSentPositions() {
+        Random random = new Random(125);
+        LocationRelay relay = new LocationRelay(true);
+        LocationRelay.Client walker = relay.connect("walker@example.com", true);
+        LocationRelay.Client binary = relay.connect("binary@example.com", true);
+        LocationRelay.Client json = relay.connect("json@example.com", false);
+        relay.start();
+        Assert.assertTrue(binary.isBinary());
+        Assert.assertFalse(json.isBinary());
+
+        double latitude = 40.1;
+        double longitude = -88.2;
+        for (int i = 0; i < 1000; i++) {
+            latitude += (random.nextDouble() - 0.5) * 1e-4;
+            longitude += (random.nextDouble() - 0.5) * 1e-4;
+            walker.sendLocation(latitude, longitude);
+            GameEvent.PlayerLocation viaBinary = lastLocation(binary);
+            GameEvent.PlayerLocation viaJson = lastLocation(json);
+            Assert.assertEquals("walker@example.com", viaBinary.getEmail());
+            Assert.assertEquals(latitude, viaBinary.getLatitude(), ONE_UNIT);
+            Assert.assertEquals(longitude, viaBinary.getLongitude(), ONE_UNIT);
+            Assert.assertEquals(viaBinary.getLatitude(), viaJson.getLatitude(), 1e-12);
+            Assert.assertEquals(viaBinary.getLongitude(), viaJson.getLongitude(), 1e-12);
+        }
+
+        // A big jump (across the antimeridian) still round-trips exactly
+        walker.sendLocation(-33.9, 179.9999999);
+        walker.sendLocation(51.5, -179.9999999);
+        Assert.assertEquals(-179.9999999, lastLocation(binary).getLongitude(), ONE_UNIT / 2);
+
+        // Reconnecting starts deltas over without confusing anyone
+        relay.start();
+        walker.sendLocation(latitude, longitude);
+        Assert.assertEquals(latitude, lastLocation(binary).getLatitude(), ONE_UNIT);
+    }
+
+    @Test(timeout = 60000)
+    public void testFallsBackToJson() {
+        LocationRelay relay = new LocationRelay(false);
+        LocationRelay.Client walker = relay.connect("walker@example.com", true);
+        LocationRelay.Client other = relay.connect("other@example.com", true);
+        relay.start();
+        Assert.assertFalse("Without server support both sides should use JSON", walker.isBinary());
+        walker.sendLocation(40.1, -88.2);
+        Assert.assertEquals(40.1, lastLocation(other).getLatitude(), 0);
+    }
+
+    @Test(timeout = 60000)
+    public void testBinaryTrafficIsSmaller() {
+        Random random = new Random(125);
+        int updates = 20000;
+        long[] bytes = new long[2];
+        for (int mode = 0; mode < 2; mode++) {
+            boolean useBinary = mode == 1;
+            LocationRelay relay = new LocationRelay(true);
+            LocationRelay.Client walker = relay.connect("walker@example.com", useBinary);
+            relay.connect("other@example.com", useBinary);
+            relay.start();
+            double latitude = 40.1;
+            double longitude = -88.2;
+            for (int i = 0; i < updates; i++) {
+                // About a GPS fix per second while walking
+                latitude += (random.nextDouble() - 0.5) * 3e-5;
+                longitude += (random.nextDouble() - 0.5) * 3e-5;
+                walker.sendLocation(latitude, longitude);
+            }
+            bytes[mode] = relay.getBytesUp() + relay.getBytesDown();
+        }
+        Assert.assertTrue("Binary should be several times smaller", bytes[1] * 4 < bytes[0]);
+    }
+
+    private static GameEvent.PlayerLocation lastLocation(final LocationRelay.Client client) {
+        return (GameEvent.PlayerLocation) client.getReceived().get(client.getReceived().size() - 1);
+    }
+
+}
@@ -0,0 +1,178 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process stand-in for the game server's location traffic.
+ * <p>
+ * Clients connect with or without the binary capability. Each location a client sends is relayed to every
+ * other client as a playerLocation, in whichever encoding the receiving client negotiated, and decoded there
+ * with a GameEventDecoder just like WebApi does. Bytes are counted in both directions.
+ */
+final class LocationRelay {
+
+    private final boolean serverSupportsBinary;
+
+    private final List<Client> clients = new ArrayList<>();
+
+    private long bytesUp;
+
+    private long bytesDown;
+
+    private long messagesDown;
+
+    LocationRelay(boolean setServerSupportsBinary) {
+        serverSupportsBinary = setServerSupportsBinary;
+    }
+
+    Client connect(String email, boolean clientSupportsBinary) {
+        Client client = new Client(email, clients.size() + 1, clientSupportsBinary && serverSupportsBinary);
+        clients.add(client);
+        return client;
+    }
+
+    /** Sends every client its full update, which starts a new connection's delta state. */
+    void start() {
+        JsonObject full = JsonHelper.game("relay", clients.get(0).email, GameStateID.RUNNING, "target");
+        full.addProperty("type", "full");
+        for (Client c : clients) {
+            JsonObject player = JsonHelper.player(c.email, TeamID.TEAM_RED, PlayerStateID.PLAYING);
+            player.addProperty("wireId", c.wireId);
+            full.getAsJsonArray("players").add(player);
+        }
+        for (Client c : clients) {
+            c.receiveFull(full);
+        }
+    }
+
+    long getBytesUp() {
+        return bytesUp;
+    }
+
+    long getBytesDown() {
+        return bytesDown;
+    }
+
+    long getMessagesDown() {
+        return messagesDown;
+    }
+
+    private void relay(Client from, double latitude, double longitude) {
+        for (Client to : clients) {
+            if (to == from) {
+                continue;
+            }
+            if (to.binary) {
+                long[] last = to.sentPositions.computeIfAbsent(from.wireId, unused -> new long[2]);
+                long fixedLatitude = LocationCodec.toFixed(latitude);
+                long fixedLongitude = LocationCodec.toFixed(longitude);
+                ByteBuffer buffer = LocationCodec.newMessageBuffer();
+                buffer.put(LocationCodec.PLAYER_LOCATION);
+                LocationCodec.writeVarint(buffer, from.wireId);
+                LocationCodec.writeSignedVarint(buffer, fixedLatitude - last[0]);
+                LocationCodec.writeSignedVarint(buffer, fixedLongitude - last[1]);
+                last[0] = fixedLatitude;
+                last[1] = fixedLongitude;
+                byte[] message = LocationCodec.toBytes(buffer);
+                bytesDown += message.length;
+                to.received.add(to.decoder.decode(message));
+            } else {
+                String text = JsonHelper.updatePlayerLocation(from.email, TeamID.TEAM_RED, latitude, longitude)
+                        .toString();
+                bytesDown += text.getBytes(StandardCharsets.UTF_8).length;
+                to.received.add(to.decoder.decode(text));
+            }
+            messagesDown++;
+        }
+    }
+
+    final class Client {
+
+        private final String email;
+
+        private final int wireId;
+
+        private final boolean binary;
+
+        private final GameEventDecoder decoder = new GameEventDecoder();
+
+        private final List<GameEvent> received = new ArrayList<>();
+
+        private final Map<Integer, long[]> sentPositions = new HashMap<>();
+
+        private LocationCodec.Sender sender;
+
+        private long lastLatitude;
+
+        private long lastLongitude;
+
+        private final JsonParser parser = new JsonParser();
+
+        private Client(String setEmail, int setWireId, boolean setBinary) {
+            email = setEmail;
+            wireId = setWireId;
+            binary = setBinary;
+        }
+
+        private void receiveFull(JsonObject full) {
+            JsonObject own = full.deepCopy();
+            if (binary) {
+                own.addProperty(LocationCodec.CAPABILITY, true);
+            } else {
+                own.remove(LocationCodec.CAPABILITY);
+            }
+            GameEvent event = decoder.decode(own.toString());
+            sentPositions.clear();
+            lastLatitude = 0;
+            lastLongitude = 0;
+            // Like GameActivity: the full update decides the outbound encoding
+            if (LocationCodec.isEnabled(((GameEvent.Full) event).getJson())) {
+                sender = new LocationCodec.Sender();
+            } else {
+                sender = null;
+            }
+        }
+
+        /** Sends a location the way GameActivity.updateLocation does, and the server decodes it. */
+        void sendLocation(double latitude, double longitude) {
+            if (sender != null) {
+                byte[] message = sender.encode(latitude, longitude);
+                bytesUp += message.length;
+                ByteBuffer buffer = ByteBuffer.wrap(message);
+                if (buffer.get() != LocationCodec.LOCATION_UPDATE) {
+                    throw new IllegalStateException("Not a location update");
+                }
+                lastLatitude += LocationCodec.readSignedVarint(buffer);
+                lastLongitude += LocationCodec.readSignedVarint(buffer);
+                relay(this, LocationCodec.fromFixed(lastLatitude), LocationCodec.fromFixed(lastLongitude));
+            } else {
+                JsonObject update = new JsonObject();
+                update.addProperty("type", "locationUpdate");
+                update.addProperty("latitude", latitude);
+                update.addProperty("longitude", longitude);
+                String text = update.toString();
+                bytesUp += text.getBytes(StandardCharsets.UTF_8).length;
+                JsonObject parsed = parser.parse(text).getAsJsonObject();
+                relay(this, parsed.get("latitude").getAsDouble(), parsed.get("longitude").getAsDouble());
+            }
+        }
+
+        boolean isBinary() {
+            return binary;
+        }
+
+        List<GameEvent> getReceived() {
+            return received;
+        }
+
+    }
+
+}
@@ -0,0 +1,69 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class LocationThrottleTest {
+
+    @Test(timeout = 60000)
+    public void testDeadbandAndInterval() {
+        List<LatLng> sent = new ArrayList<>();
+        LocationThrottle throttle = new LocationThrottle(sent::add, 5, 10000);
+        LatLng start = new LatLng(40.1, -88.2);
+        Assert.assertTrue("The first fix should always be sent", throttle.offer(start, 0));
+        Assert.assertFalse(throttle.offer(new LatLng(40.10002, -88.2), 1000));
+        Assert.assertTrue("Moving about 6 m should send", throttle.offer(new LatLng(40.100055, -88.2), 2000));
+        Assert.assertFalse(throttle.offer(new LatLng(40.100055, -88.2), 3000));
+        Assert.assertTrue("Standing still should still send after the interval",
+                throttle.offer(new LatLng(40.100055, -88.2), 12000));
+        Assert.assertEquals(3, sent.size());
+        Assert.assertFalse("Nothing is pending", throttle.flush(12000));
+    }
+
+    @Test(timeout = 60000)
+    public void testFlushSendsNewestHeldBackFix() {
+        List<LatLng> sent = new ArrayList<>();
+        LocationThrottle throttle = new LocationThrottle(sent::add);
+        throttle.offer(new LatLng(40.1, -88.2), 0);
+        throttle.offer(new LatLng(40.10001, -88.2), 1000);
+        LatLng newest = new LatLng(40.10002, -88.2);
+        throttle.offer(newest, 2000);
+        Assert.assertTrue(throttle.flush(2000));
+        Assert.assertEquals(newest, sent.get(sent.size() - 1));
+        Assert.assertFalse("A flushed fix shouldn't be sent twice", throttle.flush(2000));
+        Assert.assertEquals(1, throttle.getFlushed());
+    }
+
+    @Test(timeout = 60000)
+    public void testLongGame() {
+        // An hour of fixes every second: a third of the time standing still (GPS jitter), the rest walking
+        Random random = new Random(125);
+        List<LatLng> sent = new ArrayList<>();
+        LocationThrottle throttle = new LocationThrottle(sent::add);
+        double latitude = 40.1;
+        double longitude = -88.2;
+        double worstLag = 0;
+        for (int second = 0; second < 3600; second++) {
+            boolean walking = (second / 60) % 3 != 0;
+            if (walking) {
+                latitude += 1.3e-5;
+            }
+            LatLng fix = new LatLng(latitude + random.nextGaussian() * 1e-5, longitude + random.nextGaussian() * 1e-5);
+            throttle.offer(fix, second * 1000L);
+            LatLng last = sent.get(sent.size() - 1);
+            worstLag = Math.max(worstLag, new LocalProjection(latitude, longitude).distance(last.latitude,
+                    last.longitude, fix.latitude, fix.longitude));
+        }
+        Assert.assertEquals(3600, throttle.getFixesReceived());
+        Assert.assertEquals(sent.size(), throttle.getFixesSent());
+        Assert.assertTrue("Most fixes should be held back", throttle.getFixesSent() < 3600 / 2);
+        Assert.assertTrue(worstLag <= LocationThrottle.DEFAULT_MIN_DISTANCE);
+    }
+
+}
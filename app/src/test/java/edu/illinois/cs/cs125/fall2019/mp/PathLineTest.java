@@ -0,0 +1,50 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadow.api.Shadow;
+
+import edu.illinois.cs.cs125.fall2019.mp.shadows.MockedWrapperInstantiator;
+import edu.illinois.cs.cs125.fall2019.mp.shadows.ShadowGoogleMap;
+
+@RunWith(RobolectricTestRunner.class)
+public class PathLineTest {
+
+    @Test(timeout = 60000)
+    public void testPathIsOneGrowingPolyline() {
+        GoogleMap map = MockedWrapperInstantiator.create(GoogleMap.class);
+        ShadowGoogleMap shadowMap = Shadow.extract(map);
+        LatLngBounds area = new LatLngBounds(new LatLng(40.10, -88.24), new LatLng(40.12, -88.22));
+        ViewportCuller culler = new ViewportCuller(area);
+        LatLng[] points = {new LatLng(40.101, -88.239), new LatLng(40.102, -88.238),
+            new LatLng(40.103, -88.236), new LatLng(40.109, -88.231)};
+
+        PathLine line = new PathLine(map, 0xffff0000);
+        line.extend(points[0]);
+        line.extend(points[1]);
+        culler.add(line, line.getBounds());
+        Assert.assertEquals(1, shadowMap.getPolylines().size());
+        for (int i = 2; i < points.length; i++) {
+            line.extend(points[i]);
+            culler.move(line, line.getBounds());
+        }
+        Assert.assertEquals("Extending the path should not add polylines", 1, shadowMap.getPolylines().size());
+        Assert.assertEquals(points.length, shadowMap.getPolylines().get(0).getPoints().size());
+        Assert.assertEquals(1, shadowMap.getPolylinesConnecting(points[2], points[3]).size());
+        Assert.assertEquals(0xffff0000, shadowMap.getPolylines().get(0).getColor());
+
+        // Scrolled away from the whole path: the line is removed, and comes back with all its points
+        culler.setViewport(new LatLngBounds(new LatLng(40.115, -88.225), new LatLng(40.116, -88.224)));
+        Assert.assertEquals(0, shadowMap.getPolylines().size());
+        culler.setViewport(new LatLngBounds(new LatLng(40.108, -88.232), new LatLng(40.110, -88.230)));
+        Assert.assertEquals(1, shadowMap.getPolylines().size());
+        Assert.assertEquals(points.length, shadowMap.getPolylines().get(0).getPoints().size());
+    }
+
+}
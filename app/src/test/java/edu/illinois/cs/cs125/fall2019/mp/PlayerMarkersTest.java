@@ -0,0 +1,114 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.Circle;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadow.api.Shadow;
+
+import edu.illinois.cs.cs125.fall2019.mp.shadows.MockedWrapperInstantiator;
+import edu.illinois.cs.cs125.fall2019.mp.shadows.ShadowCircle;
+import edu.illinois.cs.cs125.fall2019.mp.shadows.ShadowGoogleMap;
+
+@RunWith(RobolectricTestRunner.class)
+public class PlayerMarkersTest {
+
+    private static final int[] TEAM_COLORS = {0, 0xffff0000, 0xffffff00, 0xff00ff00, 0xff0000ff};
+
+    @Test(timeout = 60000)
+    public void testMovingKeepsOneCircle() {
+        GoogleMap map = MockedWrapperInstantiator.create(GoogleMap.class);
+        ShadowGoogleMap shadowMap = Shadow.extract(map);
+        int[] circlesAdded = {0};
+        shadowMap.setComponentAdditionListener(obj -> {
+            if (obj instanceof Circle) {
+                circlesAdded[0]++;
+            }
+        });
+        PlayerMarkers markers = new PlayerMarkers(map, TEAM_COLORS);
+        SceneReconciler reconciler = MapScene.of(map).getReconciler();
+
+        int moves = 200;
+        LatLng location = null;
+        for (int i = 0; i < moves; i++) {
+            location = new LatLng(40.1 + i * 0.0001, -88.2 - i * 0.0001);
+            markers.moveTo("opponent@example.com", TeamID.TEAM_RED, location);
+        }
+        Assert.assertEquals("Moving a player should not add circles", 1, circlesAdded[0]);
+        Assert.assertEquals(1, shadowMap.getCircles().size());
+        Circle circle = shadowMap.getCircles().get(0);
+        ShadowCircle shadowCircle = Shadow.extract(circle);
+        Assert.assertEquals(location, circle.getCenter());
+        Assert.assertEquals("Each move should be one setCenter", moves - 1, shadowCircle.getCenterChanges());
+        Assert.assertEquals(TEAM_COLORS[TeamID.TEAM_RED], circle.getFillColor());
+        Assert.assertEquals("One add, then one update per move", moves, reconciler.getOperations());
+
+        // Reporting the same location again touches nothing
+        markers.moveTo("opponent@example.com", TeamID.TEAM_RED, location);
+        Assert.assertEquals(moves, reconciler.getOperations());
+        Assert.assertEquals(moves - 1, shadowCircle.getCenterChanges());
+
+        // A player who leaves and another who joins share the pooled circle
+        markers.remove("opponent@example.com");
+        Assert.assertFalse(circle.isVisible());
+        markers.moveTo("other@example.com", TeamID.TEAM_BLUE, new LatLng(40.1, -88.2));
+        Assert.assertEquals(1, circlesAdded[0]);
+        Assert.assertTrue(circle.isVisible());
+        Assert.assertEquals(new LatLng(40.1, -88.2), circle.getCenter());
+        Assert.assertEquals(TEAM_COLORS[TeamID.TEAM_BLUE], circle.getFillColor());
+    }
+
+    @Test(timeout = 60000)
+    public void testCullerHidesPlayersOutOfView() {
+        GoogleMap map = MockedWrapperInstantiator.create(GoogleMap.class);
+        ShadowGoogleMap shadowMap = Shadow.extract(map);
+        int[] circlesAdded = {0};
+        shadowMap.setComponentAdditionListener(obj -> {
+            if (obj instanceof Circle) {
+                circlesAdded[0]++;
+            }
+        });
+        PlayerMarkers markers = new PlayerMarkers(map, TEAM_COLORS);
+        SceneReconciler reconciler = MapScene.of(map).getReconciler();
+        LatLng west = new LatLng(40.1, -88.3);
+        LatLng east = new LatLng(40.1, -88.1);
+        markers.moveTo("west@example.com", TeamID.TEAM_RED, west);
+        markers.moveTo("east@example.com", TeamID.TEAM_BLUE, east);
+        Assert.assertEquals(2, markers.getCircleCount());
+
+        // Players already on the map are registered with the culler, and only those in view keep a circle
+        ViewportCuller culler = new ViewportCuller(new LatLngBounds(new LatLng(40, -88.4), new LatLng(40.2, -88)));
+        markers.setCuller(culler);
+        culler.setViewport(new LatLngBounds(new LatLng(40.09, -88.31), new LatLng(40.11, -88.29)));
+        Assert.assertEquals(2, markers.size());
+        Assert.assertEquals(1, markers.getCircleCount());
+        Circle westCircle = shadowMap.getCircleAt(west);
+        Assert.assertNotNull(westCircle);
+        Assert.assertTrue(westCircle.isVisible());
+
+        // Moving out of view gives up the circle, moving into view gets one, and no new circles are created
+        long operations = reconciler.getOperations();
+        LatLng farEast = new LatLng(40.1, -88.05);
+        markers.moveTo("east@example.com", TeamID.TEAM_BLUE, farEast);
+        Assert.assertEquals("Moving a player out of view touches nothing", operations, reconciler.getOperations());
+        markers.moveTo("west@example.com", TeamID.TEAM_RED, farEast);
+        Assert.assertEquals(0, markers.getCircleCount());
+        Assert.assertFalse(westCircle.isVisible());
+        markers.moveTo("east@example.com", TeamID.TEAM_BLUE, west);
+        Assert.assertEquals(1, markers.getCircleCount());
+        Assert.assertTrue(westCircle.isVisible());
+        Assert.assertEquals(TEAM_COLORS[TeamID.TEAM_BLUE], westCircle.getFillColor());
+        Assert.assertEquals(2, circlesAdded[0]);
+
+        // A player who leaves is unregistered
+        markers.remove("east@example.com");
+        Assert.assertEquals(0, markers.getCircleCount());
+        Assert.assertEquals(1, culler.size());
+    }
+
+}
@@ -0,0 +1,102 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class ReconnectManagerTest {
+
+    private static final String URL = "wss://example.com/games/abc/play";
+
+    @Test(timeout = 60000)
+    public void testBackoff() {
+        ReconnectManager manager = new ReconnectManager(new Random(125), 500, 30000);
+        Assert.assertFalse(manager.isReconnecting());
+        long window = 500;
+        for (int attempt = 0; attempt < 20; attempt++) {
+            long delay = manager.nextDelay();
+            Assert.assertTrue("Delay " + delay + " outside window " + window, delay >= window / 2 && delay <= window);
+            window = Math.min(30000, window * 2);
+        }
+        Assert.assertTrue(manager.isReconnecting());
+
+        // Clients dropped together shouldn't all retry at the same moment
+        Random seeds = new Random(125);
+        Set<Long> delays = new HashSet<>();
+        for (int client = 0; client < 100; client++) {
+            delays.add(new ReconnectManager(new Random(seeds.nextLong()), 500, 30000).nextDelay());
+        }
+        Assert.assertTrue(delays.size() > 50);
+
+        // Hearing from the server resets the backoff
+        manager.accept(full(10, "token"));
+        Assert.assertFalse(manager.isReconnecting());
+        Assert.assertTrue(manager.nextDelay() <= 500);
+    }
+
+    @Test(timeout = 60000)
+    public void testResumeSkipsSeenEvents() {
+        ReconnectManager manager = new ReconnectManager(new Random(125), 500, 30000);
+        Assert.assertEquals("Nothing to resume yet", URL, manager.getConnectUrl(URL));
+        GameEventDecoder decoder = new GameEventDecoder();
+        Assert.assertTrue(manager.accept(decoder.decode(full(10, "a b").getJson().toString())));
+        for (int seq = 11; seq <= 15; seq++) {
+            Assert.assertTrue(manager.accept(decoder.decode(visit(seq).toString())));
+        }
+
+        // The connection drops; the server resends a couple of events the client already had
+        manager.nextDelay();
+        Assert.assertEquals(URL + "?resume=a+b&seq=15", manager.getConnectUrl(URL));
+        JsonObject resumed = new JsonObject();
+        resumed.addProperty("type", "resumed");
+        Assert.assertTrue(manager.accept(decoder.decode(resumed.toString())));
+        List<Long> handled = new ArrayList<>();
+        for (int seq = 14; seq <= 18; seq++) {
+            GameEvent event = GameEventDecoder.fromJson(visit(seq));
+            if (manager.accept(event)) {
+                handled.add(event.getSequence());
+            }
+        }
+        Assert.assertEquals(Arrays.asList(16L, 17L, 18L), handled);
+        Assert.assertEquals(2, manager.getDuplicates());
+        Assert.assertEquals(1, manager.getResumes());
+        Assert.assertEquals(0, manager.getFullUpdates());
+
+        // Too long a gap: the server starts over with a full update
+        manager.nextDelay();
+        manager.accept(full(40, "c"));
+        Assert.assertEquals(1, manager.getFullUpdates());
+        Assert.assertTrue(manager.accept(GameEventDecoder.fromJson(visit(41))));
+        Assert.assertEquals(URL + "?resume=c&seq=41", manager.getConnectUrl(URL));
+    }
+
+    @Test(timeout = 60000)
+    public void testNoTokenMeansNoResume() {
+        ReconnectManager manager = new ReconnectManager();
+        manager.accept(GameEventDecoder.fromJson(SampleData.createTargetModeTestGame()));
+        manager.accept(GameEventDecoder.fromJson(visit(3)));
+        Assert.assertEquals(URL, manager.getConnectUrl(URL));
+    }
+
+    private static GameEvent.Full full(final long seq, final String token) {
+        JsonObject json = SampleData.createTargetModeTestGame();
+        json.addProperty("seq", seq);
+        json.addProperty("resumeToken", token);
+        return (GameEvent.Full) GameEventDecoder.fromJson(json);
+    }
+
+    private static JsonObject visit(final long seq) {
+        JsonObject json = JsonHelper.updatePlayerTargetVisit("a@example.com", TeamID.TEAM_RED, "T" + seq);
+        json.addProperty("seq", seq);
+        return json;
+    }
+
+}
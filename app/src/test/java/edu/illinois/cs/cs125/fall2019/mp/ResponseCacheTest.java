@@ -0,0 +1,125 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.gson.JsonObject;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class ResponseCacheTest {
+
+    private static final String GAMES = WebApi.API_BASE + "/games";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 60000)
+    public void testEntriesAreKeptPerUser() throws IOException {
+        ResponseCache cache = new ResponseCache(folder.newFolder(), 4);
+        Assert.assertNull(cache.get("alice", GAMES));
+        JsonObject games = SampleData.createTargetModeTestGame();
+        cache.put("alice", GAMES, "\"v1\"", games.toString(), games);
+
+        ResponseCache.Entry entry = cache.get("alice", GAMES);
+        Assert.assertEquals("\"v1\"", entry.getEtag());
+        Assert.assertSame("A fresh entry shouldn't be parsed again", games, entry.getJson());
+        Assert.assertNull("Another user's response must not be served", cache.get("bob", GAMES));
+        Assert.assertNull(cache.get("alice", GAMES + "/abc"));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(3, cache.getMisses());
+        Assert.assertEquals(0.25, cache.getHitRate(), 1e-9);
+    }
+
+    @Test(timeout = 60000)
+    public void testEntriesSurviveRestart() throws IOException {
+        File directory = folder.newFolder();
+        ResponseCache cache = new ResponseCache(directory, 4);
+        JsonObject games = SampleData.createAreaModeTestGame();
+        cache.put("alice", GAMES, "W/\"abc\"", games.toString(), games);
+        cache.put("alice", GAMES + "/empty", null, "", null);
+
+        ResponseCache restarted = new ResponseCache(directory, 4);
+        ResponseCache.Entry entry = restarted.get("alice", GAMES);
+        Assert.assertEquals("W/\"abc\"", entry.getEtag());
+        Assert.assertEquals(games, entry.getJson());
+        Assert.assertSame("Parsed once, then reused", entry.getJson(), restarted.get("alice", GAMES).getJson());
+        ResponseCache.Entry empty = restarted.get("alice", GAMES + "/empty");
+        Assert.assertNull(empty.getEtag());
+        Assert.assertNull(empty.getJson());
+        Assert.assertEquals(1.0, restarted.getHitRate(), 1e-9);
+
+        // A damaged file is a miss, not a crash
+        for (File file : directory.listFiles()) {
+            Files.write(file.toPath(), new byte[] {0, 0});
+        }
+        Assert.assertNull(new ResponseCache(directory, 4).get("alice", GAMES));
+    }
+
+    @Test(timeout = 60000)
+    public void testEvictedEntriesComeBackFromDisk() throws IOException {
+        ResponseCache cache = new ResponseCache(folder.newFolder(), 2);
+        for (int i = 0; i < 10; i++) {
+            JsonObject json = new JsonObject();
+            json.addProperty("page", i);
+            cache.put("alice", GAMES + "?page=" + i, "\"" + i + "\"", json.toString(), json);
+        }
+        for (int i = 0; i < 10; i++) {
+            ResponseCache.Entry entry = cache.get("alice", GAMES + "?page=" + i);
+            Assert.assertEquals("\"" + i + "\"", entry.getEtag());
+            Assert.assertEquals(i, entry.getJson().get("page").getAsInt());
+        }
+        Assert.assertEquals(10, cache.getHits());
+        cache.recordNotModified();
+        Assert.assertEquals(1, cache.getNotModified());
+    }
+
+    @Test(timeout = 60000)
+    public void testInMemoryLookupSkipsDisk() throws IOException {
+        File directory = folder.newFolder();
+        JsonObject games = SampleData.createTargetModeTestGame();
+        new ResponseCache(directory, 4).put("alice", GAMES, "\"v1\"", games.toString(), games);
+
+        ResponseCache restarted = new ResponseCache(directory, 4);
+        Assert.assertNull("Only memory is checked", restarted.getInMemory("alice", GAMES));
+        Assert.assertEquals(0, restarted.getHits() + restarted.getMisses());
+        ResponseCache.Entry fromDisk = restarted.get("alice", GAMES);
+        Assert.assertNotNull(fromDisk);
+        Assert.assertSame("Disk entries are kept in memory", fromDisk, restarted.getInMemory("alice", GAMES));
+        Assert.assertEquals(2, restarted.getHits());
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentPutsAndGets() throws Exception {
+        File directory = folder.newFolder();
+        ResponseCache cache = new ResponseCache(directory, 1);
+        int versions = 200;
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < versions; i++) {
+                JsonObject json = new JsonObject();
+                json.addProperty("version", i);
+                cache.put("alice", GAMES, "\"" + i + "\"", json.toString(), json);
+                cache.put("alice", GAMES + "/other", null, "{}", null);
+            }
+        });
+        writer.start();
+        int last = -1;
+        while (writer.isAlive()) {
+            ResponseCache.Entry entry = cache.get("alice", GAMES);
+            if (entry != null) {
+                int version = entry.getJson().get("version").getAsInt();
+                Assert.assertTrue("Lookups must never go back to an older response", version >= last);
+                last = version;
+            }
+        }
+        writer.join();
+        Assert.assertEquals(versions - 1, cache.get("alice", GAMES).getJson().get("version").getAsInt());
+        Assert.assertEquals("The newest response is the one on disk", versions - 1,
+                new ResponseCache(directory, 1).get("alice", GAMES).getJson().get("version").getAsInt());
+    }
+
+}
@@ -0,0 +1,117 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SceneReconcilerTest {
+
+    private static MapScene.Spec marker(final int i, final double offset) {
+        return new MapScene.MarkerSpec(new LatLng(40.1 + i * 1e-5 + offset, -88.2), null, "Target " + i, true);
+    }
+
+    @Test(timeout = 60000)
+    public void testOnlyChangesAreApplied() {
+        HeadlessMapBackend backend = new HeadlessMapBackend();
+        MapScene scene = new MapScene(backend);
+        SceneReconciler reconciler = scene.getReconciler();
+        scene.beginBatch();
+        for (int i = 0; i < 1000; i++) {
+            scene.put("t" + i, marker(i, 0));
+        }
+        Assert.assertEquals("Nothing is applied until the batch ends", 0, backend.getOperations());
+        scene.endBatch();
+        Assert.assertEquals(1000, backend.getAdds());
+        Assert.assertEquals(1000, reconciler.size());
+        Assert.assertEquals(1, reconciler.getFrames());
+
+        // Declaring the whole scene again, with ten entities moved, only updates those ten
+        long before = backend.getOperations();
+        scene.batch(() -> {
+            for (int i = 0; i < 1000; i++) {
+                scene.remove("t" + i);
+            }
+            for (int i = 0; i < 1000; i++) {
+                double offset = 0;
+                if (i % 100 == 0) {
+                    offset = 1e-3;
+                }
+                scene.put("t" + i, marker(i, offset));
+            }
+        });
+        Assert.assertEquals(10, backend.getOperations() - before);
+        Assert.assertEquals(10, backend.getUpdates());
+        Assert.assertEquals(backend.getOperations(), reconciler.getOperations());
+
+        // Many changes to one entity in a batch are one operation; removing is one operation
+        before = backend.getOperations();
+        scene.batch(() -> {
+            for (int step = 0; step < 50; step++) {
+                scene.put("t1", marker(1, step * 1e-4));
+            }
+            scene.remove("t2");
+            scene.put("t3", marker(3, 0));
+        });
+        Assert.assertEquals(2, backend.getOperations() - before);
+        Assert.assertEquals(1, backend.getRemoves());
+        Assert.assertEquals(999, backend.getShown().size());
+
+        // Appearing and disappearing within a batch costs nothing
+        before = backend.getOperations();
+        scene.batch(() -> {
+            scene.put("temporary", marker(0, 0));
+            scene.remove("temporary");
+        });
+        Assert.assertEquals(0, backend.getOperations() - before);
+
+        // Outside a batch, each change is applied right away
+        scene.put("t4", marker(4, 1e-3));
+        Assert.assertEquals(1, backend.getOperations() - before);
+
+        // Clearing the map forgets everything at once
+        scene.clearMap();
+        Assert.assertEquals(0, scene.size());
+        Assert.assertEquals(0, reconciler.size());
+        Assert.assertEquals(0, backend.getShown().size());
+    }
+
+    @Test(timeout = 60000)
+    public void testKindsAndFrames() {
+        HeadlessMapBackend backend = new HeadlessMapBackend();
+        MapScene scene = new MapScene(backend);
+        SceneReconciler reconciler = scene.getReconciler();
+        List<Runnable> frames = new ArrayList<>();
+        reconciler.setFrameScheduler(frames::add);
+        List<LatLng> square = Arrays.asList(new LatLng(0, 0), new LatLng(0, 1), new LatLng(1, 1), new LatLng(1, 0));
+
+        scene.put("cell", new MapScene.PolygonSpec(square, Collections.emptyList(), 1));
+        scene.put("path", new MapScene.LineSpec(square.subList(0, 2), 2));
+        scene.put("player", new MapScene.CircleSpec(new LatLng(0.5, 0.5), 4, 3, 0, 2, 2));
+        Assert.assertEquals("One frame is scheduled for any number of changes", 1, frames.size());
+        Assert.assertEquals(0, backend.getOperations());
+        frames.get(0).run();
+        Assert.assertEquals(3, backend.getAdds());
+        Assert.assertEquals(1, reconciler.getFrames());
+
+        // Equal specs built from new objects aren't changes
+        scene.put("cell", new MapScene.PolygonSpec(new ArrayList<>(square), Collections.emptyList(), 1));
+        Assert.assertEquals(1, frames.size());
+
+        // Extending a line is an update; changing kind is a remove and an add
+        scene.put("path", new MapScene.LineSpec(square.subList(0, 3), 2));
+        scene.put("player", marker(0, 0));
+        Assert.assertEquals(2, frames.size());
+        frames.get(1).run();
+        Assert.assertEquals(1, backend.getUpdates());
+        Assert.assertEquals(1, backend.getRemoves());
+        Assert.assertEquals(4, backend.getAdds());
+        Assert.assertEquals(3, reconciler.size());
+    }
+
+}
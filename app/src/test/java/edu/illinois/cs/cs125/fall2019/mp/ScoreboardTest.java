@@ -0,0 +1,55 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class ScoreboardTest {
+
+    private static final int CELLS = 1000 * 1000;
+
+    @Test(timeout = 60000)
+    public void testMillionCellGame() {
+        Random random = new Random(125);
+        int[] owners = new int[CELLS];
+        Scoreboard scoreboard = new Scoreboard();
+        scoreboard.add(TeamID.OBSERVER, CELLS);
+
+        // Captures and recaptures, checked against a full scan now and then
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50000; i++) {
+                int cell = random.nextInt(CELLS);
+                int team = TeamID.MIN_TEAM + random.nextInt(TeamID.NUM_TEAMS);
+                scoreboard.change(owners[cell], team);
+                owners[cell] = team;
+            }
+            int[] expected = new int[TeamID.MAX_TEAM + 1];
+            for (int owner : owners) {
+                expected[owner]++;
+            }
+            Assert.assertArrayEquals(expected, scoreboard.getScores());
+            for (int team = TeamID.OBSERVER; team <= TeamID.MAX_TEAM; team++) {
+                Assert.assertEquals(expected[team], scoreboard.getScore(team));
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownTeams() {
+        Scoreboard scoreboard = new Scoreboard();
+        scoreboard.add(TeamID.TEAM_RED, 2);
+        Assert.assertEquals(0, scoreboard.getScore(-1));
+        Assert.assertEquals(0, scoreboard.getScore(TeamID.MAX_TEAM + 1));
+        try {
+            scoreboard.change(TeamID.TEAM_RED, TeamID.MAX_TEAM + 1);
+            Assert.fail("Unknown teams should be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(2, scoreboard.getScore(TeamID.TEAM_RED));
+        }
+        int[] scores = scoreboard.getScores();
+        scores[TeamID.TEAM_RED] = 0;
+        Assert.assertEquals(2, scoreboard.getScore(TeamID.TEAM_RED));
+    }
+
+}
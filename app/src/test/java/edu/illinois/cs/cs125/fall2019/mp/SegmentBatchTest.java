@@ -0,0 +1,76 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class SegmentBatchTest {
+
+    private static final double CENTER_LAT = 40.109395;
+
+    private static final double CENTER_LNG = -88.227212;
+
+    @Test(timeout = 60000)
+    public void testBatchMatchesPairwise() {
+        Random random = new Random(125);
+        int count = 150;
+        double[] segments = new double[(count + 10) * SegmentBatch.SEGMENT_STRIDE];
+        for (int i = 0; i < count * SegmentBatch.SEGMENT_STRIDE; i += 2) {
+            segments[i] = randomCoordinate(random, CENTER_LAT);
+            segments[i + 1] = randomCoordinate(random, CENTER_LNG);
+        }
+        long[] hits = new long[(count + Long.SIZE - 1) / Long.SIZE];
+        for (int trial = 0; trial < 500; trial++) {
+            LatLng start = new LatLng(randomCoordinate(random, CENTER_LAT), randomCoordinate(random, CENTER_LNG));
+            LatLng end = new LatLng(randomCoordinate(random, CENTER_LAT), randomCoordinate(random, CENTER_LNG));
+            int expectedFirst = -1;
+            int expectedTotal = 0;
+            for (int i = 0; i < count; i++) {
+                int base = i * SegmentBatch.SEGMENT_STRIDE;
+                boolean crosses = LineCrossDetector.linesCross(new LatLng(segments[base], segments[base + 1]),
+                        new LatLng(segments[base + 2], segments[base + 3]), start, end);
+                Assert.assertEquals(crosses, SegmentBatch.linesCross(segments[base], segments[base + 1],
+                        segments[base + 2], segments[base + 3],
+                        start.latitude, start.longitude, end.latitude, end.longitude));
+                if (crosses && expectedFirst < 0) {
+                    expectedFirst = i;
+                }
+                if (crosses) {
+                    expectedTotal++;
+                }
+            }
+            Assert.assertEquals(expectedFirst, SegmentBatch.firstCrossing(segments, count,
+                    start.latitude, start.longitude, end.latitude, end.longitude));
+            Assert.assertEquals(expectedTotal, SegmentBatch.findCrossings(segments, count,
+                    start.latitude, start.longitude, end.latitude, end.longitude, hits));
+            for (int i = 0; i < count; i++) {
+                int base = i * SegmentBatch.SEGMENT_STRIDE;
+                boolean crosses = SegmentBatch.linesCross(segments[base], segments[base + 1],
+                        segments[base + 2], segments[base + 3],
+                        start.latitude, start.longitude, end.latitude, end.longitude);
+                Assert.assertEquals(crosses, (hits[i / Long.SIZE] & (1L << (i % Long.SIZE))) != 0);
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testNoHitsClearsBitmap() {
+        double[] segments = {CENTER_LAT, CENTER_LNG, CENTER_LAT + 0.001, CENTER_LNG};
+        long[] hits = {-1L};
+        Assert.assertEquals(0, SegmentBatch.findCrossings(segments, 1,
+                CENTER_LAT, CENTER_LNG + 0.001, CENTER_LAT + 0.001, CENTER_LNG + 0.002, hits));
+        Assert.assertEquals(0L, hits[0]);
+        Assert.assertEquals(-1, SegmentBatch.firstCrossing(segments, 0,
+                CENTER_LAT, CENTER_LNG - 0.001, CENTER_LAT, CENTER_LNG + 0.001));
+        Assert.assertEquals(0, SegmentBatch.firstCrossing(segments, 1,
+                CENTER_LAT + 0.0005, CENTER_LNG - 0.001, CENTER_LAT + 0.0005, CENTER_LNG + 0.001));
+    }
+
+    private static double randomCoordinate(final Random random, final double center) {
+        return center + (random.nextDouble() * 2 - 1) * 0.001;
+    }
+
+}
@@ -0,0 +1,215 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class SegmentIndexTest {
+
+    private static final double CENTER_LAT = 40.109395;
+
+    private static final double CENTER_LNG = -88.227212;
+
+    private static final double SPREAD = 0.01;
+
+    @Test(timeout = 60000)
+    public void testMatchesBruteForce() {
+        Random random = new Random(125);
+        List<LatLng> points = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            points.add(randomPosition(random));
+        }
+        SegmentIndex index = new SegmentIndex(SegmentIndex.chooseCellSize(points, 64));
+        List<LatLng[]> segments = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            LatLng start = points.get(random.nextInt(points.size()));
+            LatLng end = points.get(random.nextInt(points.size()));
+            if (LatLngUtils.same(start, end)) {
+                continue;
+            }
+            segments.add(new LatLng[] {start, end});
+            index.add(start, end);
+        }
+        Assert.assertEquals(segments.size(), index.size());
+        int crossings = 0;
+        for (int i = 0; i < 3000; i++) {
+            LatLng start = points.get(random.nextInt(points.size()));
+            LatLng end = random.nextBoolean() ? points.get(random.nextInt(points.size())) : randomPosition(random);
+            if (LatLngUtils.same(start, end)) {
+                continue;
+            }
+            if (checkAgainstBruteForce(index, segments, start, end)) {
+                crossings++;
+            }
+        }
+        Assert.assertTrue("The test should exercise both outcomes", crossings > 0);
+    }
+
+    @Test(timeout = 60000)
+    public void testAxisAlignedAndTouching() {
+        SegmentIndex index = new SegmentIndex(0.001);
+        LatLng west = new LatLng(CENTER_LAT, CENTER_LNG);
+        LatLng east = new LatLng(CENTER_LAT, CENTER_LNG + 0.005);
+        index.add(west, east);
+        LatLng middle = new LatLng(CENTER_LAT, CENTER_LNG + 0.0025);
+        LatLng north = new LatLng(CENTER_LAT + 0.003, CENTER_LNG + 0.0025);
+        LatLng south = new LatLng(CENTER_LAT - 0.003, CENTER_LNG + 0.0025);
+        Assert.assertTrue("A vertical line across a horizontal one should cross", index.crossesAny(north, south));
+        Assert.assertTrue("Ending on the middle of a line should count as crossing", index.crossesAny(north, middle));
+        Assert.assertFalse("Sharing an endpoint should not count as crossing", index.crossesAny(east, north));
+        Assert.assertFalse(index.crossesAny(new LatLng(CENTER_LAT + 0.001, CENTER_LNG), north));
+        index.clear();
+        Assert.assertFalse(index.crossesAny(north, south));
+    }
+
+    @Test(timeout = 60000)
+    public void testLateGameChecksStayLocal() {
+        Random random = new Random(125);
+        for (int count : new int[] {100, 1000, 10000}) {
+            List<LatLng> points = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                points.add(randomPosition(random));
+            }
+            SegmentIndex index = new SegmentIndex(SegmentIndex.chooseCellSize(points, 64));
+            List<LatLng[]> segments = new ArrayList<>();
+            // Paths made of short hops between nearby targets, as players tend to walk
+            for (int i = 0; i < count; i++) {
+                LatLng start = points.get(i);
+                LatLng end = new LatLng(start.latitude + (random.nextDouble() - 0.5) * 0.0004,
+                        start.longitude + (random.nextDouble() - 0.5) * 0.0004);
+                segments.add(new LatLng[] {start, end});
+                index.add(start, end);
+            }
+            int checks = 300;
+            for (int i = 0; i < checks; i++) {
+                LatLng start = randomPosition(random);
+                checkAgainstBruteForce(index, segments, start,
+                        new LatLng(start.latitude + 0.0003, start.longitude - 0.0002));
+            }
+            Assert.assertTrue("A check should only examine the segments around the candidate",
+                    index.getExamined() < checks * 5);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testLatticeMatchesBruteForce() {
+        // Segments between points of a small lattice are often collinear, touching, or pointing at each other
+        Random random = new Random(125);
+        List<LatLng> points = new ArrayList<>();
+        for (int row = 0; row < 8; row++) {
+            for (int column = 0; column < 8; column++) {
+                points.add(new LatLng(CENTER_LAT + row * 0.001, CENTER_LNG + column * 0.001));
+            }
+        }
+        SegmentIndex index = new SegmentIndex(SegmentIndex.chooseCellSize(points, 16));
+        List<LatLng[]> segments = new ArrayList<>();
+        int crossings = 0;
+        for (int i = 0; i < 2000; i++) {
+            LatLng start = points.get(random.nextInt(points.size()));
+            LatLng end = points.get(random.nextInt(points.size()));
+            if (LatLngUtils.same(start, end)) {
+                continue;
+            }
+            if (checkAgainstBruteForce(index, segments, start, end)) {
+                crossings++;
+            } else if (segments.size() < 40) {
+                segments.add(new LatLng[] {start, end});
+                index.add(start, end);
+            }
+        }
+        Assert.assertTrue("The test should exercise both outcomes", crossings > 0);
+    }
+
+    @Test(timeout = 60000)
+    public void testCollinearAndExtension() {
+        SegmentIndex index = new SegmentIndex(0.0005);
+        LatLng origin = new LatLng(CENTER_LAT, CENTER_LNG);
+        LatLng diagonal = new LatLng(CENTER_LAT + 0.001, CENTER_LNG + 0.001);
+        index.add(origin, diagonal);
+        List<LatLng[]> segments = new ArrayList<>();
+        segments.add(new LatLng[] {origin, diagonal});
+
+        LatLng[][] candidates = {
+            // Collinear, overlapping and not
+            {new LatLng(CENTER_LAT + 0.0005, CENTER_LNG + 0.0005), new LatLng(CENTER_LAT + 0.002, CENTER_LNG + 0.002)},
+            {new LatLng(CENTER_LAT + 0.003, CENTER_LNG + 0.003), new LatLng(CENTER_LAT + 0.004, CENTER_LNG + 0.004)},
+            // Continuing from an endpoint
+            {diagonal, new LatLng(CENTER_LAT + 0.002, CENTER_LNG + 0.002)},
+            // Touching the middle
+            {new LatLng(CENTER_LAT + 0.0005, CENTER_LNG + 0.0005), new LatLng(CENTER_LAT + 0.002, CENTER_LNG)},
+            // Far away, but its line passes through an endpoint of the indexed segment
+            {new LatLng(CENTER_LAT + 0.003, CENTER_LNG + 0.002), new LatLng(CENTER_LAT + 0.005, CENTER_LNG + 0.003)},
+            // Far away, and the indexed segment's line passes through its endpoint
+            {new LatLng(CENTER_LAT + 0.004, CENTER_LNG + 0.004), new LatLng(CENTER_LAT + 0.006, CENTER_LNG + 0.003)},
+            // Far away and unrelated
+            {new LatLng(CENTER_LAT + 0.004, CENTER_LNG + 0.0041), new LatLng(CENTER_LAT + 0.006, CENTER_LNG + 0.0032)}
+        };
+        for (LatLng[] candidate : candidates) {
+            checkAgainstBruteForce(index, segments, candidate[0], candidate[1]);
+        }
+        Assert.assertFalse("Collinear segments should not cross", index.crossesAny(candidates[0][0], candidates[0][1]));
+        Assert.assertTrue("Ending on the middle of a line should count as crossing",
+                index.crossesAny(candidates[3][0], candidates[3][1]));
+
+        // linesCross's endpoint tolerance accepts these, but the segments' bounding boxes are far apart
+        for (int i = 4; i <= 5; i++) {
+            Assert.assertTrue(bruteForce(segments, candidates[i][0], candidates[i][1]));
+            Assert.assertFalse("Extensions through endpoints far away should not count as crossing",
+                    index.crossesAny(candidates[i][0], candidates[i][1]));
+        }
+    }
+
+    // The index must find every crossing that lies on both segments, and anything it reports must be a crossing
+    // according to linesCross
+    private static boolean checkAgainstBruteForce(final SegmentIndex index, final List<LatLng[]> segments,
+                                                  final LatLng start, final LatLng end) {
+        boolean crosses = index.crossesAny(start, end);
+        if (crosses) {
+            Assert.assertTrue(bruteForce(segments, start, end));
+        } else {
+            for (LatLng[] segment : segments) {
+                Assert.assertFalse(LineCrossDetector.linesCross(segment[0], segment[1], start, end)
+                        && meetOnBoth(segment[0], segment[1], start, end));
+            }
+        }
+        return crosses;
+    }
+
+    private static boolean meetOnBoth(final LatLng firstStart, final LatLng firstEnd,
+                                      final LatLng secondStart, final LatLng secondEnd) {
+        if (LatLngUtils.same(firstStart.longitude, firstEnd.longitude)
+                || LatLngUtils.same(secondStart.longitude, secondEnd.longitude)) {
+            // linesCross only reports crossings with a vertical line within both segments
+            return true;
+        }
+        double firstSlope = (firstEnd.latitude - firstStart.latitude) / (firstEnd.longitude - firstStart.longitude);
+        double secondSlope = (secondEnd.latitude - secondStart.latitude)
+                / (secondEnd.longitude - secondStart.longitude);
+        double intersectionX = -((firstStart.latitude - firstSlope * firstStart.longitude)
+                - (secondStart.latitude - secondSlope * secondStart.longitude)) / (firstSlope - secondSlope);
+        return intersectionX >= Math.min(firstStart.longitude, firstEnd.longitude)
+                && intersectionX <= Math.max(firstStart.longitude, firstEnd.longitude)
+                && intersectionX >= Math.min(secondStart.longitude, secondEnd.longitude)
+                && intersectionX <= Math.max(secondStart.longitude, secondEnd.longitude);
+    }
+
+    private static boolean bruteForce(final List<LatLng[]> segments, final LatLng start, final LatLng end) {
+        for (LatLng[] segment : segments) {
+            if (LineCrossDetector.linesCross(segment[0], segment[1], start, end)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static LatLng randomPosition(final Random random) {
+        return new LatLng(CENTER_LAT + (random.nextDouble() * 2 - 1) * SPREAD,
+                CENTER_LNG + (random.nextDouble() * 2 - 1) * SPREAD);
+    }
+
+}
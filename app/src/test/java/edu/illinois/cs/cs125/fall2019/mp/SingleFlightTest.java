@@ -0,0 +1,89 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.android.volley.VolleyError;
+import com.google.gson.JsonObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SingleFlightTest {
+
+    private static final String GAMES = "alice " + WebApi.API_BASE + "/games";
+
+    @Test(timeout = 60000)
+    public void testIdenticalRequestsShareOneResponse() {
+        SingleFlight<JsonObject> flight = new SingleFlight<>();
+        List<JsonObject> responses = new ArrayList<>();
+        // Rapid taps: five refreshes of the same list before the first one finishes
+        Assert.assertTrue("The first caller starts the request",
+                flight.join(GAMES, this, responses::add, Assert::assertNull));
+        for (int i = 0; i < 4; i++) {
+            Assert.assertFalse(flight.join(GAMES, this, responses::add, Assert::assertNull));
+        }
+        Assert.assertTrue("Another user's request is separate",
+                flight.join("bob " + WebApi.API_BASE + "/games", this, responses::add, Assert::assertNull));
+
+        JsonObject games = SampleData.createTargetModeTestGame();
+        flight.complete(GAMES, games);
+        Assert.assertEquals(5, responses.size());
+        for (JsonObject response : responses) {
+            Assert.assertSame("Parsed once, shared by every caller", games, response);
+        }
+        Assert.assertEquals(2, flight.getStarted());
+        Assert.assertEquals(4, flight.getSaved());
+
+        // Once finished, the next caller starts a new request
+        Assert.assertTrue(flight.join(GAMES, this, responses::add, Assert::assertNull));
+        flight.cancel(GAMES);
+        Assert.assertEquals("Nothing is delivered for a cancelled request", 5, responses.size());
+        Assert.assertTrue(flight.join(GAMES, this, responses::add, Assert::assertNull));
+    }
+
+    @Test(timeout = 60000)
+    public void testErrorsReachEveryCaller() {
+        SingleFlight<JsonObject> flight = new SingleFlight<>();
+        List<VolleyError> errors = new ArrayList<>();
+        flight.join(GAMES, this, response -> Assert.fail(), errors::add);
+        flight.join(GAMES, this, response -> Assert.fail(), errors::add);
+        VolleyError error = new VolleyError("offline");
+        flight.fail(GAMES, error);
+        Assert.assertEquals(2, errors.size());
+        Assert.assertSame(error, errors.get(1));
+        flight.complete(GAMES, new JsonObject());
+    }
+
+    @Test(timeout = 60000)
+    public void testLeavingCancelsAbandonedRequests() {
+        SingleFlight<JsonObject> flight = new SingleFlight<>();
+        Object mainScreen = new Object();
+        Object otherScreen = new Object();
+        List<JsonObject> responses = new ArrayList<>();
+        int[] cancelled = {0};
+
+        // Shared with another screen: leaving doesn't cancel the request, just the callbacks
+        flight.join(GAMES, mainScreen, response -> Assert.fail("Left callers get nothing"), Assert::assertNull);
+        flight.join(GAMES, otherScreen, responses::add, Assert::assertNull);
+        Assert.assertTrue(flight.setCanceller(GAMES, () -> cancelled[0]++));
+        flight.leaveAll(mainScreen);
+        Assert.assertEquals(0, cancelled[0]);
+        flight.complete(GAMES, new JsonObject());
+        Assert.assertEquals(1, responses.size());
+
+        // Nobody else waiting: the request is cancelled
+        flight.join(GAMES, mainScreen, response -> Assert.fail(), error -> Assert.fail());
+        Assert.assertTrue(flight.setCanceller(GAMES, () -> cancelled[0]++));
+        flight.leaveAll(mainScreen);
+        Assert.assertEquals(1, cancelled[0]);
+        Assert.assertEquals(1, flight.getAbandoned());
+        flight.complete(GAMES, new JsonObject());
+
+        // Left before the request was even created: it shouldn't be sent
+        flight.join(GAMES, mainScreen, response -> Assert.fail(), error -> Assert.fail());
+        flight.leaveAll(mainScreen);
+        Assert.assertFalse(flight.setCanceller(GAMES, () -> cancelled[0]++));
+    }
+
+}
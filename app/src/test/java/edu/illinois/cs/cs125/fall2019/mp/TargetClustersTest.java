@@ -0,0 +1,88 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.illinois.cs.cs125.fall2019.mp.shadows.MockedWrapperInstantiator;
+import edu.illinois.cs.cs125.fall2019.mp.shadows.ShadowGoogleMap;
+
+@RunWith(RobolectricTestRunner.class)
+public class TargetClustersTest {
+
+    private static final int[] COLORS = {0, 0xffff0000, 0xff00ff00, 0xffffff00, 0xff0000ff};
+
+    @Test(timeout = 60000)
+    public void testClustersFormWhenZoomedOut() {
+        GoogleMap map = MockedWrapperInstantiator.create(GoogleMap.class);
+        ShadowGoogleMap shadowMap = Shadow.extract(map);
+        List<Target> targets = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            LatLng position = new LatLng(40.1100 + (i / 20) * 1e-4, -88.2300 + (i % 20) * 1e-4);
+            int team = TeamID.TEAM_RED;
+            if (i % 3 == 0) {
+                team = TeamID.TEAM_BLUE;
+            }
+            targets.add(new Target(map, position, team));
+        }
+        TargetClusters clusters = new TargetClusters(map, COLORS);
+        clusters.addAll(targets);
+        Assert.assertSame("Icons are shared by team", TargetIcons.get(map, TeamID.TEAM_RED),
+                TargetIcons.get(map, TeamID.TEAM_RED));
+        GoogleMap recreated = MockedWrapperInstantiator.create(GoogleMap.class);
+        Assert.assertNotSame("Icons aren't shared with a recreated map", TargetIcons.get(map, TeamID.TEAM_RED),
+                TargetIcons.get(recreated, TeamID.TEAM_RED));
+
+        // Zoomed in: every target is its own marker
+        clusters.setZoom(TargetClusters.CLUSTER_ZOOM + 1);
+        Assert.assertEquals(0, clusters.getClusterMarkerCount());
+        Assert.assertEquals(300, shadowMap.getMarkers().size());
+
+        // Zoomed out: a few counted markers per team cover every target
+        int zoom = 12;
+        int members = 0;
+        int multiples = 0;
+        for (TargetClusters.Cluster cluster : clusters.group(zoom)) {
+            for (Target target : cluster.getMembers()) {
+                Assert.assertEquals("Clusters don't mix teams", cluster.getTeam(), target.getTeam());
+            }
+            members += cluster.getMembers().size();
+            if (cluster.getMembers().size() > 1) {
+                multiples++;
+            }
+        }
+        Assert.assertEquals(300, members);
+        clusters.setZoom(zoom);
+        Assert.assertEquals(multiples, clusters.getClusterMarkerCount());
+        Assert.assertTrue(clusters.getClusterMarkerCount() <= 8);
+        Assert.assertEquals(300 + multiples, shadowMap.getMarkers().size());
+
+        // Changing a target's team regroups without leaking cluster markers
+        List<Marker> before = new ArrayList<>(shadowMap.getMarkers());
+        targets.get(1).setTeam(TeamID.TEAM_GREEN);
+        clusters.refresh();
+        Assert.assertEquals(300 + clusters.getClusterMarkerCount(), shadowMap.getMarkers().size());
+        int kept = 0;
+        for (Marker marker : shadowMap.getMarkers()) {
+            if (before.contains(marker)) {
+                kept++;
+            }
+        }
+        Assert.assertTrue("Markers of clusters that didn't change are kept", kept >= 300 + multiples - 1);
+
+        // Zooming back in removes the cluster markers
+        clusters.setZoom(TargetClusters.CLUSTER_ZOOM);
+        Assert.assertEquals(0, clusters.getClusterMarkerCount());
+        Assert.assertEquals(300, shadowMap.getMarkers().size());
+    }
+
+}
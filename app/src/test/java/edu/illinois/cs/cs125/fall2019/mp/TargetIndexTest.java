@@ -0,0 +1,137 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class TargetIndexTest {
+
+    private static final double CENTER_LAT = 40.109395;
+
+    private static final double CENTER_LNG = -88.227212;
+
+    private static final int RANGE = 20;
+
+    private static final LocalProjection PROJECTION = new LocalProjection(CENTER_LAT, CENTER_LNG);
+
+    @Test(timeout = 60000)
+    public void testMatchesLinearScan() {
+        Random random = new Random(125);
+        Map<String, LatLng> targets = randomTargets(random, 5000, 0.01);
+        TargetIndex index = new TargetIndex(RANGE, PROJECTION);
+        targets.forEach(index::add);
+        Assert.assertEquals(targets.size(), index.size());
+        for (int i = 0; i < 2000; i++) {
+            LatLng location = randomPosition(random, 0.011);
+            List<String> expected = linearScan(targets, location, RANGE);
+            List<String> actual = index.findNearby(location, RANGE);
+            Collections.sort(expected);
+            Collections.sort(actual);
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testWithinErrorBoundOfDistance() {
+        // Players far north of the projection's center, with targets near the edge of the range
+        Random random = new Random(125);
+        int inside = 0;
+        int outside = 0;
+        for (int i = 0; i < 200; i++) {
+            LatLng location = new LatLng(CENTER_LAT + 0.05 + random.nextDouble() * 0.05, CENTER_LNG);
+            double bound = PROJECTION.maxRelativeError(location.latitude, location.latitude);
+            Map<String, LatLng> targets = new HashMap<>();
+            double lngScale = 111320 * Math.cos(Math.toRadians(location.latitude));
+            for (int j = 0; j < 20; j++) {
+                double angle = random.nextDouble() * 2 * Math.PI;
+                double distance = RANGE * (1 + (random.nextDouble() * 2 - 1) * 3 * bound);
+                targets.put("T" + j, new LatLng(location.latitude + distance * Math.sin(angle) / 110574,
+                        location.longitude + distance * Math.cos(angle) / lngScale));
+            }
+            TargetIndex index = new TargetIndex(RANGE, PROJECTION);
+            targets.forEach(index::add);
+            List<String> found = index.findNearby(location, RANGE);
+            for (Map.Entry<String, LatLng> entry : targets.entrySet()) {
+                double distance = LatLngUtils.distance(location, entry.getValue());
+                if (distance <= RANGE * (1 - bound)) {
+                    Assert.assertTrue(found.contains(entry.getKey()));
+                    inside++;
+                } else if (distance > RANGE * (1 + bound)) {
+                    Assert.assertFalse(found.contains(entry.getKey()));
+                    outside++;
+                }
+            }
+        }
+        Assert.assertTrue("The test should exercise both outcomes", inside > 0 && outside > 0);
+    }
+
+    @Test(timeout = 60000)
+    public void testRemove() {
+        TargetIndex index = new TargetIndex(RANGE, PROJECTION);
+        LatLng position = new LatLng(CENTER_LAT, CENTER_LNG);
+        index.add("a", position);
+        index.add("b", new LatLng(CENTER_LAT + 0.00005, CENTER_LNG));
+        Assert.assertEquals(2, index.findNearby(position, RANGE).size());
+        Assert.assertTrue(index.remove("a"));
+        Assert.assertFalse(index.remove("a"));
+        Assert.assertEquals(Collections.singletonList("b"), index.findNearby(position, RANGE));
+        Assert.assertTrue(index.remove("b"));
+        Assert.assertEquals(0, index.size());
+        Assert.assertTrue(index.findNearby(position, RANGE).isEmpty());
+    }
+
+    @Test(timeout = 60000)
+    public void testLargeGamesMatchLinearScan() {
+        Random random = new Random(125);
+        for (int count : new int[] {100, 10000, 100000}) {
+            // Keep target density roughly constant, as in a bigger play area
+            double spread = 0.0005 * Math.sqrt(count);
+            Map<String, LatLng> targets = randomTargets(random, count, spread);
+            TargetIndex index = new TargetIndex(RANGE, PROJECTION);
+            targets.forEach(index::add);
+            int hits = 0;
+            for (int i = 0; i < 100; i++) {
+                LatLng fix = randomPosition(random, spread);
+                List<String> expected = linearScan(targets, fix, RANGE);
+                List<String> actual = index.findNearby(fix, RANGE);
+                Collections.sort(expected);
+                Collections.sort(actual);
+                Assert.assertEquals(expected, actual);
+                hits += actual.size();
+            }
+            Assert.assertTrue("The test should find some targets", hits > 0);
+        }
+    }
+
+    private static Map<String, LatLng> randomTargets(final Random random, final int count, final double spread) {
+        Map<String, LatLng> targets = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            targets.put("T" + i, randomPosition(random, spread));
+        }
+        return targets;
+    }
+
+    private static LatLng randomPosition(final Random random, final double spread) {
+        return new LatLng(CENTER_LAT + (random.nextDouble() * 2 - 1) * spread,
+                CENTER_LNG + (random.nextDouble() * 2 - 1) * spread);
+    }
+
+    private static List<String> linearScan(final Map<String, LatLng> targets, final LatLng location, final double range) {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, LatLng> entry : targets.entrySet()) {
+            if (PROJECTION.withinRange(location, entry.getValue(), range)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+}
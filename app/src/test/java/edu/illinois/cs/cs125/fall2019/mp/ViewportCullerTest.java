@@ -0,0 +1,152 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ViewportCullerTest {
+
+    private static final int SIDE = 100;
+    private static final double SPACING = 1e-4;
+    private static final LatLngBounds AREA = new LatLngBounds(new LatLng(40, -88),
+            new LatLng(40 + SIDE * SPACING, -88 + SIDE * SPACING));
+
+    private static final class CountingItem implements ViewportCuller.Item {
+        private final LatLng position;
+        private boolean attached;
+
+        CountingItem(final LatLng setPosition) {
+            position = setPosition;
+        }
+
+        @Override
+        public void attach() {
+            Assert.assertFalse("Attached twice", attached);
+            attached = true;
+        }
+
+        @Override
+        public void detach() {
+            Assert.assertTrue("Detached while not attached", attached);
+            attached = false;
+        }
+    }
+
+    private static List<CountingItem> fill(final ViewportCuller culler) {
+        List<CountingItem> items = new ArrayList<>();
+        for (int x = 0; x < SIDE; x++) {
+            for (int y = 0; y < SIDE; y++) {
+                CountingItem item = new CountingItem(new LatLng(40 + (y + 0.5) * SPACING, -88 + (x + 0.5) * SPACING));
+                culler.add(item, item.position);
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    private static LatLngBounds view(final double south, final double west, final double size) {
+        return new LatLngBounds(new LatLng(south, west), new LatLng(south + size, west + size));
+    }
+
+    private static int countIn(final List<CountingItem> items, final LatLngBounds visible) {
+        double latMargin = (visible.northeast.latitude - visible.southwest.latitude) * ViewportCuller.MARGIN;
+        double lngMargin = (visible.northeast.longitude - visible.southwest.longitude) * ViewportCuller.MARGIN;
+        int count = 0;
+        for (CountingItem item : items) {
+            boolean in = item.position.latitude >= visible.southwest.latitude - latMargin
+                    && item.position.latitude <= visible.northeast.latitude + latMargin
+                    && item.position.longitude >= visible.southwest.longitude - lngMargin
+                    && item.position.longitude <= visible.northeast.longitude + lngMargin;
+            Assert.assertEquals(in, item.attached);
+            if (in) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test(timeout = 60000)
+    public void testOnlyItemsInViewAreAttached() {
+        ViewportCuller culler = new ViewportCuller(AREA, SIDE * SIDE);
+        List<CountingItem> items = fill(culler);
+        Assert.assertEquals("Everything within the budget is drawn until the view is known", SIDE * SIDE,
+                culler.getAttachedCount());
+
+        LatLngBounds southWest = view(40.001, -87.999, 10 * SPACING);
+        culler.setViewport(southWest);
+        int shown = countIn(items, southWest);
+        Assert.assertEquals(shown, culler.getAttachedCount());
+        Assert.assertTrue(shown > 0 && shown < 500);
+
+        // Panning releases what scrolled away and attaches what came into view
+        LatLngBounds northEast = view(40.008, -87.992, 10 * SPACING);
+        long before = culler.getOperations();
+        culler.setViewport(northEast);
+        Assert.assertEquals(countIn(items, northEast), culler.getAttachedCount());
+        Assert.assertTrue("Work depends on what's in view", culler.getOperations() - before <= 2 * shown + 50);
+
+        // Items moving out of view are detached; removed items are detached too
+        CountingItem visible = null;
+        for (CountingItem item : items) {
+            if (item.attached) {
+                visible = item;
+                break;
+            }
+        }
+        Assert.assertNotNull(visible);
+        culler.move(visible, new LatLngBounds(new LatLng(40, -88), new LatLng(40, -88)));
+        Assert.assertFalse(visible.attached);
+        culler.move(visible, new LatLngBounds(visible.position, visible.position));
+        Assert.assertTrue(visible.attached);
+        culler.remove(visible);
+        Assert.assertFalse(visible.attached);
+        Assert.assertEquals(SIDE * SIDE - 1, culler.size());
+    }
+
+    @Test(timeout = 60000)
+    public void testBudgetKeepsClosestItems() {
+        ViewportCuller culler = new ViewportCuller(AREA, 50);
+        List<CountingItem> items = fill(culler);
+        culler.setViewport(AREA);
+        Assert.assertEquals(50, culler.getAttachedCount());
+        CountingItem center = items.get((SIDE / 2) * SIDE + SIDE / 2);
+        CountingItem corner = items.get(0);
+        Assert.assertTrue(center.attached);
+        Assert.assertFalse(corner.attached);
+
+        // A new item near the center evicts the farthest one
+        CountingItem added = new CountingItem(new LatLng(40 + SIDE * SPACING / 2, -88 + SIDE * SPACING / 2));
+        culler.add(added, added.position);
+        Assert.assertTrue(added.attached);
+        Assert.assertEquals(50, culler.getAttachedCount());
+    }
+
+    @Test(timeout = 60000)
+    public void testBudgetHoldsBeforeFirstViewport() {
+        ViewportCuller culler = new ViewportCuller(AREA, 50);
+        List<CountingItem> items = fill(culler);
+        Assert.assertEquals(50, culler.getAttachedCount());
+        Assert.assertTrue("The center of the play area is favored", items.get((SIDE / 2) * SIDE + SIDE / 2).attached);
+        Assert.assertFalse(items.get(0).attached);
+        Assert.assertFalse(items.get(items.size() - 1).attached);
+        // Items are added column by column, so some get attached and then replaced, but far from all of them
+        Assert.assertTrue("Most items are never attached", culler.getOperations() < SIDE * SIDE / 4);
+    }
+
+    @Test(timeout = 60000)
+    public void testViewportBeforeItemsAttachesOnlyThoseInView() {
+        ViewportCuller culler = new ViewportCuller(AREA);
+        LatLngBounds southWest = view(40.001, -87.999, 10 * SPACING);
+        culler.setViewport(southWest);
+        List<CountingItem> items = fill(culler);
+        int shown = countIn(items, southWest);
+        Assert.assertEquals(shown, culler.getAttachedCount());
+        Assert.assertEquals("Items out of view are never created", shown, culler.getOperations());
+    }
+
+}
@@ -29,6 +29,7 @@ final class WebApiMocker {
     static void ensureMocked() {
         if (isMocked) return;
         PowerMockito.mockStatic(WebApi.class);
+        PowerMockito.mockStatic(ServerClient.class);
         isMocked = true;
     }
 
@@ -46,6 +47,12 @@ final class WebApiMocker {
             return null;
         }).when(WebApi.class);
         WebApi.startRequest(Mockito.any(), Mockito.any(), Mockito.anyInt(), Mockito.any(), Mockito.any(), Mockito.any());
+        PowerMockito.doAnswer(invocation -> {
+            Objects.requireNonNull(invocation.getArgument(0));
+            toDeliver.add(invocation);
+            return null;
+        }).when(ServerClient.class);
+        ServerClient.startRequest(Mockito.any(), Mockito.any(), Mockito.anyInt(), Mockito.any(), Mockito.any(), Mockito.any());
         PowerMockito.doCallRealMethod().when(WebApi.class);
         WebApi.startRequest(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
     }
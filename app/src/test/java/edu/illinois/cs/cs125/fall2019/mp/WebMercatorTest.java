@@ -0,0 +1,28 @@
+package edu.illinois.cs.cs125.fall2019.mp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WebMercatorTest {
+
+    @Test(timeout = 60000)
+    public void testKnownPoints() {
+        Assert.assertEquals(0, WebMercator.toPixelX(-180, 0), 1e-9);
+        Assert.assertEquals(128, WebMercator.toPixelX(0, 0), 1e-9);
+        Assert.assertEquals(128, WebMercator.toPixelY(0, 0), 1e-9);
+        Assert.assertEquals(256 * 1024, WebMercator.worldSize(10), 1e-9);
+        Assert.assertTrue("Y increases southward",
+                WebMercator.toPixelY(40.11, 18) < WebMercator.toPixelY(40.10, 18));
+    }
+
+    @Test(timeout = 60000)
+    public void testRoundTrip() {
+        for (int zoom = 0; zoom <= 21; zoom += 3) {
+            double x = WebMercator.toPixelX(-88.2272, zoom);
+            double y = WebMercator.toPixelY(40.1092, zoom);
+            Assert.assertEquals(-88.2272, WebMercator.toLongitude(x, zoom), 1e-9);
+            Assert.assertEquals(40.1092, WebMercator.toLatitude(y, zoom), 1e-9);
+        }
+    }
+
+}
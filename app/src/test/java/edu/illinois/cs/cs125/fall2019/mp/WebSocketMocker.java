@@ -46,7 +46,7 @@ final class WebSocketMocker {
     static WebSocketMocker expectConnection() {
         WebApiMocker.ensureMocked();
         WebSocketMocker mocker = new WebSocketMocker(false);
-        PowerMockito.doAnswer(invocation -> {
+        Answer<Void> connect = invocation -> {
             String url = invocation.getArgument(0);
             Consumer<Throwable> errorReceiver = invocation.getArgument(4);
             if (!url.startsWith("ws")) {
@@ -63,8 +63,11 @@ final class WebSocketMocker {
             mocker.createWebSocket();
             wsReceiver.accept(mocker.getWebSocket());
             return null;
-        }).when(WebApi.class);
+        };
+        PowerMockito.doAnswer(connect).when(WebApi.class);
         WebApi.connectWebSocket(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        PowerMockito.doAnswer(connect).when(ServerClient.class);
+        ServerClient.connectWebSocket(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
         return mocker;
     }
 
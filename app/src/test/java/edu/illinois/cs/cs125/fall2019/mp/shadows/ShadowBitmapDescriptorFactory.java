@@ -1,5 +1,7 @@
 package edu.illinois.cs.cs125.fall2019.mp.shadows;
 
+import android.graphics.Bitmap;
+
 import com.google.android.gms.dynamic.IObjectWrapper;
 import com.google.android.gms.maps.model.BitmapDescriptor;
 import com.google.android.gms.maps.model.BitmapDescriptorFactory;
@@ -28,4 +30,10 @@ public class ShadowBitmapDescriptorFactory {
         return defaultMarker(0.0f);
     }
 
+    @Implementation
+    protected static BitmapDescriptor fromBitmap(Bitmap image) {
+        Assert.assertNotNull("Bitmap must not be null", image);
+        return MockedWrapperInstantiator.create(BitmapDescriptor.class);
+    }
+
 }
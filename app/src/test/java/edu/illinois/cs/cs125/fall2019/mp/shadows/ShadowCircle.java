@@ -18,6 +18,8 @@ public class ShadowCircle {
     private ShadowGoogleMap map;
     private String id;
     private Object tag;
+    private boolean visible = true;
+    private int centerChanges;
 
     void setup(CircleOptions setOptions, ShadowGoogleMap setMap) {
         options = setOptions;
@@ -33,6 +35,11 @@ public class ShadowCircle {
     @Implementation
     protected void setCenter(LatLng center) {
         options.center(center);
+        centerChanges++;
+    }
+
+    public int getCenterChanges() {
+        return centerChanges;
     }
 
     @Implementation
@@ -60,6 +67,16 @@ public class ShadowCircle {
         options.radius(radius);
     }
 
+    @Implementation
+    protected boolean isVisible() {
+        return visible;
+    }
+
+    @Implementation
+    protected void setVisible(boolean setVisible) {
+        visible = setVisible;
+    }
+
     @Implementation
     protected Object getTag() {
         return tag;